@@ -44,7 +44,11 @@ public class TApplicationException
         PROTOCOL_ERROR(7),
         INVALID_TRANSFORM(8),
         INVALID_PROTOCOL(9),
-        UNSUPPORTED_CLIENT_TYPE(10);
+        UNSUPPORTED_CLIENT_TYPE(10),
+        // the server rejected the request without executing it because it is overloaded
+        LOADSHEDDING(11),
+        // the client stopped waiting for the response before the server executed the request
+        TIMEOUT(12);
 
         private final int type;
 
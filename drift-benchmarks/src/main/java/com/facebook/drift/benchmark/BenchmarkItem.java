@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.annotations.ThriftConstructor;
+import com.facebook.drift.annotations.ThriftField;
+import com.facebook.drift.annotations.ThriftStruct;
+
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+@ThriftStruct
+public final class BenchmarkItem
+{
+    private final int sku;
+    private final String description;
+    private final long quantity;
+    private final double price;
+
+    @ThriftConstructor
+    public BenchmarkItem(
+            @ThriftField(name = "sku") int sku,
+            @ThriftField(name = "description") String description,
+            @ThriftField(name = "quantity") long quantity,
+            @ThriftField(name = "price") double price)
+    {
+        this.sku = sku;
+        this.description = description;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    @ThriftField(1)
+    public int getSku()
+    {
+        return sku;
+    }
+
+    @ThriftField(2)
+    public String getDescription()
+    {
+        return description;
+    }
+
+    @ThriftField(3)
+    public long getQuantity()
+    {
+        return quantity;
+    }
+
+    @ThriftField(4)
+    public double getPrice()
+    {
+        return price;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BenchmarkItem that = (BenchmarkItem) o;
+        return sku == that.sku &&
+                quantity == that.quantity &&
+                Double.compare(that.price, price) == 0 &&
+                Objects.equals(description, that.description);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(sku, description, quantity, price);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("sku", sku)
+                .add("description", description)
+                .add("quantity", quantity)
+                .add("price", price)
+                .toString();
+    }
+}
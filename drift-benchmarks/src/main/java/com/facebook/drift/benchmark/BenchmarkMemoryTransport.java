@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.protocol.TTransport;
+import com.facebook.drift.protocol.TTransportException;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+
+/**
+ * Growable in-memory transport that can be rewound, so a single buffer can
+ * be written once and read many times without reallocating.
+ */
+public final class BenchmarkMemoryTransport
+        implements TTransport
+{
+    private byte[] data;
+    private int writePosition;
+    private int readPosition;
+
+    public BenchmarkMemoryTransport(int initialSize)
+    {
+        data = new byte[max(initialSize, 16)];
+    }
+
+    public void reset()
+    {
+        writePosition = 0;
+        readPosition = 0;
+    }
+
+    public void rewind()
+    {
+        readPosition = 0;
+    }
+
+    public int size()
+    {
+        return writePosition;
+    }
+
+    public byte[] toByteArray()
+    {
+        return Arrays.copyOf(data, writePosition);
+    }
+
+    @Override
+    public void read(byte[] buf, int off, int len)
+            throws TTransportException
+    {
+        if (writePosition - readPosition < len) {
+            throw new TTransportException("Too few bytes in buffer");
+        }
+        System.arraycopy(data, readPosition, buf, off, len);
+        readPosition += len;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len)
+    {
+        if (data.length - writePosition < len) {
+            data = Arrays.copyOf(data, max(data.length * 2, writePosition + len));
+        }
+        System.arraycopy(buf, off, data, writePosition, len);
+        writePosition += len;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.benchmark.BenchmarkService.EchoBenchmarkService;
+import com.facebook.drift.client.DriftClientFactory;
+import com.facebook.drift.client.address.SimpleAddressSelector;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.server.DriftServer;
+import com.facebook.drift.server.DriftService;
+import com.facebook.drift.server.stats.NullMethodInvocationStatsFactory;
+import com.facebook.drift.transport.netty.client.DriftNettyClientConfig;
+import com.facebook.drift.transport.netty.client.DriftNettyMethodInvokerFactory;
+import com.facebook.drift.transport.netty.codec.Protocol;
+import com.facebook.drift.transport.netty.codec.Transport;
+import com.facebook.drift.transport.netty.server.DriftNettyServerConfig;
+import com.facebook.drift.transport.netty.server.DriftNettyServerTransport;
+import com.facebook.drift.transport.netty.server.DriftNettyServerTransportFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HostAndPort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import static com.facebook.drift.benchmark.BenchmarkRecord.createBenchmarkRecord;
+import static com.facebook.drift.transport.netty.client.DriftNettyMethodInvokerFactory.createStaticDriftNettyMethodInvokerFactory;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * End-to-end round trips between a {@link DriftNettyServerTransport} and a
+ * Netty client over loopback.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(SECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(2)
+@Warmup(iterations = 10, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = MILLISECONDS)
+public class BenchmarkNettyRoundTrip
+{
+    @Param({"FRAMED", "UNFRAMED", "HEADER"})
+    private Transport transport = Transport.FRAMED;
+
+    // HEADER transport does not support the COMPACT protocol
+    @Param({"BINARY", "FB_COMPACT"})
+    private Protocol protocol = Protocol.BINARY;
+
+    @Param({"10", "1000"})
+    private int itemCount = 10;
+
+    @Param({"false", "true"})
+    private boolean flushConsolidation;
+
+    private DriftServer server;
+    private DriftNettyMethodInvokerFactory<?> methodInvokerFactory;
+    private BenchmarkService client;
+    private BenchmarkRecord record;
+
+    @Setup
+    public void setup()
+    {
+        ThriftCodecManager codecManager = new ThriftCodecManager();
+
+        server = new DriftServer(
+                new DriftNettyServerTransportFactory(new DriftNettyServerConfig()
+                        .setFlushConsolidationEnabled(flushConsolidation)),
+                codecManager,
+                new NullMethodInvocationStatsFactory(),
+                ImmutableSet.of(new DriftService(new EchoBenchmarkService())),
+                ImmutableSet.of());
+        server.start();
+
+        HostAndPort address = HostAndPort.fromParts("localhost", ((DriftNettyServerTransport) server.getServerTransport()).getPort());
+
+        methodInvokerFactory = createStaticDriftNettyMethodInvokerFactory(new DriftNettyClientConfig()
+                .setTransport(transport)
+                .setProtocol(protocol)
+                .setFlushConsolidationEnabled(flushConsolidation));
+        client = new DriftClientFactory(codecManager, methodInvokerFactory, new SimpleAddressSelector(ImmutableList.of(address), true))
+                .createDriftClient(BenchmarkService.class)
+                .get();
+
+        record = createBenchmarkRecord(1234, itemCount);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        methodInvokerFactory.close();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public long ping()
+    {
+        return client.ping(42);
+    }
+
+    @Benchmark
+    public BenchmarkRecord echo()
+    {
+        return client.echo(record);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public BenchmarkRecord echoConcurrent()
+    {
+        return client.echo(record);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkNettyRoundTrip.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
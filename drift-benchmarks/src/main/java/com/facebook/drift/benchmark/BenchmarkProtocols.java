@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.protocol.TList;
+import com.facebook.drift.protocol.TMap;
+import com.facebook.drift.protocol.TProtocol;
+import com.facebook.drift.protocol.TType;
+import com.facebook.drift.transport.netty.codec.Protocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(SECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+public class BenchmarkProtocols
+{
+    private static final int PRIMITIVE_COUNT = 1024;
+    private static final int STRING_COUNT = 256;
+    private static final int LIST_SIZE = 1024;
+    private static final int MAP_SIZE = 64;
+
+    @Param({"BINARY", "COMPACT", "FB_COMPACT"})
+    private Protocol protocol = Protocol.BINARY;
+
+    private final BenchmarkMemoryTransport writeTransport = new BenchmarkMemoryTransport(64 * 1024);
+    private TProtocol writer;
+
+    private final BenchmarkMemoryTransport primitivesTransport = new BenchmarkMemoryTransport(64 * 1024);
+    private TProtocol primitivesReader;
+    private final BenchmarkMemoryTransport stringsTransport = new BenchmarkMemoryTransport(64 * 1024);
+    private TProtocol stringsReader;
+    private final BenchmarkMemoryTransport containersTransport = new BenchmarkMemoryTransport(64 * 1024);
+    private TProtocol containersReader;
+
+    private final long[] longs = new long[PRIMITIVE_COUNT];
+    private final double[] doubles = new double[PRIMITIVE_COUNT];
+    private final String[] strings = new String[STRING_COUNT];
+
+    @Setup
+    public void setup()
+            throws TException
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < PRIMITIVE_COUNT; i++) {
+            // mix of small and large values so the varint encodings see both
+            longs[i] = (i % 2 == 0) ? random.nextInt(1000) : random.nextLong();
+            doubles[i] = random.nextDouble();
+        }
+        for (int i = 0; i < STRING_COUNT; i++) {
+            strings[i] = "benchmark string value " + random.nextInt();
+        }
+
+        writer = protocol.createProtocol(writeTransport);
+
+        writePrimitives(protocol.createProtocol(primitivesTransport));
+        primitivesReader = protocol.createProtocol(primitivesTransport);
+        writeStrings(protocol.createProtocol(stringsTransport));
+        stringsReader = protocol.createProtocol(stringsTransport);
+        writeContainers(protocol.createProtocol(containersTransport));
+        containersReader = protocol.createProtocol(containersTransport);
+    }
+
+    @Benchmark
+    public int writePrimitives()
+            throws TException
+    {
+        writeTransport.reset();
+        writePrimitives(writer);
+        return writeTransport.size();
+    }
+
+    @Benchmark
+    public void readPrimitives(Blackhole blackhole)
+            throws TException
+    {
+        primitivesTransport.rewind();
+        for (int i = 0; i < PRIMITIVE_COUNT; i++) {
+            blackhole.consume(primitivesReader.readBool());
+            blackhole.consume(primitivesReader.readByte());
+            blackhole.consume(primitivesReader.readI16());
+            blackhole.consume(primitivesReader.readI32());
+            blackhole.consume(primitivesReader.readI64());
+            blackhole.consume(primitivesReader.readDouble());
+        }
+    }
+
+    @Benchmark
+    public int writeStrings()
+            throws TException
+    {
+        writeTransport.reset();
+        writeStrings(writer);
+        return writeTransport.size();
+    }
+
+    @Benchmark
+    public void readStrings(Blackhole blackhole)
+            throws TException
+    {
+        stringsTransport.rewind();
+        for (int i = 0; i < STRING_COUNT; i++) {
+            blackhole.consume(stringsReader.readString());
+        }
+    }
+
+    @Benchmark
+    public int writeContainers()
+            throws TException
+    {
+        writeTransport.reset();
+        writeContainers(writer);
+        return writeTransport.size();
+    }
+
+    @Benchmark
+    public void readContainers(Blackhole blackhole)
+            throws TException
+    {
+        containersTransport.rewind();
+
+        TList list = containersReader.readListBegin();
+        for (int i = 0; i < list.getSize(); i++) {
+            blackhole.consume(containersReader.readI64());
+        }
+        containersReader.readListEnd();
+
+        TMap map = containersReader.readMapBegin();
+        for (int i = 0; i < map.getSize(); i++) {
+            blackhole.consume(containersReader.readString());
+            blackhole.consume(containersReader.readI32());
+        }
+        containersReader.readMapEnd();
+    }
+
+    private void writePrimitives(TProtocol protocol)
+            throws TException
+    {
+        for (int i = 0; i < PRIMITIVE_COUNT; i++) {
+            long value = longs[i];
+            protocol.writeBool((value & 1) == 0);
+            protocol.writeByte((byte) value);
+            protocol.writeI16((short) value);
+            protocol.writeI32((int) value);
+            protocol.writeI64(value);
+            protocol.writeDouble(doubles[i]);
+        }
+    }
+
+    private void writeStrings(TProtocol protocol)
+            throws TException
+    {
+        for (String value : strings) {
+            protocol.writeString(value);
+        }
+    }
+
+    private void writeContainers(TProtocol protocol)
+            throws TException
+    {
+        protocol.writeListBegin(new TList(TType.I64, LIST_SIZE));
+        for (int i = 0; i < LIST_SIZE; i++) {
+            protocol.writeI64(longs[i % PRIMITIVE_COUNT]);
+        }
+        protocol.writeListEnd();
+
+        protocol.writeMapBegin(new TMap(TType.STRING, TType.I32, MAP_SIZE));
+        for (int i = 0; i < MAP_SIZE; i++) {
+            protocol.writeString(strings[i % STRING_COUNT]);
+            protocol.writeI32((int) longs[i % PRIMITIVE_COUNT]);
+        }
+        protocol.writeMapEnd();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkProtocols.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.annotations.ThriftConstructor;
+import com.facebook.drift.annotations.ThriftField;
+import com.facebook.drift.annotations.ThriftStruct;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+@ThriftStruct
+public final class BenchmarkRecord
+{
+    private final long id;
+    private final String name;
+    private final BenchmarkStatus status;
+    private final double score;
+    private final List<String> tags;
+    private final Map<String, Long> counters;
+    private final List<BenchmarkItem> items;
+
+    @ThriftConstructor
+    public BenchmarkRecord(
+            @ThriftField(name = "id") long id,
+            @ThriftField(name = "name") String name,
+            @ThriftField(name = "status") BenchmarkStatus status,
+            @ThriftField(name = "score") double score,
+            @ThriftField(name = "tags") List<String> tags,
+            @ThriftField(name = "counters") Map<String, Long> counters,
+            @ThriftField(name = "items") List<BenchmarkItem> items)
+    {
+        this.id = id;
+        this.name = name;
+        this.status = status;
+        this.score = score;
+        this.tags = tags;
+        this.counters = counters;
+        this.items = items;
+    }
+
+    public static BenchmarkRecord createBenchmarkRecord(long id, int itemCount)
+    {
+        ImmutableList.Builder<String> tags = ImmutableList.builder();
+        ImmutableMap.Builder<String, Long> counters = ImmutableMap.builder();
+        for (int i = 0; i < 8; i++) {
+            tags.add("tag-" + i);
+            counters.put("counter-" + i, id * i);
+        }
+
+        ImmutableList.Builder<BenchmarkItem> items = ImmutableList.builder();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new BenchmarkItem(i, "item description " + i, i * 3L, i * 1.25));
+        }
+
+        return new BenchmarkRecord(
+                id,
+                "benchmark record " + id,
+                BenchmarkStatus.ACTIVE,
+                id * 0.5,
+                tags.build(),
+                counters.build(),
+                items.build());
+    }
+
+    @ThriftField(1)
+    public long getId()
+    {
+        return id;
+    }
+
+    @ThriftField(2)
+    public String getName()
+    {
+        return name;
+    }
+
+    @ThriftField(3)
+    public BenchmarkStatus getStatus()
+    {
+        return status;
+    }
+
+    @ThriftField(4)
+    public double getScore()
+    {
+        return score;
+    }
+
+    @ThriftField(5)
+    public List<String> getTags()
+    {
+        return tags;
+    }
+
+    @ThriftField(6)
+    public Map<String, Long> getCounters()
+    {
+        return counters;
+    }
+
+    @ThriftField(7)
+    public List<BenchmarkItem> getItems()
+    {
+        return items;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BenchmarkRecord that = (BenchmarkRecord) o;
+        return id == that.id &&
+                Double.compare(that.score, score) == 0 &&
+                Objects.equals(name, that.name) &&
+                status == that.status &&
+                Objects.equals(tags, that.tags) &&
+                Objects.equals(counters, that.counters) &&
+                Objects.equals(items, that.items);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(id, name, status, score, tags, counters, items);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("id", id)
+                .add("name", name)
+                .add("status", status)
+                .add("score", score)
+                .add("tags", tags)
+                .add("counters", counters)
+                .add("items", items)
+                .toString();
+    }
+}
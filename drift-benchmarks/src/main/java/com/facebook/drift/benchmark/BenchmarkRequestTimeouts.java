@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Request timeout bookkeeping with many outstanding requests, comparing a task
+ * scheduled on the event loop for every request to a shared hashed wheel timer.
+ * Each operation registers the timeout of a new request and cancels the timeout
+ * of the oldest outstanding request, as a response arriving would. Operations run
+ * on the event loop in batches, like the client handler registering timeouts.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(SECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(2)
+@Warmup(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = MILLISECONDS)
+@OperationsPerInvocation(BenchmarkRequestTimeouts.BATCH_SIZE)
+public class BenchmarkRequestTimeouts
+{
+    static final int BATCH_SIZE = 1000;
+
+    @Param("100000")
+    private int outstandingRequests = 100_000;
+
+    @Param({"SCHEDULED_TASK", "TIMER_WHEEL"})
+    private TimerType timerType = TimerType.TIMER_WHEEL;
+
+    private EventLoop eventLoop;
+    private HashedWheelTimer timer;
+    private Cancellable[] outstanding;
+    private int oldest;
+
+    public enum TimerType
+    {
+        SCHEDULED_TASK, TIMER_WHEEL
+    }
+
+    private interface Cancellable
+    {
+        void cancel();
+    }
+
+    @Setup
+    public void setup()
+            throws ExecutionException, InterruptedException
+    {
+        eventLoop = new DefaultEventLoop();
+        timer = new HashedWheelTimer(10, MILLISECONDS);
+        outstanding = new Cancellable[outstandingRequests];
+        eventLoop.submit(() -> {
+            for (int i = 0; i < outstanding.length; i++) {
+                outstanding[i] = register();
+            }
+        }).get();
+    }
+
+    @TearDown
+    public void tearDown()
+            throws InterruptedException
+    {
+        timer.stop();
+        eventLoop.shutdownGracefully(0, 0, SECONDS).await();
+    }
+
+    @Benchmark
+    public int registerAndCancel()
+            throws ExecutionException, InterruptedException
+    {
+        return eventLoop.submit(() -> {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                outstanding[oldest].cancel();
+                outstanding[oldest] = register();
+                oldest = (oldest + 1) % outstanding.length;
+            }
+            return oldest;
+        }).get();
+    }
+
+    private Cancellable register()
+    {
+        // long enough that no timeout fires during the benchmark
+        if (timerType == TimerType.SCHEDULED_TASK) {
+            ScheduledFuture<?> future = eventLoop.schedule(BenchmarkRequestTimeouts::expire, 1, MINUTES);
+            return () -> future.cancel(false);
+        }
+        Timeout timeout = timer.newTimeout(ignored -> expire(), 1, MINUTES);
+        return timeout::cancel;
+    }
+
+    private static void expire()
+    {
+        throw new IllegalStateException("request timed out during benchmark");
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkRequestTimeouts.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.annotations.ThriftMethod;
+import com.facebook.drift.annotations.ThriftService;
+
+@ThriftService("benchmark")
+public interface BenchmarkService
+{
+    @ThriftMethod
+    BenchmarkRecord echo(BenchmarkRecord record);
+
+    @ThriftMethod
+    long ping(long value);
+
+    class EchoBenchmarkService
+            implements BenchmarkService
+    {
+        @Override
+        public BenchmarkRecord echo(BenchmarkRecord record)
+        {
+            return record;
+        }
+
+        @Override
+        public long ping(long value)
+        {
+            return value;
+        }
+    }
+}
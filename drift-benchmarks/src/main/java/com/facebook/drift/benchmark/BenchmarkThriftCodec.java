@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.internal.ThriftCodecFactory;
+import com.facebook.drift.codec.internal.compiler.CompilerThriftCodecFactory;
+import com.facebook.drift.codec.internal.reflection.ReflectionThriftCodecFactory;
+import com.facebook.drift.protocol.TProtocol;
+import com.facebook.drift.transport.netty.codec.Protocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.function.Supplier;
+
+import static com.facebook.drift.benchmark.BenchmarkRecord.createBenchmarkRecord;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(SECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+public class BenchmarkThriftCodec
+{
+    @Param({"COMPILER", "REFLECTION"})
+    private CodecFactory codecFactory = CodecFactory.COMPILER;
+
+    @Param({"BINARY", "COMPACT"})
+    private Protocol protocol = Protocol.BINARY;
+
+    @Param({"10", "1000"})
+    private int itemCount = 10;
+
+    private ThriftCodec<BenchmarkRecord> codec;
+    private BenchmarkRecord record;
+
+    private final BenchmarkMemoryTransport writeTransport = new BenchmarkMemoryTransport(64 * 1024);
+    private TProtocol writer;
+
+    private final BenchmarkMemoryTransport readTransport = new BenchmarkMemoryTransport(64 * 1024);
+    private TProtocol reader;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        ThriftCodecManager codecManager = new ThriftCodecManager(codecFactory.create());
+        codec = codecManager.getCodec(BenchmarkRecord.class);
+        record = createBenchmarkRecord(1234, itemCount);
+
+        writer = protocol.createProtocol(writeTransport);
+
+        codec.write(record, protocol.createProtocol(readTransport));
+        reader = protocol.createProtocol(readTransport);
+    }
+
+    @Benchmark
+    public int write()
+            throws Exception
+    {
+        writeTransport.reset();
+        codec.write(record, writer);
+        return writeTransport.size();
+    }
+
+    @Benchmark
+    public BenchmarkRecord read()
+            throws Exception
+    {
+        readTransport.rewind();
+        return codec.read(reader);
+    }
+
+    public enum CodecFactory
+    {
+        COMPILER(() -> new CompilerThriftCodecFactory(false)),
+        REFLECTION(ReflectionThriftCodecFactory::new);
+
+        private final Supplier<ThriftCodecFactory> factory;
+
+        CodecFactory(Supplier<ThriftCodecFactory> factory)
+        {
+            this.factory = factory;
+        }
+
+        public ThriftCodecFactory create()
+        {
+            return factory.get();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkThriftCodec.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
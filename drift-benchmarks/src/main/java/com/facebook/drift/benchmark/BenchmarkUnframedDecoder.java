@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.benchmark;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.protocol.TField;
+import com.facebook.drift.protocol.TList;
+import com.facebook.drift.protocol.TMessage;
+import com.facebook.drift.protocol.TProtocolReader;
+import com.facebook.drift.protocol.TProtocolUtil;
+import com.facebook.drift.protocol.TProtocolWriter;
+import com.facebook.drift.protocol.TStruct;
+import com.facebook.drift.protocol.TType;
+import com.facebook.drift.transport.netty.codec.Protocol;
+import com.facebook.drift.transport.netty.codec.SimpleFrameCodec;
+import com.facebook.drift.transport.netty.codec.Transport;
+import com.facebook.drift.transport.netty.ssl.TChannelBufferInputTransport;
+import com.facebook.drift.transport.netty.ssl.TChannelBufferOutputTransport;
+import io.airlift.units.DataSize;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.drift.protocol.TMessageType.CALL;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Decoding of large unframed messages that arrive in many segments, comparing
+ * the resumable decoder of the UNFRAMED transport to a decoder that parses the
+ * message from the start each time more data arrives.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(SECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(2)
+@Warmup(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = MILLISECONDS)
+public class BenchmarkUnframedDecoder
+{
+    private static final DataSize MAX_FRAME_SIZE = new DataSize(64, MEGABYTE);
+
+    @Param({"BINARY", "COMPACT", "FB_COMPACT"})
+    private Protocol protocol = Protocol.BINARY;
+
+    @Param({"1", "4"})
+    private int messageSizeInMegabytes = 1;
+
+    // typical size of a socket read
+    @Param("65536")
+    private int segmentSize = 65536;
+
+    @Param({"RESUMABLE", "REPARSE"})
+    private DecoderType decoder = DecoderType.RESUMABLE;
+
+    private byte[] message;
+    private EmbeddedChannel channel;
+
+    public enum DecoderType
+    {
+        RESUMABLE, REPARSE
+    }
+
+    @Setup
+    public void setup()
+            throws TException
+    {
+        message = createMessage(protocol, messageSizeInMegabytes * 1024 * 1024);
+
+        channel = new EmbeddedChannel();
+        if (decoder == DecoderType.RESUMABLE) {
+            Transport.UNFRAMED.addFrameHandlers(channel.pipeline(), Optional.of(protocol), MAX_FRAME_SIZE, false);
+        }
+        else {
+            channel.pipeline().addLast(new ReparsingUnframedDecoder(protocol));
+            channel.pipeline().addLast(new SimpleFrameCodec(Transport.UNFRAMED, protocol, false));
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Object decode()
+    {
+        for (int offset = 0; offset < message.length; offset += segmentSize) {
+            channel.writeInbound(Unpooled.wrappedBuffer(message, offset, Math.min(segmentSize, message.length - offset)));
+        }
+        Object frame = channel.readInbound();
+        if (frame == null) {
+            throw new IllegalStateException("message was not decoded");
+        }
+        ReferenceCountUtil.release(frame);
+        return frame;
+    }
+
+    private static byte[] createMessage(Protocol protocol, int size)
+            throws TException
+    {
+        TChannelBufferOutputTransport transport = new TChannelBufferOutputTransport(Unpooled.buffer(size));
+        try {
+            TProtocolWriter writer = protocol.createProtocol(transport);
+            writer.writeMessageBegin(new TMessage("echo", CALL, 1));
+            writer.writeStructBegin(new TStruct("args"));
+            writer.writeFieldBegin(new TField("items", TType.LIST, (short) 1));
+
+            // each item is roughly 64 bytes
+            int itemCount = size / 64;
+            writer.writeListBegin(new TList(TType.STRUCT, itemCount));
+            for (int i = 0; i < itemCount; i++) {
+                writer.writeStructBegin(new TStruct("item"));
+                writer.writeFieldBegin(new TField("id", TType.I64, (short) 1));
+                writer.writeI64(i);
+                writer.writeFieldEnd();
+                writer.writeFieldBegin(new TField("value", TType.DOUBLE, (short) 2));
+                writer.writeDouble(i * 0.5);
+                writer.writeFieldEnd();
+                writer.writeFieldBegin(new TField("name", TType.STRING, (short) 3));
+                writer.writeString("item name of a benchmark record " + i);
+                writer.writeFieldEnd();
+                writer.writeFieldStop();
+                writer.writeStructEnd();
+            }
+            writer.writeListEnd();
+            writer.writeFieldEnd();
+            writer.writeFieldStop();
+            writer.writeStructEnd();
+            writer.writeMessageEnd();
+            return ByteBufUtil.getBytes(transport.getBuffer());
+        }
+        finally {
+            transport.release();
+        }
+    }
+
+    /**
+     * Previous unframed decoder, which parses the message from the start
+     * every time more data arrives.
+     */
+    private static class ReparsingUnframedDecoder
+            extends ByteToMessageDecoder
+    {
+        private final Protocol protocol;
+
+        public ReparsingUnframedDecoder(Protocol protocol)
+        {
+            this.protocol = protocol;
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out)
+        {
+            int frameOffset = buffer.readerIndex();
+            TChannelBufferInputTransport transport = new TChannelBufferInputTransport(buffer.retain());
+            try {
+                TProtocolReader protocolReader = protocol.createProtocol(transport);
+                protocolReader.readMessageBegin();
+                TProtocolUtil.skip(protocolReader, TType.STRUCT);
+                protocolReader.readMessageEnd();
+                out.add(buffer.slice(frameOffset, buffer.readerIndex() - frameOffset).retain());
+            }
+            catch (Throwable th) {
+                buffer.readerIndex(frameOffset);
+            }
+            finally {
+                transport.release();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkUnframedDecoder.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
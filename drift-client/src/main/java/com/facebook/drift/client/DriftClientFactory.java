@@ -15,7 +15,7 @@
  */
 package com.facebook.drift.client;
 
-import com.facebook.airlift.concurrent.BoundedExecutor;
+import com.facebook.airlift.log.Logger;
 import com.facebook.drift.client.address.AddressSelector;
 import com.facebook.drift.client.stats.MethodInvocationStat;
 import com.facebook.drift.client.stats.MethodInvocationStatsFactory;
@@ -33,31 +33,36 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
-import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.drift.client.DriftClientStubGenerator.generateClientStub;
 import static com.facebook.drift.client.ExceptionClassifier.NORMAL_RESULT;
 import static com.facebook.drift.client.FilteredMethodInvoker.createFilteredMethodInvoker;
+import static com.facebook.drift.client.RetryExecutor.getDefaultRetryExecutor;
 import static com.facebook.drift.transport.MethodMetadata.toMethodMetadata;
 import static com.google.common.reflect.Reflection.newProxy;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.Executors.newCachedThreadPool;
 
 public class DriftClientFactory
 {
+    private static final Logger log = Logger.get(DriftClientFactory.class);
+
     private final ThriftCodecManager codecManager;
     private final Supplier<MethodInvoker> methodInvokerSupplier;
     private final AddressSelector<? extends Address> addressSelector;
     private final ExceptionClassifier exceptionClassifier;
     private final ConcurrentMap<Class<?>, ThriftServiceMetadata> serviceMetadataCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Optional<Constructor<?>>> clientStubCache = new ConcurrentHashMap<>();
     private final MethodInvocationStatsFactory methodInvocationStatsFactory;
+    private final Executor retryExecutor;
 
     public DriftClientFactory(
             ThriftCodecManager codecManager,
@@ -65,12 +70,24 @@ public class DriftClientFactory
             AddressSelector<? extends Address> addressSelector,
             ExceptionClassifier exceptionClassifier,
             MethodInvocationStatsFactory methodInvocationStatsFactory)
+    {
+        this(codecManager, methodInvokerSupplier, addressSelector, exceptionClassifier, methodInvocationStatsFactory, getDefaultRetryExecutor());
+    }
+
+    public DriftClientFactory(
+            ThriftCodecManager codecManager,
+            Supplier<MethodInvoker> methodInvokerSupplier,
+            AddressSelector<? extends Address> addressSelector,
+            ExceptionClassifier exceptionClassifier,
+            MethodInvocationStatsFactory methodInvocationStatsFactory,
+            Executor retryExecutor)
     {
         this.codecManager = requireNonNull(codecManager, "codecManager is null");
         this.methodInvokerSupplier = requireNonNull(methodInvokerSupplier, "methodInvokerSupplier is null");
         this.addressSelector = requireNonNull(addressSelector, "addressSelector is null");
         this.exceptionClassifier = exceptionClassifier;
         this.methodInvocationStatsFactory = requireNonNull(methodInvocationStatsFactory, "methodInvocationStatsFactory is null");
+        this.retryExecutor = requireNonNull(retryExecutor, "retryExecutor is null");
     }
 
     public DriftClientFactory(
@@ -114,12 +131,17 @@ public class DriftClientFactory
 
         Optional<String> qualifier = qualifierAnnotation.map(Class::getSimpleName);
 
-        // Create a bounded executor with a pool size at 4x number of processors
-        ExecutorService coreExecutor = newCachedThreadPool(daemonThreadsNamed(clientInterface != null ? clientInterface.getName() : "" + "-retry-service-%s"));
-        BoundedExecutor retryService = new BoundedExecutor(coreExecutor, 4 * Runtime.getRuntime().availableProcessors());
+        // hedging budget is shared by all methods of the client
+        Optional<HedgingPolicy> hedgingPolicy = Optional.empty();
+        if (config.isHedgingEnabled()) {
+            hedgingPolicy = Optional.of(new HedgingPolicy(config));
+        }
 
-        ImmutableMap.Builder<Method, DriftMethodHandler> builder = ImmutableMap.builder();
-        for (ThriftMethodMetadata method : serviceMetadata.getMethods()) {
+        List<ThriftMethodMetadata> thriftMethods = serviceMetadata.getMethods();
+        Method[] methods = new Method[thriftMethods.size()];
+        DriftMethodHandler[] methodHandlers = new DriftMethodHandler[thriftMethods.size()];
+        for (int i = 0; i < thriftMethods.size(); i++) {
+            ThriftMethodMetadata method = thriftMethods.get(i);
             MethodMetadata metadata = toMethodMetadata(codecManager, method);
 
             RetryPolicy retryPolicy = new RetryPolicy(config, exceptionClassifier);
@@ -132,11 +154,55 @@ public class DriftClientFactory
                 statHandler = new NullMethodInvocationStat();
             }
 
-            DriftMethodHandler handler = new DriftMethodHandler(metadata, method.getHeaderParameters(), invoker, method.isAsync(), addressSelector, retryPolicy, statHandler, retryService);
-            builder.put(method.getMethod(), handler);
+            methods[i] = method.getMethod();
+            methodHandlers[i] = new DriftMethodHandler(
+                    metadata,
+                    method.getHeaderParameters(),
+                    invoker,
+                    method.isAsync(),
+                    addressSelector,
+                    retryPolicy,
+                    statHandler,
+                    retryExecutor,
+                    metadata.isIdempotent() ? hedgingPolicy : Optional.empty());
+        }
+
+        Optional<Constructor<?>> stubConstructor = clientStubCache.computeIfAbsent(
+                clientInterface,
+                clazz -> createClientStub(clazz, thriftMethods));
+        if (stubConstructor.isPresent()) {
+            Constructor<?> constructor = stubConstructor.get();
+            return (context, headers) -> clientInterface.cast(newClientStub(constructor, new DriftClientStubInvoker(serviceMetadata.getName(), methods, methodHandlers, context, headers)));
         }
-        Map<Method, DriftMethodHandler> methods = builder.build();
 
-        return (context, headers) -> newProxy(clientInterface, new DriftInvocationHandler(serviceMetadata.getName(), methods, context, headers));
+        ImmutableMap.Builder<Method, DriftMethodHandler> builder = ImmutableMap.builder();
+        for (int i = 0; i < methods.length; i++) {
+            builder.put(methods[i], methodHandlers[i]);
+        }
+        Map<Method, DriftMethodHandler> methodsByJavaMethod = builder.build();
+
+        return (context, headers) -> newProxy(clientInterface, new DriftInvocationHandler(serviceMetadata.getName(), methodsByJavaMethod, context, headers));
+    }
+
+    private static Optional<Constructor<?>> createClientStub(Class<?> clientInterface, List<ThriftMethodMetadata> methods)
+    {
+        try {
+            return Optional.<Constructor<?>>of(generateClientStub(clientInterface, methods));
+        }
+        catch (RuntimeException | LinkageError e) {
+            // the interface can not be implemented by generated code, so use a dynamic proxy
+            log.debug(e, "Using a proxy for client %s", clientInterface.getName());
+            return Optional.empty();
+        }
+    }
+
+    private static Object newClientStub(Constructor<?> constructor, DriftClientStubInvoker invoker)
+    {
+        try {
+            return constructor.newInstance(invoker);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create client stub", e);
+        }
     }
 }
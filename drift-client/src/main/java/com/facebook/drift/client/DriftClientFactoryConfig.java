@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client;
+
+import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
+
+import javax.validation.constraints.Min;
+
+public class DriftClientFactoryConfig
+{
+    private int retryThreads = 4 * Runtime.getRuntime().availableProcessors();
+    private boolean retryVirtualThreadsEnabled;
+
+    @Min(1)
+    public int getRetryThreads()
+    {
+        return retryThreads;
+    }
+
+    @Config("thrift.client.retry-threads")
+    @ConfigDescription("Maximum number of threads shared by all clients for retries and backoff")
+    public DriftClientFactoryConfig setRetryThreads(int retryThreads)
+    {
+        this.retryThreads = retryThreads;
+        return this;
+    }
+
+    public boolean isRetryVirtualThreadsEnabled()
+    {
+        return retryVirtualThreadsEnabled;
+    }
+
+    @Config("thrift.client.retry-virtual-threads.enabled")
+    @ConfigDescription("Run each retry on a new virtual thread instead of the shared pool (requires Java 21)")
+    public DriftClientFactoryConfig setRetryVirtualThreadsEnabled(boolean retryVirtualThreadsEnabled)
+    {
+        this.retryVirtualThreadsEnabled = retryVirtualThreadsEnabled;
+        return this;
+    }
+}
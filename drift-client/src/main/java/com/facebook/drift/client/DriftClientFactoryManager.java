@@ -21,6 +21,9 @@ import com.facebook.drift.client.stats.NullMethodInvocationStatsFactory;
 import com.facebook.drift.codec.ThriftCodecManager;
 import com.facebook.drift.transport.client.MethodInvokerFactory;
 
+import java.util.concurrent.Executor;
+
+import static com.facebook.drift.client.RetryExecutor.getDefaultRetryExecutor;
 import static java.util.Objects.requireNonNull;
 
 public class DriftClientFactoryManager<I>
@@ -28,6 +31,7 @@ public class DriftClientFactoryManager<I>
     private final ThriftCodecManager codecManager;
     private final MethodInvokerFactory<I> methodInvokerFactory;
     private final MethodInvocationStatsFactory methodInvocationStatsFactory;
+    private final Executor retryExecutor;
 
     public DriftClientFactoryManager(ThriftCodecManager codecManager, MethodInvokerFactory<I> methodInvokerFactory)
     {
@@ -37,10 +41,19 @@ public class DriftClientFactoryManager<I>
     public DriftClientFactoryManager(ThriftCodecManager codecManager,
             MethodInvokerFactory<I> methodInvokerFactory,
             MethodInvocationStatsFactory methodInvocationStatsFactory)
+    {
+        this(codecManager, methodInvokerFactory, methodInvocationStatsFactory, getDefaultRetryExecutor());
+    }
+
+    public DriftClientFactoryManager(ThriftCodecManager codecManager,
+            MethodInvokerFactory<I> methodInvokerFactory,
+            MethodInvocationStatsFactory methodInvocationStatsFactory,
+            Executor retryExecutor)
     {
         this.codecManager = requireNonNull(codecManager, "codecManager is null");
         this.methodInvokerFactory = requireNonNull(methodInvokerFactory, "methodInvokerFactory is null");
         this.methodInvocationStatsFactory = methodInvocationStatsFactory;
+        this.retryExecutor = requireNonNull(retryExecutor, "retryExecutor is null");
     }
 
     public DriftClientFactory createDriftClientFactory(I clientIdentity, AddressSelector<?> addressSelector, ExceptionClassifier exceptionClassifier)
@@ -50,6 +63,7 @@ public class DriftClientFactoryManager<I>
                 () -> methodInvokerFactory.createMethodInvoker(clientIdentity),
                 addressSelector,
                 exceptionClassifier,
-                methodInvocationStatsFactory);
+                methodInvocationStatsFactory,
+                retryExecutor);
     }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client;
+
+import com.facebook.airlift.bytecode.BytecodeBlock;
+import com.facebook.airlift.bytecode.ClassDefinition;
+import com.facebook.airlift.bytecode.DynamicClassLoader;
+import com.facebook.airlift.bytecode.FieldDefinition;
+import com.facebook.airlift.bytecode.MethodDefinition;
+import com.facebook.airlift.bytecode.Parameter;
+import com.facebook.airlift.bytecode.expression.BytecodeExpression;
+import com.facebook.drift.codec.metadata.ThriftHeaderParameter;
+import com.facebook.drift.codec.metadata.ThriftMethodMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.facebook.airlift.bytecode.Access.FINAL;
+import static com.facebook.airlift.bytecode.Access.PRIVATE;
+import static com.facebook.airlift.bytecode.Access.PUBLIC;
+import static com.facebook.airlift.bytecode.Access.SUPER;
+import static com.facebook.airlift.bytecode.Access.a;
+import static com.facebook.airlift.bytecode.ClassGenerator.classGenerator;
+import static com.facebook.airlift.bytecode.Parameter.arg;
+import static com.facebook.airlift.bytecode.ParameterizedType.getPathName;
+import static com.facebook.airlift.bytecode.ParameterizedType.type;
+import static com.facebook.airlift.bytecode.ParameterizedType.typeFromPathName;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.constantInt;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.constantNull;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.invokeStatic;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.newArray;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generates a client stub class for a service interface. Each method of the
+ * stub boxes its body parameters, collects its header parameters and calls
+ * {@link DriftClientStubInvoker} with the index of the method, so a call does
+ * not go through a {@link java.lang.reflect.Proxy}.
+ */
+final class DriftClientStubGenerator
+{
+    private static final String PACKAGE = "$drift";
+
+    private DriftClientStubGenerator() {}
+
+    /**
+     * Generates a stub for the interface. The stub method for {@code methods.get(i)}
+     * invokes method {@code i} of the {@link DriftClientStubInvoker}.
+     *
+     * @return the constructor of the stub, which takes a {@link DriftClientStubInvoker}
+     * @throws IllegalArgumentException if the interface or a type in a method signature is
+     * not public, or if the interface has methods that are not Thrift methods
+     */
+    public static <T> Constructor<? extends T> generateClientStub(Class<T> clientInterface, List<ThriftMethodMetadata> methods)
+    {
+        requireNonNull(clientInterface, "clientInterface is null");
+        requireNonNull(methods, "methods is null");
+        checkArgument(clientInterface.isInterface() && isPublic(clientInterface), "Client type is not a public interface: %s", clientInterface.getName());
+        checkArgument(
+                DriftClientStubInvoker.class.equals(loadClass(clientInterface.getClassLoader(), DriftClientStubInvoker.class.getName())),
+                "Drift client classes are not visible from the class loader of %s",
+                clientInterface.getName());
+
+        ClassDefinition classDefinition = new ClassDefinition(
+                a(PUBLIC, FINAL, SUPER),
+                typeFromPathName(PACKAGE + "/" + getPathName(clientInterface) + "$Stub").getClassName(),
+                type(Object.class),
+                type(clientInterface));
+
+        FieldDefinition invokerField = classDefinition.declareField(a(PRIVATE, FINAL), "invoker", DriftClientStubInvoker.class);
+        defineConstructor(classDefinition, invokerField);
+
+        Map<Method, Integer> methodIndexes = new HashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            methodIndexes.put(methods.get(i).getMethod(), i);
+        }
+
+        Set<String> signatures = new HashSet<>();
+        for (Method method : clientInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            checkArgument(signatures.add(method.getName() + Arrays.toString(method.getParameterTypes())), "Method is declared more than once: %s", method);
+
+            Integer index = methodIndexes.get(method);
+            if (index != null) {
+                defineThriftMethod(classDefinition, invokerField, methods.get(index), index);
+            }
+            else if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                // closing a client is a no-op
+                MethodDefinition close = classDefinition.declareMethod(a(PUBLIC), "close", type(method.getReturnType()));
+                if (method.getReturnType() == void.class) {
+                    close.getBody().ret();
+                }
+                else {
+                    close.getBody().append(constantNull(method.getReturnType()).ret());
+                }
+            }
+            else {
+                throw new IllegalArgumentException("Method is not a Thrift method: " + method);
+            }
+        }
+
+        MethodDefinition toString = classDefinition.declareMethod(a(PUBLIC), "toString", type(String.class));
+        toString.getBody().append(toString.getThis().getField(invokerField).invoke("toString", String.class).ret());
+
+        DynamicClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<DynamicClassLoader>) () ->
+                new DynamicClassLoader(clientInterface.getClassLoader()));
+        Class<? extends T> stubClass = classGenerator(classLoader).defineClass(classDefinition, clientInterface);
+        try {
+            return stubClass.getConstructor(DriftClientStubInvoker.class);
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Generated class is invalid", e);
+        }
+    }
+
+    private static void defineConstructor(ClassDefinition classDefinition, FieldDefinition invokerField)
+    {
+        Parameter invoker = arg("invoker", DriftClientStubInvoker.class);
+        MethodDefinition constructor = classDefinition.declareConstructor(a(PUBLIC), invoker);
+        constructor.getBody()
+                .append(constructor.getThis())
+                .invokeConstructor(Object.class)
+                .append(constructor.getThis().setField(invokerField, invoker))
+                .ret();
+    }
+
+    private static void defineThriftMethod(ClassDefinition classDefinition, FieldDefinition invokerField, ThriftMethodMetadata metadata, int index)
+    {
+        Method method = metadata.getMethod();
+        Class<?> returnType = method.getReturnType();
+        checkArgument(isPublic(returnType), "Return type of method %s is not public", method);
+
+        List<Parameter> parameters = new ArrayList<>();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            checkArgument(isPublic(parameterTypes[i]), "Parameter type of method %s is not public: %s", method, parameterTypes[i].getName());
+            parameters.add(arg("arg" + i, parameterTypes[i]));
+        }
+
+        MethodDefinition methodDefinition = classDefinition.declareMethod(a(PUBLIC), method.getName(), type(returnType), parameters);
+        for (Class<?> exceptionType : method.getExceptionTypes()) {
+            methodDefinition.addException(exceptionType.asSubclass(Throwable.class));
+        }
+
+        // split the parameters into header and body parameters
+        String[] headerNames = new String[parameterTypes.length];
+        for (ThriftHeaderParameter headerParameter : metadata.getHeaderParameters()) {
+            headerNames[headerParameter.getIndex()] = headerParameter.getName();
+        }
+        List<BytecodeExpression> headerValues = new ArrayList<>();
+        List<BytecodeExpression> bodyParameters = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (headerNames[i] != null) {
+                headerValues.add(parameters.get(i));
+            }
+            else {
+                bodyParameters.add(box(parameters.get(i), parameterTypes[i]));
+            }
+        }
+
+        BytecodeExpression result = methodDefinition.getThis().getField(invokerField).invoke(
+                "invoke",
+                Object.class,
+                ImmutableList.of(int.class, Object[].class, String[].class),
+                constantInt(index),
+                newArray(type(Object[].class), bodyParameters),
+                headerValues.isEmpty() ? constantNull(String[].class) : newArray(type(String[].class), headerValues));
+
+        BytecodeBlock body = methodDefinition.getBody();
+        if (returnType == void.class) {
+            body.append(result.pop()).ret();
+        }
+        else if (returnType.isPrimitive()) {
+            body.append(result.cast(Primitives.wrap(returnType)).invoke(returnType.getName() + "Value", returnType).ret());
+        }
+        else {
+            body.append(result.cast(returnType).ret());
+        }
+    }
+
+    private static BytecodeExpression box(BytecodeExpression value, Class<?> type)
+    {
+        if (!type.isPrimitive()) {
+            return value;
+        }
+        Class<?> wrapperType = Primitives.wrap(type);
+        return invokeStatic(wrapperType, "valueOf", wrapperType, value);
+    }
+
+    private static Class<?> loadClass(ClassLoader classLoader, String name)
+    {
+        try {
+            return Class.forName(name, false, classLoader);
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static boolean isPublic(Class<?> type)
+    {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.drift.client.DriftInvocationHandler.invokeMethod;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Entry point for generated client stubs. Each stub method passes the index
+ * of the method, its body parameters and its header parameters, which the
+ * stub separates when it is generated.
+ * <p>
+ * This class is public only so it can be called from generated code.
+ */
+public final class DriftClientStubInvoker
+{
+    private final String serviceName;
+    private final Method[] methods;
+    private final DriftMethodHandler[] methodHandlers;
+    private final Optional<String> addressSelectionContext;
+    private final Map<String, String> headers;
+
+    DriftClientStubInvoker(
+            String serviceName,
+            Method[] methods,
+            DriftMethodHandler[] methodHandlers,
+            Optional<String> addressSelectionContext,
+            Map<String, String> headers)
+    {
+        this.serviceName = requireNonNull(serviceName, "serviceName is null");
+        this.methods = requireNonNull(methods, "methods is null");
+        this.methodHandlers = requireNonNull(methodHandlers, "methodHandlers is null");
+        this.addressSelectionContext = requireNonNull(addressSelectionContext, "addressSelectionContext is null");
+        this.headers = ImmutableMap.copyOf(requireNonNull(headers, "headers is null"));
+    }
+
+    /**
+     * @param headerValues values of the header parameters in parameter order, or null if the method has no header parameters
+     */
+    public Object invoke(int method, Object[] bodyParameters, String[] headerValues)
+            throws Throwable
+    {
+        return invokeMethod(methods[method], methodHandlers[method], addressSelectionContext, headers, bodyParameters, headerValues);
+    }
+
+    @Override
+    public String toString()
+    {
+        return serviceName;
+    }
+}
@@ -84,14 +84,35 @@ class DriftInvocationHandler
             return null;
         }
 
-        DriftMethodHandler methodHandler = methods.get(method);
+        return invokeMethod(method, methods.get(method), addressSelectionContext, headers, args, null);
+    }
 
+    /**
+     * Invokes the method handler and translates the result like a call to the client interface method.
+     *
+     * @param headerValues values of the header parameters, or null if the arguments include the header parameters
+     */
+    static Object invokeMethod(
+            Method method,
+            DriftMethodHandler methodHandler,
+            Optional<String> addressSelectionContext,
+            Map<String, String> headers,
+            Object[] args,
+            String[] headerValues)
+            throws Throwable
+    {
         try {
             if (methodHandler == null) {
                 throw new TApplicationException(UNKNOWN_METHOD, "Unknown method: " + method);
             }
 
-            ListenableFuture<Object> future = methodHandler.invoke(addressSelectionContext, headers, asList(args));
+            ListenableFuture<Object> future;
+            if (headerValues == null) {
+                future = methodHandler.invoke(addressSelectionContext, headers, asList(args));
+            }
+            else {
+                future = methodHandler.invoke(addressSelectionContext, headers, asList(args), headerValues);
+            }
 
             if (methodHandler.isAsync()) {
                 return unwrapUserException(future);
@@ -15,7 +15,6 @@
  */
 package com.facebook.drift.client;
 
-import com.facebook.airlift.concurrent.BoundedExecutor;
 import com.facebook.drift.client.address.AddressSelector;
 import com.facebook.drift.client.stats.MethodInvocationStat;
 import com.facebook.drift.codec.metadata.ThriftHeaderParameter;
@@ -23,31 +22,34 @@ import com.facebook.drift.transport.MethodMetadata;
 import com.facebook.drift.transport.client.Address;
 import com.facebook.drift.transport.client.MethodInvoker;
 import com.google.common.base.Ticker;
-import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.facebook.drift.client.DriftMethodInvocation.createDriftMethodInvocation;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparingInt;
 import static java.util.Objects.requireNonNull;
-import static java.util.function.Function.identity;
 
 class DriftMethodHandler
 {
     private final MethodMetadata metadata;
-    private final Map<Integer, ThriftHeaderParameter> headerParameters;
+    // header parameters ordered by parameter index
+    private final int[] headerIndexes;
+    private final String[] headerNames;
     private final MethodInvoker invoker;
     private final boolean async;
     private final AddressSelector<? extends Address> addressSelector;
     private final RetryPolicy retryPolicy;
     private final MethodInvocationStat stat;
-    private final BoundedExecutor retryService;
+    private final Executor retryExecutor;
+    private final Optional<HedgingPolicy> hedgingPolicy;
 
     public DriftMethodHandler(
             MethodMetadata metadata,
@@ -57,17 +59,22 @@ class DriftMethodHandler
             AddressSelector<? extends Address> addressSelector,
             RetryPolicy retryPolicy,
             MethodInvocationStat stat,
-            BoundedExecutor retryService)
+            Executor retryExecutor,
+            Optional<HedgingPolicy> hedgingPolicy)
     {
         this.metadata = requireNonNull(metadata, "metadata is null");
-        this.headerParameters = requireNonNull(headersParameters, "headersParameters is null").stream()
-                .collect(toImmutableMap(ThriftHeaderParameter::getIndex, identity()));
+        List<ThriftHeaderParameter> sortedHeaderParameters = requireNonNull(headersParameters, "headersParameters is null").stream()
+                .sorted(comparingInt(ThriftHeaderParameter::getIndex))
+                .collect(toImmutableList());
+        this.headerIndexes = sortedHeaderParameters.stream().mapToInt(ThriftHeaderParameter::getIndex).toArray();
+        this.headerNames = sortedHeaderParameters.stream().map(ThriftHeaderParameter::getName).toArray(String[]::new);
         this.invoker = requireNonNull(invoker, "invoker is null");
         this.async = async;
         this.addressSelector = requireNonNull(addressSelector, "addressSelector is null");
         this.retryPolicy = retryPolicy;
         this.stat = requireNonNull(stat, "stat is null");
-        this.retryService = requireNonNull(retryService, "retryService is null");
+        this.retryExecutor = requireNonNull(retryExecutor, "retryExecutor is null");
+        this.hedgingPolicy = requireNonNull(hedgingPolicy, "hedgingPolicy is null");
     }
 
     public boolean isAsync()
@@ -77,23 +84,48 @@ class DriftMethodHandler
 
     public ListenableFuture<Object> invoke(Optional<String> addressSelectionContext, Map<String, String> headers, List<Object> parameters)
     {
-        if (!headerParameters.isEmpty()) {
-            headers = new LinkedHashMap<>(headers);
-            for (Entry<Integer, ThriftHeaderParameter> entry : headerParameters.entrySet()) {
-                String headerValue = (String) parameters.get(entry.getKey());
-                if (headerValue != null) {
-                    headers.put(entry.getValue().getName(), headerValue);
-                }
+        if (headerIndexes.length == 0) {
+            return invoke(addressSelectionContext, headers, parameters, null);
+        }
+
+        String[] headerValues = new String[headerIndexes.length];
+        Object[] bodyParameters = new Object[parameters.size() - headerIndexes.length];
+        int header = 0;
+        int body = 0;
+        for (int index = 0; index < parameters.size(); index++) {
+            if (header < headerIndexes.length && headerIndexes[header] == index) {
+                headerValues[header] = (String) parameters.get(index);
+                header++;
+            }
+            else {
+                bodyParameters[body] = parameters.get(index);
+                body++;
             }
+        }
+        return invoke(addressSelectionContext, headers, asList(bodyParameters), headerValues);
+    }
 
-            ImmutableList.Builder<Object> newParameters = ImmutableList.builder();
-            for (int index = 0; index < parameters.size(); index++) {
-                if (!headerParameters.containsKey(index)) {
-                    newParameters.add(parameters.get(index));
+    /**
+     * Invokes the method with the header parameters already separated from the body parameters.
+     *
+     * @param headerValues values of the header parameters in parameter index order, or null if the method has no header parameters
+     */
+    public ListenableFuture<Object> invoke(Optional<String> addressSelectionContext, Map<String, String> headers, List<Object> bodyParameters, String[] headerValues)
+    {
+        if (headerValues != null) {
+            Map<String, String> mergedHeaders = null;
+            for (int i = 0; i < headerValues.length; i++) {
+                if (headerValues[i] != null) {
+                    if (mergedHeaders == null) {
+                        mergedHeaders = new LinkedHashMap<>(headers);
+                    }
+                    mergedHeaders.put(headerNames[i], headerValues[i]);
                 }
             }
-            parameters = newParameters.build();
+            if (mergedHeaders != null) {
+                headers = mergedHeaders;
+            }
         }
-        return createDriftMethodInvocation(invoker, metadata, headers, parameters, retryPolicy, addressSelector, addressSelectionContext, stat, Ticker.systemTicker(), retryService);
+        return createDriftMethodInvocation(invoker, metadata, headers, bodyParameters, retryPolicy, addressSelector, addressSelectionContext, stat, Ticker.systemTicker(), retryExecutor, hedgingPolicy);
     }
 }
@@ -15,7 +15,6 @@
  */
 package com.facebook.drift.client;
 
-import com.facebook.airlift.concurrent.BoundedExecutor;
 import com.facebook.airlift.log.Logger;
 import com.facebook.drift.TException;
 import com.facebook.drift.client.address.AddressSelector;
@@ -39,11 +38,15 @@ import io.airlift.units.Duration;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.facebook.drift.client.ExceptionClassification.HostStatus.DOWN;
 import static com.facebook.drift.client.ExceptionClassification.HostStatus.NORMAL;
@@ -59,6 +62,7 @@ class DriftMethodInvocation<A extends Address>
         extends AbstractFuture<Object>
 {
     private static final Logger log = Logger.get(DriftMethodInvocation.class);
+    private static final int MAX_HEDGE_ADDRESS_SELECTIONS = 3;
 
     private final MethodInvoker invoker;
     private final MethodMetadata metadata;
@@ -69,24 +73,63 @@ class DriftMethodInvocation<A extends Address>
     private final Optional<String> addressSelectionContext;
     private final MethodInvocationStat stat;
     private final Ticker ticker;
-    private final BoundedExecutor retryService;
+    private final Executor retryExecutor;
+    private final Optional<HedgingPolicy> hedgingPolicy;
     private final long startTime;
 
-    @GuardedBy("this")
+    // not a monitor, so a virtual thread waiting for the invocation does not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @GuardedBy("lock")
     private final Set<A> attemptedAddresses = new LinkedHashSet<>();
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private final Multiset<A> failedConnectionAttempts = HashMultiset.create();
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private int failedConnections;
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private int overloadedRejects;
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private int invocationAttempts;
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private Throwable lastException;
 
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private ListenableFuture<?> currentTask;
+    @GuardedBy("lock")
+    private int attemptCount;
+    @GuardedBy("lock")
+    private int inFlightAttempts;
+    // hedge timer for the current attempt, or the hedged attempt once it is sent
+    @GuardedBy("lock")
+    private ListenableFuture<?> hedgeTask;
+    @GuardedBy("lock")
+    private boolean hedged;
+
+    static <A extends Address> DriftMethodInvocation<A> createDriftMethodInvocation(
+            MethodInvoker invoker,
+            MethodMetadata metadata,
+            Map<String, String> headers,
+            List<Object> parameters,
+            RetryPolicy retryPolicy,
+            AddressSelector<A> addressSelector,
+            Optional<String> addressSelectionContext,
+            MethodInvocationStat stat,
+            Ticker ticker,
+            Executor retryExecutor)
+    {
+        return createDriftMethodInvocation(
+                invoker,
+                metadata,
+                headers,
+                parameters,
+                retryPolicy,
+                addressSelector,
+                addressSelectionContext,
+                stat,
+                ticker,
+                retryExecutor,
+                Optional.empty());
+    }
 
     static <A extends Address> DriftMethodInvocation<A> createDriftMethodInvocation(
             MethodInvoker invoker,
@@ -98,7 +141,8 @@ class DriftMethodInvocation<A extends Address>
             Optional<String> addressSelectionContext,
             MethodInvocationStat stat,
             Ticker ticker,
-            BoundedExecutor retryService)
+            Executor retryExecutor,
+            Optional<HedgingPolicy> hedgingPolicy)
     {
         DriftMethodInvocation<A> invocation = new DriftMethodInvocation<>(
                 invoker,
@@ -110,7 +154,8 @@ class DriftMethodInvocation<A extends Address>
                 addressSelectionContext,
                 stat,
                 ticker,
-                retryService);
+                retryExecutor,
+                hedgingPolicy);
         // invocation can not be started from constructor, because it may start threads that can call back into the unpublished object
         invocation.nextAttempt(true);
         return invocation;
@@ -126,7 +171,8 @@ class DriftMethodInvocation<A extends Address>
             Optional<String> addressSelectionContext,
             MethodInvocationStat stat,
             Ticker ticker,
-            BoundedExecutor retryService)
+            Executor retryExecutor,
+            Optional<HedgingPolicy> hedgingPolicy)
     {
         this.invoker = requireNonNull(invoker, "methodHandler is null");
         this.metadata = requireNonNull(metadata, "metadata is null");
@@ -138,7 +184,11 @@ class DriftMethodInvocation<A extends Address>
         this.stat = requireNonNull(stat, "stat is null");
         this.ticker = requireNonNull(ticker, "ticker is null");
         this.startTime = ticker.read();
-        this.retryService = retryService;
+        this.retryExecutor = requireNonNull(retryExecutor, "retryExecutor is null");
+        // only idempotent methods can safely be sent twice
+        this.hedgingPolicy = requireNonNull(hedgingPolicy, "hedgingPolicy is null")
+                .filter(policy -> metadata.isIdempotent());
+        this.hedgingPolicy.ifPresent(HedgingPolicy::recordRequest);
 
         // if this invocation is canceled, cancel the tasks
         super.addListener(() -> {
@@ -148,8 +198,9 @@ class DriftMethodInvocation<A extends Address>
         }, directExecutor());
     }
 
-    private synchronized void nextAttempt(boolean noConnectDelay)
+    private void nextAttempt(boolean noConnectDelay)
     {
+        lock.lock();
         try {
             // request was already canceled
             if (isCancelled()) {
@@ -185,111 +236,230 @@ class DriftMethodInvocation<A extends Address>
             // this should never happen, but ensure that invocation always finishes
             unexpectedError(t);
         }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void invoke(A address)
+    private void invoke(A address)
     {
+        lock.lock();
         try {
-            long invocationStartTime = ticker.read();
-            ListenableFuture<Object> result = invoker.invoke(new InvokeRequest(metadata, address, headers, parameters));
-            stat.recordResult(invocationStartTime, result);
-            currentTask = result;
-
-            Futures.addCallback(result, new FutureCallback<Object>()
-                    {
-                        @Override
-                        public void onSuccess(Object resultOfInvocation)
-                        {
-                            resetConnectionFailures(address);
-                            set(resultOfInvocation);
-                        }
-
-                        @Override
-                        public void onFailure(Throwable throwable)
-                        {
-                            handleFailure(address, throwable);
-                        }
-                    },
-                    retryService);
+            ListenableFuture<Object> result = startAttempt(address);
+            attemptCount++;
+            // a result that was already done has been handled, which may have
+            // failed the invocation or scheduled the next attempt
+            if (!result.isDone()) {
+                currentTask = result;
+                scheduleHedge(attemptCount, address);
+            }
         }
         catch (Throwable t) {
             // this should never happen, but ensure that invocation always finishes
             unexpectedError(t);
         }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void resetConnectionFailures(A address)
+    @GuardedBy("lock")
+    private ListenableFuture<Object> startAttempt(A address)
     {
-        failedConnectionAttempts.setCount(address, 0);
+        long invocationStartTime = ticker.read();
+        addressSelector.requestStarted(address);
+        ListenableFuture<Object> result = invoker.invoke(new InvokeRequest(metadata, address, headers, parameters));
+        stat.recordResult(invocationStartTime, result);
+        inFlightAttempts++;
+
+        // results and failures are handled on the transport thread, and only retries,
+        // which select another address, move to the retry executor
+        Futures.addCallback(result, new FutureCallback<Object>()
+                {
+                    @Override
+                    public void onSuccess(Object resultOfInvocation)
+                    {
+                        addressSelector.requestFinished(address, succinctNanos(ticker.read() - invocationStartTime), NORMAL);
+                        handleSuccess(address, resultOfInvocation);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable throwable)
+                    {
+                        handleFailure(address, invocationStartTime, throwable);
+                    }
+                },
+                directExecutor());
+        return result;
     }
 
-    private synchronized void handleFailure(A address, Throwable throwable)
+    @GuardedBy("lock")
+    private void scheduleHedge(int attempt, A address)
     {
-        try {
-            if (throwable instanceof ConnectionFailedException) {
-                failedConnections++;
-            }
+        if (!hedgingPolicy.isPresent() || hedged) {
+            return;
+        }
 
-            ExceptionClassification exceptionClassification = retryPolicy.classifyException(throwable, metadata.isIdempotent());
+        // timer of a previous attempt is no longer needed
+        if (hedgeTask != null) {
+            hedgeTask.cancel(false);
+        }
 
-            // update stats based on classification
-            attemptedAddresses.add(address);
-            if (exceptionClassification.getHostStatus() == NORMAL) {
-                // only store exception if the server is in a normal state
-                lastException = throwable;
-                invocationAttempts++;
-            }
-            else if (exceptionClassification.getHostStatus() == DOWN || exceptionClassification.getHostStatus() == OVERLOADED) {
-                addressSelector.markdown(address);
-                failedConnectionAttempts.add(address);
-                if (exceptionClassification.getHostStatus() == OVERLOADED) {
-                    overloadedRejects++;
-                }
-            }
+        ListenableFuture<?> delay = invoker.delay(hedgingPolicy.get().getHedgeDelay(stat));
+        hedgeTask = delay;
+        Futures.addCallback(delay, new FutureCallback<Object>()
+                {
+                    @Override
+                    public void onSuccess(Object result)
+                    {
+                        startHedge(attempt, address);
+                    }
 
-            // should retry?
-            Duration duration = succinctNanos(ticker.read() - startTime);
-            if (!exceptionClassification.isRetry().orElse(FALSE)) {
-                // always store exception if non-retryable, so it is added to the exception chain
-                lastException = throwable;
-                fail("Non-retryable exception");
-                return;
-            }
-            if (invocationAttempts > retryPolicy.getMaxRetries()) {
-                fail(format("Max retry attempts (%s) exceeded", retryPolicy.getMaxRetries()));
-                return;
-            }
-            if (duration.compareTo(retryPolicy.getMaxRetryTime()) >= 0) {
-                fail(format("Max retry time (%s) exceeded", retryPolicy.getMaxRetryTime()));
+                    @Override
+                    public void onFailure(Throwable t)
+                    {
+                        // timer is canceled when the attempt completes first
+                    }
+                },
+                directExecutor());
+    }
+
+    private void startHedge(int attempt, A primaryAddress)
+    {
+        lock.lock();
+        try {
+            // attempt already completed, or was replaced by a retry
+            if (isDone() || hedged || attempt != attemptCount || inFlightAttempts == 0) {
                 return;
             }
 
-            // A request to down or overloaded server is not counted as an attempt
-            // Retries are not delayed based on the invocationAttempts, but may be delayed
-            // based on the failed connection attempts for a selected address
-            if (exceptionClassification.getHostStatus() != NORMAL) {
-                nextAttempt(false);
+            Set<A> excluded = new HashSet<>(attemptedAddresses);
+            excluded.add(primaryAddress);
+            Optional<A> address = Optional.empty();
+            for (int i = 0; i < MAX_HEDGE_ADDRESS_SELECTIONS && !address.isPresent(); i++) {
+                // selector may return the same address when it is configured to retry the same address
+                address = addressSelector.selectAddress(addressSelectionContext, excluded)
+                        .filter(selected -> !selected.equals(primaryAddress));
+            }
+            if (!address.isPresent() || !hedgingPolicy.get().tryAcquireHedge()) {
                 return;
             }
 
-            // backoff before next invocation
-            Duration backoffDelay = retryPolicy.getBackoffDelay(invocationAttempts);
-            log.debug("Failed invocation of %s with attempt %s, will retry in %s (overloadedRejects: %s). Exception: %s",
-                    metadata.getName(),
-                    invocationAttempts,
-                    backoffDelay,
-                    overloadedRejects,
-                    throwable.getMessage());
-            schedule(backoffDelay, () -> nextAttempt(true));
+            hedged = true;
+            stat.recordHedge();
+            hedgeTask = startAttempt(address.get());
         }
         catch (Throwable t) {
             // this should never happen, but ensure that invocation always finishes
             unexpectedError(t);
         }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void handleSuccess(A address, Object result)
+    {
+        lock.lock();
+        try {
+            inFlightAttempts--;
+            failedConnectionAttempts.setCount(address, 0);
+            if (set(result)) {
+                // cancel the slower attempt, if this invocation was hedged
+                cancelTasks(true);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void handleFailure(A address, long invocationStartTime, Throwable throwable)
+    {
+        lock.lock();
+        try {
+            inFlightAttempts--;
+            // another attempt completed the invocation and canceled this one
+            if (isDone()) {
+                addressSelector.requestCanceled(address);
+                return;
+            }
+
+            try {
+                if (throwable instanceof ConnectionFailedException) {
+                    failedConnections++;
+                }
+
+                ExceptionClassification exceptionClassification = retryPolicy.classifyException(throwable, metadata.isIdempotent());
+
+                // update stats based on classification
+                attemptedAddresses.add(address);
+                addressSelector.requestFinished(address, succinctNanos(ticker.read() - invocationStartTime), exceptionClassification.getHostStatus());
+                if (exceptionClassification.getHostStatus() == NORMAL) {
+                    // only store exception if the server is in a normal state
+                    lastException = throwable;
+                    invocationAttempts++;
+                }
+                else if (exceptionClassification.getHostStatus() == DOWN || exceptionClassification.getHostStatus() == OVERLOADED) {
+                    failedConnectionAttempts.add(address);
+                    if (exceptionClassification.getHostStatus() == OVERLOADED) {
+                        overloadedRejects++;
+                    }
+                }
+
+                // a hedged attempt is still running and may succeed
+                if (inFlightAttempts > 0) {
+                    return;
+                }
+
+                // should retry?
+                Duration duration = succinctNanos(ticker.read() - startTime);
+                if (!exceptionClassification.isRetry().orElse(FALSE)) {
+                    // always store exception if non-retryable, so it is added to the exception chain
+                    lastException = throwable;
+                    fail("Non-retryable exception");
+                    return;
+                }
+                if (invocationAttempts > retryPolicy.getMaxRetries()) {
+                    fail(format("Max retry attempts (%s) exceeded", retryPolicy.getMaxRetries()));
+                    return;
+                }
+                if (duration.compareTo(retryPolicy.getMaxRetryTime()) >= 0) {
+                    fail(format("Max retry time (%s) exceeded", retryPolicy.getMaxRetryTime()));
+                    return;
+                }
+
+                // A request to down or overloaded server is not counted as an attempt
+                // Retries are not delayed based on the invocationAttempts, but may be delayed
+                // based on the failed connection attempts for a selected address
+                if (exceptionClassification.getHostStatus() != NORMAL) {
+                    executeRetryTask(() -> nextAttempt(false));
+                    return;
+                }
+
+                // backoff before next invocation
+                Duration backoffDelay = retryPolicy.getBackoffDelay(invocationAttempts);
+                log.debug("Failed invocation of %s with attempt %s, will retry in %s (overloadedRejects: %s). Exception: %s",
+                        metadata.getName(),
+                        invocationAttempts,
+                        backoffDelay,
+                        overloadedRejects,
+                        throwable.getMessage());
+                schedule(backoffDelay, () -> nextAttempt(true));
+            }
+            catch (Throwable t) {
+                // this should never happen, but ensure that invocation always finishes
+                unexpectedError(t);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void schedule(Duration timeout, Runnable task)
+    private void schedule(Duration timeout, Runnable task)
     {
+        lock.lock();
         try {
             ListenableFuture<?> delay = invoker.delay(timeout);
             currentTask = delay;
@@ -298,7 +468,7 @@ class DriftMethodInvocation<A extends Address>
                         @Override
                         public void onSuccess(Object result)
                         {
-                            task.run();
+                            executeRetryTask(task);
                         }
 
                         @Override
@@ -314,46 +484,87 @@ class DriftMethodInvocation<A extends Address>
             // this should never happen, but ensure that invocation always finishes
             unexpectedError(t);
         }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void onCancel(boolean wasInterrupted)
+    private void executeRetryTask(Runnable task)
     {
-        if (currentTask != null) {
-            currentTask.cancel(wasInterrupted);
+        try {
+            retryExecutor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            // the executor was shut down, so the invocation can never finish otherwise
+            unexpectedError(e);
         }
     }
 
-    private synchronized void fail(String reason)
+    private void onCancel(boolean wasInterrupted)
     {
-        Throwable cause = lastException;
-        if (cause == null) {
-            // There are no hosts or all hosts are marked down
-            cause = new TTransportException(reason);
+        lock.lock();
+        try {
+            cancelTasks(wasInterrupted);
+        }
+        finally {
+            lock.unlock();
         }
+    }
 
-        RetriesFailedException retriesFailedException = new RetriesFailedException(
-                reason,
-                invocationAttempts,
-                succinctNanos(ticker.read() - startTime),
-                failedConnections,
-                overloadedRejects,
-                attemptedAddresses);
-
-        // attach message exception to the exception thrown to caller
-        if (cause instanceof DriftApplicationException) {
-            cause.getCause().addSuppressed(retriesFailedException);
+    @GuardedBy("lock")
+    private void cancelTasks(boolean mayInterruptIfRunning)
+    {
+        if (currentTask != null) {
+            currentTask.cancel(mayInterruptIfRunning);
         }
-        else {
-            cause.addSuppressed(retriesFailedException);
+        if (hedgeTask != null) {
+            hedgeTask.cancel(mayInterruptIfRunning);
         }
+    }
 
-        setException(cause);
+    private void fail(String reason)
+    {
+        lock.lock();
+        try {
+            Throwable cause = lastException;
+            if (cause == null) {
+                // There are no hosts or all hosts are marked down
+                cause = new TTransportException(reason);
+            }
+
+            RetriesFailedException retriesFailedException = new RetriesFailedException(
+                    reason,
+                    invocationAttempts,
+                    succinctNanos(ticker.read() - startTime),
+                    failedConnections,
+                    overloadedRejects,
+                    attemptedAddresses);
+
+            // attach message exception to the exception thrown to caller
+            if (cause instanceof DriftApplicationException) {
+                cause.getCause().addSuppressed(retriesFailedException);
+            }
+            else {
+                cause.addSuppressed(retriesFailedException);
+            }
+
+            setException(cause);
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void unexpectedError(Throwable throwable)
+    private void unexpectedError(Throwable throwable)
     {
-        String message = "Unexpected error processing invocation of " + metadata.getName();
-        setException(new TException(message, throwable));
-        log.error(throwable, message);
+        lock.lock();
+        try {
+            String message = "Unexpected error processing invocation of " + metadata.getName();
+            setException(new TException(message, throwable));
+            log.error(throwable, message);
+        }
+        finally {
+            lock.unlock();
+        }
     }
 }
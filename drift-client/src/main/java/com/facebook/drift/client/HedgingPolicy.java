@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client;
+
+import com.facebook.drift.client.stats.MethodInvocationStat;
+import com.facebook.drift.transport.client.DriftClientConfig;
+import io.airlift.units.Duration;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Policy for hedged requests: when an attempt of an idempotent method has
+ * not completed within the hedge delay, a second attempt is sent to another
+ * address and the first response wins. Hedges are limited by a budget that
+ * every request adds a fraction of a hedge to, so the hedge rate can not
+ * exceed the configured percentage of requests.
+ */
+public class HedgingPolicy
+{
+    // budget is tracked in thousandths of a hedge
+    private static final long HEDGE_COST = 1000;
+    private static final long MAX_BALANCE = 100 * HEDGE_COST;
+
+    private final Duration delay;
+    private final Optional<Double> latencyPercentile;
+    private final long depositPerRequest;
+    private final AtomicLong balance = new AtomicLong();
+
+    public HedgingPolicy(DriftClientConfig config)
+    {
+        this(config.getHedgingDelay(), Optional.ofNullable(config.getHedgingLatencyPercentile()), config.getHedgingBudgetPercent());
+    }
+
+    public HedgingPolicy(Duration delay, Optional<Double> latencyPercentile, double budgetPercent)
+    {
+        this.delay = requireNonNull(delay, "delay is null");
+        this.latencyPercentile = requireNonNull(latencyPercentile, "latencyPercentile is null");
+        latencyPercentile.ifPresent(percentile -> checkArgument(percentile >= 0 && percentile <= 100, "latencyPercentile must be between 0 and 100"));
+        checkArgument(budgetPercent >= 0 && budgetPercent <= 100, "budgetPercent must be between 0 and 100");
+        this.depositPerRequest = Math.round(budgetPercent / 100 * HEDGE_COST);
+    }
+
+    /**
+     * Returns the time to wait for a response before hedging. This is the
+     * configured percentile of recent latency when known, otherwise the
+     * fixed delay.
+     */
+    public Duration getHedgeDelay(MethodInvocationStat stat)
+    {
+        if (latencyPercentile.isPresent()) {
+            Optional<Duration> recentLatency = stat.getRecentLatency(latencyPercentile.get());
+            if (recentLatency.isPresent()) {
+                return recentLatency.get();
+            }
+        }
+        return delay;
+    }
+
+    public void recordRequest()
+    {
+        if (depositPerRequest > 0) {
+            balance.getAndUpdate(value -> Math.min(MAX_BALANCE, value + depositPerRequest));
+        }
+    }
+
+    public boolean tryAcquireHedge()
+    {
+        while (true) {
+            long current = balance.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("delay", delay)
+                .add("latencyPercentile", latencyPercentile.orElse(null))
+                .add("balance", balance.get() / (double) HEDGE_COST)
+                .toString();
+    }
+}
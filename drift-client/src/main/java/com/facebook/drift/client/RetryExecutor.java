@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client;
+
+import com.facebook.airlift.concurrent.BoundedExecutor;
+import com.facebook.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.drift.transport.VirtualThreads.newVirtualThreadPerTaskExecutor;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+
+/**
+ * Executor for retries and backoff, shared by all clients of a factory. Invocations
+ * that succeed, or fail without a retry, complete on the transport thread and never
+ * use this executor.
+ */
+public class RetryExecutor
+        implements Executor, Closeable
+{
+    private final ExecutorService coreExecutor;
+    private final Executor executor;
+    private final CounterStat tasks = new CounterStat();
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private volatile boolean closed;
+
+    public static RetryExecutor createRetryExecutor(DriftClientFactoryConfig config)
+    {
+        if (config.isRetryVirtualThreadsEnabled()) {
+            ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+            return new RetryExecutor(virtualThreadExecutor, virtualThreadExecutor);
+        }
+        ExecutorService coreExecutor = newCachedThreadPool(daemonThreadsNamed("drift-client-retry-%s"));
+        return new RetryExecutor(coreExecutor, new BoundedExecutor(coreExecutor, config.getRetryThreads()));
+    }
+
+    /**
+     * Gets the executor used by factories that are not given one. It is created on
+     * first use and is never closed, but its threads are daemons and exit when idle.
+     */
+    static RetryExecutor getDefaultRetryExecutor()
+    {
+        return DefaultRetryExecutorHolder.INSTANCE;
+    }
+
+    private RetryExecutor(ExecutorService coreExecutor, Executor executor)
+    {
+        this.coreExecutor = requireNonNull(coreExecutor, "coreExecutor is null");
+        this.executor = requireNonNull(executor, "executor is null");
+    }
+
+    /**
+     * @throws RejectedExecutionException if the executor is closed
+     */
+    @Override
+    public void execute(Runnable task)
+    {
+        requireNonNull(task, "task is null");
+        if (closed) {
+            throw new RejectedExecutionException("Retry executor is closed");
+        }
+        tasks.update(1);
+        queuedTasks.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queuedTasks.decrementAndGet();
+                activeTasks.incrementAndGet();
+                try {
+                    task.run();
+                }
+                finally {
+                    activeTasks.decrementAndGet();
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            // the bounded executor fails with an illegal state once the core executor rejected a task
+            queuedTasks.decrementAndGet();
+            if (e instanceof RejectedExecutionException) {
+                throw e;
+            }
+            throw new RejectedExecutionException("Retry executor rejected the task", e);
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getTasks()
+    {
+        return tasks;
+    }
+
+    @Managed
+    public int getQueuedTasks()
+    {
+        return queuedTasks.get();
+    }
+
+    @Managed
+    public int getActiveTasks()
+    {
+        return activeTasks.get();
+    }
+
+    /**
+     * Rejects new tasks. Tasks that were already accepted still run, because each one
+     * is the only way its invocation finishes; the invocation then fails when it tries
+     * to schedule its next task.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        coreExecutor.shutdown();
+    }
+
+    private static final class DefaultRetryExecutorHolder
+    {
+        private static final RetryExecutor INSTANCE = createRetryExecutor(new DriftClientFactoryConfig());
+    }
+}
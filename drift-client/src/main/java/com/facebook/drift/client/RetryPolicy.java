@@ -15,6 +15,7 @@
  */
 package com.facebook.drift.client;
 
+import com.facebook.drift.TApplicationException;
 import com.facebook.drift.protocol.TTransportException;
 import com.facebook.drift.transport.client.ConnectionFailedException;
 import com.facebook.drift.transport.client.DriftClientConfig;
@@ -25,9 +26,11 @@ import io.airlift.units.Duration;
 import java.io.InterruptedIOException;
 import java.util.Optional;
 
+import static com.facebook.drift.TApplicationException.Type.LOADSHEDDING;
 import static com.facebook.drift.client.DriftInvocationHandler.unwrapUserException;
 import static com.facebook.drift.client.ExceptionClassification.HostStatus.DOWN;
 import static com.facebook.drift.client.ExceptionClassification.HostStatus.NORMAL;
+import static com.facebook.drift.client.ExceptionClassification.HostStatus.OVERLOADED;
 import static com.facebook.drift.client.ExceptionClassifier.NORMAL_RESULT;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -104,6 +107,12 @@ public class RetryPolicy
             return new ExceptionClassification(Optional.of(TRUE), DOWN);
         }
 
+        if (throwable instanceof TApplicationException && ((TApplicationException) throwable).getType().equals(Optional.of(LOADSHEDDING))) {
+            // The server rejected the request without executing it, so it
+            // is safe to retry even if the request is not idempotent
+            return new ExceptionClassification(Optional.of(TRUE), OVERLOADED);
+        }
+
         if (throwable instanceof RequestTimeoutException) {
             // We don't know if the server is overloaded, or if this specific
             // request just takes to long, so just mark the server as normal.
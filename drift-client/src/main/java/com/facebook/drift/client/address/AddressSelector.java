@@ -15,11 +15,15 @@
  */
 package com.facebook.drift.client.address;
 
+import com.facebook.drift.client.ExceptionClassification.HostStatus;
 import com.facebook.drift.transport.client.Address;
+import io.airlift.units.Duration;
 
 import java.util.Optional;
 import java.util.Set;
 
+import static com.facebook.drift.client.ExceptionClassification.HostStatus.NORMAL;
+
 public interface AddressSelector<A extends Address>
 {
     @Deprecated
@@ -31,4 +35,28 @@ public interface AddressSelector<A extends Address>
     }
 
     default void markdown(A address) {}
+
+    /**
+     * Called when a request is about to be sent to the address.
+     */
+    default void requestStarted(A address) {}
+
+    /**
+     * Called when a request sent to the address completes. The host status is
+     * {@code NORMAL} for successful requests, otherwise it is the status from
+     * the classification of the failure.
+     */
+    default void requestFinished(A address, Duration latency, HostStatus hostStatus)
+    {
+        if (hostStatus != NORMAL) {
+            markdown(address);
+        }
+    }
+
+    /**
+     * Called when a request sent to the address is abandoned before it
+     * completes, such as the slower attempt of a hedged invocation. The
+     * latency of the request is not known.
+     */
+    default void requestCanceled(A address) {}
 }
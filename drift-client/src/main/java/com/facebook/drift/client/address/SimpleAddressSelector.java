@@ -15,42 +15,112 @@
  */
 package com.facebook.drift.client.address;
 
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
+import com.facebook.drift.client.ExceptionClassification.HostStatus;
 import com.facebook.drift.client.address.SimpleAddressSelector.SimpleAddress;
 import com.facebook.drift.transport.client.Address;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.net.HostAndPort;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.GuardedBy;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.drift.client.ExceptionClassification.HostStatus.NORMAL;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * Selects addresses using the power of two choices: two random candidates are
+ * compared and the one with the lower load, the peak EWMA of its latency
+ * multiplied by its in-flight requests, is used. Addresses reported as down
+ * or overloaded are ejected for a time that doubles with each consecutive
+ * ejection, and are re-admitted automatically when the time expires.
+ * <p>
+ * Host names are resolved into a cached snapshot that is refreshed in the
+ * background every {@code thrift.client.address-refresh-interval}.
+ */
 public class SimpleAddressSelector
         implements AddressSelector<SimpleAddress>
 {
+    private static final Executor RESOLVER_EXECUTOR = newCachedThreadPool(daemonThreadsNamed("drift-address-resolver-%s"));
+
     private final Set<HostAndPort> addresses;
     private final boolean retrySameAddress;
+    private final long latencyDecayNanos;
+    private final long outlierEjectionBaseNanos;
+    private final long outlierEjectionMaxNanos;
+    private final long refreshIntervalNanos;
+    private final Ticker ticker;
+    private final AddressResolver resolver;
+    private final Executor resolverExecutor;
+
+    private final ConcurrentMap<SimpleAddress, AddressStats> addressStats = new ConcurrentHashMap<>();
+
+    private final ReentrantLock resolveLock = new ReentrantLock();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile ResolvedAddresses resolvedAddresses;
+
+    private final TimeStat resolutionTime = new TimeStat(MILLISECONDS);
+    private final CounterStat resolutionFailures = new CounterStat();
 
     public SimpleAddressSelector(SimpleAddressSelectorConfig config)
     {
-        this(config.getAddresses(), config.isRetrySameAddress());
+        this(config, Ticker.systemTicker(), InetAddress::getAllByName, RESOLVER_EXECUTOR);
     }
 
     public SimpleAddressSelector(Iterable<HostAndPort> addresses, boolean retrySameAddress)
     {
-        for (HostAndPort address : addresses) {
+        this(new SimpleAddressSelectorConfig()
+                .setAddressesList(ImmutableList.copyOf(addresses))
+                .setRetrySameAddress(retrySameAddress));
+    }
+
+    @VisibleForTesting
+    SimpleAddressSelector(SimpleAddressSelectorConfig config, Ticker ticker, AddressResolver resolver, Executor resolverExecutor)
+    {
+        requireNonNull(config, "config is null");
+        for (HostAndPort address : config.getAddresses()) {
             checkArgument(address.getPortOrDefault(0) > 0, "address port must be set");
         }
-        this.addresses = ImmutableSet.copyOf(addresses);
-        this.retrySameAddress = retrySameAddress;
+        this.addresses = ImmutableSet.copyOf(config.getAddresses());
+        this.retrySameAddress = config.isRetrySameAddress();
+        this.latencyDecayNanos = max(1, config.getLatencyDecayTime().roundTo(NANOSECONDS));
+        this.outlierEjectionBaseNanos = config.getOutlierEjectionBaseTime().roundTo(NANOSECONDS);
+        this.outlierEjectionMaxNanos = max(outlierEjectionBaseNanos, config.getOutlierEjectionMaxTime().roundTo(NANOSECONDS));
+        this.refreshIntervalNanos = config.getAddressRefreshInterval().roundTo(NANOSECONDS);
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.resolver = requireNonNull(resolver, "resolver is null");
+        this.resolverExecutor = requireNonNull(resolverExecutor, "resolverExecutor is null");
     }
 
     @VisibleForTesting
@@ -59,6 +129,33 @@ public class SimpleAddressSelector
         return addresses;
     }
 
+    @Managed
+    @Nested
+    public TimeStat getResolutionTime()
+    {
+        return resolutionTime;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getResolutionFailures()
+    {
+        return resolutionFailures;
+    }
+
+    @VisibleForTesting
+    int getAddressStatsCount()
+    {
+        return addressStats.size();
+    }
+
+    @Managed
+    public int getResolvedAddressCount()
+    {
+        ResolvedAddresses resolvedAddresses = this.resolvedAddresses;
+        return resolvedAddresses == null ? 0 : resolvedAddresses.getAddresses().size();
+    }
+
     @Deprecated
     @Override
     public Optional<SimpleAddress> selectAddress(Optional<String> addressSelectionContext)
@@ -71,30 +168,288 @@ public class SimpleAddressSelector
     {
         checkArgument(!addressSelectionContext.isPresent(), "addressSelectionContext should not be set");
         requireNonNull(attempted, "attempted is null");
-        List<SimpleAddress> result = new ArrayList<>();
+
+        List<SimpleAddress> candidates = getResolvedAddresses().getAddresses();
+        if (!retrySameAddress && !attempted.isEmpty()) {
+            candidates = candidates.stream()
+                    .filter(address -> !attempted.contains(address))
+                    .collect(toImmutableList());
+        }
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<SimpleAddress> available = candidates;
+        long now = ticker.read();
+        if (candidates.stream().anyMatch(address -> getAddressStats(address).isEjected(now))) {
+            available = candidates.stream()
+                    .filter(address -> !getAddressStats(address).isEjected(now))
+                    .collect(toImmutableList());
+            // when every address is ejected, keep sending requests rather than failing them all
+            if (available.isEmpty()) {
+                available = candidates;
+            }
+        }
+        return Optional.of(selectLeastLoaded(available));
+    }
+
+    private SimpleAddress selectLeastLoaded(List<SimpleAddress> candidates)
+    {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        SimpleAddress firstAddress = candidates.get(first);
+        SimpleAddress secondAddress = candidates.get(second);
+        if (getAddressStats(secondAddress).getLoad() < getAddressStats(firstAddress).getLoad()) {
+            return secondAddress;
+        }
+        return firstAddress;
+    }
+
+    @Override
+    public void markdown(SimpleAddress address)
+    {
+        getAddressStats(address).eject(ticker.read());
+    }
+
+    @Override
+    public void requestStarted(SimpleAddress address)
+    {
+        getAddressStats(address).requestStarted();
+    }
+
+    @Override
+    public void requestFinished(SimpleAddress address, Duration latency, HostStatus hostStatus)
+    {
+        AddressStats stats = getAddressStats(address);
+        long now = ticker.read();
+        stats.requestFinished();
+        if (hostStatus == NORMAL) {
+            stats.recordLatency(latency.roundTo(NANOSECONDS), now);
+        }
+        else {
+            stats.eject(now);
+        }
+    }
+
+    @Override
+    public void requestCanceled(SimpleAddress address)
+    {
+        getAddressStats(address).requestFinished();
+    }
+
+    @VisibleForTesting
+    boolean isEjected(SimpleAddress address)
+    {
+        return getAddressStats(address).isEjected(ticker.read());
+    }
+
+    /**
+     * Returns the current snapshot of resolved addresses. Once addresses have
+     * been resolved, an expired snapshot is still returned while it is
+     * refreshed in the background, so callers never wait for the resolver.
+     */
+    private ResolvedAddresses getResolvedAddresses()
+    {
+        ResolvedAddresses current = resolvedAddresses;
+        if (current == null || current.getAddresses().isEmpty()) {
+            // nothing to fall back to, so resolve on the caller thread; the resolver
+            // blocks, so this must not hold a monitor that would pin a virtual thread
+            resolveLock.lock();
+            try {
+                if (resolvedAddresses == current) {
+                    setResolvedAddresses(resolve(current));
+                }
+                return resolvedAddresses;
+            }
+            finally {
+                resolveLock.unlock();
+            }
+        }
+
+        if (ticker.read() - current.getResolveTime() >= refreshIntervalNanos && refreshing.compareAndSet(false, true)) {
+            try {
+                resolverExecutor.execute(() -> {
+                    try {
+                        ResolvedAddresses refreshed = resolve(current);
+                        resolveLock.lock();
+                        try {
+                            setResolvedAddresses(refreshed);
+                        }
+                        finally {
+                            resolveLock.unlock();
+                        }
+                    }
+                    finally {
+                        refreshing.set(false);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                refreshing.set(false);
+            }
+        }
+        return current;
+    }
+
+    @GuardedBy("resolveLock")
+    private void setResolvedAddresses(ResolvedAddresses resolved)
+    {
+        resolvedAddresses = resolved;
+        // forget addresses that are no longer resolved, so the stats do not grow with DNS churn; a request
+        // still in flight to a removed address may add its entry back until the next refresh removes it
+        addressStats.keySet().retainAll(ImmutableSet.copyOf(resolved.getAddresses()));
+    }
+
+    private ResolvedAddresses resolve(ResolvedAddresses previous)
+    {
+        long resolveTime = ticker.read();
+        ImmutableMap.Builder<HostAndPort, List<SimpleAddress>> addressesByHost = ImmutableMap.builder();
         for (HostAndPort address : addresses) {
+            long start = ticker.read();
             try {
-                for (InetAddress ip : InetAddress.getAllByName(address.getHost())) {
-                    SimpleAddress simpleAddress = new SimpleAddress(HostAndPort.fromParts(ip.getHostAddress(), address.getPort()));
-                    if (retrySameAddress || !attempted.contains(simpleAddress)) {
-                        result.add(simpleAddress);
+                ImmutableList.Builder<SimpleAddress> resolved = ImmutableList.builder();
+                for (InetAddress ip : resolver.resolve(address.getHost())) {
+                    resolved.add(new SimpleAddress(HostAndPort.fromParts(ip.getHostAddress(), address.getPort())));
+                }
+                addressesByHost.put(address, resolved.build());
+            }
+            catch (UnknownHostException e) {
+                resolutionFailures.update(1);
+                // keep using the last known addresses for the host
+                if (previous != null) {
+                    List<SimpleAddress> lastKnown = previous.getAddressesByHost().get(address);
+                    if (lastKnown != null) {
+                        addressesByHost.put(address, lastKnown);
                     }
                 }
             }
-            catch (UnknownHostException ignored) {
+            finally {
+                resolutionTime.add(ticker.read() - start, NANOSECONDS);
             }
         }
-        if (result.isEmpty()) {
-            return Optional.empty();
+        return new ResolvedAddresses(addressesByHost.build(), resolveTime);
+    }
+
+    private AddressStats getAddressStats(SimpleAddress address)
+    {
+        AddressStats stats = addressStats.get(address);
+        if (stats == null) {
+            stats = addressStats.computeIfAbsent(address, ignored -> new AddressStats());
         }
-        SimpleAddress address = result.get(ThreadLocalRandom.current().nextInt(result.size()));
-        return Optional.of(address);
+        return stats;
     }
 
-    @Override
-    public void markdown(SimpleAddress address)
+    private class AddressStats
     {
-        // TODO: implement some policy for blacklisting
+        private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+        @GuardedBy("this")
+        private double latencyNanos;
+        @GuardedBy("this")
+        private long lastLatencyUpdate;
+        @GuardedBy("this")
+        private int consecutiveEjections;
+
+        private volatile boolean ejected;
+        private volatile long ejectionEnd;
+
+        public void requestStarted()
+        {
+            inFlightRequests.incrementAndGet();
+        }
+
+        public void requestFinished()
+        {
+            inFlightRequests.updateAndGet(value -> max(0, value - 1));
+        }
+
+        public synchronized double getLoad()
+        {
+            return (latencyNanos + 1) * (inFlightRequests.get() + 1);
+        }
+
+        public synchronized void recordLatency(long latency, long now)
+        {
+            // peak EWMA: react to slow requests immediately, and decay back slowly
+            if (latency > latencyNanos) {
+                latencyNanos = latency;
+            }
+            else {
+                double weight = Math.exp(-max(0, now - lastLatencyUpdate) / (double) latencyDecayNanos);
+                latencyNanos = (latencyNanos * weight) + (latency * (1 - weight));
+            }
+            lastLatencyUpdate = now;
+            consecutiveEjections = 0;
+        }
+
+        public boolean isEjected(long now)
+        {
+            return ejected && now - ejectionEnd < 0;
+        }
+
+        public synchronized void eject(long now)
+        {
+            // concurrent failures of in-flight requests only count once
+            if (isEjected(now)) {
+                return;
+            }
+            long ejectionTime = min(outlierEjectionMaxNanos, outlierEjectionBaseNanos << min(consecutiveEjections, 20));
+            if (ejectionTime < 0) {
+                ejectionTime = outlierEjectionMaxNanos;
+            }
+            consecutiveEjections++;
+            ejectionEnd = now + ejectionTime;
+            ejected = true;
+        }
+    }
+
+    @VisibleForTesting
+    @FunctionalInterface
+    interface AddressResolver
+    {
+        InetAddress[] resolve(String host)
+                throws UnknownHostException;
+    }
+
+    private static class ResolvedAddresses
+    {
+        private final Map<HostAndPort, List<SimpleAddress>> addressesByHost;
+        private final List<SimpleAddress> addresses;
+        private final long resolveTime;
+
+        public ResolvedAddresses(Map<HostAndPort, List<SimpleAddress>> addressesByHost, long resolveTime)
+        {
+            this.addressesByHost = ImmutableMap.copyOf(requireNonNull(addressesByHost, "addressesByHost is null"));
+            this.addresses = addressesByHost.values().stream()
+                    .flatMap(List::stream)
+                    .distinct()
+                    .collect(toImmutableList());
+            this.resolveTime = resolveTime;
+        }
+
+        public Map<HostAndPort, List<SimpleAddress>> getAddressesByHost()
+        {
+            return addressesByHost;
+        }
+
+        public List<SimpleAddress> getAddresses()
+        {
+            return addresses;
+        }
+
+        public long getResolveTime()
+        {
+            return resolveTime;
+        }
     }
 
     public static final class SimpleAddress
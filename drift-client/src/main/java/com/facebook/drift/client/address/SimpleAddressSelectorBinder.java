@@ -22,6 +22,10 @@ import com.google.common.net.HostAndPort;
 import com.google.inject.Binder;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNameBuilder;
 
 import java.lang.annotation.Annotation;
 import java.util.List;
@@ -29,6 +33,7 @@ import java.util.Optional;
 
 import static com.facebook.airlift.configuration.ConfigBinder.configBinder;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
 import static java.util.Objects.requireNonNull;
 
 public final class SimpleAddressSelectorBinder
@@ -71,22 +76,38 @@ public final class SimpleAddressSelectorBinder
 
         binder.bind(AddressSelector.class)
                 .annotatedWith(annotation)
-                .toProvider(new SimpleAddressSelectorProvider(annotation));
+                .toProvider(new SimpleAddressSelectorProvider(annotation, prefix))
+                .in(Scopes.SINGLETON);
+
+        newOptionalBinder(binder, MBeanExporter.class);
     }
 
     private static class SimpleAddressSelectorProvider
             extends AbstractAnnotatedProvider<AddressSelector<?>>
     {
-        public SimpleAddressSelectorProvider(Annotation annotation)
+        private static final Key<Optional<MBeanExporter>> MBEAN_EXPORTER_KEY = Key.get(new TypeLiteral<Optional<MBeanExporter>>() {});
+
+        private final String prefix;
+
+        public SimpleAddressSelectorProvider(Annotation annotation, String prefix)
         {
             super(annotation);
+            this.prefix = requireNonNull(prefix, "prefix is null");
         }
 
         @Override
         protected AddressSelector<?> get(Injector injector, Annotation annotation)
         {
-            return new SimpleAddressSelector(
+            SimpleAddressSelector addressSelector = new SimpleAddressSelector(
                     injector.getInstance(Key.get(SimpleAddressSelectorConfig.class, annotation)));
+
+            injector.getInstance(MBEAN_EXPORTER_KEY).ifPresent(exporter -> exporter.export(
+                    new ObjectNameBuilder(SimpleAddressSelector.class.getPackage().getName())
+                            .withProperty("type", "SimpleAddressSelector")
+                            .withProperty("name", prefix)
+                            .build(),
+                    addressSelector));
+            return addressSelector;
         }
     }
 }
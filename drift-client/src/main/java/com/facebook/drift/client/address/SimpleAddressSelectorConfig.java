@@ -16,14 +16,19 @@
 package com.facebook.drift.client.address;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
 
 import javax.validation.constraints.NotNull;
 
 import java.util.List;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
 
 public class SimpleAddressSelectorConfig
@@ -32,6 +37,10 @@ public class SimpleAddressSelectorConfig
 
     private List<HostAndPort> addresses;
     private boolean retrySameAddress = true;
+    private Duration latencyDecayTime = new Duration(10, SECONDS);
+    private Duration outlierEjectionBaseTime = new Duration(5, SECONDS);
+    private Duration outlierEjectionMaxTime = new Duration(2, MINUTES);
+    private Duration addressRefreshInterval = new Duration(30, SECONDS);
 
     @NotNull
     public List<HostAndPort> getAddresses()
@@ -40,6 +49,7 @@ public class SimpleAddressSelectorConfig
     }
 
     @Config("thrift.client.addresses")
+    @ConfigDescription("Comma separated list of addresses of the servers, as host:port")
     public SimpleAddressSelectorConfig setAddresses(String addresses)
     {
         if (addresses == null) {
@@ -65,9 +75,70 @@ public class SimpleAddressSelectorConfig
     }
 
     @Config("thrift.client.retry-same-address")
+    @ConfigDescription("Allow retries to use an address that already failed for the request")
     public SimpleAddressSelectorConfig setRetrySameAddress(boolean retrySameAddress)
     {
         this.retrySameAddress = retrySameAddress;
         return this;
     }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getLatencyDecayTime()
+    {
+        return latencyDecayTime;
+    }
+
+    @Config("thrift.client.latency-decay-time")
+    @ConfigDescription("Time for the weight of an observed request latency to decay to 1/e")
+    public SimpleAddressSelectorConfig setLatencyDecayTime(Duration latencyDecayTime)
+    {
+        this.latencyDecayTime = latencyDecayTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getOutlierEjectionBaseTime()
+    {
+        return outlierEjectionBaseTime;
+    }
+
+    @Config("thrift.client.outlier-ejection.base-time")
+    @ConfigDescription("Time a down or overloaded address is ejected for, doubled for each consecutive ejection")
+    public SimpleAddressSelectorConfig setOutlierEjectionBaseTime(Duration outlierEjectionBaseTime)
+    {
+        this.outlierEjectionBaseTime = outlierEjectionBaseTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getOutlierEjectionMaxTime()
+    {
+        return outlierEjectionMaxTime;
+    }
+
+    @Config("thrift.client.outlier-ejection.max-time")
+    @ConfigDescription("Maximum time a down or overloaded address is ejected for")
+    public SimpleAddressSelectorConfig setOutlierEjectionMaxTime(Duration outlierEjectionMaxTime)
+    {
+        this.outlierEjectionMaxTime = outlierEjectionMaxTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getAddressRefreshInterval()
+    {
+        return addressRefreshInterval;
+    }
+
+    @Config("thrift.client.address-refresh-interval")
+    @ConfigDescription("How often host names are resolved again in the background")
+    public SimpleAddressSelectorConfig setAddressRefreshInterval(Duration addressRefreshInterval)
+    {
+        this.addressRefreshInterval = addressRefreshInterval;
+        return this;
+    }
 }
@@ -18,9 +18,11 @@ package com.facebook.drift.client.guice;
 import com.facebook.airlift.configuration.ConfigDefaults;
 import com.facebook.drift.client.DriftClient;
 import com.facebook.drift.client.DriftClientFactory;
+import com.facebook.drift.client.DriftClientFactoryConfig;
 import com.facebook.drift.client.DriftClientFactoryManager;
 import com.facebook.drift.client.ExceptionClassifier;
 import com.facebook.drift.client.MethodInvocationFilter;
+import com.facebook.drift.client.RetryExecutor;
 import com.facebook.drift.client.address.AddressSelector;
 import com.facebook.drift.client.stats.JmxMethodInvocationStatsFactory;
 import com.facebook.drift.client.stats.MethodInvocationStatsFactory;
@@ -40,7 +42,9 @@ import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNameBuilder;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -53,9 +57,11 @@ import java.util.Set;
 
 import static com.facebook.airlift.configuration.ConfigBinder.configBinder;
 import static com.facebook.drift.client.ExceptionClassifier.mergeExceptionClassifiers;
+import static com.facebook.drift.client.RetryExecutor.createRetryExecutor;
 import static com.facebook.drift.client.guice.DriftClientAnnotationFactory.extractDriftClientBindingAnnotation;
 import static com.facebook.drift.client.guice.DriftClientAnnotationFactory.getDriftClientAnnotation;
 import static com.facebook.drift.codec.metadata.ThriftServiceMetadata.getThriftServiceAnnotation;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.inject.multibindings.Multibinder.newSetBinder;
 import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
 import static java.util.Objects.requireNonNull;
@@ -226,12 +232,51 @@ public class DriftClientBinder
         }
     }
 
+    private static class RetryExecutorProvider
+            implements Provider<RetryExecutor>
+    {
+        private static final String OBJECT_NAME = new ObjectNameBuilder("thrift.client")
+                .withProperty("name", "RetryExecutor")
+                .build();
+
+        private final DriftClientFactoryConfig config;
+        private final Optional<MBeanExporter> mbeanExporter;
+        private RetryExecutor retryExecutor;
+
+        @Inject
+        public RetryExecutorProvider(DriftClientFactoryConfig config, Optional<MBeanExporter> mbeanExporter)
+        {
+            this.config = config;
+            this.mbeanExporter = mbeanExporter;
+        }
+
+        @Override
+        public synchronized RetryExecutor get()
+        {
+            checkState(retryExecutor == null, "retry executor already created");
+            retryExecutor = createRetryExecutor(config);
+            mbeanExporter.ifPresent(exporter -> exporter.export(OBJECT_NAME, retryExecutor));
+            return retryExecutor;
+        }
+
+        @PreDestroy
+        public synchronized void destroy()
+        {
+            if (retryExecutor != null) {
+                mbeanExporter.ifPresent(exporter -> exporter.unexport(OBJECT_NAME));
+                retryExecutor.close();
+            }
+        }
+    }
+
     private static class DriftClientBinderModule
             implements Module
     {
         @Override
         public void configure(Binder binder)
         {
+            configBinder(binder).bindConfig(DriftClientFactoryConfig.class);
+            binder.bind(RetryExecutor.class).toProvider(RetryExecutorProvider.class).in(Scopes.SINGLETON);
             newSetBinder(binder, ExceptionClassifier.class);
             newOptionalBinder(binder, MBeanExporter.class);
             newOptionalBinder(binder, MethodInvocationStatsFactory.class)
@@ -245,9 +290,10 @@ public class DriftClientBinder
         private static DriftClientFactoryManager<Annotation> getDriftClientFactory(
                 ThriftCodecManager codecManager,
                 MethodInvokerFactory<Annotation> methodInvokerFactory,
-                MethodInvocationStatsFactory methodInvocationStatsFactory)
+                MethodInvocationStatsFactory methodInvocationStatsFactory,
+                RetryExecutor retryExecutor)
         {
-            return new DriftClientFactoryManager<>(codecManager, methodInvokerFactory, methodInvocationStatsFactory);
+            return new DriftClientFactoryManager<>(codecManager, methodInvokerFactory, methodInvocationStatsFactory, retryExecutor);
         }
 
         @Override
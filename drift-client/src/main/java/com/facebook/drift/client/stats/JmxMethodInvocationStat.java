@@ -16,25 +16,40 @@
 package com.facebook.drift.client.stats;
 
 import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.ExponentialDecay;
+import com.facebook.airlift.stats.QuantileDigest;
 import com.facebook.airlift.stats.TimeStat;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.Optional;
+
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.airlift.units.Duration.nanosSince;
+import static io.airlift.units.Duration.succinctNanos;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class JmxMethodInvocationStat
         implements MethodInvocationStat
 {
+    private static final int MIN_RECENT_LATENCY_SAMPLES = 100;
+
     private final String name;
     private final TimeStat time = new TimeStat(MILLISECONDS);
     private final CounterStat successes = new CounterStat();
     private final CounterStat failures = new CounterStat();
     private final CounterStat retries = new CounterStat();
+    private final CounterStat hedges = new CounterStat();
+
+    @GuardedBy("recentLatency")
+    private final QuantileDigest recentLatency = new QuantileDigest(0.01, ExponentialDecay.oneMinute());
 
     public JmxMethodInvocationStat(String name)
     {
@@ -74,15 +89,30 @@ public class JmxMethodInvocationStat
         return retries;
     }
 
+    @Managed
+    @Nested
+    public CounterStat getHedges()
+    {
+        return hedges;
+    }
+
     @Override
     public void recordResult(long startTime, ListenableFuture<Object> result)
     {
         result.addListener(
                 () -> {
-                    time.add(nanosSince(startTime));
+                    // canceled attempts, such as the slower of two hedged requests, did not fail
+                    if (result.isCancelled()) {
+                        return;
+                    }
+                    Duration duration = nanosSince(startTime);
+                    time.add(duration);
                     try {
                         result.get();
                         successes.update(1);
+                        synchronized (recentLatency) {
+                            recentLatency.add(duration.roundTo(NANOSECONDS));
+                        }
                     }
                     catch (Throwable throwable) {
                         failures.update(1);
@@ -97,6 +127,25 @@ public class JmxMethodInvocationStat
         retries.update(1);
     }
 
+    @Override
+    public void recordHedge()
+    {
+        hedges.update(1);
+    }
+
+    @Override
+    public Optional<Duration> getRecentLatency(double percentile)
+    {
+        long latency;
+        synchronized (recentLatency) {
+            if (recentLatency.getCount() < MIN_RECENT_LATENCY_SAMPLES) {
+                return Optional.empty();
+            }
+            latency = recentLatency.getQuantile(percentile / 100);
+        }
+        return Optional.of(succinctNanos(latency));
+    }
+
     @Override
     public String toString()
     {
@@ -105,6 +154,7 @@ public class JmxMethodInvocationStat
                 .add("successes", successes.getTotalCount())
                 .add("failures", failures.getTotalCount())
                 .add("retries", retries.getTotalCount())
+                .add("hedges", hedges.getTotalCount())
                 .toString();
     }
 }
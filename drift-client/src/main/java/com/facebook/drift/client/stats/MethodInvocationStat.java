@@ -16,10 +16,24 @@
 package com.facebook.drift.client.stats;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
+
+import java.util.Optional;
 
 public interface MethodInvocationStat
 {
     void recordResult(long startTime, ListenableFuture<Object> result);
 
     void recordRetry();
+
+    default void recordHedge() {}
+
+    /**
+     * Returns the recent latency of successful invocations at the specified
+     * percentile, or empty if there are not enough recent invocations.
+     */
+    default Optional<Duration> getRecentLatency(double percentile)
+    {
+        return Optional.empty();
+    }
 }
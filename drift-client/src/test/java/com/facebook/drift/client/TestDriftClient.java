@@ -45,6 +45,7 @@ import javax.inject.Qualifier;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.lang.reflect.Proxy;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -68,9 +69,11 @@ import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.ElementType.PARAMETER;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestDriftClient
@@ -102,6 +105,33 @@ public class TestDriftClient
         testClient(resultsSupplier, ImmutableList.of(methodInvokerFactory.getMethodInvoker()), classifiers, statsFactory, client, Optional.empty());
     }
 
+    @Test
+    public void testGeneratedStub()
+    {
+        ResultsSupplier resultsSupplier = new ResultsSupplier();
+        MockMethodInvokerFactory<String> methodInvokerFactory = new MockMethodInvokerFactory<>(resultsSupplier);
+        DriftClientFactoryManager<String> clientFactoryManager = new DriftClientFactoryManager<>(codecManager, methodInvokerFactory, new TestingMethodInvocationStatsFactory());
+        DriftClientFactory driftClientFactory = clientFactoryManager.createDriftClientFactory("clientIdentity", new MockAddressSelector(), ExceptionClassifier.NORMAL_RESULT);
+
+        // public interfaces are called through a generated stub
+        Client client = driftClientFactory.createDriftClient(Client.class, Optional.empty(), ImmutableList.of(), new DriftClientConfig())
+                .get(ADDRESS_SELECTION_CONTEXT, HEADERS);
+        assertFalse(Proxy.isProxyClass(client.getClass()));
+        assertEquals(client.toString(), "clientService");
+
+        // the generated stub class is shared by all clients of the interface
+        Client otherClient = driftClientFactory.createDriftClient(Client.class, Optional.empty(), ImmutableList.of(), new DriftClientConfig())
+                .get(Optional.empty());
+        assertSame(otherClient.getClass(), client.getClass());
+
+        // stubs can not be generated for non-public interfaces
+        HiddenClient hiddenClient = driftClientFactory.createDriftClient(HiddenClient.class, Optional.empty(), ImmutableList.of(), new DriftClientConfig())
+                .get(Optional.empty());
+        assertTrue(Proxy.isProxyClass(hiddenClient.getClass()));
+        resultsSupplier.setSuccessResult("result");
+        assertEquals(hiddenClient.test(1, "hidden"), "result");
+    }
+
     @Test
     public void testFilter()
             throws Exception
@@ -502,6 +532,13 @@ public class TestDriftClient
         ListenableFuture<String> testAsync(int id, String name);
     }
 
+    @ThriftService("hiddenService")
+    interface HiddenClient
+    {
+        @ThriftMethod
+        String test(int id, String name);
+    }
+
     @Target({FIELD, PARAMETER, METHOD})
     @Retention(RUNTIME)
     @Qualifier
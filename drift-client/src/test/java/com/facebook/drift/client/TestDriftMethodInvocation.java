@@ -36,6 +36,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.net.HostAndPort;
 import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.units.Duration;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -49,7 +50,9 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
@@ -64,9 +67,11 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Sets.newConcurrentHashSet;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
@@ -121,6 +126,123 @@ public class TestDriftMethodInvocation
         stat.assertSuccess(0);
     }
 
+    @Test(timeOut = 60000)
+    public void testRetryExecutorOnlyUsedForRetries()
+            throws Exception
+    {
+        RetryPolicy retryPolicy = new RetryPolicy(new DriftClientConfig().setMaxRetries(10), new TestingExceptionClassifier());
+        AtomicInteger retryTasks = new AtomicInteger();
+        Executor retryExecutor = task -> {
+            retryTasks.incrementAndGet();
+            retryService.execute(task);
+        };
+
+        // a successful invocation completes on the thread that completed the result
+        DriftMethodInvocation<?> methodInvocation = DriftMethodInvocation.createDriftMethodInvocation(
+                new MockMethodInvoker(() -> immediateFuture(SUCCESS)),
+                METHOD_METADATA,
+                ImmutableMap.of(),
+                ImmutableList.of(),
+                retryPolicy,
+                new TestingAddressSelector(100),
+                Optional.empty(),
+                new TestingMethodInvocationStat(),
+                systemTicker(),
+                retryExecutor);
+        assertEquals(methodInvocation.get(), SUCCESS);
+        assertEquals(retryTasks.get(), 0);
+
+        // a failure that is not retried completes on the thread that completed the result
+        methodInvocation = DriftMethodInvocation.createDriftMethodInvocation(
+                new MockMethodInvoker(() -> immediateFailedFuture(createClassifiedException(false, NORMAL))),
+                METHOD_METADATA,
+                ImmutableMap.of(),
+                ImmutableList.of(),
+                retryPolicy,
+                new TestingAddressSelector(100),
+                Optional.empty(),
+                new TestingMethodInvocationStat(),
+                systemTicker(),
+                retryExecutor);
+        assertTrue(methodInvocation.isDone());
+        assertEquals(retryTasks.get(), 0);
+
+        // only the retry after the backoff delay runs on the retry executor
+        AtomicInteger attempts = new AtomicInteger();
+        methodInvocation = DriftMethodInvocation.createDriftMethodInvocation(
+                new MockMethodInvoker(() -> {
+                    if (attempts.getAndIncrement() == 0) {
+                        return immediateFailedFuture(createClassifiedException(true, NORMAL));
+                    }
+                    return immediateFuture(SUCCESS);
+                }),
+                METHOD_METADATA,
+                ImmutableMap.of(),
+                ImmutableList.of(),
+                retryPolicy,
+                new TestingAddressSelector(100),
+                Optional.empty(),
+                new TestingMethodInvocationStat(),
+                systemTicker(),
+                retryExecutor);
+        assertEquals(methodInvocation.get(), SUCCESS);
+        assertEquals(attempts.get(), 2);
+        assertEquals(retryTasks.get(), 1);
+    }
+
+    @Test(timeOut = 60000)
+    public void testRetryExecutorClose()
+            throws Exception
+    {
+        RetryExecutor retryExecutor = RetryExecutor.createRetryExecutor(new DriftClientFactoryConfig().setRetryThreads(1));
+
+        // the only thread is busy, so the next task is queued
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch queuedTaskRan = new CountDownLatch(1);
+        retryExecutor.execute(() -> {
+            try {
+                blocked.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        retryExecutor.execute(queuedTaskRan::countDown);
+
+        retryExecutor.close();
+        try {
+            retryExecutor.execute(() -> {});
+            fail("expected exception");
+        }
+        catch (RejectedExecutionException expected) {
+        }
+
+        // tasks accepted before the close still run
+        blocked.countDown();
+        queuedTaskRan.await();
+
+        // an invocation that needs the closed executor fails instead of hanging
+        DriftMethodInvocation<?> methodInvocation = DriftMethodInvocation.createDriftMethodInvocation(
+                new MockMethodInvoker(() -> immediateFailedFuture(createClassifiedException(true, NORMAL))),
+                METHOD_METADATA,
+                ImmutableMap.of(),
+                ImmutableList.of(),
+                new RetryPolicy(new DriftClientConfig().setMaxRetries(10), new TestingExceptionClassifier()),
+                new TestingAddressSelector(100),
+                Optional.empty(),
+                new TestingMethodInvocationStat(),
+                systemTicker(),
+                retryExecutor);
+        try {
+            methodInvocation.get();
+            fail("expected exception");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TException);
+            assertTrue(e.getCause().getCause() instanceof RejectedExecutionException);
+        }
+    }
+
     @Test(timeOut = 60000)
     public void testBasicRetriesToSuccess()
             throws Exception
@@ -725,6 +847,149 @@ public class TestDriftMethodInvocation
         assertEquals(attempts.get(), expectedRetries + 1);
     }
 
+    @Test(timeOut = 60000)
+    public void testCancelDuringBackoff()
+            throws Exception
+    {
+        SettableFuture<Object> backoff = SettableFuture.create();
+        MockMethodInvoker invoker = new MockMethodInvoker(() -> immediateFailedFuture(createClassifiedException(true, NORMAL)))
+        {
+            @Override
+            public synchronized ListenableFuture<?> delay(Duration duration)
+            {
+                super.delay(duration);
+                return backoff;
+            }
+        };
+
+        DriftMethodInvocation<?> methodInvocation = createDriftMethodInvocation(
+                new RetryPolicy(new DriftClientConfig().setMaxRetries(10), new TestingExceptionClassifier()),
+                new TestingMethodInvocationStat(),
+                invoker,
+                new TestingAddressSelector(100),
+                systemTicker());
+
+        // the first attempt failed before it was returned, and the invocation waits for the backoff delay
+        assertEquals(invoker.getDelays().size(), 1);
+        methodInvocation.cancel(true);
+        assertTrue(backoff.isCancelled());
+    }
+
+    @Test(timeOut = 60000)
+    public void testHedging()
+            throws Exception
+    {
+        TestingMethodInvocationStat stat = new TestingMethodInvocationStat();
+        SettableFuture<Object> primary = SettableFuture.create();
+        CountDownLatch primaryCanceled = new CountDownLatch(1);
+        primary.addListener(primaryCanceled::countDown, directExecutor());
+        AtomicInteger attempts = new AtomicInteger();
+        MockMethodInvoker invoker = new MockMethodInvoker(() -> attempts.getAndIncrement() == 0 ? primary : immediateFuture(SUCCESS));
+        TestingAddressSelector addressSelector = new TestingAddressSelector(100);
+
+        DriftMethodInvocation<?> methodInvocation = createDriftMethodInvocation(
+                RetryPolicy.NO_RETRY_POLICY,
+                stat,
+                invoker,
+                addressSelector,
+                systemTicker(),
+                METHOD_METADATA,
+                Optional.of(new HedgingPolicy(new Duration(10, MILLISECONDS), Optional.empty(), 100)));
+
+        // primary attempt never completes, so the hedged attempt provides the result
+        assertEquals(methodInvocation.get(), SUCCESS);
+        assertEquals(attempts.get(), 2);
+        assertEquals(invoker.getDelays(), ImmutableList.of(new Duration(10, MILLISECONDS)));
+        assertEquals(stat.getHedges(), 1);
+
+        // hedge is sent to a different address and the slower attempt is canceled
+        assertEquals(addressSelector.getLastAttemptedSet(), ImmutableSet.of(createTestingAddress(20_000)));
+        primaryCanceled.await();
+        assertTrue(primary.isCancelled());
+
+        // the canceled attempt is released without recording its latency
+        while (addressSelector.getCanceledHosts().isEmpty()) {
+            MILLISECONDS.sleep(10);
+        }
+        assertEquals(addressSelector.getCanceledHosts(), ImmutableSet.of(createTestingAddress(20_000)));
+        assertEquals(addressSelector.getFinishedHosts(), ImmutableSet.of(createTestingAddress(20_001)));
+    }
+
+    @Test(timeOut = 60000)
+    public void testHedgingWaitsForAllAttempts()
+            throws Exception
+    {
+        TestingMethodInvocationStat stat = new TestingMethodInvocationStat();
+        List<SettableFuture<Object>> results = ImmutableList.of(SettableFuture.create(), SettableFuture.create());
+        AtomicInteger attempts = new AtomicInteger();
+        MockMethodInvoker invoker = new MockMethodInvoker(() -> results.get(attempts.getAndIncrement()));
+
+        DriftMethodInvocation<?> methodInvocation = createDriftMethodInvocation(
+                RetryPolicy.NO_RETRY_POLICY,
+                stat,
+                invoker,
+                new TestingAddressSelector(100),
+                systemTicker(),
+                METHOD_METADATA,
+                Optional.of(new HedgingPolicy(new Duration(10, MILLISECONDS), Optional.empty(), 100)));
+        assertEquals(attempts.get(), 2);
+
+        // failure of the primary attempt does not fail the invocation while the hedge is running
+        results.get(0).setException(createClassifiedException(false, NORMAL));
+        results.get(1).set(SUCCESS);
+        assertEquals(methodInvocation.get(), SUCCESS);
+        assertEquals(stat.getHedges(), 1);
+    }
+
+    @Test(timeOut = 60000)
+    public void testHedgingBudgetExhausted()
+            throws Exception
+    {
+        testNoHedge(METHOD_METADATA, new HedgingPolicy(new Duration(10, MILLISECONDS), Optional.empty(), 0), 1);
+    }
+
+    @Test(timeOut = 60000)
+    public void testNoHedgingForNonIdempotentMethod()
+            throws Exception
+    {
+        MethodMetadata metadata = new MethodMetadata(
+                "testMethod",
+                ImmutableList.of(),
+                (ThriftCodec<Object>) (Object) new ShortThriftCodec(),
+                ImmutableMap.of(),
+                false,
+                false);
+        testNoHedge(metadata, new HedgingPolicy(new Duration(10, MILLISECONDS), Optional.empty(), 100), 0);
+    }
+
+    private static void testNoHedge(MethodMetadata metadata, HedgingPolicy hedgingPolicy, int expectedDelays)
+            throws Exception
+    {
+        TestingMethodInvocationStat stat = new TestingMethodInvocationStat();
+        SettableFuture<Object> result = SettableFuture.create();
+        AtomicInteger attempts = new AtomicInteger();
+        MockMethodInvoker invoker = new MockMethodInvoker(() -> {
+            attempts.getAndIncrement();
+            return result;
+        });
+
+        DriftMethodInvocation<?> methodInvocation = createDriftMethodInvocation(
+                RetryPolicy.NO_RETRY_POLICY,
+                stat,
+                invoker,
+                new TestingAddressSelector(100),
+                systemTicker(),
+                metadata,
+                Optional.of(hedgingPolicy));
+
+        result.set(SUCCESS);
+        assertEquals(methodInvocation.get(), SUCCESS);
+        assertEquals(attempts.get(), 1);
+        assertEquals(invoker.getDelays().size(), expectedDelays);
+        assertEquals(stat.getHedges(), 0);
+        stat.assertSuccess(0);
+    }
+
     private static DriftMethodInvocation<?> createDriftMethodInvocation(RetryPolicy retryPolicy, TestingMethodInvocationStat stat, Supplier<ListenableFuture<Object>> resultsSupplier)
     {
         return createDriftMethodInvocation(retryPolicy, stat, new MockMethodInvoker(resultsSupplier), new TestingAddressSelector(100), systemTicker());
@@ -736,10 +1001,22 @@ public class TestDriftMethodInvocation
             MockMethodInvoker invoker,
             AddressSelector<?> addressSelector,
             Ticker ticker)
+    {
+        return createDriftMethodInvocation(retryPolicy, stat, invoker, addressSelector, ticker, METHOD_METADATA, Optional.empty());
+    }
+
+    private static DriftMethodInvocation<?> createDriftMethodInvocation(
+            RetryPolicy retryPolicy,
+            TestingMethodInvocationStat stat,
+            MockMethodInvoker invoker,
+            AddressSelector<?> addressSelector,
+            Ticker ticker,
+            MethodMetadata metadata,
+            Optional<HedgingPolicy> hedgingPolicy)
     {
         return DriftMethodInvocation.createDriftMethodInvocation(
                 invoker,
-                METHOD_METADATA,
+                metadata,
                 ImmutableMap.of(),
                 ImmutableList.of(),
                 retryPolicy,
@@ -747,7 +1024,8 @@ public class TestDriftMethodInvocation
                 Optional.empty(),
                 stat,
                 ticker,
-                retryService);
+                retryService,
+                hedgingPolicy);
     }
 
     private static void assertClassifiedException(Throwable cause, ExceptionClassification exceptionClassification, int expectedRetries)
@@ -858,6 +1136,12 @@ public class TestDriftMethodInvocation
         @GuardedBy("this")
         private Set<Address> lastAttemptedSet = ImmutableSet.of();
 
+        @GuardedBy("this")
+        private final Set<Address> finishedHosts = new HashSet<>();
+
+        @GuardedBy("this")
+        private final Set<Address> canceledHosts = new HashSet<>();
+
         public TestingAddressSelector(int maxAddresses)
         {
             this(createAddresses(maxAddresses));
@@ -897,6 +1181,29 @@ public class TestDriftMethodInvocation
             markdownHosts.add(address);
         }
 
+        @Override
+        public synchronized void requestFinished(Address address, Duration latency, HostStatus hostStatus)
+        {
+            finishedHosts.add(address);
+            AddressSelector.super.requestFinished(address, latency, hostStatus);
+        }
+
+        @Override
+        public synchronized void requestCanceled(Address address)
+        {
+            canceledHosts.add(address);
+        }
+
+        public synchronized Set<Address> getFinishedHosts()
+        {
+            return ImmutableSet.copyOf(finishedHosts);
+        }
+
+        public synchronized Set<Address> getCanceledHosts()
+        {
+            return ImmutableSet.copyOf(canceledHosts);
+        }
+
         public synchronized void assertAllDown()
         {
             assertEquals(markdownHosts, ImmutableSet.copyOf(addresses));
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client;
+
+import com.facebook.drift.client.stats.MethodInvocationStat;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestHedgingPolicy
+{
+    @Test
+    public void testBudget()
+    {
+        HedgingPolicy policy = new HedgingPolicy(new Duration(10, MILLISECONDS), Optional.empty(), 10);
+        assertFalse(policy.tryAcquireHedge());
+
+        // every request earns a tenth of a hedge
+        for (int i = 0; i < 9; i++) {
+            policy.recordRequest();
+        }
+        assertFalse(policy.tryAcquireHedge());
+        policy.recordRequest();
+        assertTrue(policy.tryAcquireHedge());
+        assertFalse(policy.tryAcquireHedge());
+
+        // budget saved up during quiet periods is capped
+        for (int i = 0; i < 10_000; i++) {
+            policy.recordRequest();
+        }
+        int hedges = 0;
+        while (policy.tryAcquireHedge()) {
+            hedges++;
+        }
+        assertEquals(hedges, 100);
+    }
+
+    @Test
+    public void testNoBudget()
+    {
+        HedgingPolicy policy = new HedgingPolicy(new Duration(10, MILLISECONDS), Optional.empty(), 0);
+        for (int i = 0; i < 1000; i++) {
+            policy.recordRequest();
+        }
+        assertFalse(policy.tryAcquireHedge());
+    }
+
+    @Test
+    public void testHedgeDelay()
+    {
+        Duration delay = new Duration(10, MILLISECONDS);
+        Duration recentLatency = new Duration(42, MILLISECONDS);
+        TestingLatencyStat stat = new TestingLatencyStat(Optional.of(recentLatency));
+
+        assertEquals(new HedgingPolicy(delay, Optional.empty(), 10).getHedgeDelay(stat), delay);
+        assertEquals(new HedgingPolicy(delay, Optional.of(95.0), 10).getHedgeDelay(stat), recentLatency);
+        assertEquals(stat.getLastPercentile(), 95.0);
+
+        // fixed delay is used until enough latency samples are collected
+        assertEquals(new HedgingPolicy(delay, Optional.of(95.0), 10).getHedgeDelay(new TestingLatencyStat(Optional.empty())), delay);
+    }
+
+    private static class TestingLatencyStat
+            implements MethodInvocationStat
+    {
+        private final Optional<Duration> recentLatency;
+        private double lastPercentile;
+
+        public TestingLatencyStat(Optional<Duration> recentLatency)
+        {
+            this.recentLatency = recentLatency;
+        }
+
+        public double getLastPercentile()
+        {
+            return lastPercentile;
+        }
+
+        @Override
+        public void recordResult(long startTime, ListenableFuture<Object> result) {}
+
+        @Override
+        public void recordRetry() {}
+
+        @Override
+        public Optional<Duration> getRecentLatency(double percentile)
+        {
+            lastPercentile = percentile;
+            return recentLatency;
+        }
+    }
+}
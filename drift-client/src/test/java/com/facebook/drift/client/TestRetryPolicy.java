@@ -15,14 +15,18 @@
  */
 package com.facebook.drift.client;
 
+import com.facebook.drift.TApplicationException;
 import com.facebook.drift.transport.client.DriftApplicationException;
 import com.facebook.drift.transport.client.DriftClientConfig;
 import org.testng.annotations.Test;
 
 import java.util.Optional;
 
+import static com.facebook.drift.TApplicationException.Type.INTERNAL_ERROR;
+import static com.facebook.drift.TApplicationException.Type.LOADSHEDDING;
 import static com.facebook.drift.client.ExceptionClassification.HostStatus.OVERLOADED;
 import static com.facebook.drift.client.ExceptionClassification.NORMAL_EXCEPTION;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 
 public class TestRetryPolicy
@@ -41,6 +45,15 @@ public class TestRetryPolicy
         assertSame(policy.classifyException(new TestingUserException(), true), overloaded);
     }
 
+    @Test
+    public void testLoadShedding()
+    {
+        RetryPolicy policy = new RetryPolicy(new DriftClientConfig(), classifier -> NORMAL_EXCEPTION);
+        ExceptionClassification overloaded = new ExceptionClassification(Optional.of(true), OVERLOADED);
+        assertEquals(policy.classifyException(new TApplicationException(LOADSHEDDING, "overloaded"), false), overloaded);
+        assertEquals(policy.classifyException(new TApplicationException(INTERNAL_ERROR, "error"), false), NORMAL_EXCEPTION);
+    }
+
     private static class TestingUserException
             extends Exception
     {}
@@ -32,6 +32,7 @@ public class TestingMethodInvocationStat
     private final AtomicInteger successes = new AtomicInteger();
     private final AtomicInteger failures = new AtomicInteger();
     private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger hedges = new AtomicInteger();
     private final AtomicLong lastStartTime = new AtomicLong();
 
     public void clear()
@@ -40,9 +41,15 @@ public class TestingMethodInvocationStat
         successes.set(0);
         failures.set(0);
         retries.set(0);
+        hedges.set(0);
         lastStartTime.set(0);
     }
 
+    public int getHedges()
+    {
+        return hedges.get();
+    }
+
     public void assertSuccess(int expectedRetries)
     {
         assertEquals(invocations.get(), expectedRetries + 1);
@@ -93,4 +100,10 @@ public class TestingMethodInvocationStat
     {
         retries.incrementAndGet();
     }
+
+    @Override
+    public void recordHedge()
+    {
+        hedges.incrementAndGet();
+    }
 }
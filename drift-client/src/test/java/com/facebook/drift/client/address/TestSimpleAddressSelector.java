@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.client.address;
+
+import com.facebook.airlift.testing.TestingTicker;
+import com.facebook.drift.client.address.SimpleAddressSelector.SimpleAddress;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HostAndPort;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.facebook.drift.client.ExceptionClassification.HostStatus.DOWN;
+import static com.facebook.drift.client.ExceptionClassification.HostStatus.NORMAL;
+import static com.facebook.drift.client.ExceptionClassification.HostStatus.OVERLOADED;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSimpleAddressSelector
+{
+    private static final SimpleAddress ADDRESS_1 = new SimpleAddress(HostAndPort.fromParts("127.0.0.1", 1));
+    private static final SimpleAddress ADDRESS_2 = new SimpleAddress(HostAndPort.fromParts("127.0.0.1", 2));
+
+    @Test
+    public void testLeastLoaded()
+    {
+        SimpleAddressSelector selector = createSelector(new TestingTicker());
+
+        // with two addresses both are always compared, so the less loaded one wins
+        for (int i = 0; i < 10; i++) {
+            selector.requestStarted(ADDRESS_1);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(selectAddress(selector), ADDRESS_2);
+        }
+
+        // a slow address loses to a fast one with more requests in flight
+        for (int i = 0; i < 10; i++) {
+            selector.requestFinished(ADDRESS_1, new Duration(1, MILLISECONDS), NORMAL);
+        }
+        selector.requestFinished(ADDRESS_2, new Duration(1, SECONDS), NORMAL);
+        selector.requestStarted(ADDRESS_1);
+        selector.requestStarted(ADDRESS_1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(selectAddress(selector), ADDRESS_1);
+        }
+    }
+
+    @Test
+    public void testCanceledRequest()
+    {
+        SimpleAddressSelector selector = createSelector(new TestingTicker());
+        selector.requestFinished(ADDRESS_1, new Duration(1, MILLISECONDS), NORMAL);
+        selector.requestFinished(ADDRESS_2, new Duration(2, MILLISECONDS), NORMAL);
+
+        // a canceled request is no longer in flight, and does not count as a fast response
+        for (int i = 0; i < 10; i++) {
+            selector.requestStarted(ADDRESS_2);
+            selector.requestCanceled(ADDRESS_2);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(selectAddress(selector), ADDRESS_1);
+        }
+    }
+
+    @Test
+    public void testOutlierEjection()
+    {
+        TestingTicker ticker = new TestingTicker();
+        SimpleAddressSelector selector = createSelector(ticker);
+
+        selector.requestStarted(ADDRESS_1);
+        selector.requestFinished(ADDRESS_1, new Duration(1, MILLISECONDS), DOWN);
+        assertTrue(selector.isEjected(ADDRESS_1));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(selectAddress(selector), ADDRESS_2);
+        }
+
+        // re-admitted after the base ejection time
+        ticker.increment(1, SECONDS);
+        assertFalse(selector.isEjected(ADDRESS_1));
+
+        // consecutive ejections back off exponentially
+        selector.requestFinished(ADDRESS_1, new Duration(1, MILLISECONDS), OVERLOADED);
+        ticker.increment(1, SECONDS);
+        assertTrue(selector.isEjected(ADDRESS_1));
+        ticker.increment(1, SECONDS);
+        assertFalse(selector.isEjected(ADDRESS_1));
+
+        selector.markdown(ADDRESS_1);
+        ticker.increment(3, SECONDS);
+        assertTrue(selector.isEjected(ADDRESS_1));
+        // ejection time is capped at the max time
+        ticker.increment(2, SECONDS);
+        assertFalse(selector.isEjected(ADDRESS_1));
+
+        // a successful request resets the back off
+        selector.requestFinished(ADDRESS_1, new Duration(1, MILLISECONDS), NORMAL);
+        selector.markdown(ADDRESS_1);
+        ticker.increment(1, SECONDS);
+        assertFalse(selector.isEjected(ADDRESS_1));
+    }
+
+    @Test
+    public void testAllEjected()
+    {
+        SimpleAddressSelector selector = createSelector(new TestingTicker());
+        selector.markdown(ADDRESS_1);
+        selector.markdown(ADDRESS_2);
+
+        // requests are still sent when every address is ejected
+        assertTrue(selector.selectAddress(Optional.empty(), ImmutableSet.of()).isPresent());
+    }
+
+    private static SimpleAddress selectAddress(SimpleAddressSelector selector)
+    {
+        return selector.selectAddress(Optional.empty(), ImmutableSet.of()).get();
+    }
+
+    @Test
+    public void testCachedResolution()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        AtomicInteger resolutions = new AtomicInteger();
+        AtomicReference<String> resolvedIp = new AtomicReference<>("127.0.0.1");
+        AtomicBoolean resolverFailing = new AtomicBoolean();
+        Queue<Runnable> refreshes = new ArrayDeque<>();
+
+        SimpleAddressSelector selector = new SimpleAddressSelector(
+                new SimpleAddressSelectorConfig()
+                        .setAddressesList(ImmutableList.of(HostAndPort.fromParts("example.com", 1)))
+                        .setAddressRefreshInterval(new Duration(10, SECONDS)),
+                ticker,
+                host -> {
+                    resolutions.incrementAndGet();
+                    if (resolverFailing.get()) {
+                        throw new UnknownHostException(host);
+                    }
+                    return new InetAddress[] {InetAddress.getByName(resolvedIp.get())};
+                },
+                refreshes::add);
+
+        // first selection resolves on the caller thread, later ones use the cached snapshot
+        assertEquals(selectAddress(selector), ADDRESS_1);
+        assertEquals(selectAddress(selector), ADDRESS_1);
+        assertEquals(resolutions.get(), 1);
+        assertTrue(refreshes.isEmpty());
+
+        // expired snapshot is still used while it is refreshed in the background
+        resolvedIp.set("127.0.0.2");
+        ticker.increment(10, SECONDS);
+        assertEquals(selectAddress(selector), ADDRESS_1);
+        assertEquals(selectAddress(selector), ADDRESS_1);
+        assertEquals(refreshes.size(), 1);
+        refreshes.remove().run();
+        assertEquals(resolutions.get(), 2);
+        assertEquals(selectAddress(selector), new SimpleAddress(HostAndPort.fromParts("127.0.0.2", 1)));
+
+        // failed resolution keeps the last known addresses
+        resolverFailing.set(true);
+        ticker.increment(10, SECONDS);
+        selectAddress(selector);
+        refreshes.remove().run();
+        assertEquals(selectAddress(selector), new SimpleAddress(HostAndPort.fromParts("127.0.0.2", 1)));
+        assertEquals(selector.getResolutionFailures().getTotalCount(), 1);
+        assertEquals(selector.getResolutionTime().getAllTime().getCount(), 3.0);
+    }
+
+    @Test
+    public void testAddressStatsPrunedOnRefresh()
+    {
+        TestingTicker ticker = new TestingTicker();
+        AtomicInteger lastOctet = new AtomicInteger(1);
+        Queue<Runnable> refreshes = new ArrayDeque<>();
+
+        SimpleAddressSelector selector = new SimpleAddressSelector(
+                new SimpleAddressSelectorConfig()
+                        .setAddressesList(ImmutableList.of(HostAndPort.fromParts("example.com", 1)))
+                        .setAddressRefreshInterval(new Duration(10, SECONDS)),
+                ticker,
+                host -> new InetAddress[] {InetAddress.getByName("127.0.0." + lastOctet.get())},
+                refreshes::add);
+
+        for (int i = 0; i < 10; i++) {
+            SimpleAddress address = selectAddress(selector);
+            assertEquals(address, new SimpleAddress(HostAndPort.fromParts("127.0.0." + lastOctet.get(), 1)));
+            selector.requestStarted(address);
+            selector.requestFinished(address, new Duration(1, MILLISECONDS), NORMAL);
+
+            // the host moves to another address
+            lastOctet.incrementAndGet();
+            ticker.increment(10, SECONDS);
+            selectAddress(selector);
+            refreshes.remove().run();
+            assertEquals(selector.getAddressStatsCount(), 0);
+        }
+    }
+
+    private static SimpleAddressSelector createSelector(TestingTicker ticker)
+    {
+        return new SimpleAddressSelector(
+                new SimpleAddressSelectorConfig()
+                        .setAddressesList(ImmutableList.of(ADDRESS_1.getHostAndPort(), ADDRESS_2.getHostAndPort()))
+                        .setLatencyDecayTime(new Duration(10, SECONDS))
+                        .setOutlierEjectionBaseTime(new Duration(1, SECONDS))
+                        .setOutlierEjectionMaxTime(new Duration(4, SECONDS)),
+                ticker,
+                InetAddress::getAllByName,
+                Runnable::run);
+    }
+}
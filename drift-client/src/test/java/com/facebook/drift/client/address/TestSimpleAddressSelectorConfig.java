@@ -18,6 +18,7 @@ package com.facebook.drift.client.address;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
+import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
 import java.util.Map;
@@ -25,6 +26,8 @@ import java.util.Map;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class TestSimpleAddressSelectorConfig
 {
@@ -33,7 +36,11 @@ public class TestSimpleAddressSelectorConfig
     {
         assertRecordedDefaults(recordDefaults(SimpleAddressSelectorConfig.class)
                 .setAddresses(null)
-                .setRetrySameAddress(true));
+                .setRetrySameAddress(true)
+                .setLatencyDecayTime(new Duration(10, SECONDS))
+                .setOutlierEjectionBaseTime(new Duration(5, SECONDS))
+                .setOutlierEjectionMaxTime(new Duration(2, MINUTES))
+                .setAddressRefreshInterval(new Duration(30, SECONDS)));
     }
 
     @Test
@@ -42,13 +49,21 @@ public class TestSimpleAddressSelectorConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("thrift.client.addresses", "abc:8080,xyz:8888")
                 .put("thrift.client.retry-same-address", "false")
+                .put("thrift.client.latency-decay-time", "1m")
+                .put("thrift.client.outlier-ejection.base-time", "7s")
+                .put("thrift.client.outlier-ejection.max-time", "9m")
+                .put("thrift.client.address-refresh-interval", "3m")
                 .build();
 
         SimpleAddressSelectorConfig expected = new SimpleAddressSelectorConfig()
                 .setAddressesList(ImmutableList.of(
                         HostAndPort.fromParts("abc", 8080),
                         HostAndPort.fromParts("xyz", 8888)))
-                .setRetrySameAddress(false);
+                .setRetrySameAddress(false)
+                .setLatencyDecayTime(new Duration(1, MINUTES))
+                .setOutlierEjectionBaseTime(new Duration(7, SECONDS))
+                .setOutlierEjectionMaxTime(new Duration(9, MINUTES))
+                .setAddressRefreshInterval(new Duration(3, MINUTES));
 
         assertFullMapping(properties, expected);
     }
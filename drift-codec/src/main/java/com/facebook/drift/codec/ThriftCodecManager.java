@@ -63,6 +63,12 @@ import java.util.Deque;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.DOUBLE_LIST_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.INTEGER_LIST_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.INTEGER_SET_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.LONG_DOUBLE_MAP_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.LONG_LIST_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.LONG_SET_CODEC;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Throwables.throwIfUnchecked;
@@ -184,6 +190,12 @@ public final class ThriftCodecManager
         addBuiltinCodec(new OptionalDoubleThriftCodec());
         addBuiltinCodec(new OptionalIntThriftCodec());
         addBuiltinCodec(new OptionalLongThriftCodec());
+        addBuiltinCodec(INTEGER_LIST_CODEC);
+        addBuiltinCodec(LONG_LIST_CODEC);
+        addBuiltinCodec(DOUBLE_LIST_CODEC);
+        addBuiltinCodec(INTEGER_SET_CODEC);
+        addBuiltinCodec(LONG_SET_CODEC);
+        addBuiltinCodec(LONG_DOUBLE_MAP_CODEC);
 
         for (ThriftCodec<?> codec : codecs) {
             addCodec(codec);
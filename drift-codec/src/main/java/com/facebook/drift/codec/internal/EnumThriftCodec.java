@@ -21,6 +21,7 @@ import com.facebook.drift.codec.metadata.ThriftType;
 import com.facebook.drift.protocol.TProtocolReader;
 import com.facebook.drift.protocol.TProtocolWriter;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import static java.lang.String.format;
@@ -36,11 +37,13 @@ public class EnumThriftCodec<T extends Enum<T>>
 {
     private final ThriftType type;
     private final ThriftEnumMetadata<T> enumMetadata;
+    private final T unknownEnumConstant;
 
     public EnumThriftCodec(ThriftType type)
     {
         this.type = type;
         enumMetadata = (ThriftEnumMetadata<T>) type.getEnumMetadata();
+        unknownEnumConstant = enumMetadata.getUnknownEnumConstant().orElse(null);
     }
 
     @Override
@@ -54,12 +57,11 @@ public class EnumThriftCodec<T extends Enum<T>>
             throws Exception
     {
         int enumValue = protocol.readI32();
-        T enumConstant = enumMetadata.getByEnumValue().get(enumValue);
+        T enumConstant = fromThriftValue(enumValue);
         if (enumConstant != null) {
             return enumConstant;
         }
-        return enumMetadata.getUnknownEnumConstant()
-                .orElseThrow(() -> new UnknownEnumValueException(format("Enum %s does not have a constant for value: %s", enumMetadata.getEnumClass().getName(), enumValue)));
+        throw new UnknownEnumValueException(format("Enum %s does not have a constant for value: %s", enumMetadata.getEnumClass().getName(), enumValue));
     }
 
     @Override
@@ -67,6 +69,26 @@ public class EnumThriftCodec<T extends Enum<T>>
             throws Exception
     {
         requireNonNull(enumConstant, "enumConstant is null");
-        protocol.writeI32(enumMetadata.getByEnumConstant().get(enumConstant));
+        protocol.writeI32(toThriftValue(enumConstant));
+    }
+
+    /**
+     * Converts a Thrift value to the enum constant, falling back to the unknown constant.
+     *
+     * @return the enum constant, or null if the value is unknown and the enum has no unknown constant
+     */
+    @Nullable
+    public final T fromThriftValue(int enumValue)
+    {
+        T enumConstant = enumMetadata.findByEnumValue(enumValue);
+        if (enumConstant != null) {
+            return enumConstant;
+        }
+        return unknownEnumConstant;
+    }
+
+    public final int toThriftValue(T enumConstant)
+    {
+        return enumMetadata.getEnumValue(enumConstant);
     }
 }
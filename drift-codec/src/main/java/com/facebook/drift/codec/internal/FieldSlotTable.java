@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.codec.internal;
+
+import javax.annotation.concurrent.Immutable;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Maps Thrift field ids to dense slots, so values of a struct or argument
+ * list can be stored in an array instead of a map keyed by boxed field ids.
+ * The slot of a field is its position in the list used to create the table.
+ */
+@Immutable
+public final class FieldSlotTable
+{
+    public static final int NO_SLOT = -1;
+
+    // ids spanning a larger range are looked up with a binary search instead of a direct index
+    private static final int MAX_DIRECT_RANGE = 256;
+
+    private final int size;
+    private final short minFieldId;
+    private final int[] directSlots;
+    private final short[] sortedFieldIds;
+    private final int[] sortedSlots;
+
+    public FieldSlotTable(List<Short> fieldIds)
+    {
+        this.size = fieldIds.size();
+
+        short min = Short.MAX_VALUE;
+        short max = Short.MIN_VALUE;
+        for (short fieldId : fieldIds) {
+            min = (short) Math.min(min, fieldId);
+            max = (short) Math.max(max, fieldId);
+        }
+        this.minFieldId = min;
+
+        if (size > 0 && max - min < MAX_DIRECT_RANGE) {
+            directSlots = new int[max - min + 1];
+            Arrays.fill(directSlots, NO_SLOT);
+            for (int slot = 0; slot < size; slot++) {
+                int index = fieldIds.get(slot) - min;
+                checkArgument(directSlots[index] == NO_SLOT, "Duplicate field id %s", fieldIds.get(slot));
+                directSlots[index] = slot;
+            }
+            sortedFieldIds = null;
+            sortedSlots = null;
+        }
+        else {
+            directSlots = null;
+            long[] entries = new long[size];
+            for (int slot = 0; slot < size; slot++) {
+                // sort by field id, keeping the slot in the low bits
+                entries[slot] = ((long) fieldIds.get(slot) << 32) | slot;
+            }
+            Arrays.sort(entries);
+            sortedFieldIds = new short[size];
+            sortedSlots = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedFieldIds[i] = (short) (entries[i] >> 32);
+                sortedSlots[i] = (int) entries[i];
+                checkArgument(i == 0 || sortedFieldIds[i - 1] != sortedFieldIds[i], "Duplicate field id %s", sortedFieldIds[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of slots in the table
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the slot of the field, or {@link #NO_SLOT} if the field is not in the table
+     */
+    public int getSlot(short fieldId)
+    {
+        if (directSlots != null) {
+            int index = fieldId - minFieldId;
+            if (index < 0 || index >= directSlots.length) {
+                return NO_SLOT;
+            }
+            return directSlots[index];
+        }
+        int index = Arrays.binarySearch(sortedFieldIds, fieldId);
+        if (index < 0) {
+            return NO_SLOT;
+        }
+        return sortedSlots[index];
+    }
+}
@@ -17,7 +17,7 @@ package com.facebook.drift.codec.internal;
 
 import com.facebook.drift.TException;
 import com.facebook.drift.codec.ThriftCodec;
-import com.facebook.drift.protocol.TField;
+import com.facebook.drift.protocol.TFieldHeader;
 import com.facebook.drift.protocol.TList;
 import com.facebook.drift.protocol.TMap;
 import com.facebook.drift.protocol.TProtocolReader;
@@ -29,8 +29,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -38,12 +37,22 @@ import java.util.Set;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
+import static com.google.common.collect.Sets.newHashSetWithExpectedSize;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 @NotThreadSafe
 public class ProtocolReader
 {
+    // the element count comes from the peer, so if the size of the input is not known,
+    // only this many elements are allocated before they are read
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
     private final TProtocolReader protocol;
-    private TField currentField;
+    // reused for every field, so reading a field header does not allocate
+    private final TFieldHeader currentField = new TFieldHeader();
+    private boolean hasCurrentField;
 
     public ProtocolReader(TProtocolReader protocol)
     {
@@ -54,17 +63,17 @@ public class ProtocolReader
             throws TException
     {
         protocol.readStructBegin();
-        currentField = null;
+        hasCurrentField = false;
     }
 
     public void readStructEnd()
             throws TException
     {
-        if (currentField == null || currentField.getId() != TType.STOP) {
+        if (!hasCurrentField || currentField.getId() != TType.STOP) {
             throw new IllegalStateException("Some fields have not been consumed");
         }
 
-        currentField = null;
+        hasCurrentField = false;
         protocol.readStructEnd();
     }
 
@@ -72,26 +81,27 @@ public class ProtocolReader
             throws TException
     {
         // if the current field is a stop record, the caller must call readStructEnd.
-        if (currentField != null && currentField.getId() == TType.STOP) {
+        if (hasCurrentField && currentField.getId() == TType.STOP) {
             throw new NoSuchElementException();
         }
-        checkState(currentField == null, "Current field was not read");
+        checkState(!hasCurrentField, "Current field was not read");
 
         // advance to the next field
-        currentField = protocol.readFieldBegin();
+        protocol.readFieldBegin(currentField);
+        hasCurrentField = true;
 
         return currentField.getType() != TType.STOP;
     }
 
     public short getFieldId()
     {
-        checkState(currentField != null, "No current field");
+        checkState(hasCurrentField, "No current field");
         return currentField.getId();
     }
 
     public byte getFieldType()
     {
-        checkState(currentField != null, "No current field");
+        checkState(hasCurrentField, "No current field");
         return currentField.getType();
     }
 
@@ -100,7 +110,7 @@ public class ProtocolReader
     {
         TProtocolUtil.skip(protocol, currentField.getType());
         protocol.readFieldEnd();
-        currentField = null;
+        hasCurrentField = false;
     }
 
     public Object readField(ThriftCodec<?> codec)
@@ -109,7 +119,7 @@ public class ProtocolReader
         if (!checkReadState(codec.getType().getProtocolType().getType())) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         Object fieldValue = codec.read(protocol);
         protocol.readFieldEnd();
         return fieldValue;
@@ -121,7 +131,7 @@ public class ProtocolReader
         if (!checkReadState(TType.STRING)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         ByteBuffer fieldValue = protocol.readBinary();
         protocol.readFieldEnd();
         return fieldValue;
@@ -133,7 +143,7 @@ public class ProtocolReader
         if (!checkReadState(TType.STRING)) {
             return 0;
         }
-        currentField = null;
+        hasCurrentField = false;
         int length = protocol.readBinary(buf, offset);
         protocol.readFieldEnd();
         return length;
@@ -145,7 +155,7 @@ public class ProtocolReader
         if (!checkReadState(TType.BOOL)) {
             return false;
         }
-        currentField = null;
+        hasCurrentField = false;
         boolean fieldValue = protocol.readBool();
         protocol.readFieldEnd();
         return fieldValue;
@@ -157,7 +167,7 @@ public class ProtocolReader
         if (!checkReadState(TType.BYTE)) {
             return 0;
         }
-        currentField = null;
+        hasCurrentField = false;
         byte fieldValue = protocol.readByte();
         protocol.readFieldEnd();
         return fieldValue;
@@ -169,7 +179,7 @@ public class ProtocolReader
         if (!checkReadState(TType.DOUBLE)) {
             return 0;
         }
-        currentField = null;
+        hasCurrentField = false;
         double fieldValue = protocol.readDouble();
         protocol.readFieldEnd();
         return fieldValue;
@@ -181,7 +191,7 @@ public class ProtocolReader
         if (!checkReadState(TType.I16)) {
             return 0;
         }
-        currentField = null;
+        hasCurrentField = false;
         short fieldValue = protocol.readI16();
         protocol.readFieldEnd();
         return fieldValue;
@@ -193,7 +203,7 @@ public class ProtocolReader
         if (!checkReadState(TType.I32)) {
             return 0;
         }
-        currentField = null;
+        hasCurrentField = false;
         int fieldValue = protocol.readI32();
         protocol.readFieldEnd();
         return fieldValue;
@@ -205,7 +215,7 @@ public class ProtocolReader
         if (!checkReadState(TType.I64)) {
             return 0;
         }
-        currentField = null;
+        hasCurrentField = false;
         long fieldValue = protocol.readI64();
         protocol.readFieldEnd();
         return fieldValue;
@@ -217,7 +227,7 @@ public class ProtocolReader
         if (!checkReadState(TType.STRING)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         String fieldValue = protocol.readString();
         protocol.readFieldEnd();
         return fieldValue;
@@ -229,7 +239,7 @@ public class ProtocolReader
         if (!checkReadState(TType.STRUCT)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         T fieldValue = codec.read(protocol);
         protocol.readFieldEnd();
         return fieldValue;
@@ -241,7 +251,7 @@ public class ProtocolReader
         if (!checkReadState(TType.LIST)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         boolean[] fieldValue = readBoolArray();
         protocol.readFieldEnd();
         return fieldValue;
@@ -253,7 +263,7 @@ public class ProtocolReader
         if (!checkReadState(TType.LIST)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         short[] fieldValue = readI16Array();
         protocol.readFieldEnd();
         return fieldValue;
@@ -265,7 +275,7 @@ public class ProtocolReader
         if (!checkReadState(TType.LIST)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         int[] fieldValue = readI32Array();
         protocol.readFieldEnd();
         return fieldValue;
@@ -277,7 +287,7 @@ public class ProtocolReader
         if (!checkReadState(TType.LIST)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         long[] fieldValue = readI64Array();
         protocol.readFieldEnd();
         return fieldValue;
@@ -289,7 +299,7 @@ public class ProtocolReader
         if (!checkReadState(TType.LIST)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         double[] fieldValue = readDoubleArray();
         protocol.readFieldEnd();
         return fieldValue;
@@ -301,7 +311,7 @@ public class ProtocolReader
         if (!checkReadState(TType.SET)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         Set<E> fieldValue = setCodec.read(protocol);
         protocol.readFieldEnd();
         return fieldValue;
@@ -313,7 +323,7 @@ public class ProtocolReader
         if (!checkReadState(TType.LIST)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         List<E> read = listCodec.read(protocol);
         protocol.readFieldEnd();
         return read;
@@ -325,7 +335,7 @@ public class ProtocolReader
         if (!checkReadState(TType.MAP)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         Map<K, V> fieldValue = mapCodec.read(protocol);
         protocol.readFieldEnd();
         return fieldValue;
@@ -337,7 +347,7 @@ public class ProtocolReader
         if (!checkReadState(TType.I32)) {
             return null;
         }
-        currentField = null;
+        hasCurrentField = false;
         T fieldValue = null;
         try {
             fieldValue = enumCodec.read(protocol);
@@ -349,6 +359,18 @@ public class ProtocolReader
         return fieldValue;
     }
 
+    public <T extends Enum<T>> T readEnumField(EnumThriftCodec<T> enumCodec)
+            throws TException
+    {
+        if (!checkReadState(TType.I32)) {
+            return null;
+        }
+        hasCurrentField = false;
+        T fieldValue = enumCodec.fromThriftValue(protocol.readI32());
+        protocol.readFieldEnd();
+        return fieldValue;
+    }
+
     public ByteBuffer readBinary()
             throws TException
     {
@@ -401,8 +423,11 @@ public class ProtocolReader
             throws TException
     {
         TList list = protocol.readListBegin();
-        boolean[] array = new boolean[list.getSize()];
+        boolean[] array = new boolean[initialCapacity(list)];
         for (int i = 0; i < list.getSize(); i++) {
+            if (i == array.length) {
+                array = Arrays.copyOf(array, grownCapacity(array.length, list.getSize()));
+            }
             array[i] = readBool();
         }
         protocol.readListEnd();
@@ -413,8 +438,11 @@ public class ProtocolReader
             throws TException
     {
         TList list = protocol.readListBegin();
-        short[] array = new short[list.getSize()];
+        short[] array = new short[initialCapacity(list)];
         for (int i = 0; i < list.getSize(); i++) {
+            if (i == array.length) {
+                array = Arrays.copyOf(array, grownCapacity(array.length, list.getSize()));
+            }
             array[i] = readI16();
         }
         protocol.readListEnd();
@@ -425,9 +453,14 @@ public class ProtocolReader
             throws TException
     {
         TList list = protocol.readListBegin();
-        int[] array = new int[list.getSize()];
-        for (int i = 0; i < list.getSize(); i++) {
-            array[i] = readI32();
+        int[] array = new int[initialCapacity(list)];
+        int read = 0;
+        while (read < list.getSize()) {
+            if (read == array.length) {
+                array = Arrays.copyOf(array, grownCapacity(array.length, list.getSize()));
+            }
+            protocol.readI32Array(array, read, array.length - read);
+            read = array.length;
         }
         protocol.readListEnd();
         return array;
@@ -437,9 +470,14 @@ public class ProtocolReader
             throws TException
     {
         TList list = protocol.readListBegin();
-        long[] array = new long[list.getSize()];
-        for (int i = 0; i < list.getSize(); i++) {
-            array[i] = readI64();
+        long[] array = new long[initialCapacity(list)];
+        int read = 0;
+        while (read < list.getSize()) {
+            if (read == array.length) {
+                array = Arrays.copyOf(array, grownCapacity(array.length, list.getSize()));
+            }
+            protocol.readI64Array(array, read, array.length - read);
+            read = array.length;
         }
         protocol.readListEnd();
         return array;
@@ -449,19 +487,91 @@ public class ProtocolReader
             throws TException
     {
         TList list = protocol.readListBegin();
-        double[] array = new double[list.getSize()];
-        for (int i = 0; i < list.getSize(); i++) {
-            array[i] = readDouble();
+        double[] array = new double[initialCapacity(list)];
+        int read = 0;
+        while (read < list.getSize()) {
+            if (read == array.length) {
+                array = Arrays.copyOf(array, grownCapacity(array.length, list.getSize()));
+            }
+            protocol.readDoubleArray(array, read, array.length - read);
+            read = array.length;
         }
         protocol.readListEnd();
         return array;
     }
 
+    public List<Integer> readI32List()
+            throws TException
+    {
+        return readList(this::readI32);
+    }
+
+    public List<Long> readI64List()
+            throws TException
+    {
+        return readList(this::readI64);
+    }
+
+    public List<Double> readDoubleList()
+            throws TException
+    {
+        return readList(this::readDouble);
+    }
+
+    public Set<Integer> readI32Set()
+            throws TException
+    {
+        return readSet(this::readI32);
+    }
+
+    public Set<Long> readI64Set()
+            throws TException
+    {
+        return readSet(this::readI64);
+    }
+
+    public Map<Long, Double> readI64DoubleMap()
+            throws TException
+    {
+        TMap tMap = protocol.readMapBegin();
+        Map<Long, Double> map = newHashMapWithExpectedSize(initialCapacity(tMap));
+        for (int i = 0; i < tMap.getSize(); i++) {
+            long key = readI64();
+            map.put(key, readDouble());
+        }
+        protocol.readMapEnd();
+        return map;
+    }
+
+    private <E> List<E> readList(ElementReader<E> elementReader)
+            throws TException
+    {
+        TList tList = protocol.readListBegin();
+        List<E> list = new ArrayList<>(initialCapacity(tList));
+        for (int i = 0; i < tList.getSize(); i++) {
+            list.add(elementReader.read());
+        }
+        protocol.readListEnd();
+        return list;
+    }
+
+    private <E> Set<E> readSet(ElementReader<E> elementReader)
+            throws TException
+    {
+        TSet tSet = protocol.readSetBegin();
+        Set<E> set = newHashSetWithExpectedSize(initialCapacity(tSet));
+        for (int i = 0; i < tSet.getSize(); i++) {
+            set.add(elementReader.read());
+        }
+        protocol.readSetEnd();
+        return set;
+    }
+
     public <E> Set<E> readSet(ThriftCodec<E> elementCodec)
             throws Exception
     {
         TSet tSet = protocol.readSetBegin();
-        Set<E> set = new HashSet<>();
+        Set<E> set = newHashSetWithExpectedSize(initialCapacity(tSet));
         for (int i = 0; i < tSet.getSize(); i++) {
             try {
                 E element = elementCodec.read(protocol);
@@ -479,7 +589,7 @@ public class ProtocolReader
             throws Exception
     {
         TList tList = protocol.readListBegin();
-        List<E> list = new ArrayList<>();
+        List<E> list = new ArrayList<>(initialCapacity(tList));
         for (int i = 0; i < tList.getSize(); i++) {
             try {
                 E element = elementCodec.read(protocol);
@@ -497,7 +607,7 @@ public class ProtocolReader
             throws Exception
     {
         TMap tMap = protocol.readMapBegin();
-        Map<K, V> map = new HashMap<>();
+        Map<K, V> map = newHashMapWithExpectedSize(initialCapacity(tMap));
         for (int i = 0; i < tMap.getSize(); i++) {
             try {
                 K key = keyCodec.read(protocol);
@@ -515,12 +625,12 @@ public class ProtocolReader
     private boolean checkReadState(byte expectedType)
             throws TException
     {
-        checkState(currentField != null, "No current field");
+        checkState(hasCurrentField, "No current field");
 
         if (currentField.getType() != expectedType) {
             TProtocolUtil.skip(protocol, currentField.getType());
             protocol.readFieldEnd();
-            currentField = null;
+            hasCurrentField = false;
             return false;
         }
 
@@ -531,7 +641,46 @@ public class ProtocolReader
     public String toString()
     {
         return toStringHelper(this)
-                .add("currentField", currentField)
+                .add("currentFieldId", hasCurrentField ? currentField.getId() : null)
+                .add("currentFieldType", hasCurrentField ? currentField.getType() : null)
                 .toString();
     }
+
+    private int initialCapacity(TList list)
+    {
+        return initialCapacity(list.getSize(), protocol.getMinSerializedSize(list.getType()));
+    }
+
+    private int initialCapacity(TSet set)
+    {
+        return initialCapacity(set.getSize(), protocol.getMinSerializedSize(set.getType()));
+    }
+
+    private int initialCapacity(TMap map)
+    {
+        return initialCapacity(map.getSize(), protocol.getMinSerializedSize(map.getKeyType()) + protocol.getMinSerializedSize(map.getValueType()));
+    }
+
+    /**
+     * Bounds the number of elements allocated before they are read by the number
+     * of elements the rest of the input can hold, or by a constant if the size of
+     * the input is not known.
+     */
+    private int initialCapacity(int size, int minElementSize)
+    {
+        int remainingBytes = protocol.getRemainingBytes();
+        int maxSize = (remainingBytes < 0) ? MAX_INITIAL_CAPACITY : remainingBytes / max(minElementSize, 1);
+        return max(0, min(size, maxSize));
+    }
+
+    private static int grownCapacity(int capacity, int size)
+    {
+        return (int) min(size, max(capacity * 2L, 16));
+    }
+
+    private interface ElementReader<E>
+    {
+        E read()
+                throws TException;
+    }
 }
@@ -258,6 +258,18 @@ public class ProtocolWriter
         protocol.writeFieldEnd();
     }
 
+    public <T extends Enum<T>> void writeEnumField(String name, short id, EnumThriftCodec<T> codec, T enumValue)
+            throws TException
+    {
+        if (enumValue == null) {
+            return;
+        }
+
+        protocol.writeFieldBegin(new TField(name, TType.I32, id));
+        protocol.writeI32(codec.toThriftValue(enumValue));
+        protocol.writeFieldEnd();
+    }
+
     public void writeBinary(ByteBuffer buf)
             throws TException
     {
@@ -336,9 +348,7 @@ public class ProtocolWriter
             throws TException
     {
         protocol.writeListBegin(new TList(TType.I32, array.length));
-        for (int i32 : array) {
-            writeI32(i32);
-        }
+        protocol.writeI32Array(array, 0, array.length);
         protocol.writeListEnd();
     }
 
@@ -346,9 +356,7 @@ public class ProtocolWriter
             throws TException
     {
         protocol.writeListBegin(new TList(TType.I64, array.length));
-        for (long i64 : array) {
-            writeI64(i64);
-        }
+        protocol.writeI64Array(array, 0, array.length);
         protocol.writeListEnd();
     }
 
@@ -356,12 +364,71 @@ public class ProtocolWriter
             throws TException
     {
         protocol.writeListBegin(new TList(TType.DOUBLE, array.length));
-        for (double doubleValue : array) {
-            writeDouble(doubleValue);
+        protocol.writeDoubleArray(array, 0, array.length);
+        protocol.writeListEnd();
+    }
+
+    public void writeI32List(List<Integer> list)
+            throws TException
+    {
+        writeList(TType.I32, list, this::writeI32);
+    }
+
+    public void writeI64List(List<Long> list)
+            throws TException
+    {
+        writeList(TType.I64, list, this::writeI64);
+    }
+
+    public void writeDoubleList(List<Double> list)
+            throws TException
+    {
+        writeList(TType.DOUBLE, list, this::writeDouble);
+    }
+
+    public void writeI32Set(Set<Integer> set)
+            throws TException
+    {
+        writeSet(TType.I32, set, this::writeI32);
+    }
+
+    public void writeI64Set(Set<Long> set)
+            throws TException
+    {
+        writeSet(TType.I64, set, this::writeI64);
+    }
+
+    public void writeI64DoubleMap(Map<Long, Double> map)
+            throws TException
+    {
+        protocol.writeMapBegin(new TMap(TType.I64, TType.DOUBLE, map.size()));
+        for (Map.Entry<Long, Double> entry : map.entrySet()) {
+            writeI64(entry.getKey());
+            writeDouble(entry.getValue());
+        }
+        protocol.writeMapEnd();
+    }
+
+    private <E> void writeList(byte elementType, List<E> list, ElementWriter<E> elementWriter)
+            throws TException
+    {
+        protocol.writeListBegin(new TList(elementType, list.size()));
+        for (E element : list) {
+            elementWriter.write(element);
         }
         protocol.writeListEnd();
     }
 
+    private <E> void writeSet(byte elementType, Set<E> set, ElementWriter<E> elementWriter)
+            throws TException
+    {
+        protocol.writeSetBegin(new TSet(elementType, set.size()));
+        for (E element : set) {
+            elementWriter.write(element);
+        }
+        protocol.writeSetEnd();
+    }
+
     public <T> void writeSet(ThriftCodec<T> elementCodec, Set<T> set)
             throws Exception
     {
@@ -410,4 +477,10 @@ public class ProtocolWriter
 
         protocol.writeMapEnd();
     }
+
+    private interface ElementWriter<E>
+    {
+        void write(E element)
+                throws TException;
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.codec.internal.builtin;
+
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.internal.ProtocolReader;
+import com.facebook.drift.codec.internal.ProtocolWriter;
+import com.facebook.drift.codec.metadata.ThriftType;
+import com.facebook.drift.protocol.TProtocolReader;
+import com.facebook.drift.protocol.TProtocolWriter;
+
+import javax.annotation.concurrent.Immutable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Codec for collections of boxed numbers, which reads and writes the elements directly
+ * instead of calling a coercion codec for every element.
+ */
+@Immutable
+public final class BoxedCollectionThriftCodec<T>
+        implements ThriftCodec<T>
+{
+    public static final BoxedCollectionThriftCodec<List<Integer>> INTEGER_LIST_CODEC = new BoxedCollectionThriftCodec<>(
+            ThriftType.list(ThriftType.I32.coerceTo(Integer.class)),
+            ProtocolReader::readI32List,
+            ProtocolWriter::writeI32List);
+
+    public static final BoxedCollectionThriftCodec<List<Long>> LONG_LIST_CODEC = new BoxedCollectionThriftCodec<>(
+            ThriftType.list(ThriftType.I64.coerceTo(Long.class)),
+            ProtocolReader::readI64List,
+            ProtocolWriter::writeI64List);
+
+    public static final BoxedCollectionThriftCodec<List<Double>> DOUBLE_LIST_CODEC = new BoxedCollectionThriftCodec<>(
+            ThriftType.list(ThriftType.DOUBLE.coerceTo(Double.class)),
+            ProtocolReader::readDoubleList,
+            ProtocolWriter::writeDoubleList);
+
+    public static final BoxedCollectionThriftCodec<Set<Integer>> INTEGER_SET_CODEC = new BoxedCollectionThriftCodec<>(
+            ThriftType.set(ThriftType.I32.coerceTo(Integer.class)),
+            ProtocolReader::readI32Set,
+            ProtocolWriter::writeI32Set);
+
+    public static final BoxedCollectionThriftCodec<Set<Long>> LONG_SET_CODEC = new BoxedCollectionThriftCodec<>(
+            ThriftType.set(ThriftType.I64.coerceTo(Long.class)),
+            ProtocolReader::readI64Set,
+            ProtocolWriter::writeI64Set);
+
+    public static final BoxedCollectionThriftCodec<Map<Long, Double>> LONG_DOUBLE_MAP_CODEC = new BoxedCollectionThriftCodec<>(
+            ThriftType.map(ThriftType.I64.coerceTo(Long.class), ThriftType.DOUBLE.coerceTo(Double.class)),
+            ProtocolReader::readI64DoubleMap,
+            ProtocolWriter::writeI64DoubleMap);
+
+    private final ThriftType type;
+    private final CollectionReader<T> reader;
+    private final CollectionWriter<T> writer;
+
+    private BoxedCollectionThriftCodec(ThriftType type, CollectionReader<T> reader, CollectionWriter<T> writer)
+    {
+        this.type = requireNonNull(type, "type is null");
+        this.reader = requireNonNull(reader, "reader is null");
+        this.writer = requireNonNull(writer, "writer is null");
+    }
+
+    @Override
+    public ThriftType getType()
+    {
+        return type;
+    }
+
+    @Override
+    public T read(TProtocolReader protocol)
+            throws Exception
+    {
+        requireNonNull(protocol, "protocol is null");
+        return reader.read(new ProtocolReader(protocol));
+    }
+
+    @Override
+    public void write(T value, TProtocolWriter protocol)
+            throws Exception
+    {
+        requireNonNull(value, "value is null");
+        requireNonNull(protocol, "protocol is null");
+        writer.write(new ProtocolWriter(protocol), value);
+    }
+
+    private interface CollectionReader<T>
+    {
+        T read(ProtocolReader reader)
+                throws Exception;
+    }
+
+    private interface CollectionWriter<T>
+    {
+        void write(ProtocolWriter writer, T value)
+                throws Exception;
+    }
+}
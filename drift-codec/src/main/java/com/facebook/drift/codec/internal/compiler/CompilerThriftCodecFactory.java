@@ -25,11 +25,18 @@ import com.google.inject.Inject;
 
 import javax.annotation.concurrent.Immutable;
 
+import java.nio.file.Path;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static com.facebook.drift.codec.internal.compiler.PrecompiledThriftCodecs.loadPrecompiledCodec;
+import static java.util.Objects.requireNonNull;
 
 /**
- * Creates Thrift codecs directly in byte code.
+ * Creates Thrift codecs directly in byte code, or loads the codecs that were
+ * generated at build time (see {@link PrecompiledThriftCodecs}).
  */
 @Immutable
 public class CompilerThriftCodecFactory
@@ -37,6 +44,8 @@ public class CompilerThriftCodecFactory
 {
     private final boolean debug;
     private final DynamicClassLoader classLoader;
+    private final Optional<Path> classFileDirectory;
+    private final Predicate<Class<?>> classFileFilter;
 
     @Inject
     public CompilerThriftCodecFactory(@ForCompiler ClassLoader parent)
@@ -50,19 +59,53 @@ public class CompilerThriftCodecFactory
     }
 
     public CompilerThriftCodecFactory(boolean debug, ClassLoader parent)
+    {
+        this(debug, parent, Optional.empty());
+    }
+
+    /**
+     * @param classFileDirectory if present, the class files of all generated codecs are also
+     * written to this directory so they can be loaded ahead of time
+     * (see {@link PrecompiledThriftCodecs})
+     */
+    public CompilerThriftCodecFactory(boolean debug, ClassLoader parent, Optional<Path> classFileDirectory)
+    {
+        this(debug, parent, classFileDirectory, structClass -> true);
+    }
+
+    /**
+     * @param classFileDirectory if present, the class files of the generated codecs for the
+     * structs accepted by the filter are also written to this directory so they can be loaded
+     * ahead of time (see {@link PrecompiledThriftCodecs})
+     * @param classFileFilter the struct classes to write codec class files for
+     */
+    public CompilerThriftCodecFactory(boolean debug, ClassLoader parent, Optional<Path> classFileDirectory, Predicate<Class<?>> classFileFilter)
     {
         this.debug = debug;
         this.classLoader = getPrivilegedClassLoader(parent);
+        this.classFileDirectory = requireNonNull(classFileDirectory, "classFileDirectory is null");
+        this.classFileFilter = requireNonNull(classFileFilter, "classFileFilter is null");
     }
 
     @Override
     public ThriftCodec<?> generateThriftTypeCodec(ThriftCodecManager codecManager, ThriftStructMetadata metadata)
     {
+        Optional<Path> structClassFileDirectory = classFileDirectory.filter(directory -> classFileFilter.test(metadata.getStructClass()));
+
+        // prefer codecs generated at build time, unless this factory is the one generating them
+        if (!structClassFileDirectory.isPresent()) {
+            Optional<ThriftCodec<?>> precompiledCodec = loadPrecompiledCodec(codecManager, metadata);
+            if (precompiledCodec.isPresent()) {
+                return precompiledCodec.get();
+            }
+        }
+
         ThriftCodecByteCodeGenerator<?> generator = new ThriftCodecByteCodeGenerator<>(
                 codecManager,
                 metadata,
                 classLoader,
-                debug);
+                debug,
+                structClassFileDirectory);
         return generator.getThriftCodec();
     }
 
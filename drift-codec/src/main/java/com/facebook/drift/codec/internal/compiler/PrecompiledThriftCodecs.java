@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.codec.internal.compiler;
+
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.metadata.ThriftStructMetadata;
+
+import java.lang.reflect.Constructor;
+import java.util.Optional;
+
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.METADATA_FINGERPRINT_FIELD;
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.getCodecClassName;
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.getConstructorArguments;
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.getMetadataFingerprint;
+
+/**
+ * Loads struct codecs that were generated at build time by {@link CompilerThriftCodecFactory}
+ * and packaged next to the struct classes. A precompiled codec is only used if it was generated
+ * from the same struct metadata, according to the fingerprint stored in the codec class, and if
+ * its constructor matches the codecs the manager provides for the struct fields; otherwise the
+ * caller is expected to generate the codec at runtime.
+ */
+public final class PrecompiledThriftCodecs
+{
+    private PrecompiledThriftCodecs() {}
+
+    public static Optional<ThriftCodec<?>> loadPrecompiledCodec(ThriftCodecManager codecManager, ThriftStructMetadata metadata)
+    {
+        ClassLoader classLoader = metadata.getStructClass().getClassLoader();
+        if (classLoader == null) {
+            return Optional.empty();
+        }
+        return loadPrecompiledCodec(codecManager, metadata, classLoader);
+    }
+
+    public static Optional<ThriftCodec<?>> loadPrecompiledCodec(ThriftCodecManager codecManager, ThriftStructMetadata metadata, ClassLoader classLoader)
+    {
+        Constructor<?> constructor;
+        try {
+            Class<?> codecClass = Class.forName(getCodecClassName(metadata), true, classLoader);
+            if (!ThriftCodec.class.isAssignableFrom(codecClass) || codecClass.getConstructors().length != 1) {
+                return Optional.empty();
+            }
+            // the codec was generated from a different version of the struct
+            if (!getMetadataFingerprint(metadata).equals(codecClass.getField(METADATA_FINGERPRINT_FIELD).get(null))) {
+                return Optional.empty();
+            }
+            constructor = codecClass.getConstructors()[0];
+        }
+        catch (NoSuchFieldException | IllegalAccessException e) {
+            // generated by a version without fingerprints
+            return Optional.empty();
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            // not precompiled, or compiled against codecs that are not available
+            return Optional.empty();
+        }
+
+        Object[] arguments = getConstructorArguments(codecManager, metadata);
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        if (parameterTypes.length != arguments.length) {
+            return Optional.empty();
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            // the codec was generated against a different set of field codecs
+            if (!parameterTypes[i].isInstance(arguments[i])) {
+                return Optional.empty();
+            }
+        }
+
+        try {
+            return Optional.of((ThriftCodec<?>) constructor.newInstance(arguments));
+        }
+        catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.facebook.airlift.bytecode.instruction.LabelNode;
 import com.facebook.drift.codec.ThriftCodec;
 import com.facebook.drift.codec.ThriftCodecManager;
 import com.facebook.drift.codec.ThriftProtocolType;
+import com.facebook.drift.codec.internal.EnumThriftCodec;
 import com.facebook.drift.codec.internal.ProtocolReader;
 import com.facebook.drift.codec.internal.ProtocolWriter;
 import com.facebook.drift.codec.metadata.DefaultThriftTypeReference;
@@ -53,6 +54,7 @@ import com.facebook.drift.protocol.TProtocolReader;
 import com.facebook.drift.protocol.TProtocolWriter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
 import com.google.common.reflect.TypeToken;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -63,6 +65,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -78,6 +81,7 @@ import static com.facebook.airlift.bytecode.Access.BRIDGE;
 import static com.facebook.airlift.bytecode.Access.FINAL;
 import static com.facebook.airlift.bytecode.Access.PRIVATE;
 import static com.facebook.airlift.bytecode.Access.PUBLIC;
+import static com.facebook.airlift.bytecode.Access.STATIC;
 import static com.facebook.airlift.bytecode.Access.SUPER;
 import static com.facebook.airlift.bytecode.Access.SYNTHETIC;
 import static com.facebook.airlift.bytecode.Access.a;
@@ -96,6 +100,7 @@ import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.isNot
 import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.isNull;
 import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.newArray;
 import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.newInstance;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.setStatic;
 import static com.facebook.drift.codec.ThriftProtocolType.BINARY;
 import static com.facebook.drift.codec.ThriftProtocolType.BOOL;
 import static com.facebook.drift.codec.ThriftProtocolType.BYTE;
@@ -112,6 +117,7 @@ import static com.facebook.drift.codec.ThriftProtocolType.STRUCT;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.joining;
 
 @NotThreadSafe
@@ -119,6 +125,19 @@ public class ThriftCodecByteCodeGenerator<T>
 {
     private static final String PACKAGE = "$drift";
 
+    /**
+     * Name of the public static field holding the {@link #getMetadataFingerprint metadata fingerprint}
+     * of the struct the codec class was generated for.
+     */
+    public static final String METADATA_FINGERPRINT_FIELD = "METADATA_FINGERPRINT";
+
+    /**
+     * Version of the generated code, which is part of the metadata fingerprint. It must be
+     * incremented whenever the generated code changes, so codecs generated at build time by
+     * an older version are not used.
+     */
+    private static final int GENERATOR_VERSION = 1;
+
     private static final Map<ThriftProtocolType, Method> READ_METHODS;
     private static final Map<ThriftProtocolType, Method> WRITE_METHODS;
 
@@ -128,6 +147,9 @@ public class ThriftCodecByteCodeGenerator<T>
     private static final Method OPTIONAL_READ_METHOD;
     private static final Method OPTIONAL_WRITE_METHOD;
 
+    private static final Method ENUM_TABLE_READ_METHOD;
+    private static final Method ENUM_TABLE_WRITE_METHOD;
+
     private final ThriftCodecManager codecManager;
     private final ThriftStructMetadata metadata;
     private final ParameterizedType structType;
@@ -141,13 +163,27 @@ public class ThriftCodecByteCodeGenerator<T>
 
     private final ThriftCodec<T> thriftCodec;
 
+    public ThriftCodecByteCodeGenerator(
+            ThriftCodecManager codecManager,
+            ThriftStructMetadata metadata,
+            DynamicClassLoader classLoader,
+            boolean debug)
+    {
+        this(codecManager, metadata, classLoader, debug, Optional.empty());
+    }
+
+    /**
+     * @param classFileDirectory if present, the class file of the generated codec is also
+     * written to this directory so it can be packaged and loaded ahead of time
+     */
     @SuppressWarnings("unchecked")
     @SuppressFBWarnings("DM_DEFAULT_ENCODING")
     public ThriftCodecByteCodeGenerator(
             ThriftCodecManager codecManager,
             ThriftStructMetadata metadata,
             DynamicClassLoader classLoader,
-            boolean debug)
+            boolean debug,
+            Optional<Path> classFileDirectory)
     {
         this.codecManager = codecManager;
         this.metadata = metadata;
@@ -161,6 +197,7 @@ public class ThriftCodecByteCodeGenerator<T>
                 type(ThriftCodec.class, structType));
 
         // declare the class fields
+        declareMetadataFingerprintField();
         typeField = declareTypeField();
         codecFields = declareCodecFields();
 
@@ -195,6 +232,7 @@ public class ThriftCodecByteCodeGenerator<T>
                 .runAsmVerifier(debug)
                 .dumpRawBytecode(debug)
                 .outputTo(new PrintWriter(System.out))
+                .dumpClassFilesTo(classFileDirectory)
                 .defineClass(classDefinition, Object.class);
 
         // instantiate the class
@@ -213,6 +251,98 @@ public class ThriftCodecByteCodeGenerator<T>
         return thriftCodec;
     }
 
+    /**
+     * Gets the binary name of the codec class generated for the specified struct.
+     */
+    public static String getCodecClassName(ThriftStructMetadata metadata)
+    {
+        return toCodecType(metadata).getJavaClassName();
+    }
+
+    /**
+     * Gets the arguments for the constructor of the codec class generated for the specified
+     * struct: the struct ThriftType followed by the delegate codecs in field order.
+     */
+    public static Object[] getConstructorArguments(ThriftCodecManager codecManager, ThriftStructMetadata metadata)
+    {
+        List<Object> arguments = new ArrayList<>();
+        arguments.add(ThriftType.struct(metadata));
+        for (ThriftFieldMetadata fieldMetadata : metadata.getFields()) {
+            if (needsCodec(fieldMetadata)) {
+                arguments.add(codecManager.getCodec(fieldMetadata.getThriftType()));
+            }
+        }
+        return arguments.toArray();
+    }
+
+    /**
+     * Gets a fingerprint of the struct metadata the codec is generated from: the struct and
+     * builder types, the field ids, names, requiredness and types, and the members used to
+     * inject, extract and coerce the field values, and the version of the generator. Codecs
+     * generated for different metadata, or by a different generator, have different fingerprints.
+     */
+    public static String getMetadataFingerprint(ThriftStructMetadata metadata)
+    {
+        StringBuilder description = new StringBuilder()
+                .append("generator ").append(GENERATOR_VERSION).append('\n')
+                .append(metadata.getMetadataType()).append(' ')
+                .append(metadata.getStructType().getTypeName()).append('\n');
+        if (metadata.getBuilderType() != null) {
+            description.append("builder ").append(metadata.getBuilderType().getTypeName()).append('\n');
+        }
+        metadata.getBuilderMethod().ifPresent(builderMethod ->
+                description.append("builderMethod ").append(builderMethod.getMethod().toGenericString()).append('\n'));
+        metadata.getConstructorInjection().ifPresent(constructorInjection ->
+                description.append("constructor ").append(constructorInjection.getConstructor().toGenericString()).append('\n'));
+        for (ThriftMethodInjection methodInjection : metadata.getMethodInjections()) {
+            description.append("method ").append(methodInjection.getMethod().toGenericString()).append('\n');
+        }
+
+        for (ThriftFieldMetadata field : metadata.getFields()) {
+            ThriftType thriftType = field.getThriftType();
+            description.append("field ")
+                    .append(field.getId()).append(' ')
+                    .append(field.getName()).append(' ')
+                    .append(field.getRequiredness()).append(' ')
+                    .append(field.getType()).append(' ')
+                    .append(thriftType.getProtocolType()).append(' ')
+                    .append(thriftType.getJavaType().getTypeName()).append('\n');
+            for (ThriftInjection injection : field.getInjections()) {
+                if (injection instanceof ThriftFieldInjection) {
+                    description.append("  inject ").append(((ThriftFieldInjection) injection).getField().toGenericString()).append('\n');
+                }
+                else if (injection instanceof ThriftParameterInjection) {
+                    ThriftParameterInjection parameter = (ThriftParameterInjection) injection;
+                    description.append("  inject parameter ").append(parameter.getParameterIndex()).append(' ').append(parameter.getJavaType().getTypeName()).append('\n');
+                }
+            }
+            if (field.getExtraction().isPresent()) {
+                ThriftExtraction extraction = field.getExtraction().get();
+                if (extraction instanceof ThriftFieldExtractor) {
+                    description.append("  extract ").append(((ThriftFieldExtractor) extraction).getField().toGenericString()).append('\n');
+                }
+                else if (extraction instanceof ThriftMethodExtractor) {
+                    description.append("  extract ").append(((ThriftMethodExtractor) extraction).getMethod().toGenericString()).append('\n');
+                }
+            }
+            field.getCoercion().ifPresent(coercion -> description.append("  coerce ")
+                    .append(coercion.getToThrift().toGenericString()).append(' ')
+                    .append(coercion.getFromThrift().toGenericString()).append('\n'));
+        }
+
+        return Hashing.sha256().hashString(description, UTF_8).toString();
+    }
+
+    /**
+     * Declares the public static final String field holding the metadata fingerprint.
+     */
+    private void declareMetadataFingerprintField()
+    {
+        FieldDefinition fingerprintField = classDefinition.declareField(a(PUBLIC, STATIC, FINAL), METADATA_FINGERPRINT_FIELD, String.class);
+        classDefinition.getClassInitializer().getBody()
+                .append(setStatic(fingerprintField, constantString(getMetadataFingerprint(metadata))));
+    }
+
     /**
      * Declares the private ThriftType field type.
      */
@@ -632,15 +762,16 @@ public class ThriftCodecByteCodeGenerator<T>
     private void buildFieldIdSwitch(MethodDefinition method, Variable reader, Map<Short, Variable> structData, SwitchBuilder switchBuilder)
     {
         for (ThriftFieldMetadata field : metadata.getFields(FieldKind.THRIFT_FIELD)) {
+            // get ThriftTypeCodec for this field
+            FieldDefinition codecField = codecFields.get(field.getId());
+
             // get read method
-            Method readMethod = getReadMethod(field.getThriftType());
+            Method readMethod = getReadMethod(field.getThriftType(), codecField);
             if (readMethod == null) {
                 throw new IllegalArgumentException("Unsupported field type " + field.getThriftType().getProtocolType());
             }
 
-            // get ThriftTypeCodec for this field
             BytecodeExpression result;
-            FieldDefinition codecField = codecFields.get(field.getId());
             if (codecField != null) {
                 result = reader.invoke(readMethod, method.getThis().getField(codecField));
             }
@@ -874,7 +1005,7 @@ public class ThriftCodecByteCodeGenerator<T>
         }
 
         // write value
-        Method writeMethod = getWriteMethod(field.getThriftType());
+        Method writeMethod = getWriteMethod(field.getThriftType(), codecField);
         if (writeMethod == null) {
             throw new IllegalArgumentException("Unsupported field type " + field.getThriftType().getProtocolType());
         }
@@ -1127,8 +1258,11 @@ public class ThriftCodecByteCodeGenerator<T>
         }
     }
 
-    private Method getWriteMethod(ThriftType thriftType)
+    private Method getWriteMethod(ThriftType thriftType, FieldDefinition codecField)
     {
+        if (isEnumTableCodec(codecField)) {
+            return ENUM_TABLE_WRITE_METHOD;
+        }
         if (ReflectionHelper.isArray(thriftType.getJavaType())) {
             return ARRAY_WRITE_METHODS.get(thriftType.getJavaType());
         }
@@ -1138,8 +1272,11 @@ public class ThriftCodecByteCodeGenerator<T>
         return WRITE_METHODS.get(thriftType.getProtocolType());
     }
 
-    private Method getReadMethod(ThriftType thriftType)
+    private Method getReadMethod(ThriftType thriftType, FieldDefinition codecField)
     {
+        if (isEnumTableCodec(codecField)) {
+            return ENUM_TABLE_READ_METHOD;
+        }
         if (ReflectionHelper.isArray(thriftType.getJavaType())) {
             return ARRAY_READ_METHODS.get(thriftType.getJavaType());
         }
@@ -1149,6 +1286,15 @@ public class ThriftCodecByteCodeGenerator<T>
         return READ_METHODS.get(thriftType.getProtocolType());
     }
 
+    /**
+     * The builtin enum codec is called directly, so enum fields are converted with
+     * its lookup tables instead of through the generic ThriftCodec read and write.
+     */
+    private static boolean isEnumTableCodec(FieldDefinition codecField)
+    {
+        return codecField != null && codecField.getType().equals(type(EnumThriftCodec.class));
+    }
+
     static {
         ImmutableMap.Builder<ThriftProtocolType, Method> writeBuilder = ImmutableMap.builder();
         ImmutableMap.Builder<ThriftProtocolType, Method> readBuilder = ImmutableMap.builder();
@@ -1218,6 +1364,8 @@ public class ThriftCodecByteCodeGenerator<T>
         try {
             OPTIONAL_READ_METHOD = ProtocolReader.class.getMethod("readField", ThriftCodec.class);
             OPTIONAL_WRITE_METHOD = ProtocolWriter.class.getMethod("writeField", String.class, short.class, ThriftCodec.class, Object.class);
+            ENUM_TABLE_READ_METHOD = ProtocolReader.class.getMethod("readEnumField", EnumThriftCodec.class);
+            ENUM_TABLE_WRITE_METHOD = ProtocolWriter.class.getMethod("writeEnumField", String.class, short.class, EnumThriftCodec.class, Enum.class);
         }
         catch (NoSuchMethodException e) {
             throw new AssertionError(e);
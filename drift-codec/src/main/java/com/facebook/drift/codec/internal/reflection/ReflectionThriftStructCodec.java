@@ -18,6 +18,7 @@ package com.facebook.drift.codec.internal.reflection;
 import com.facebook.drift.annotations.ThriftField;
 import com.facebook.drift.codec.ThriftCodec;
 import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.internal.FieldSlotTable;
 import com.facebook.drift.codec.internal.ProtocolReader;
 import com.facebook.drift.codec.internal.ProtocolWriter;
 import com.facebook.drift.codec.metadata.FieldKind;
@@ -31,26 +32,108 @@ import com.facebook.drift.codec.metadata.ThriftStructMetadata;
 import com.facebook.drift.protocol.TProtocolException;
 import com.facebook.drift.protocol.TProtocolReader;
 import com.facebook.drift.protocol.TProtocolWriter;
+import com.google.common.collect.ImmutableList;
 
 import javax.annotation.concurrent.Immutable;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.google.common.base.Throwables.throwIfInstanceOf;
 import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 
 @Immutable
 public class ReflectionThriftStructCodec<T>
         extends AbstractReflectionThriftCodec<T>
 {
+    // values are stored by slot, and fields without a slot read from the extra, always null, slot
+    private final FieldSlotTable slots;
+    private final int missingSlot;
+
+    // codec of each slot, or null if the field is not readable
+    private final ThriftCodec<?>[] readCodecs;
+    private final boolean[] required;
+
+    private final ThriftConstructorInjection constructor;
+    private final int[] constructorSlots;
+    private final Object[] constructorNullValues;
+
+    private final ThriftFieldInjection[] fieldInjections;
+    private final int[] fieldInjectionSlots;
+
+    private final ThriftMethodInjection[] methodInjections;
+    private final int[][] methodInjectionSlots;
+
+    private final ThriftMethodInjection builderMethod;
+    private final int[] builderSlots;
+
     public ReflectionThriftStructCodec(ThriftCodecManager manager, ThriftStructMetadata metadata)
     {
         super(manager, metadata);
+
+        List<ThriftFieldMetadata> thriftFields = ImmutableList.copyOf(metadata.getFields(FieldKind.THRIFT_FIELD));
+        this.slots = new FieldSlotTable(thriftFields.stream()
+                .map(ThriftFieldMetadata::getId)
+                .collect(toImmutableList()));
+        this.missingSlot = slots.size();
+
+        this.readCodecs = new ThriftCodec<?>[thriftFields.size()];
+        this.required = new boolean[thriftFields.size()];
+        List<ThriftFieldInjection> fieldInjections = new ArrayList<>();
+        for (int slot = 0; slot < thriftFields.size(); slot++) {
+            ThriftFieldMetadata field = thriftFields.get(slot);
+            if (!field.isReadOnly()) {
+                readCodecs[slot] = fields.get(field.getId());
+            }
+            required[slot] = field.getRequiredness() == ThriftField.Requiredness.REQUIRED;
+            for (ThriftInjection injection : field.getInjections()) {
+                if (injection instanceof ThriftFieldInjection) {
+                    fieldInjections.add((ThriftFieldInjection) injection);
+                }
+            }
+        }
+        this.fieldInjections = fieldInjections.toArray(new ThriftFieldInjection[0]);
+        this.fieldInjectionSlots = new int[fieldInjections.size()];
+        for (int i = 0; i < fieldInjections.size(); i++) {
+            fieldInjectionSlots[i] = slotOf(fieldInjections.get(i).getId());
+        }
+
+        this.constructor = metadata.getConstructorInjection().get();
+        this.constructorSlots = parameterSlots(constructor.getParameters());
+        this.constructorNullValues = new Object[constructor.getParameters().size()];
+        for (ThriftParameterInjection parameter : constructor.getParameters()) {
+            constructorNullValues[parameter.getParameterIndex()] = metadata.getField(parameter.getId()).getThriftType().getNullValue();
+        }
+
+        this.methodInjections = metadata.getMethodInjections().toArray(new ThriftMethodInjection[0]);
+        this.methodInjectionSlots = new int[methodInjections.length][];
+        for (int i = 0; i < methodInjections.length; i++) {
+            methodInjectionSlots[i] = parameterSlots(methodInjections[i].getParameters());
+        }
+
+        this.builderMethod = metadata.getBuilderMethod().orElse(null);
+        this.builderSlots = builderMethod == null ? null : parameterSlots(builderMethod.getParameters());
+    }
+
+    private int slotOf(short fieldId)
+    {
+        int slot = slots.getSlot(fieldId);
+        return slot == FieldSlotTable.NO_SLOT ? missingSlot : slot;
+    }
+
+    // slots of the parameters, indexed by parameter index
+    private int[] parameterSlots(List<ThriftParameterInjection> parameters)
+    {
+        int[] parameterSlots = new int[parameters.size()];
+        for (ThriftParameterInjection parameter : parameters) {
+            parameterSlots[parameter.getParameterIndex()] = slotOf(parameter.getId());
+        }
+        return parameterSlots;
     }
 
     @Override
@@ -60,28 +143,21 @@ public class ReflectionThriftStructCodec<T>
         ProtocolReader reader = new ProtocolReader(protocol);
         reader.readStructBegin();
 
-        Map<Short, Object> data = new HashMap<>(metadata.getFields().size());
+        Object[] data = new Object[missingSlot + 1];
         while (reader.nextField()) {
-            short fieldId = reader.getFieldId();
+            int slot = slots.getSlot(reader.getFieldId());
 
-            // do we have a codec for this field
-            ThriftCodec<?> codec = fields.get(fieldId);
+            // do we have a codec for this field, and is this field readable
+            ThriftCodec<?> codec = slot == FieldSlotTable.NO_SLOT ? null : readCodecs[slot];
             if (codec == null) {
                 reader.skipFieldData();
                 continue;
             }
 
-            // is this field readable
-            ThriftFieldMetadata field = metadata.getField(fieldId);
-            if (field.isReadOnly() || field.getType() != FieldKind.THRIFT_FIELD) {
-                reader.skipFieldData();
-                continue;
-            }
-
             // read the value
             Object value = reader.readField(codec);
             if (value == null) {
-                if (field.getRequiredness() == ThriftField.Requiredness.REQUIRED) {
+                if (required[slot]) {
                     throw new TProtocolException("required field was not set");
                 }
                 else {
@@ -89,7 +165,7 @@ public class ReflectionThriftStructCodec<T>
                 }
             }
 
-            data.put(fieldId, value);
+            data[slot] = value;
         }
         reader.readStructEnd();
 
@@ -124,62 +200,55 @@ public class ReflectionThriftStructCodec<T>
     }
 
     @SuppressWarnings("unchecked")
-    private T constructStruct(Map<Short, Object> data)
+    private T constructStruct(Object[] data)
             throws Exception
     {
         // construct instance
         Object instance;
         {
-            ThriftConstructorInjection constructor = metadata.getConstructorInjection().get();
-            Object[] parametersValues = new Object[constructor.getParameters().size()];
-            for (ThriftParameterInjection parameter : constructor.getParameters()) {
-                Object value = data.get(parameter.getId());
+            Object[] parametersValues = new Object[constructorSlots.length];
+            for (int i = 0; i < constructorSlots.length; i++) {
+                Object value = data[constructorSlots[i]];
                 if (value == null) {
-                    value = metadata.getField(parameter.getId()).getThriftType().getNullValue();
+                    value = constructorNullValues[i];
                 }
-                parametersValues[parameter.getParameterIndex()] = value;
+                parametersValues[i] = value;
             }
 
             instance = invokeConstructor(constructor.getConstructor(), parametersValues);
         }
 
         // inject fields
-        for (ThriftFieldMetadata fieldMetadata : metadata.getFields(FieldKind.THRIFT_FIELD)) {
-            for (ThriftInjection injection : fieldMetadata.getInjections()) {
-                if (injection instanceof ThriftFieldInjection) {
-                    ThriftFieldInjection fieldInjection = (ThriftFieldInjection) injection;
-                    Object value = data.get(fieldInjection.getId());
-                    if (value != null) {
-                        fieldInjection.getField().set(instance, value);
-                    }
-                }
+        for (int i = 0; i < fieldInjections.length; i++) {
+            Object value = data[fieldInjectionSlots[i]];
+            if (value != null) {
+                fieldInjections[i].getField().set(instance, value);
             }
         }
 
         // inject methods
-        for (ThriftMethodInjection methodInjection : metadata.getMethodInjections()) {
+        for (int i = 0; i < methodInjections.length; i++) {
+            int[] parameterSlots = methodInjectionSlots[i];
             boolean shouldInvoke = false;
-            Object[] parametersValues = new Object[methodInjection.getParameters().size()];
-            for (ThriftParameterInjection parameter : methodInjection.getParameters()) {
-                Object value = data.get(parameter.getId());
+            Object[] parametersValues = new Object[parameterSlots.length];
+            for (int parameter = 0; parameter < parameterSlots.length; parameter++) {
+                Object value = data[parameterSlots[parameter]];
                 if (value != null) {
-                    parametersValues[parameter.getParameterIndex()] = value;
+                    parametersValues[parameter] = value;
                     shouldInvoke = true;
                 }
             }
 
             if (shouldInvoke) {
-                invokeMethod(methodInjection.getMethod(), instance, parametersValues);
+                invokeMethod(methodInjections[i].getMethod(), instance, parametersValues);
             }
         }
 
         // builder method
-        if (metadata.getBuilderMethod().isPresent()) {
-            ThriftMethodInjection builderMethod = metadata.getBuilderMethod().get();
-            Object[] parametersValues = new Object[builderMethod.getParameters().size()];
-            for (ThriftParameterInjection parameter : builderMethod.getParameters()) {
-                Object value = data.get(parameter.getId());
-                parametersValues[parameter.getParameterIndex()] = value;
+        if (builderMethod != null) {
+            Object[] parametersValues = new Object[builderSlots.length];
+            for (int i = 0; i < builderSlots.length; i++) {
+                parametersValues[i] = data[builderSlots[i]];
             }
 
             instance = invokeMethod(builderMethod.getMethod(), instance, parametersValues);
@@ -20,10 +20,13 @@ import com.facebook.drift.annotations.ThriftEnumValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
@@ -38,9 +41,18 @@ import static java.util.Objects.requireNonNull;
 @Immutable
 public class ThriftEnumMetadata<T extends Enum<T>>
 {
+    // value ranges up to this size (or twice the number of constants) are decoded with a direct index
+    private static final int MIN_DENSE_RANGE = 64;
+
     private final Class<T> enumClass;
     private final Map<Integer, T> byEnumValue;
     private final Map<T, Integer> byEnumConstant;
+    private final int minEnumValue;
+    @Nullable
+    private final T[] byDenseEnumValue;
+    private final int[] sortedEnumValues;
+    private final T[] bySortedEnumValue;
+    private final int[] byOrdinal;
     private final Optional<T> unknownEnumConstant;
     private final String enumName;
     private final ImmutableList<String> documentation;
@@ -117,11 +129,49 @@ public class ThriftEnumMetadata<T extends Enum<T>>
         }
         this.byEnumValue = byEnumValue.build();
         this.byEnumConstant = byEnumConstant.build();
+
+        T[] enumConstants = enumClass.getEnumConstants();
+        byOrdinal = new int[enumConstants.length];
+        for (T enumConstant : enumConstants) {
+            byOrdinal[enumConstant.ordinal()] = this.byEnumConstant.get(enumConstant);
+        }
+
+        sortedEnumValues = this.byEnumValue.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+        bySortedEnumValue = newArray(enumClass, sortedEnumValues.length);
+        for (int i = 0; i < sortedEnumValues.length; i++) {
+            bySortedEnumValue[i] = this.byEnumValue.get(sortedEnumValues[i]);
+        }
+
+        if (sortedEnumValues.length == 0) {
+            minEnumValue = 0;
+            byDenseEnumValue = null;
+        }
+        else {
+            minEnumValue = sortedEnumValues[0];
+            long range = (long) sortedEnumValues[sortedEnumValues.length - 1] - minEnumValue + 1;
+            if (range <= Math.max(MIN_DENSE_RANGE, 2L * sortedEnumValues.length)) {
+                byDenseEnumValue = newArray(enumClass, (int) range);
+                for (int i = 0; i < sortedEnumValues.length; i++) {
+                    byDenseEnumValue[sortedEnumValues[i] - minEnumValue] = bySortedEnumValue[i];
+                }
+            }
+            else {
+                byDenseEnumValue = null;
+            }
+        }
         this.unknownEnumConstant = unknownEnumConstant;
         this.elementDocs = elementDocs.build();
         this.documentation = ThriftCatalog.getThriftDocumentation(enumClass);
     }
 
+    private static <T extends Enum<T>> T[] newArray(Class<T> enumClass, int length)
+    {
+        return (T[]) Array.newInstance(enumClass, length);
+    }
+
     private static <T extends Enum<T>> boolean isThriftEnumUnknownValue(Class<T> enumClass, T enumConstant)
     {
         try {
@@ -152,6 +202,37 @@ public class ThriftEnumMetadata<T extends Enum<T>>
         return byEnumConstant;
     }
 
+    /**
+     * Gets the constant for the specified Thrift value without boxing the value.
+     *
+     * @return the enum constant, or null if no constant has the value
+     */
+    @Nullable
+    public T findByEnumValue(int enumValue)
+    {
+        if (byDenseEnumValue != null) {
+            // subtract as long so values far outside the range cannot wrap into it
+            long index = (long) enumValue - minEnumValue;
+            if (index < 0 || index >= byDenseEnumValue.length) {
+                return null;
+            }
+            return byDenseEnumValue[(int) index];
+        }
+        int index = Arrays.binarySearch(sortedEnumValues, enumValue);
+        if (index < 0) {
+            return null;
+        }
+        return bySortedEnumValue[index];
+    }
+
+    /**
+     * Gets the Thrift value of the specified constant without boxing the value.
+     */
+    public int getEnumValue(T enumConstant)
+    {
+        return byOrdinal[enumConstant.ordinal()];
+    }
+
     public Optional<T> getUnknownEnumConstant()
     {
         return unknownEnumConstant;
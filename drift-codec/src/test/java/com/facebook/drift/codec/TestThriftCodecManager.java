@@ -15,6 +15,7 @@
  */
 package com.facebook.drift.codec;
 
+import com.facebook.drift.TException;
 import com.facebook.drift.codec.internal.EnumThriftCodec;
 import com.facebook.drift.codec.internal.coercion.DefaultJavaCoercions;
 import com.facebook.drift.codec.metadata.ThriftCatalog;
@@ -24,17 +25,35 @@ import com.facebook.drift.codec.metadata.ThriftType;
 import com.facebook.drift.protocol.TBinaryProtocol;
 import com.facebook.drift.protocol.TCompactProtocol;
 import com.facebook.drift.protocol.TFacebookCompactProtocol;
+import com.facebook.drift.protocol.TList;
 import com.facebook.drift.protocol.TMemoryBuffer;
 import com.facebook.drift.protocol.TProtocol;
 import com.facebook.drift.protocol.TTransport;
+import com.facebook.drift.protocol.TTransportException;
+import com.facebook.drift.protocol.TType;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.DOUBLE_LIST_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.INTEGER_LIST_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.INTEGER_SET_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.LONG_DOUBLE_MAP_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.LONG_LIST_CODEC;
+import static com.facebook.drift.codec.internal.builtin.BoxedCollectionThriftCodec.LONG_SET_CODEC;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.fail;
@@ -125,6 +144,97 @@ public class TestThriftCodecManager
         testRoundTripSerialize(ThriftType.map(ThriftType.I32.coerceTo(Integer.class), ThriftType.I32.coerceTo(Integer.class)), ImmutableMap.of(1, 2, 2, 4, 3, 9));
     }
 
+    @Test
+    public void testPrimitiveCollections()
+            throws Exception
+    {
+        assertThat(codecManager.getCodec(new TypeToken<List<Integer>>() {})).isSameAs(INTEGER_LIST_CODEC);
+        assertThat(codecManager.getCodec(new TypeToken<List<Long>>() {})).isSameAs(LONG_LIST_CODEC);
+        assertThat(codecManager.getCodec(new TypeToken<List<Double>>() {})).isSameAs(DOUBLE_LIST_CODEC);
+        assertThat(codecManager.getCodec(new TypeToken<Set<Integer>>() {})).isSameAs(INTEGER_SET_CODEC);
+        assertThat(codecManager.getCodec(new TypeToken<Set<Long>>() {})).isSameAs(LONG_SET_CODEC);
+        assertThat(codecManager.getCodec(new TypeToken<Map<Long, Double>>() {})).isSameAs(LONG_DOUBLE_MAP_CODEC);
+
+        testRoundTripSerialize(ThriftType.list(ThriftType.I64.coerceTo(Long.class)), ImmutableList.of(Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE));
+        testRoundTripSerialize(ThriftType.list(ThriftType.DOUBLE.coerceTo(Double.class)), ImmutableList.of(-1.5, 0.0, 42.42));
+        testRoundTripSerialize(ThriftType.set(ThriftType.I64.coerceTo(Long.class)), ImmutableSet.of(1L, 2L, 3L));
+        testRoundTripSerialize(ThriftType.map(ThriftType.I64.coerceTo(Long.class), ThriftType.DOUBLE.coerceTo(Double.class)), ImmutableMap.of(1L, 1.5, 2L, 2.5));
+        testRoundTripSerialize(ThriftType.list(ThriftType.I32.coerceTo(Integer.class)), ImmutableList.of());
+    }
+
+    @Test
+    public void testCollectionSizeFromPeer()
+            throws Exception
+    {
+        // a count far larger than the data is not allocated up front, so reading fails at the end of the data
+        assertCollectionSizeFromPeer(INTEGER_LIST_CODEC.getType(), TType.I32);
+        assertCollectionSizeFromPeer(ThriftType.list(ThriftType.STRING), TType.STRING);
+    }
+
+    private void assertCollectionSizeFromPeer(ThriftType type, byte elementType)
+            throws Exception
+    {
+        TMemoryBuffer transport = new TMemoryBuffer(1024);
+        TProtocol protocol = new TBinaryProtocol(transport);
+        protocol.writeListBegin(new TList(elementType, Integer.MAX_VALUE));
+        assertThatThrownBy(() -> codecManager.read(type, protocol))
+                .isInstanceOf(TException.class);
+
+        // without the size of the input, the space allocated up front is bounded by a constant
+        TMemoryBuffer unknownSizeTransport = new TMemoryBuffer(1024);
+        TProtocol unknownSizeProtocol = new TBinaryProtocol(withUnknownSize(unknownSizeTransport));
+        unknownSizeProtocol.writeListBegin(new TList(elementType, Integer.MAX_VALUE));
+        assertThatThrownBy(() -> codecManager.read(type, unknownSizeProtocol))
+                .isInstanceOf(TException.class);
+    }
+
+    @Test
+    public void testLargeCollections()
+            throws Exception
+    {
+        // larger than the space allocated up front when the size of the input is not known
+        int[] values = IntStream.range(0, 5000).toArray();
+        List<Integer> list = IntStream.of(values).boxed().collect(toImmutableList());
+        Set<Integer> set = ImmutableSet.copyOf(list);
+        Map<Long, Double> map = IntStream.of(values).boxed().collect(toImmutableMap(Integer::longValue, Integer::doubleValue));
+
+        List<Function<TTransport, TProtocol>> protocolFactories = ImmutableList.of(
+                TBinaryProtocol::new,
+                TCompactProtocol::new,
+                transport -> new TBinaryProtocol(withUnknownSize(transport)),
+                transport -> new TCompactProtocol(withUnknownSize(transport)));
+        for (Function<TTransport, TProtocol> protocolFactory : protocolFactories) {
+            testRoundTripSerialize(INTEGER_LIST_CODEC.getType(), list, INTEGER_LIST_CODEC.getType(), list, protocolFactory);
+            testRoundTripSerialize(INTEGER_SET_CODEC.getType(), set, INTEGER_SET_CODEC.getType(), set, protocolFactory);
+            testRoundTripSerialize(LONG_DOUBLE_MAP_CODEC.getType(), map, LONG_DOUBLE_MAP_CODEC.getType(), map, protocolFactory);
+
+            TMemoryBuffer transport = new TMemoryBuffer(1024);
+            TProtocol protocol = protocolFactory.apply(transport);
+            codecManager.write(ThriftType.array(ThriftType.I32), values, protocol);
+            assertThat((int[]) codecManager.read(ThriftType.array(ThriftType.I32), protocol)).isEqualTo(values);
+        }
+    }
+
+    private static TTransport withUnknownSize(TTransport transport)
+    {
+        return new TTransport()
+        {
+            @Override
+            public void read(byte[] buf, int off, int len)
+                    throws TTransportException
+            {
+                transport.read(buf, off, len);
+            }
+
+            @Override
+            public void write(byte[] buf, int off, int len)
+                    throws TTransportException
+            {
+                transport.write(buf, off, len);
+            }
+        };
+    }
+
     @Test
     public void testAddStructCodec()
             throws Exception
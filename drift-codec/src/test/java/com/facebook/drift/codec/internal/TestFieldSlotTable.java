@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.codec.internal;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.drift.codec.internal.FieldSlotTable.NO_SLOT;
+import static org.testng.Assert.assertEquals;
+
+public class TestFieldSlotTable
+{
+    @Test
+    public void testDense()
+    {
+        assertSlots(ImmutableList.of((short) 3, (short) 1, (short) 2, (short) 10));
+        assertSlots(ImmutableList.of((short) -1, (short) -2, (short) 5));
+    }
+
+    @Test
+    public void testSparse()
+    {
+        assertSlots(ImmutableList.of((short) 1, Short.MAX_VALUE, (short) 2, (short) 1000));
+        assertSlots(ImmutableList.of(Short.MIN_VALUE, (short) 7, (short) -300));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        FieldSlotTable table = new FieldSlotTable(ImmutableList.of());
+        assertEquals(table.size(), 0);
+        assertEquals(table.getSlot((short) 0), NO_SLOT);
+        assertEquals(table.getSlot((short) 1), NO_SLOT);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Duplicate field id 2")
+    public void testDuplicateDense()
+    {
+        new FieldSlotTable(ImmutableList.of((short) 1, (short) 2, (short) 2));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Duplicate field id 1000")
+    public void testDuplicateSparse()
+    {
+        new FieldSlotTable(ImmutableList.of((short) 1000, (short) 1, (short) 1000));
+    }
+
+    private static void assertSlots(List<Short> fieldIds)
+    {
+        FieldSlotTable table = new FieldSlotTable(fieldIds);
+        assertEquals(table.size(), fieldIds.size());
+        for (int fieldId = Short.MIN_VALUE; fieldId <= Short.MAX_VALUE; fieldId++) {
+            assertEquals(table.getSlot((short) fieldId), fieldIds.indexOf((short) fieldId));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.codec.internal.compiler;
+
+import com.facebook.drift.codec.BonkField;
+import com.facebook.drift.codec.OneOfEverything;
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.metadata.ThriftStructMetadata;
+import com.facebook.drift.protocol.TBinaryProtocol;
+import com.facebook.drift.protocol.TMemoryBuffer;
+import com.google.common.io.MoreFiles;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.facebook.drift.codec.internal.compiler.PrecompiledThriftCodecs.loadPrecompiledCodec;
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.METADATA_FINGERPRINT_FIELD;
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.getCodecClassName;
+import static com.facebook.drift.codec.internal.compiler.ThriftCodecByteCodeGenerator.getMetadataFingerprint;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestPrecompiledThriftCodecs
+{
+    private Path classFileDirectory;
+    private URLClassLoader classLoader;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        classFileDirectory = Files.createTempDirectory("drift-codecs");
+
+        ThriftCodecManager codecManager = new ThriftCodecManager(new CompilerThriftCodecFactory(false, getClass().getClassLoader(), Optional.of(classFileDirectory)));
+        codecManager.getCodec(OneOfEverything.class);
+
+        classLoader = new URLClassLoader(new URL[] {classFileDirectory.toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        if (classLoader != null) {
+            classLoader.close();
+        }
+        if (classFileDirectory != null) {
+            MoreFiles.deleteRecursively(classFileDirectory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testClassFilesWritten()
+    {
+        assertTrue(Files.isRegularFile(classFileDirectory.resolve("$drift/com/facebook/drift/codec/OneOfEverythingCodec.class")));
+        assertTrue(Files.isRegularFile(classFileDirectory.resolve("$drift/com/facebook/drift/codec/BonkFieldCodec.class")));
+    }
+
+    @Test
+    public void testLoadPrecompiledCodec()
+            throws Exception
+    {
+        ThriftCodecManager codecManager = new ThriftCodecManager();
+        ThriftStructMetadata metadata = codecManager.getCatalog().getThriftStructMetadata(BonkField.class);
+
+        @SuppressWarnings("unchecked")
+        ThriftCodec<BonkField> codec = (ThriftCodec<BonkField>) loadPrecompiledCodec(codecManager, metadata, classLoader).get();
+        assertSame(codec.getClass().getClassLoader(), classLoader);
+        assertEquals(codec.getType(), codecManager.getCatalog().getThriftType(BonkField.class));
+
+        BonkField value = new BonkField("message", 42);
+        TMemoryBuffer transport = new TMemoryBuffer(10 * 1024);
+        codec.write(value, new TBinaryProtocol(transport));
+        assertEquals(codec.read(new TBinaryProtocol(transport)), value);
+    }
+
+    @Test
+    public void testFieldCodecMismatch()
+    {
+        // the nested BonkField codec of this manager is not the precompiled one
+        ThriftCodecManager codecManager = new ThriftCodecManager();
+        ThriftStructMetadata metadata = codecManager.getCatalog().getThriftStructMetadata(OneOfEverything.class);
+        assertFalse(loadPrecompiledCodec(codecManager, metadata, classLoader).isPresent());
+    }
+
+    @Test
+    public void testMetadataFingerprint()
+            throws Exception
+    {
+        ThriftCodecManager codecManager = new ThriftCodecManager();
+        ThriftStructMetadata metadata = codecManager.getCatalog().getThriftStructMetadata(BonkField.class);
+
+        Class<?> codecClass = Class.forName(getCodecClassName(metadata), true, classLoader);
+        assertEquals(codecClass.getField(METADATA_FINGERPRINT_FIELD).get(null), getMetadataFingerprint(metadata));
+        assertEquals(getMetadataFingerprint(metadata), getMetadataFingerprint(codecManager.getCatalog().getThriftStructMetadata(BonkField.class)));
+        assertNotEquals(getMetadataFingerprint(metadata), getMetadataFingerprint(withoutField(metadata, 2)));
+    }
+
+    @Test
+    public void testMetadataMismatch()
+    {
+        // the struct lost a field since the codec was generated, but the codec constructor is unchanged
+        ThriftCodecManager codecManager = new ThriftCodecManager();
+        ThriftStructMetadata metadata = withoutField(codecManager.getCatalog().getThriftStructMetadata(BonkField.class), 2);
+        assertFalse(loadPrecompiledCodec(codecManager, metadata, classLoader).isPresent());
+    }
+
+    @Test
+    public void testNotPrecompiled()
+    {
+        ThriftCodecManager codecManager = new ThriftCodecManager();
+        ThriftStructMetadata metadata = codecManager.getCatalog().getThriftStructMetadata(BonkField.class);
+        assertFalse(loadPrecompiledCodec(codecManager, metadata).isPresent());
+    }
+
+    private static ThriftStructMetadata withoutField(ThriftStructMetadata metadata, int id)
+    {
+        return new ThriftStructMetadata(
+                metadata.getStructName(),
+                metadata.getIdlAnnotations(),
+                metadata.getStructType(),
+                metadata.getBuilderType(),
+                metadata.getMetadataType(),
+                metadata.getBuilderMethod(),
+                metadata.getDocumentation(),
+                metadata.getFields().stream()
+                        .filter(field -> field.getId() != id)
+                        .collect(toImmutableList()),
+                metadata.getConstructorInjection(),
+                metadata.getMethodInjections());
+    }
+}
@@ -18,6 +18,7 @@ package com.facebook.drift.codec.metadata;
 import com.facebook.drift.annotations.ThriftEnum;
 import com.facebook.drift.annotations.ThriftEnumUnknownValue;
 import com.facebook.drift.annotations.ThriftEnumValue;
+import com.facebook.drift.codec.Fruit;
 import com.facebook.drift.codec.Letter;
 import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.Test;
@@ -25,6 +26,7 @@ import org.testng.annotations.Test;
 import java.util.Optional;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 public class TestThriftEnumMetadata
 {
@@ -51,6 +53,39 @@ public class TestThriftEnumMetadata
         assertEquals(metadata.getUnknownEnumConstant(), Optional.of(Letter.UNKNOWN));
     }
 
+    @Test
+    public void testValueLookup()
+    {
+        // Fruit uses the dense table, while the values of Letter and SparseValues are searched
+        assertValueLookup(ThriftEnumMetadataBuilder.thriftEnumMetadata(Fruit.class));
+        assertValueLookup(ThriftEnumMetadataBuilder.thriftEnumMetadata(Letter.class));
+        assertValueLookup(ThriftEnumMetadataBuilder.thriftEnumMetadata(SparseValues.class));
+
+        ThriftEnumMetadata<Fruit> fruits = ThriftEnumMetadataBuilder.thriftEnumMetadata(Fruit.class);
+        assertNull(fruits.findByEnumValue(-1));
+        assertNull(fruits.findByEnumValue(Fruit.values().length));
+        assertNull(fruits.findByEnumValue(Integer.MIN_VALUE));
+
+        ThriftEnumMetadata<Letter> letters = ThriftEnumMetadataBuilder.thriftEnumMetadata(Letter.class);
+        assertNull(letters.findByEnumValue(0));
+        assertNull(letters.findByEnumValue(64));
+        assertNull(letters.findByEnumValue(69));
+        assertNull(letters.findByEnumValue(Integer.MIN_VALUE));
+        assertNull(letters.findByEnumValue(Integer.MAX_VALUE));
+
+        ThriftEnumMetadata<SparseValues> sparse = ThriftEnumMetadataBuilder.thriftEnumMetadata(SparseValues.class);
+        assertNull(sparse.findByEnumValue(0));
+        assertNull(sparse.findByEnumValue(Integer.MAX_VALUE - 1));
+    }
+
+    private static <T extends Enum<T>> void assertValueLookup(ThriftEnumMetadata<T> metadata)
+    {
+        metadata.getByEnumConstant().forEach((constant, value) -> {
+            assertEquals(metadata.getEnumValue(constant), (int) value);
+            assertEquals(metadata.findByEnumValue(value), constant);
+        });
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Enum class .*MissingEnumAnnotation is not annotated with @ThriftEnum")
     public void testMissingEnumAnnotation()
     {
@@ -128,6 +163,25 @@ public class TestThriftEnumMetadata
         }
     }
 
+    @ThriftEnum
+    public enum SparseValues
+    {
+        MIN(Integer.MIN_VALUE), ONE(1), THOUSAND(1000), MAX(Integer.MAX_VALUE);
+
+        private final int value;
+
+        SparseValues(int value)
+        {
+            this.value = value;
+        }
+
+        @ThriftEnumValue
+        public int value()
+        {
+            return value;
+        }
+    }
+
     @ThriftEnum
     public enum MultipleUnknownValues
     {
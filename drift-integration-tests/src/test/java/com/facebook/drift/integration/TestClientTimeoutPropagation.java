@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.integration;
+
+import com.facebook.drift.TApplicationException;
+import com.facebook.drift.annotations.ThriftHeader;
+import com.facebook.drift.annotations.ThriftMethod;
+import com.facebook.drift.annotations.ThriftService;
+import com.facebook.drift.client.DriftClientFactory;
+import com.facebook.drift.client.UncheckedTApplicationException;
+import com.facebook.drift.client.UncheckedTTransportException;
+import com.facebook.drift.client.address.AddressSelector;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.server.DriftServer;
+import com.facebook.drift.server.DriftService;
+import com.facebook.drift.server.stats.NullMethodInvocationStatsFactory;
+import com.facebook.drift.transport.client.DriftClientConfig;
+import com.facebook.drift.transport.client.RequestTimeoutException;
+import com.facebook.drift.transport.netty.client.DriftNettyClientConfig;
+import com.facebook.drift.transport.netty.client.DriftNettyMethodInvokerFactory;
+import com.facebook.drift.transport.netty.codec.Transport;
+import com.facebook.drift.transport.netty.server.DriftNettyServerConfig;
+import com.facebook.drift.transport.netty.server.DriftNettyServerTransport;
+import com.facebook.drift.transport.netty.server.DriftNettyServerTransportFactory;
+import com.facebook.drift.transport.netty.server.ServerDispatchMode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.facebook.drift.TApplicationException.Type.TIMEOUT;
+import static com.facebook.drift.transport.ClientTimeout.CLIENT_TIMEOUT_HEADER;
+import static com.facebook.drift.transport.netty.client.DriftNettyMethodInvokerFactory.createStaticDriftNettyMethodInvokerFactory;
+import static com.facebook.drift.transport.netty.codec.Protocol.BINARY;
+import static com.facebook.drift.transport.netty.codec.Transport.FRAMED;
+import static com.facebook.drift.transport.netty.codec.Transport.HEADER;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestClientTimeoutPropagation
+{
+    private static final ThriftCodecManager CODEC_MANAGER = new ThriftCodecManager();
+    private static final Duration LONG_TIMEOUT = new Duration(10, SECONDS);
+    private static final Duration SHORT_TIMEOUT = new Duration(200, MILLISECONDS);
+
+    private TimeoutServiceHandler handler;
+    private DriftServer driftServer;
+    private HostAndPort address;
+    private final List<DriftNettyMethodInvokerFactory<?>> methodInvokerFactories = new CopyOnWriteArrayList<>();
+
+    @BeforeMethod
+    public void setUp()
+    {
+        handler = new TimeoutServiceHandler();
+        // a single dispatch thread, so a blocked request keeps later requests in the queue
+        DriftNettyServerConfig config = new DriftNettyServerConfig()
+                .setDispatchMode(ServerDispatchMode.THREAD_POOL)
+                .setDispatchThreadCount(1);
+        driftServer = new DriftServer(
+                new DriftNettyServerTransportFactory(config),
+                CODEC_MANAGER,
+                new NullMethodInvocationStatsFactory(),
+                ImmutableSet.of(new DriftService(handler)),
+                ImmutableSet.of());
+        driftServer.start();
+        address = HostAndPort.fromParts("localhost", ((DriftNettyServerTransport) driftServer.getServerTransport()).getPort());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+    {
+        methodInvokerFactories.forEach(DriftNettyMethodInvokerFactory::close);
+        methodInvokerFactories.clear();
+        driftServer.shutdown();
+    }
+
+    @Test
+    public void testMethodSeesClientTimeout()
+    {
+        String clientTimeout = createClient(HEADER, LONG_TIMEOUT).getClientTimeout(null);
+        assertThat(Long.parseLong(clientTimeout)).isBetween(1L, LONG_TIMEOUT.toMillis());
+
+        // a shorter timeout set by the caller is kept
+        clientTimeout = createClient(HEADER, LONG_TIMEOUT).getClientTimeout("5000");
+        assertThat(Long.parseLong(clientTimeout)).isBetween(1L, 5000L);
+
+        // zero means no timeout, so it is replaced by the client timeout
+        clientTimeout = createClient(HEADER, LONG_TIMEOUT).getClientTimeout("0");
+        assertThat(Long.parseLong(clientTimeout)).isBetween(1L, LONG_TIMEOUT.toMillis());
+
+        // only the header transport carries headers
+        assertEquals(createClient(FRAMED, LONG_TIMEOUT).getClientTimeout(null), "none");
+    }
+
+    @Test
+    public void testExpiredBeforeReceived()
+    {
+        try {
+            createClient(HEADER, LONG_TIMEOUT).getClientTimeout("-1");
+            fail("expected UncheckedTApplicationException");
+        }
+        catch (UncheckedTApplicationException e) {
+            assertEquals(((TApplicationException) e.getCause()).getType(), Optional.of(TIMEOUT));
+        }
+    }
+
+    @Test
+    public void testExpiredWhileQueued()
+            throws Exception
+    {
+        TimeoutService client = createClient(HEADER, LONG_TIMEOUT);
+        ExecutorService executor = newSingleThreadExecutor();
+        try {
+            Future<String> blocker = executor.submit(() -> client.invoke("blocker"));
+            awaitUninterruptibly(handler.getBlocking());
+
+            // waits behind the blocker until the client gives up, or the server reports the deadline first
+            try {
+                createClient(HEADER, SHORT_TIMEOUT).invoke("expired");
+                fail("expected request to time out");
+            }
+            catch (UncheckedTTransportException e) {
+                assertTrue(e.getCause() instanceof RequestTimeoutException, "unexpected cause: " + e.getCause());
+            }
+            catch (UncheckedTApplicationException e) {
+                assertEquals(((TApplicationException) e.getCause()).getType(), Optional.of(TIMEOUT));
+            }
+
+            // the server deadline starts when the request arrives, slightly after the client started waiting
+            MILLISECONDS.sleep(SHORT_TIMEOUT.toMillis());
+            handler.getRelease().countDown();
+            assertEquals(blocker.get(), "blocker");
+
+            // dispatch is in order, so the expired request has been dropped once this one runs
+            assertEquals(client.invoke("after"), "after");
+            assertEquals(handler.getInvocations(), ImmutableList.of("blocker", "after"));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledAtDeadline()
+    {
+        ListenableFuture<String> result = createClient(HEADER, SHORT_TIMEOUT).hang();
+        assertThatThrownBy(result::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RequestTimeoutException.class);
+
+        long end = System.nanoTime() + SECONDS.toNanos(10);
+        while (!handler.getPending().isCancelled() && System.nanoTime() < end) {
+            Thread.yield();
+        }
+        assertTrue(handler.getPending().isCancelled());
+    }
+
+    private TimeoutService createClient(Transport transport, Duration requestTimeout)
+    {
+        DriftNettyClientConfig config = new DriftNettyClientConfig()
+                .setTransport(transport)
+                .setProtocol(BINARY)
+                .setRequestTimeout(requestTimeout);
+        DriftNettyMethodInvokerFactory<?> methodInvokerFactory = createStaticDriftNettyMethodInvokerFactory(config);
+        methodInvokerFactories.add(methodInvokerFactory);
+
+        AddressSelector<?> addressSelector = context -> Optional.of(() -> address);
+        return new DriftClientFactory(CODEC_MANAGER, methodInvokerFactory, addressSelector)
+                .createDriftClient(TimeoutService.class, Optional.empty(), ImmutableList.of(), new DriftClientConfig().setMaxRetries(0))
+                .get();
+    }
+
+    @ThriftService
+    public interface TimeoutService
+    {
+        @ThriftMethod
+        String getClientTimeout(@ThriftHeader(CLIENT_TIMEOUT_HEADER) String clientTimeout);
+
+        @ThriftMethod
+        String invoke(String name);
+
+        @ThriftMethod
+        ListenableFuture<String> hang();
+    }
+
+    public static class TimeoutServiceHandler
+            implements TimeoutService
+    {
+        private final List<String> invocations = new CopyOnWriteArrayList<>();
+        private final CountDownLatch blocking = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final SettableFuture<String> pending = SettableFuture.create();
+
+        @Override
+        public String getClientTimeout(String clientTimeout)
+        {
+            return clientTimeout == null ? "none" : clientTimeout;
+        }
+
+        @Override
+        public String invoke(String name)
+        {
+            invocations.add(name);
+            if (name.equals("blocker")) {
+                blocking.countDown();
+                awaitUninterruptibly(release);
+            }
+            return name;
+        }
+
+        @Override
+        public ListenableFuture<String> hang()
+        {
+            return pending;
+        }
+
+        public List<String> getInvocations()
+        {
+            return invocations;
+        }
+
+        public CountDownLatch getBlocking()
+        {
+            return blocking;
+        }
+
+        public CountDownLatch getRelease()
+        {
+            return release;
+        }
+
+        public SettableFuture<String> getPending()
+        {
+            return pending;
+        }
+    }
+}
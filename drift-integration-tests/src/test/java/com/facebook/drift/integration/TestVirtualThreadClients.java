@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.integration;
+
+import com.facebook.drift.client.DriftClientFactory;
+import com.facebook.drift.client.address.AddressSelector;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.integration.guice.EchoService;
+import com.facebook.drift.integration.guice.EchoServiceHandler;
+import com.facebook.drift.server.DriftServer;
+import com.facebook.drift.server.DriftService;
+import com.facebook.drift.server.stats.NullMethodInvocationStatsFactory;
+import com.facebook.drift.transport.VirtualThreads;
+import com.facebook.drift.transport.netty.client.DriftNettyClientConfig;
+import com.facebook.drift.transport.netty.client.DriftNettyMethodInvokerFactory;
+import com.facebook.drift.transport.netty.server.DriftNettyServerConfig;
+import com.facebook.drift.transport.netty.server.DriftNettyServerTransport;
+import com.facebook.drift.transport.netty.server.DriftNettyServerTransportFactory;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HostAndPort;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.facebook.drift.transport.VirtualThreads.newVirtualThreadPerTaskExecutor;
+import static com.facebook.drift.transport.netty.client.DriftNettyMethodInvokerFactory.createStaticDriftNettyMethodInvokerFactory;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestVirtualThreadClients
+{
+    private static final ThriftCodecManager CODEC_MANAGER = new ThriftCodecManager();
+    private static final int CALLS = 100_000;
+
+    @Test
+    public void testBlockingCallsOnVirtualThreads()
+            throws Exception
+    {
+        if (!VirtualThreads.isSupported()) {
+            throw new SkipException("Virtual threads require Java 21 or later");
+        }
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+        DriftServer driftServer = new DriftServer(
+                new DriftNettyServerTransportFactory(new DriftNettyServerConfig()),
+                CODEC_MANAGER,
+                new NullMethodInvocationStatsFactory(),
+                ImmutableSet.of(new DriftService(new EchoServiceHandler())),
+                ImmutableSet.of());
+        try (DriftNettyMethodInvokerFactory<?> methodInvokerFactory = createStaticDriftNettyMethodInvokerFactory(new DriftNettyClientConfig())) {
+            driftServer.start();
+            HostAndPort address = HostAndPort.fromParts("localhost", ((DriftNettyServerTransport) driftServer.getServerTransport()).getPort());
+
+            AddressSelector<?> addressSelector = context -> Optional.of(() -> address);
+            EchoService client = new DriftClientFactory(CODEC_MANAGER, methodInvokerFactory, addressSelector)
+                    .createDriftClient(EchoService.class)
+                    .get();
+
+            // every call blocks its own virtual thread until the response arrives
+            List<Future<Integer>> results = new ArrayList<>(CALLS);
+            for (int i = 0; i < CALLS; i++) {
+                int value = i;
+                results.add(executor.submit(() -> client.echoInt(value)));
+            }
+            for (int i = 0; i < CALLS; i++) {
+                assertEquals(results.get(i).get().intValue(), i);
+            }
+        }
+        finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, MINUTES));
+            driftServer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.maven;
+
+import com.facebook.drift.annotations.ThriftStruct;
+import com.facebook.drift.annotations.ThriftUnion;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.internal.compiler.CompilerThriftCodecFactory;
+import com.facebook.drift.codec.metadata.DefaultThriftTypeReference;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Generates the codecs for all Thrift structs and unions of the project at build time.
+ * The generated classes are written to the output directory, from where
+ * {@link ThriftCodecManager} loads them instead of generating the codecs at runtime.
+ * Codecs are only written for classes of the project, not for classes of its dependencies.
+ */
+@Mojo(name = "generate-thrift-codecs",
+        defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
+public class CodecGeneratorMojo
+        extends AbstractMojo
+{
+    private static final String GENERATED_PACKAGE = "$drift";
+
+    @Parameter(defaultValue = "${project.build.outputDirectory}")
+    private File classesDirectory;
+
+    @Parameter(defaultValue = "${project}")
+    private MavenProject project;
+
+    /**
+     * Drift classes to generate codecs for, which must be in the classes directory. If
+     * not specified, codecs are generated for all public, non-generic classes annotated
+     * with {@code @ThriftStruct} or {@code @ThriftUnion} in the classes directory.
+     */
+    @Parameter(property = "generate.thrift.codecs.classes")
+    private List<String> classes;
+
+    /**
+     * Output directory for the generated codec classes.
+     */
+    @Parameter(property = "generate.thrift.codecs.outputDirectory", defaultValue = "${project.build.outputDirectory}")
+    private File outputDirectory;
+
+    /**
+     * Do not log additional information while executing.
+     */
+    @Parameter
+    private boolean quiet;
+
+    @Override
+    public void execute()
+            throws MojoExecutionException
+    {
+        // remove codecs from a previous build, so they are regenerated rather than loaded
+        deleteRecursively(outputDirectory.toPath().resolve(GENERATED_PACKAGE));
+
+        List<String> classNames = classes;
+        if (classNames == null || classNames.isEmpty()) {
+            classNames = findClassNames(classesDirectory.toPath());
+        }
+
+        // the classes of the project are loaded by their own class loader, which tells them
+        // apart from the classes of the dependencies
+        try (URLClassLoader dependenciesClassLoader = createClassLoaderFromCompileTimeDependencies();
+                URLClassLoader classLoader = new URLClassLoader(new URL[] {fileToUrl(classesDirectory)}, dependenciesClassLoader)) {
+            ThriftCodecManager codecManager = new ThriftCodecManager(new CompilerThriftCodecFactory(
+                    false,
+                    classLoader,
+                    Optional.of(outputDirectory.toPath()),
+                    structClass -> structClass.getClassLoader() == classLoader));
+            int generated = 0;
+            for (String className : classNames) {
+                Class<?> type = loadClass(classLoader, className);
+                if (type == null || !isThriftStruct(type)) {
+                    continue;
+                }
+                if (type.getClassLoader() != classLoader) {
+                    throw new MojoExecutionException("Class is not in the classes directory: " + className);
+                }
+                try {
+                    codecManager.getElementCodec(new DefaultThriftTypeReference(codecManager.getCatalog().getThriftType(type)));
+                }
+                catch (RuntimeException e) {
+                    throw new MojoExecutionException("Failed to generate Thrift codec for " + className + ": " + e.getMessage(), e);
+                }
+                verbose("Generated Thrift codec for " + className);
+                generated++;
+            }
+
+            verbose("Wrote " + generated + " Thrift codecs to " + outputDirectory);
+        }
+        catch (IOException e) {
+            throw new MojoExecutionException("Failed to close class loader", e);
+        }
+    }
+
+    private void verbose(String message)
+    {
+        if (quiet) {
+            getLog().debug(message);
+        }
+        else {
+            getLog().info(message);
+        }
+    }
+
+    private Class<?> loadClass(ClassLoader classLoader, String className)
+            throws MojoExecutionException
+    {
+        try {
+            return Class.forName(className, false, classLoader);
+        }
+        catch (ClassNotFoundException e) {
+            if (classes != null && !classes.isEmpty()) {
+                throw new MojoExecutionException("Class not found: " + className, e);
+            }
+            getLog().debug("Skipping class that can not be loaded: " + className);
+            return null;
+        }
+        catch (LinkageError e) {
+            getLog().debug("Skipping class that can not be loaded: " + className);
+            return null;
+        }
+    }
+
+    private static boolean isThriftStruct(Class<?> type)
+    {
+        return (type.isAnnotationPresent(ThriftStruct.class) || type.isAnnotationPresent(ThriftUnion.class)) &&
+                Modifier.isPublic(type.getModifiers()) &&
+                type.getTypeParameters().length == 0;
+    }
+
+    private static List<String> findClassNames(Path directory)
+            throws MojoExecutionException
+    {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files
+                    .map(directory::relativize)
+                    .filter(path -> !path.startsWith(GENERATED_PACKAGE))
+                    .map(Path::toString)
+                    .filter(path -> path.endsWith(".class"))
+                    .map(path -> path.substring(0, path.length() - ".class".length()).replace(File.separatorChar, '.'))
+                    .sorted()
+                    .collect(toList());
+        }
+        catch (IOException e) {
+            throw new MojoExecutionException("Failed to list classes in directory: " + directory, e);
+        }
+    }
+
+    private URLClassLoader createClassLoaderFromCompileTimeDependencies()
+            throws MojoExecutionException
+    {
+        List<URL> urls = new ArrayList<>();
+        for (Artifact artifact : project.getArtifacts()) {
+            if (artifact.getFile() != null) {
+                urls.add(fileToUrl(artifact.getFile()));
+            }
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), Thread.currentThread().getContextClassLoader());
+    }
+
+    private static URL fileToUrl(File file)
+            throws MojoExecutionException
+    {
+        try {
+            return file.toURI().toURL();
+        }
+        catch (MalformedURLException e) {
+            throw new MojoExecutionException("Failed to create URL for file: " + file, e);
+        }
+    }
+
+    private static void deleteRecursively(Path directory)
+            throws MojoExecutionException
+    {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.delete(file);
+            }
+        }
+        catch (IOException e) {
+            throw new MojoExecutionException("Failed to delete directory: " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.maven;
+
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.internal.reflection.ReflectionThriftCodecFactory;
+import com.facebook.drift.protocol.TBinaryProtocol;
+import com.facebook.drift.protocol.TMemoryBuffer;
+import io.takari.maven.testing.TestResources;
+import io.takari.maven.testing.executor.MavenRuntime;
+import io.takari.maven.testing.executor.MavenRuntime.MavenRuntimeBuilder;
+import io.takari.maven.testing.executor.MavenVersions;
+import io.takari.maven.testing.executor.junit.MavenJUnitTestRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MavenJUnitTestRunner.class)
+@MavenVersions({"3.2.3", "3.3.9", "3.5.0", "3.5.2"})
+@SuppressWarnings("JUnitTestNG")
+public class TestCodecGeneratorIntegration
+{
+    @Rule
+    public final TestResources resources = new TestResources();
+
+    private final MavenRuntime maven;
+
+    public TestCodecGeneratorIntegration(MavenRuntimeBuilder mavenBuilder)
+            throws Exception
+    {
+        this.maven = mavenBuilder.withCliOptions("-B", "-U").build();
+    }
+
+    @Test
+    public void testGenerateCodecs()
+            throws Exception
+    {
+        File basedir = resources.getBasedir("codecs");
+        maven.forProject(basedir)
+                .execute("verify")
+                .assertErrorFreeLog()
+                .assertLogText("Wrote 2 Thrift codecs");
+
+        File classes = new File(basedir, "target/classes");
+        assertTrue(new File(classes, "$drift/its/PointCodec.class").isFile());
+        assertTrue(new File(classes, "$drift/its/LineCodec.class").isFile());
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {classes.toURI().toURL()}, getClass().getClassLoader())) {
+            Class<?> pointClass = classLoader.loadClass("its.Point");
+            Class<?> lineClass = classLoader.loadClass("its.Line");
+
+            // the manager uses the generated codecs rather than generating them again
+            ThriftCodecManager codecManager = new ThriftCodecManager();
+            ThriftCodec<?> pointCodec = codecManager.getCodec(pointClass);
+            assertSame(classLoader, pointCodec.getClass().getClassLoader());
+            assertSame(classLoader, codecManager.getCodec(lineClass).getClass().getClassLoader());
+
+            Object point = pointClass.getConstructor(int.class, int.class).newInstance(3, 4);
+            TMemoryBuffer transport = new TMemoryBuffer(1024);
+            write(pointCodec, point, new TBinaryProtocol(transport));
+            Object copy = pointCodec.read(new TBinaryProtocol(transport));
+            assertEquals(3, pointClass.getMethod("getX").invoke(copy));
+            assertEquals(4, pointClass.getMethod("getY").invoke(copy));
+
+            // the generated codecs are only used by the compiler based factory
+            ThriftCodecManager reflectionCodecManager = new ThriftCodecManager(new ReflectionThriftCodecFactory());
+            assertNotSame(classLoader, reflectionCodecManager.getCodec(pointClass).getClass().getClassLoader());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(ThriftCodec<T> codec, Object value, TBinaryProtocol protocol)
+            throws Exception
+    {
+        codec.write((T) value, protocol);
+    }
+}
@@ -0,0 +1,17 @@
+package its;
+
+import com.facebook.drift.annotations.ThriftField;
+import com.facebook.drift.annotations.ThriftStruct;
+
+@ThriftStruct
+public class Line
+{
+    @ThriftField(1)
+    public String name;
+
+    @ThriftField(2)
+    public Point start;
+
+    @ThriftField(3)
+    public Point end;
+}
@@ -0,0 +1,31 @@
+package its;
+
+import com.facebook.drift.annotations.ThriftConstructor;
+import com.facebook.drift.annotations.ThriftField;
+import com.facebook.drift.annotations.ThriftStruct;
+
+@ThriftStruct
+public class Point
+{
+    private final int x;
+    private final int y;
+
+    @ThriftConstructor
+    public Point(int x, int y)
+    {
+        this.x = x;
+        this.y = y;
+    }
+
+    @ThriftField(1)
+    public int getX()
+    {
+        return x;
+    }
+
+    @ThriftField(2)
+    public int getY()
+    {
+        return y;
+    }
+}
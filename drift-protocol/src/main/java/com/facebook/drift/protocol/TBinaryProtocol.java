@@ -40,7 +40,11 @@ public class TBinaryProtocol
     protected static final int VERSION_MASK = 0xffff0000;
     protected static final int VERSION_1 = 0x80010000;
 
+    // primitive arrays are copied through the transport in chunks of this size
+    private static final int ARRAY_BUFFER_SIZE = 8192;
+
     private final TTransport transport;
+    private byte[] arrayBuffer;
 
     /**
      * Constructor
@@ -192,6 +196,51 @@ public class TBinaryProtocol
         writeI64(doubleToLongBits(value));
     }
 
+    @Override
+    public void writeI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Integer.BYTES);
+            ByteBuffer.wrap(buffer).asIntBuffer().put(array, offset, count);
+            transport.write(buffer, 0, count * Integer.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void writeI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Long.BYTES);
+            ByteBuffer.wrap(buffer).asLongBuffer().put(array, offset, count);
+            transport.write(buffer, 0, count * Long.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void writeDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Double.BYTES);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            for (int i = offset; i < offset + count; i++) {
+                byteBuffer.putLong(doubleToLongBits(array[i]));
+            }
+            transport.write(buffer, 0, count * Double.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
     @Override
     public void writeString(String value)
             throws TException
@@ -231,6 +280,42 @@ public class TBinaryProtocol
         return new TMessage(readStringBody(size), readByte(), readI32());
     }
 
+    @Override
+    public void readMessageBegin(TMessageHeader header, TMessageNameTable names)
+            throws TException
+    {
+        int size = readI32();
+        if (size < 0) {
+            int version = size & VERSION_MASK;
+            if (version != VERSION_1) {
+                throw new TProtocolException("Bad version in readMessageBegin: " + version);
+            }
+            header.set(readMessageName(checkSize(readI32()), names), (byte) (size & 0x000000ff), readI32());
+            return;
+        }
+
+        header.set(readMessageName(size, names), readByte(), readI32());
+    }
+
+    /**
+     * Reads the message name into the array buffer and looks it up in the table,
+     * so only names that are not in the table are decoded into a new string.
+     */
+    private String readMessageName(int size, TMessageNameTable names)
+            throws TException
+    {
+        if (size > names.getMaxNameLength() || size > ARRAY_BUFFER_SIZE) {
+            return readStringBody(size);
+        }
+        byte[] buffer = getArrayBuffer();
+        transport.read(buffer, 0, size);
+        String name = names.lookup(buffer, 0, size);
+        if (name == null) {
+            name = new String(buffer, 0, size, UTF_8);
+        }
+        return name;
+    }
+
     @Override
     public void readMessageEnd() {}
 
@@ -252,6 +337,14 @@ public class TBinaryProtocol
         return new TField("", type, id);
     }
 
+    @Override
+    public void readFieldBegin(TFieldHeader header)
+            throws TException
+    {
+        byte type = readByte();
+        header.set(type, type == TType.STOP ? 0 : readI16());
+    }
+
     @Override
     public void readFieldEnd() {}
 
@@ -361,6 +454,39 @@ public class TBinaryProtocol
         return intBitsToFloat(readI32());
     }
 
+    @Override
+    public int getRemainingBytes()
+    {
+        return transport.getRemainingBytes();
+    }
+
+    @Override
+    public int getMinSerializedSize(byte type)
+    {
+        switch (type) {
+            case TType.I16:
+                return 2;
+            case TType.I32:
+            case TType.FLOAT:
+            case TType.STRING:
+                // strings have a 4 byte length
+                return 4;
+            case TType.I64:
+            case TType.DOUBLE:
+                return 8;
+            case TType.LIST:
+            case TType.SET:
+                // element type and size
+                return 5;
+            case TType.MAP:
+                // key type, value type and size
+                return 6;
+            default:
+                // bool, byte and struct, which has at least the stop field
+                return 1;
+        }
+    }
+
     @Override
     public double readDouble()
             throws TException
@@ -368,6 +494,48 @@ public class TBinaryProtocol
         return longBitsToDouble(readI64());
     }
 
+    @Override
+    public void readI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Integer.BYTES);
+            transport.read(buffer, 0, count * Integer.BYTES);
+            ByteBuffer.wrap(buffer).asIntBuffer().get(array, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void readI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Long.BYTES);
+            transport.read(buffer, 0, count * Long.BYTES);
+            ByteBuffer.wrap(buffer).asLongBuffer().get(array, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void readDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Double.BYTES);
+            transport.read(buffer, 0, count * Double.BYTES);
+            ByteBuffer.wrap(buffer).asDoubleBuffer().get(array, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
     @Override
     public String readString()
             throws TException
@@ -413,6 +581,14 @@ public class TBinaryProtocol
         return length;
     }
 
+    private byte[] getArrayBuffer()
+    {
+        if (arrayBuffer == null) {
+            arrayBuffer = new byte[ARRAY_BUFFER_SIZE];
+        }
+        return arrayBuffer;
+    }
+
     private void readAll(byte[] buf, int len)
             throws TException
     {
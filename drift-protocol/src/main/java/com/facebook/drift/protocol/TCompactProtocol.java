@@ -28,6 +28,7 @@ import static java.lang.Double.longBitsToDouble;
 import static java.lang.Float.floatToIntBits;
 import static java.lang.Float.intBitsToFloat;
 import static java.lang.String.format;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 
@@ -72,6 +73,8 @@ public class TCompactProtocol
     private static final byte TYPE_MASK = (byte) 0xE0; // 1110 0000
     private static final byte TYPE_BITS = 0x07; // 0000 0111
     private static final int TYPE_SHIFT_AMOUNT = 5;
+    // primitive arrays are encoded through a scratch buffer of this size
+    private static final int ARRAY_BUFFER_SIZE = 8192;
 
     /**
      * All of the on-wire type codes.
@@ -113,10 +116,16 @@ public class TCompactProtocol
      */
     private Boolean booleanValue;
 
+    /**
+     * Holder reused by readFieldBegin() for the field header.
+     */
+    private final TFieldHeader fieldHeader = new TFieldHeader();
+
     /**
      * The transport for reading from or writing to.
      */
     private final TTransport transport;
+    private byte[] arrayBuffer;
 
     /**
      * Create a TCompactProtocol.
@@ -347,6 +356,69 @@ public class TCompactProtocol
         transport.write(data);
     }
 
+    /**
+     * Encodes the zigzag varints into a scratch buffer, so the transport is
+     * called once per chunk instead of once per value.
+     */
+    @Override
+    public void writeI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (position > ARRAY_BUFFER_SIZE - 5) {
+                transport.write(buffer, 0, position);
+                position = 0;
+            }
+            int n = intToZigZag(array[i]);
+            while ((n & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            buffer[position++] = (byte) n;
+        }
+        transport.write(buffer, 0, position);
+    }
+
+    @Override
+    public void writeI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (position > ARRAY_BUFFER_SIZE - 10) {
+                transport.write(buffer, 0, position);
+                position = 0;
+            }
+            long n = longToZigzag(array[i]);
+            while ((n & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            buffer[position++] = (byte) n;
+        }
+        transport.write(buffer, 0, position);
+    }
+
+    @Override
+    public void writeDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Double.BYTES);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer).order(LITTLE_ENDIAN);
+            for (int i = offset; i < offset + count; i++) {
+                byteBuffer.putLong(doubleToLongBits(array[i]));
+            }
+            transport.write(buffer, 0, count * Double.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
     /**
      * Write a string to the wire with a varint size preceding.
      */
@@ -550,6 +622,48 @@ public class TCompactProtocol
         return new TMessage(messageName, type, seqid);
     }
 
+    /**
+     * Read a message header into a reusable holder. Names found in the name
+     * table are not decoded.
+     */
+    @Override
+    public void readMessageBegin(TMessageHeader header, TMessageNameTable names)
+            throws TException
+    {
+        byte protocolId = readByte();
+        if (protocolId != PROTOCOL_ID) {
+            throw new TProtocolException("Expected protocol id " + Integer.toHexString(PROTOCOL_ID) + " but got " + Integer.toHexString(protocolId));
+        }
+        byte versionAndType = readByte();
+        byte version = (byte) (versionAndType & VERSION_MASK);
+        if (version != VERSION) {
+            throw new TProtocolException("Expected version " + VERSION + " but got " + version);
+        }
+        byte type = (byte) ((versionAndType >> TYPE_SHIFT_AMOUNT) & TYPE_BITS);
+        int seqid = readVarint32();
+
+        header.set(readMessageName(checkSize(readVarint32()), names), type, seqid);
+    }
+
+    /**
+     * Reads the message name into the array buffer and looks it up in the table,
+     * so only names that are not in the table are decoded into a new string.
+     */
+    private String readMessageName(int length, TMessageNameTable names)
+            throws TException
+    {
+        if (length > names.getMaxNameLength() || length > ARRAY_BUFFER_SIZE) {
+            return new String(readBinary(length), UTF_8);
+        }
+        byte[] buffer = getArrayBuffer();
+        transport.read(buffer, 0, length);
+        String name = names.lookup(buffer, 0, length);
+        if (name == null) {
+            name = new String(buffer, 0, length, UTF_8);
+        }
+        return name;
+    }
+
     /**
      * Read a struct begin. There's nothing on the wire for this, but it is our
      * opportunity to push a new struct begin marker onto the field stack.
@@ -579,12 +693,27 @@ public class TCompactProtocol
     @Override
     public TField readFieldBegin()
             throws TException
+    {
+        readFieldBegin(fieldHeader);
+        if (fieldHeader.getType() == TType.STOP) {
+            return TSTOP;
+        }
+        return new TField("", fieldHeader.getType(), fieldHeader.getId());
+    }
+
+    /**
+     * Read a field header off the wire into a reusable holder.
+     */
+    @Override
+    public void readFieldBegin(TFieldHeader header)
+            throws TException
     {
         byte type = readByte();
 
         // if it's a stop, then we can return immediately, as the struct is over.
         if (type == TType.STOP) {
-            return TSTOP;
+            header.set(TType.STOP, (short) 0);
+            return;
         }
 
         short fieldId;
@@ -600,8 +729,6 @@ public class TCompactProtocol
             fieldId = (short) (lastFieldId + modifier);
         }
 
-        TField field = new TField("", getTType((byte) (type & 0x0f)), fieldId);
-
         // if this happens to be a boolean field, the value is encoded in the type
         if (isBoolType(type)) {
             // save the boolean value in a special instance variable.
@@ -609,8 +736,8 @@ public class TCompactProtocol
         }
 
         // push the new field onto the field stack so we can keep the deltas going.
-        lastFieldId = field.getId();
-        return field;
+        lastFieldId = fieldId;
+        header.set(getTType((byte) (type & 0x0f)), fieldId);
     }
 
     /**
@@ -733,6 +860,26 @@ public class TCompactProtocol
         return intBitsToFloat(bytesToInt(floatBuf));
     }
 
+    @Override
+    public int getRemainingBytes()
+    {
+        return transport.getRemainingBytes();
+    }
+
+    @Override
+    public int getMinSerializedSize(byte type)
+    {
+        switch (type) {
+            case TType.FLOAT:
+                return 4;
+            case TType.DOUBLE:
+                return 8;
+            default:
+                // all other values are variable length, with at least one byte
+                return 1;
+        }
+    }
+
     private final byte[] doubleBuf = new byte[8];
 
     /**
@@ -746,6 +893,20 @@ public class TCompactProtocol
         return longBitsToDouble(bytesToLong(doubleBuf));
     }
 
+    @Override
+    public void readDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        byte[] buffer = getArrayBuffer();
+        while (length > 0) {
+            int count = Math.min(length, ARRAY_BUFFER_SIZE / Double.BYTES);
+            transport.read(buffer, 0, count * Double.BYTES);
+            ByteBuffer.wrap(buffer).order(LITTLE_ENDIAN).asDoubleBuffer().get(array, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
     /**
      * Reads a byte[] (via readBinary), and then UTF-8 decodes it.
      */
@@ -914,6 +1075,14 @@ public class TCompactProtocol
                 ((bytes[0] & 0xffL));
     }
 
+    private byte[] getArrayBuffer()
+    {
+        if (arrayBuffer == null) {
+            arrayBuffer = new byte[ARRAY_BUFFER_SIZE];
+        }
+        return arrayBuffer;
+    }
+
     private static int bytesToInt(byte[] bytes)
     {
         return ((bytes[3] & 0xff) << 24) |
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2017 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.protocol;
+
+/**
+ * Mutable field header that is reused for every field of a struct, so
+ * reading a field does not allocate a {@link TField}.
+ */
+public final class TFieldHeader
+{
+    private byte type;
+    private short id;
+
+    public void set(byte type, short id)
+    {
+        this.type = type;
+        this.id = id;
+    }
+
+    public byte getType()
+    {
+        return type;
+    }
+
+    public short getId()
+    {
+        return id;
+    }
+}
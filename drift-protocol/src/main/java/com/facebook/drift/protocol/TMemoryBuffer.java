@@ -45,7 +45,7 @@ public class TMemoryBuffer
     {
         int available = data.length - head;
         if (available < len) {
-            int need = len - available - tail;
+            int need = head - tail + len;
             byte[] temp = new byte[max(data.length * 2, need)];
             System.arraycopy(data, tail, temp, 0, head - tail);
             data = temp;
@@ -55,4 +55,10 @@ public class TMemoryBuffer
         System.arraycopy(buf, off, data, head, len);
         head += len;
     }
+
+    @Override
+    public int getRemainingBytes()
+    {
+        return head - tail;
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.protocol;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Table of known message names. Protocols use it to match the UTF-8 bytes
+ * of a message name against the known names, and return the existing
+ * string instead of decoding a new one.
+ */
+public final class TMessageNameTable
+{
+    public static final TMessageNameTable EMPTY = new TMessageNameTable(ImmutableSet.of());
+
+    // open addressing hash table of the encoded names
+    private final byte[][] encodedNames;
+    private final String[] names;
+    private final int mask;
+    private final int maxNameLength;
+
+    public TMessageNameTable(Collection<String> names)
+    {
+        Set<String> uniqueNames = ImmutableSet.copyOf(names);
+        int size = Integer.highestOneBit(Math.max(uniqueNames.size(), 1) * 2) * 2;
+        this.encodedNames = new byte[size][];
+        this.names = new String[size];
+        this.mask = size - 1;
+
+        int maxNameLength = 0;
+        for (String name : uniqueNames) {
+            byte[] encodedName = name.getBytes(UTF_8);
+            maxNameLength = Math.max(maxNameLength, encodedName.length);
+            int slot = hash(encodedName, 0, encodedName.length) & mask;
+            while (encodedNames[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            encodedNames[slot] = encodedName;
+            this.names[slot] = name;
+        }
+        this.maxNameLength = maxNameLength;
+    }
+
+    /**
+     * Length in bytes of the longest name in the table. Longer names can
+     * not be in the table.
+     */
+    public int getMaxNameLength()
+    {
+        return maxNameLength;
+    }
+
+    /**
+     * @return the name encoded in the specified bytes, or null if the name is not in the table
+     */
+    public String lookup(byte[] bytes, int offset, int length)
+    {
+        if (length > maxNameLength) {
+            return null;
+        }
+        for (int slot = hash(bytes, offset, length) & mask; encodedNames[slot] != null; slot = (slot + 1) & mask) {
+            if (equals(encodedNames[slot], bytes, offset, length)) {
+                return names[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the name encoded at the specified absolute position of the
+     * buffer. The position and limit of the buffer are not modified.
+     *
+     * @return the name, or null if the name is not in the table
+     */
+    public String lookup(ByteBuffer buffer, int offset, int length)
+    {
+        if (length > maxNameLength) {
+            return null;
+        }
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        for (int slot = hash & mask; encodedNames[slot] != null; slot = (slot + 1) & mask) {
+            byte[] encodedName = encodedNames[slot];
+            if (encodedName.length == length && equals(encodedName, buffer, offset)) {
+                return names[slot];
+            }
+        }
+        return null;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length)
+    {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes[offset + i];
+        }
+        return hash;
+    }
+
+    private static boolean equals(byte[] encodedName, byte[] bytes, int offset, int length)
+    {
+        if (encodedName.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (encodedName[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] encodedName, ByteBuffer buffer, int offset)
+    {
+        for (int i = 0; i < encodedName.length; i++) {
+            if (encodedName[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
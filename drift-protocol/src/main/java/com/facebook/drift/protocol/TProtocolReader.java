@@ -24,6 +24,17 @@ public interface TProtocolReader
     TMessage readMessageBegin()
             throws TException;
 
+    /**
+     * Reads a message header into a reusable holder. Names found in the name
+     * table are returned without decoding a new string.
+     */
+    default void readMessageBegin(TMessageHeader header, TMessageNameTable names)
+            throws TException
+    {
+        TMessage message = readMessageBegin();
+        header.set(message.getName(), message.getType(), message.getSequenceId());
+    }
+
     void readMessageEnd()
             throws TException;
 
@@ -36,6 +47,16 @@ public interface TProtocolReader
     TField readFieldBegin()
             throws TException;
 
+    /**
+     * Reads a field header into a reusable holder instead of allocating a {@link TField}.
+     */
+    default void readFieldBegin(TFieldHeader header)
+            throws TException
+    {
+        TField field = readFieldBegin();
+        header.set(field.getType(), field.getId());
+    }
+
     void readFieldEnd()
             throws TException;
 
@@ -78,6 +99,58 @@ public interface TProtocolReader
     double readDouble()
             throws TException;
 
+    /**
+     * Reads {@code length} consecutive i32 values, such as the elements of a list,
+     * into the array starting at {@code offset}.
+     */
+    default void readI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        for (int i = offset; i < offset + length; i++) {
+            array[i] = readI32();
+        }
+    }
+
+    /**
+     * Reads {@code length} consecutive i64 values into the array starting at {@code offset}.
+     */
+    default void readI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        for (int i = offset; i < offset + length; i++) {
+            array[i] = readI64();
+        }
+    }
+
+    /**
+     * Reads {@code length} consecutive double values into the array starting at {@code offset}.
+     */
+    default void readDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        for (int i = offset; i < offset + length; i++) {
+            array[i] = readDouble();
+        }
+    }
+
+    /**
+     * Gets the number of bytes left to read, or -1 if it is not known. Used to bound
+     * the space allocated up front for collections, whose size comes from the peer.
+     */
+    default int getRemainingBytes()
+    {
+        return -1;
+    }
+
+    /**
+     * Gets the minimum number of bytes a value of the specified {@link TType} occupies
+     * in this protocol.
+     */
+    default int getMinSerializedSize(byte type)
+    {
+        return 1;
+    }
+
     String readString()
             throws TException;
 
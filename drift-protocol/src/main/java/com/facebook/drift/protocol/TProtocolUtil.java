@@ -54,8 +54,9 @@ public final class TProtocolUtil
 
             case TType.STRUCT:
                 protocol.readStructBegin();
+                TFieldHeader field = new TFieldHeader();
                 while (true) {
-                    TField field = protocol.readFieldBegin();
+                    protocol.readFieldBegin(field);
                     if (field.getType() == TType.STOP) {
                         break;
                     }
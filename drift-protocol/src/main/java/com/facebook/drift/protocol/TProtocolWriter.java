@@ -81,6 +81,40 @@ public interface TProtocolWriter
     void writeDouble(double value)
             throws TException;
 
+    /**
+     * Writes {@code length} consecutive i32 values, such as the elements of a list,
+     * from the array starting at {@code offset}.
+     */
+    default void writeI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        for (int i = offset; i < offset + length; i++) {
+            writeI32(array[i]);
+        }
+    }
+
+    /**
+     * Writes {@code length} consecutive i64 values from the array starting at {@code offset}.
+     */
+    default void writeI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        for (int i = offset; i < offset + length; i++) {
+            writeI64(array[i]);
+        }
+    }
+
+    /**
+     * Writes {@code length} consecutive double values from the array starting at {@code offset}.
+     */
+    default void writeDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        for (int i = offset; i < offset + length; i++) {
+            writeDouble(array[i]);
+        }
+    }
+
     void writeString(String value)
             throws TException;
 
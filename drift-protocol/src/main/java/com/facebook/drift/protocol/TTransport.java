@@ -28,4 +28,12 @@ public interface TTransport
     {
         write(buf, 0, buf.length);
     }
+
+    /**
+     * Gets the number of bytes left to read, or -1 if it is not known.
+     */
+    default int getRemainingBytes()
+    {
+        return -1;
+    }
 }
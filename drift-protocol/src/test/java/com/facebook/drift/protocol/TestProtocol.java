@@ -18,6 +18,7 @@ package com.facebook.drift.protocol;
 import com.facebook.drift.TException;
 import org.testng.annotations.Test;
 
+import java.util.Random;
 import java.util.function.Function;
 
 import static org.testng.Assert.assertEquals;
@@ -33,6 +34,65 @@ public class TestProtocol
         assertFloat(TFacebookCompactProtocol::new);
     }
 
+    @Test
+    public void testPrimitiveArrays()
+            throws Exception
+    {
+        assertPrimitiveArrays(TBinaryProtocol::new);
+        assertPrimitiveArrays(TCompactProtocol::new);
+        assertPrimitiveArrays(TFacebookCompactProtocol::new);
+    }
+
+    private static void assertPrimitiveArrays(Function<TTransport, TProtocol> factory)
+            throws TException
+    {
+        // larger than the chunk size used by the bulk implementations
+        Random random = new Random(42);
+        int[] ints = random.ints(5000).toArray();
+        long[] longs = random.longs(5000).toArray();
+        double[] doubles = random.doubles(5000).toArray();
+        ints[0] = Integer.MIN_VALUE;
+        longs[0] = Long.MIN_VALUE;
+        doubles[0] = Double.NaN;
+
+        // values written in bulk must be readable one at a time, and vice versa
+        TProtocol bulk = factory.apply(new TMemoryBuffer(0));
+        bulk.writeI32Array(ints, 0, ints.length);
+        bulk.writeI64Array(longs, 0, longs.length);
+        bulk.writeDoubleArray(doubles, 0, doubles.length);
+        for (int value : ints) {
+            assertEquals(bulk.readI32(), value);
+        }
+        for (long value : longs) {
+            assertEquals(bulk.readI64(), value);
+        }
+        for (double value : doubles) {
+            assertEquals(bulk.readDouble(), value);
+        }
+
+        TProtocol single = factory.apply(new TMemoryBuffer(0));
+        for (int value : ints) {
+            single.writeI32(value);
+        }
+        for (long value : longs) {
+            single.writeI64(value);
+        }
+        for (double value : doubles) {
+            single.writeDouble(value);
+        }
+        int[] actualInts = new int[ints.length + 2];
+        long[] actualLongs = new long[longs.length + 2];
+        double[] actualDoubles = new double[doubles.length + 2];
+        single.readI32Array(actualInts, 1, ints.length);
+        single.readI64Array(actualLongs, 1, longs.length);
+        single.readDoubleArray(actualDoubles, 1, doubles.length);
+        for (int i = 0; i < ints.length; i++) {
+            assertEquals(actualInts[i + 1], ints[i]);
+            assertEquals(actualLongs[i + 1], longs[i]);
+            assertEquals(actualDoubles[i + 1], doubles[i]);
+        }
+    }
+
     private static void assertFloat(Function<TTransport, TProtocol> factory)
             throws TException
     {
@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.lang.String.format;
 
@@ -78,6 +79,12 @@ class DriftServerMethodInvoker
         return Optional.of(method.getMethodMetadata());
     }
 
+    @Override
+    public Set<String> getMethodNames()
+    {
+        return methods.keySet();
+    }
+
     @Override
     public ListenableFuture<Object> invoke(ServerInvokeRequest request)
     {
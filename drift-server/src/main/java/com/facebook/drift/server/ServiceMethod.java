@@ -15,12 +15,14 @@
  */
 package com.facebook.drift.server;
 
+import com.facebook.airlift.log.Logger;
 import com.facebook.drift.codec.ThriftCodecManager;
 import com.facebook.drift.codec.metadata.ThriftFieldMetadata;
 import com.facebook.drift.codec.metadata.ThriftHeaderParameter;
 import com.facebook.drift.codec.metadata.ThriftInjection;
 import com.facebook.drift.codec.metadata.ThriftMethodMetadata;
 import com.facebook.drift.codec.metadata.ThriftParameterInjection;
+import com.facebook.drift.server.compiler.GeneratedMethodInvoker;
 import com.facebook.drift.transport.MethodMetadata;
 import com.facebook.drift.transport.server.ServerInvokeRequest;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -30,6 +32,7 @@ import java.lang.reflect.Method;
 import java.util.List;
 
 import static com.facebook.drift.server.FilteredMethodInvoker.createFilteredMethodInvoker;
+import static com.facebook.drift.server.compiler.ServiceMethodInvokerGenerator.generateMethodInvoker;
 import static com.facebook.drift.transport.MethodMetadata.toMethodMetadata;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
@@ -38,6 +41,8 @@ import static java.util.Objects.requireNonNull;
 
 class ServiceMethod
 {
+    private static final Logger log = Logger.get(ServiceMethod.class);
+
     private final Object service;
     private final MethodMetadata methodMetadata;
     private final ServerMethodInvoker invoker;
@@ -50,7 +55,21 @@ class ServiceMethod
 
         this.service = service;
         this.methodMetadata = toMethodMetadata(codecManager, methodMetadata);
-        invoker = createFilteredMethodInvoker(filters, new ServiceMethodInvoker(service, methodMetadata));
+        invoker = createFilteredMethodInvoker(filters, createServiceMethodInvoker(service, methodMetadata));
+    }
+
+    private static ServerMethodInvoker createServiceMethodInvoker(Object service, ThriftMethodMetadata methodMetadata)
+    {
+        GeneratedMethodInvoker generatedInvoker;
+        try {
+            generatedInvoker = generateMethodInvoker(service, methodMetadata);
+        }
+        catch (RuntimeException | LinkageError e) {
+            // the method or its parameter types are not accessible from generated code
+            log.debug(e, "Using reflection for method %s", methodMetadata.getMethod());
+            return new ServiceMethodInvoker(service, methodMetadata);
+        }
+        return new CompiledServiceMethodInvoker(generatedInvoker);
     }
 
     public MethodMetadata getMethodMetadata()
@@ -72,6 +91,33 @@ class ServiceMethod
                 .toString();
     }
 
+    private static class CompiledServiceMethodInvoker
+            implements ServerMethodInvoker
+    {
+        private final GeneratedMethodInvoker invoker;
+
+        public CompiledServiceMethodInvoker(GeneratedMethodInvoker invoker)
+        {
+            this.invoker = requireNonNull(invoker, "invoker is null");
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ListenableFuture<Object> invoke(ServerInvokeRequest request)
+        {
+            try {
+                Object response = invoker.invoke(request);
+                if (response instanceof ListenableFuture) {
+                    return (ListenableFuture<Object>) response;
+                }
+                return immediateFuture(response);
+            }
+            catch (Throwable e) {
+                return immediateFailedFuture(e);
+            }
+        }
+    }
+
     private static class ServiceMethodInvoker
             implements ServerMethodInvoker
     {
@@ -111,7 +157,7 @@ class ServiceMethod
                 }
                 ThriftFieldMetadata normalParameter = normalParameters[i];
                 if (normalParameter != null) {
-                    parameters[i] = request.getParameters().get(normalParameter.getId());
+                    parameters[i] = request.getParameter(normalParameter.getId());
                 }
             }
 
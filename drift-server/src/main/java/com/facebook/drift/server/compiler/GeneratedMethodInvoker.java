@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.server.compiler;
+
+import com.facebook.drift.transport.server.ServerInvokeRequest;
+
+/**
+ * Invokes a service method directly. Implementations are generated by
+ * {@link ServiceMethodInvokerGenerator}.
+ */
+public interface GeneratedMethodInvoker
+{
+    /**
+     * @return the value returned by the service method, boxed if primitive, or null for a void method
+     */
+    Object invoke(ServerInvokeRequest request)
+            throws Exception;
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.server.compiler;
+
+import com.facebook.airlift.bytecode.BytecodeBlock;
+import com.facebook.airlift.bytecode.ClassDefinition;
+import com.facebook.airlift.bytecode.DynamicClassLoader;
+import com.facebook.airlift.bytecode.FieldDefinition;
+import com.facebook.airlift.bytecode.MethodDefinition;
+import com.facebook.airlift.bytecode.Parameter;
+import com.facebook.airlift.bytecode.expression.BytecodeExpression;
+import com.facebook.drift.codec.metadata.ThriftFieldMetadata;
+import com.facebook.drift.codec.metadata.ThriftHeaderParameter;
+import com.facebook.drift.codec.metadata.ThriftInjection;
+import com.facebook.drift.codec.metadata.ThriftMethodMetadata;
+import com.facebook.drift.codec.metadata.ThriftParameterInjection;
+import com.facebook.drift.transport.server.ServerInvokeRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.airlift.bytecode.Access.FINAL;
+import static com.facebook.airlift.bytecode.Access.PRIVATE;
+import static com.facebook.airlift.bytecode.Access.PUBLIC;
+import static com.facebook.airlift.bytecode.Access.SUPER;
+import static com.facebook.airlift.bytecode.Access.a;
+import static com.facebook.airlift.bytecode.ClassGenerator.classGenerator;
+import static com.facebook.airlift.bytecode.Parameter.arg;
+import static com.facebook.airlift.bytecode.ParameterizedType.getPathName;
+import static com.facebook.airlift.bytecode.ParameterizedType.type;
+import static com.facebook.airlift.bytecode.ParameterizedType.typeFromPathName;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.constantInt;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.constantNull;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.constantString;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.defaultValue;
+import static com.facebook.airlift.bytecode.expression.BytecodeExpressions.invokeStatic;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generates a {@link GeneratedMethodInvoker} that calls a service method
+ * directly, instead of filling an argument array and using reflection.
+ */
+public final class ServiceMethodInvokerGenerator
+{
+    private static final String PACKAGE = "$drift";
+
+    private ServiceMethodInvokerGenerator() {}
+
+    /**
+     * @throws IllegalArgumentException if the method or one of its parameter types is not public
+     */
+    public static GeneratedMethodInvoker generateMethodInvoker(Object service, ThriftMethodMetadata methodMetadata)
+    {
+        requireNonNull(service, "service is null");
+        Method method = requireNonNull(methodMetadata.getMethod(), "method is null");
+        Class<?> serviceType = method.getDeclaringClass();
+        checkArgument(Modifier.isPublic(method.getModifiers()) && isPublic(serviceType), "Method is not public: %s", method);
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            checkArgument(isPublic(parameterType), "Parameter type of method %s is not public: %s", method, parameterType.getName());
+        }
+
+        ClassDefinition classDefinition = new ClassDefinition(
+                a(PUBLIC, FINAL, SUPER),
+                typeFromPathName(PACKAGE + "/" + getPathName(serviceType) + "$" + method.getName() + "Invoker").getClassName(),
+                type(Object.class),
+                type(GeneratedMethodInvoker.class));
+
+        FieldDefinition serviceField = classDefinition.declareField(a(PRIVATE, FINAL), "service", serviceType);
+        defineConstructor(classDefinition, serviceField);
+        defineInvokeMethod(classDefinition, serviceField, methodMetadata);
+
+        DynamicClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<DynamicClassLoader>) () ->
+                new DynamicClassLoader(serviceType.getClassLoader()));
+        Class<? extends GeneratedMethodInvoker> invokerClass = classGenerator(classLoader)
+                .defineClass(classDefinition, GeneratedMethodInvoker.class);
+
+        try {
+            return invokerClass.getConstructor(serviceType).newInstance(service);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Generated class is invalid", e);
+        }
+    }
+
+    private static void defineConstructor(ClassDefinition classDefinition, FieldDefinition serviceField)
+    {
+        Parameter service = arg("service", serviceField.getType());
+        MethodDefinition constructor = classDefinition.declareConstructor(a(PUBLIC), service);
+        constructor.getBody()
+                .append(constructor.getThis())
+                .invokeConstructor(Object.class)
+                .append(constructor.getThis().setField(serviceField, service))
+                .ret();
+    }
+
+    private static void defineInvokeMethod(ClassDefinition classDefinition, FieldDefinition serviceField, ThriftMethodMetadata methodMetadata)
+    {
+        Method method = methodMetadata.getMethod();
+        Parameter request = arg("request", ServerInvokeRequest.class);
+        MethodDefinition invoke = classDefinition.declareMethod(a(PUBLIC), "invoke", type(Object.class), request)
+                .addException(Exception.class);
+
+        // values for each parameter of the service method
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        BytecodeExpression[] arguments = new BytecodeExpression[parameterTypes.length];
+        for (ThriftHeaderParameter headerParameter : methodMetadata.getHeaderParameters()) {
+            int index = headerParameter.getIndex();
+            arguments[index] = request.invoke("getHeaders", Map.class)
+                    .invoke("get", Object.class, ImmutableList.of(Object.class), constantString(headerParameter.getName()))
+                    .cast(parameterTypes[index]);
+        }
+        for (ThriftFieldMetadata parameter : methodMetadata.getParameters()) {
+            for (ThriftInjection injection : parameter.getInjections()) {
+                int index = ((ThriftParameterInjection) injection).getParameterIndex();
+                BytecodeExpression value = request.invoke("getParameter", Object.class, ImmutableList.of(short.class), constantInt(parameter.getId()));
+                if (parameterTypes[index].isPrimitive()) {
+                    // fail like a reflective invocation would, instead of with a NullPointerException when unboxing
+                    value = invokeStatic(ServiceMethodInvokerGenerator.class, "checkPrimitiveArgument", Object.class, value, constantString(parameter.getName()));
+                }
+                arguments[index] = unbox(value, parameterTypes[index]);
+            }
+        }
+        List<BytecodeExpression> argumentList = new ArrayList<>();
+        for (int i = 0; i < arguments.length; i++) {
+            argumentList.add(arguments[i] == null ? defaultValue(parameterTypes[i]) : arguments[i]);
+        }
+
+        BytecodeExpression result = invoke.getThis().getField(serviceField).invoke(method, argumentList);
+        BytecodeBlock body = invoke.getBody();
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            body.append(result).append(constantNull(Object.class).ret());
+        }
+        else if (returnType.isPrimitive()) {
+            Class<?> wrapperType = Primitives.wrap(returnType);
+            body.append(invokeStatic(wrapperType, "valueOf", wrapperType, result).ret());
+        }
+        else {
+            body.append(result.ret());
+        }
+    }
+
+    /**
+     * Called by generated invokers for arguments of primitive parameters, which can not be null.
+     *
+     * @throws IllegalArgumentException if the argument is missing from the request
+     */
+    public static Object checkPrimitiveArgument(Object value, String name)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing value for primitive parameter: " + name);
+        }
+        return value;
+    }
+
+    private static BytecodeExpression unbox(BytecodeExpression value, Class<?> type)
+    {
+        if (!type.isPrimitive()) {
+            return value.cast(type);
+        }
+        return value.cast(Primitives.wrap(type)).invoke(type.getName() + "Value", type);
+    }
+
+    private static boolean isPublic(Class<?> type)
+    {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.server.compiler;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.annotations.ThriftHeader;
+import com.facebook.drift.annotations.ThriftMethod;
+import com.facebook.drift.annotations.ThriftService;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.metadata.ThriftMethodMetadata;
+import com.facebook.drift.codec.metadata.ThriftServiceMetadata;
+import com.facebook.drift.transport.MethodMetadata;
+import com.facebook.drift.transport.server.ServerInvokeRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.drift.transport.MethodMetadata.toMethodMetadata;
+import static com.google.common.collect.MoreCollectors.onlyElement;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class TestServiceMethodInvokerGenerator
+{
+    private static final ThriftCodecManager CODEC_MANAGER = new ThriftCodecManager();
+
+    @Test
+    public void testInvoke()
+            throws Exception
+    {
+        TestingService service = new TestingService();
+        GeneratedMethodInvoker invoker = generate(service, "compute");
+        assertFalse(invoker.getClass().getName().startsWith("com.facebook.drift"));
+
+        Map<Short, Object> parameters = ImmutableMap.<Short, Object>builder()
+                .put((short) 1, 3)
+                .put((short) 2, 4L)
+                .put((short) 3, true)
+                .put((short) 4, 0.5)
+                .put((short) 5, "name")
+                .put((short) 6, ImmutableList.of(1, 2, 3))
+                .build();
+        Object result = invoker.invoke(request("compute", ImmutableMap.of("header", "value"), parameters));
+        assertEquals(result, 13L);
+        assertEquals(service.getInvocation(), "3 4 true 0.5 name [1, 2, 3] value");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Missing value for primitive parameter: a")
+    public void testMissingPrimitiveArgument()
+            throws Exception
+    {
+        GeneratedMethodInvoker invoker = generate(new TestingService(), "compute");
+        Map<Short, Object> parameters = ImmutableMap.<Short, Object>builder()
+                .put((short) 2, 4L)
+                .put((short) 3, true)
+                .put((short) 4, 0.5)
+                .put((short) 5, "name")
+                .put((short) 6, ImmutableList.of(1, 2, 3))
+                .build();
+        invoker.invoke(request("compute", ImmutableMap.of(), parameters));
+    }
+
+    @Test
+    public void testVoid()
+            throws Exception
+    {
+        TestingService service = new TestingService();
+        GeneratedMethodInvoker invoker = generate(service, "record");
+        assertNull(invoker.invoke(request("record", ImmutableMap.of(), ImmutableMap.of((short) 1, "hello"))));
+        assertEquals(service.getInvocation(), "hello");
+    }
+
+    @Test
+    public void testException()
+            throws Exception
+    {
+        GeneratedMethodInvoker invoker = generate(new TestingService(), "fail");
+        try {
+            invoker.invoke(request("fail", ImmutableMap.of(), ImmutableMap.of((short) 1, "boom")));
+            fail("expected exception");
+        }
+        catch (TException e) {
+            assertEquals(e.getMessage(), "boom");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Method is not public: .*")
+    public void testNotPublic()
+    {
+        generate(new PrivateService(), "ping");
+    }
+
+    private static GeneratedMethodInvoker generate(Object service, String methodName)
+    {
+        return ServiceMethodInvokerGenerator.generateMethodInvoker(service, getMethod(service.getClass(), methodName));
+    }
+
+    private static ServerInvokeRequest request(String methodName, Map<String, String> headers, Map<Short, Object> parameters)
+    {
+        MethodMetadata method = toMethodMetadata(CODEC_MANAGER, getMethod(TestingService.class, methodName));
+        return new ServerInvokeRequest(method, headers, parameters);
+    }
+
+    private static ThriftMethodMetadata getMethod(Class<?> serviceClass, String methodName)
+    {
+        return new ThriftServiceMetadata(serviceClass, CODEC_MANAGER.getCatalog()).getMethods().stream()
+                .filter(method -> method.getName().equals(methodName))
+                .collect(onlyElement());
+    }
+
+    @ThriftService
+    public static class TestingService
+    {
+        private String invocation;
+
+        @ThriftMethod
+        public long compute(int a, long b, boolean c, double d, String name, List<Integer> values, @ThriftHeader("header") String header)
+        {
+            invocation = a + " " + b + " " + c + " " + d + " " + name + " " + values + " " + header;
+            return a + b + values.size() * 2;
+        }
+
+        @ThriftMethod
+        public void record(String value)
+        {
+            invocation = value;
+        }
+
+        @ThriftMethod
+        public String fail(String message)
+                throws TException
+        {
+            throw new TException(message);
+        }
+
+        public String getInvocation()
+        {
+            return invocation;
+        }
+    }
+
+    @ThriftService
+    private static class PrivateService
+    {
+        @ThriftMethod
+        public void ping() {}
+    }
+}
@@ -16,6 +16,7 @@
 package com.facebook.drift.transport.apache.client;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.configuration.ConfigSecuritySensitive;
 import com.google.common.net.HostAndPort;
 import io.airlift.units.DataSize;
@@ -23,6 +24,7 @@ import io.airlift.units.Duration;
 import io.airlift.units.MaxDataSize;
 import io.airlift.units.MinDuration;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import java.io.File;
@@ -32,6 +34,7 @@ import static com.facebook.drift.transport.apache.client.ApacheThriftClientConfi
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class ApacheThriftClientConfig
 {
@@ -59,6 +62,11 @@ public class ApacheThriftClientConfig
     private File key;
     private String keyPassword;
 
+    private boolean connectionPoolEnabled = true;
+    private int connectionPoolMaxIdleConnectionsPerDestination = 8;
+    private Duration connectionPoolIdleTimeout = new Duration(1, MINUTES);
+    private Duration connectionPoolHealthCheckAfterIdle = new Duration(1, SECONDS);
+
     @NotNull
     public Transport getTransport()
     {
@@ -186,4 +194,57 @@ public class ApacheThriftClientConfig
         this.keyPassword = keyPassword;
         return this;
     }
+
+    public boolean isConnectionPoolEnabled()
+    {
+        return connectionPoolEnabled;
+    }
+
+    @Config("thrift.client.connection-pool.enabled")
+    public ApacheThriftClientConfig setConnectionPoolEnabled(boolean connectionPoolEnabled)
+    {
+        this.connectionPoolEnabled = connectionPoolEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getConnectionPoolMaxIdleConnectionsPerDestination()
+    {
+        return connectionPoolMaxIdleConnectionsPerDestination;
+    }
+
+    @Config("thrift.client.connection-pool.max-idle-connections-per-destination")
+    public ApacheThriftClientConfig setConnectionPoolMaxIdleConnectionsPerDestination(int connectionPoolMaxIdleConnectionsPerDestination)
+    {
+        this.connectionPoolMaxIdleConnectionsPerDestination = connectionPoolMaxIdleConnectionsPerDestination;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getConnectionPoolIdleTimeout()
+    {
+        return connectionPoolIdleTimeout;
+    }
+
+    @Config("thrift.client.connection-pool.idle-timeout")
+    public ApacheThriftClientConfig setConnectionPoolIdleTimeout(Duration connectionPoolIdleTimeout)
+    {
+        this.connectionPoolIdleTimeout = connectionPoolIdleTimeout;
+        return this;
+    }
+
+    @NotNull
+    public Duration getConnectionPoolHealthCheckAfterIdle()
+    {
+        return connectionPoolHealthCheckAfterIdle;
+    }
+
+    @Config("thrift.client.connection-pool.health-check-after-idle")
+    @ConfigDescription("Check that a pooled connection is still open before reusing it when it has been idle for this long")
+    public ApacheThriftClientConfig setConnectionPoolHealthCheckAfterIdle(Duration connectionPoolHealthCheckAfterIdle)
+    {
+        this.connectionPoolHealthCheckAfterIdle = connectionPoolHealthCheckAfterIdle;
+        return this;
+    }
 }
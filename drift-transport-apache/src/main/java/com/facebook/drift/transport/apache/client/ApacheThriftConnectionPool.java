@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.apache.client;
+
+import com.google.common.net.HostAndPort;
+import io.airlift.units.Duration;
+import org.apache.thrift.transport.TSocket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps connections open between requests. Each destination has a stack of
+ * idle connections, so the most recently used connection is reused first
+ * and the rest can reach the idle timeout. Connections that have been idle
+ * for longer than the health check time are checked before reuse, which
+ * catches connections with stray data waiting.
+ */
+class ApacheThriftConnectionPool
+        implements Closeable
+{
+    private final int maxIdleConnectionsPerDestination;
+    private final long idleTimeoutNanos;
+    private final long healthCheckAfterIdleNanos;
+
+    private final ConcurrentMap<HostAndPort, Destination> destinations = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> cleanupTask;
+
+    private volatile boolean closed;
+
+    public ApacheThriftConnectionPool(
+            int maxIdleConnectionsPerDestination,
+            Duration idleTimeout,
+            Duration healthCheckAfterIdle,
+            ScheduledExecutorService scheduledExecutorService)
+    {
+        checkArgument(maxIdleConnectionsPerDestination > 0, "maxIdleConnectionsPerDestination must be positive");
+        this.maxIdleConnectionsPerDestination = maxIdleConnectionsPerDestination;
+        this.idleTimeoutNanos = requireNonNull(idleTimeout, "idleTimeout is null").roundTo(NANOSECONDS);
+        this.healthCheckAfterIdleNanos = requireNonNull(healthCheckAfterIdle, "healthCheckAfterIdle is null").roundTo(NANOSECONDS);
+
+        requireNonNull(scheduledExecutorService, "scheduledExecutorService is null");
+        cleanupTask = scheduledExecutorService.scheduleWithFixedDelay(this::cleanUp, 1, 1, SECONDS);
+    }
+
+    /**
+     * Returns an open idle connection to the address, if there is one.
+     * The caller owns the connection until it is returned to the pool.
+     */
+    public Optional<TSocket> takeConnection(HostAndPort address)
+    {
+        Destination destination = destinations.get(address);
+        if (destination == null) {
+            return Optional.empty();
+        }
+
+        long now = System.nanoTime();
+        while (true) {
+            IdleConnection connection = destination.poll();
+            if (connection == null) {
+                return Optional.empty();
+            }
+
+            long idleNanos = now - connection.getIdleSince();
+            if (idleNanos < idleTimeoutNanos &&
+                    connection.getSocket().isOpen() &&
+                    (idleNanos < healthCheckAfterIdleNanos || isHealthy(connection.getSocket()))) {
+                return Optional.of(connection.getSocket());
+            }
+            connection.getSocket().close();
+        }
+    }
+
+    /**
+     * Returns a connection that completed a request cleanly. The connection
+     * is closed if the pool is closed or the destination already has the
+     * maximum number of idle connections.
+     */
+    public void returnConnection(HostAndPort address, TSocket socket)
+    {
+        if (closed || !socket.isOpen()) {
+            socket.close();
+            return;
+        }
+
+        Destination destination = destinations.computeIfAbsent(address, ignored -> new Destination());
+        if (!destination.offer(new IdleConnection(socket, System.nanoTime()))) {
+            socket.close();
+        }
+
+        // close may have drained the pool while this connection was being added
+        if (closed) {
+            destination.closeAll();
+        }
+    }
+
+    void cleanUp()
+    {
+        long now = System.nanoTime();
+        for (Destination destination : destinations.values()) {
+            destination.closeIdle(now);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        cleanupTask.cancel(false);
+        for (Destination destination : destinations.values()) {
+            destination.closeAll();
+        }
+    }
+
+    /**
+     * Checks without blocking that an idle connection is still open and has
+     * no unexpected data waiting. A connection the server closed can not be
+     * detected this way; the invoker sends the request again when such a
+     * connection fails before any response is read.
+     */
+    private static boolean isHealthy(TSocket connection)
+    {
+        Socket socket = connection.getSocket();
+        try {
+            return !socket.isClosed() &&
+                    !socket.isInputShutdown() &&
+                    socket.getInputStream().available() == 0;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private class Destination
+    {
+        // most recently returned connection is at the head, guarded by this
+        private final Deque<IdleConnection> connections = new ArrayDeque<>();
+
+        public synchronized IdleConnection poll()
+        {
+            return connections.pollFirst();
+        }
+
+        public synchronized boolean offer(IdleConnection connection)
+        {
+            if (connections.size() >= maxIdleConnectionsPerDestination) {
+                return false;
+            }
+            connections.addFirst(connection);
+            return true;
+        }
+
+        public void closeIdle(long now)
+        {
+            List<IdleConnection> expired = new ArrayList<>();
+            synchronized (this) {
+                Iterator<IdleConnection> iterator = connections.descendingIterator();
+                while (iterator.hasNext()) {
+                    IdleConnection connection = iterator.next();
+                    if (now - connection.getIdleSince() < idleTimeoutNanos) {
+                        // connections are ordered by idle time
+                        break;
+                    }
+                    iterator.remove();
+                    expired.add(connection);
+                }
+            }
+            expired.forEach(connection -> connection.getSocket().close());
+        }
+
+        public void closeAll()
+        {
+            List<IdleConnection> connections;
+            synchronized (this) {
+                connections = new ArrayList<>(this.connections);
+                this.connections.clear();
+            }
+            connections.forEach(connection -> connection.getSocket().close());
+        }
+    }
+
+    private static class IdleConnection
+    {
+        private final TSocket socket;
+        private final long idleSince;
+
+        public IdleConnection(TSocket socket, long idleSince)
+        {
+            this.socket = requireNonNull(socket, "socket is null");
+            this.idleSince = idleSince;
+        }
+
+        public TSocket getSocket()
+        {
+            return socket;
+        }
+
+        public long getIdleSince()
+        {
+            return idleSince;
+        }
+    }
+}
@@ -70,7 +70,7 @@ import static org.apache.thrift.protocol.TMessageType.REPLY;
 public class ApacheThriftMethodInvoker
         implements MethodInvoker
 {
-    // This client only sends a single request per connection, so the sequence id can be constant
+    // This client only has a single outstanding request per connection, so the sequence id can be constant
     private static final int SEQUENCE_ID = 77;
 
     private final ListeningExecutorService executorService;
@@ -82,6 +82,7 @@ public class ApacheThriftMethodInvoker
     private final int requestTimeoutMillis;
     private final Optional<HostAndPort> socksProxy;
     private final Optional<SSLContext> sslContext;
+    private final Optional<ApacheThriftConnectionPool> connectionPool;
 
     public ApacheThriftMethodInvoker(
             ListeningExecutorService executorService,
@@ -92,6 +93,20 @@ public class ApacheThriftMethodInvoker
             Duration requestTimeout,
             Optional<HostAndPort> socksProxy,
             Optional<SSLContext> sslContext)
+    {
+        this(executorService, delayService, transportFactory, protocolFactory, connectTimeout, requestTimeout, socksProxy, sslContext, Optional.empty());
+    }
+
+    ApacheThriftMethodInvoker(
+            ListeningExecutorService executorService,
+            ListeningScheduledExecutorService delayService,
+            TTransportFactory transportFactory,
+            TProtocolFactory protocolFactory,
+            Duration connectTimeout,
+            Duration requestTimeout,
+            Optional<HostAndPort> socksProxy,
+            Optional<SSLContext> sslContext,
+            Optional<ApacheThriftConnectionPool> connectionPool)
     {
         this.executorService = requireNonNull(executorService, "executorService is null");
         this.delayService = requireNonNull(delayService, "delayService is null");
@@ -101,6 +116,7 @@ public class ApacheThriftMethodInvoker
         this.requestTimeoutMillis = Ints.saturatedCast(requireNonNull(requestTimeout, "requestTimeout is null").toMillis());
         this.socksProxy = requireNonNull(socksProxy, "socksProxy is null");
         this.sslContext = requireNonNull(sslContext, "sslContext is null");
+        this.connectionPool = requireNonNull(connectionPool, "connectionPool is null");
     }
 
     @Override
@@ -130,29 +146,103 @@ public class ApacheThriftMethodInvoker
     {
         Address address = request.getAddress();
 
-        TSocket socket = createTSocket(address.getHostAndPort());
-        if (!socket.isOpen()) {
+        Optional<TSocket> pooledSocket = connectionPool.flatMap(pool -> pool.takeConnection(address.getHostAndPort()));
+        if (pooledSocket.isPresent()) {
+            TSocket socket = pooledSocket.get();
+            ReadTrackingTransport transport = new ReadTrackingTransport(socket);
+            TProtocol protocol;
             try {
-                socket.open();
+                socket.setTimeout(requestTimeoutMillis);
+                protocol = protocolFactory.getProtocol(transportFactory.getTransport(transport));
+                writeRequest(request.getMethod(), request.getParameters(), protocol);
             }
             catch (org.apache.thrift.transport.TTransportException e) {
-                throw new ConnectionFailedException(address, e);
+                // the server closed the idle connection, so the request was not delivered and
+                // can be sent again on a new connection, even if the method is not idempotent
+                socket.close();
+                return invokeOnNewConnection(request);
+            }
+            catch (Throwable t) {
+                socket.close();
+                throw t;
+            }
+            try {
+                return receiveResponse(request, socket, protocol);
+            }
+            catch (org.apache.thrift.transport.TTransportException e) {
+                if (transport.hasRead() || !isConnectionClosed(e)) {
+                    throw e;
+                }
+                // the server closed the idle connection without reading the request, as it
+                // sent no response at all, so the request can be sent again on a new connection
+                return invokeOnNewConnection(request);
             }
         }
+        return invokeOnNewConnection(request);
+    }
 
-        try {
-            TTransport transport = transportFactory.getTransport(socket);
-            TProtocol protocol = protocolFactory.getProtocol(transport);
+    private static boolean isConnectionClosed(org.apache.thrift.transport.TTransportException e)
+    {
+        // end of stream or connection reset, but not a timeout
+        return e.getType() == org.apache.thrift.transport.TTransportException.END_OF_FILE ||
+                (e.getCause() instanceof SocketException);
+    }
 
+    private Object invokeOnNewConnection(InvokeRequest request)
+            throws Exception
+    {
+        TSocket socket = openSocket(request.getAddress());
+        TProtocol protocol;
+        try {
+            protocol = protocolFactory.getProtocol(transportFactory.getTransport(socket));
             writeRequest(request.getMethod(), request.getParameters(), protocol);
+        }
+        catch (Throwable t) {
+            socket.close();
+            throw t;
+        }
+        return receiveResponse(request, socket, protocol);
+    }
 
-            return readResponse(request.getMethod(), protocol);
+    private Object receiveResponse(InvokeRequest request, TSocket socket, TProtocol protocol)
+            throws Exception
+    {
+        boolean reusable = false;
+        try {
+            Object result = readResponse(request.getMethod(), protocol);
+            reusable = true;
+            return result;
+        }
+        catch (DriftApplicationException | org.apache.thrift.TApplicationException e) {
+            // the entire response was read, so the connection can still be used
+            reusable = true;
+            throw e;
         }
         finally {
-            socket.close();
+            if (reusable && connectionPool.isPresent()) {
+                connectionPool.get().returnConnection(request.getAddress().getHostAndPort(), socket);
+            }
+            else {
+                socket.close();
+            }
         }
     }
 
+    private TSocket openSocket(Address address)
+            throws Exception
+    {
+        TSocket socket = createTSocket(address.getHostAndPort());
+        if (!socket.isOpen()) {
+            try {
+                socket.open();
+            }
+            catch (org.apache.thrift.transport.TTransportException e) {
+                throw new ConnectionFailedException(address, e);
+            }
+        }
+        return socket;
+    }
+
     private TSocket createTSocket(HostAndPort address)
             throws TTransportException
     {
@@ -303,4 +393,68 @@ public class ApacheThriftMethodInvoker
         }
         return e;
     }
+
+    /**
+     * Records whether any response data has been read from the connection.
+     */
+    private static class ReadTrackingTransport
+            extends TTransport
+    {
+        private final TTransport delegate;
+        private boolean read;
+
+        public ReadTrackingTransport(TTransport delegate)
+        {
+            this.delegate = requireNonNull(delegate, "delegate is null");
+        }
+
+        public boolean hasRead()
+        {
+            return read;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void open()
+                throws org.apache.thrift.transport.TTransportException
+        {
+            delegate.open();
+        }
+
+        @Override
+        public void close()
+        {
+            delegate.close();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+                throws org.apache.thrift.transport.TTransportException
+        {
+            int bytes = delegate.read(buffer, offset, length);
+            if (bytes > 0) {
+                read = true;
+            }
+            return bytes;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length)
+                throws org.apache.thrift.transport.TTransportException
+        {
+            delegate.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush()
+                throws org.apache.thrift.transport.TTransportException
+        {
+            delegate.flush();
+        }
+    }
 }
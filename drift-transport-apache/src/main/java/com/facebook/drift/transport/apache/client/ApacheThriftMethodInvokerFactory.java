@@ -21,6 +21,7 @@ import com.facebook.drift.transport.client.MethodInvokerFactory;
 import com.google.common.net.HostAndPort;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import io.airlift.units.Duration;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
@@ -35,10 +36,14 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -60,6 +65,7 @@ public class ApacheThriftMethodInvokerFactory<I>
     private final ListeningExecutorService executorService;
     private final ListeningScheduledExecutorService delayService;
     private final HostAndPort defaultSocksProxy;
+    private final ConcurrentMap<ConnectionPoolKey, ApacheThriftConnectionPool> connectionPools = new ConcurrentHashMap<>();
 
     public static ApacheThriftMethodInvokerFactory<?> createStaticApacheThriftMethodInvokerFactory(ApacheThriftClientConfig clientConfig)
     {
@@ -129,6 +135,16 @@ public class ApacheThriftMethodInvokerFactory<I>
             sslContext = Optional.of(createSslContext(config));
         }
 
+        // clients with the same connection settings share a pool, so they reuse each other's connections
+        Optional<ApacheThriftConnectionPool> connectionPool = Optional.empty();
+        if (config.isConnectionPoolEnabled()) {
+            connectionPool = Optional.of(connectionPools.computeIfAbsent(new ConnectionPoolKey(config), key -> new ApacheThriftConnectionPool(
+                    config.getConnectionPoolMaxIdleConnectionsPerDestination(),
+                    config.getConnectionPoolIdleTimeout(),
+                    config.getConnectionPoolHealthCheckAfterIdle(),
+                    delayService)));
+        }
+
         return new ApacheThriftMethodInvoker(
                 executorService,
                 delayService,
@@ -137,7 +153,8 @@ public class ApacheThriftMethodInvokerFactory<I>
                 config.getConnectTimeout(),
                 config.getRequestTimeout(),
                 Optional.ofNullable(config.getSocksProxy()),
-                sslContext);
+                sslContext,
+                connectionPool);
     }
 
     private static SSLContext createSslContext(ApacheThriftClientConfig config)
@@ -169,6 +186,68 @@ public class ApacheThriftMethodInvokerFactory<I>
     @Override
     public void close()
     {
+        connectionPools.values().forEach(ApacheThriftConnectionPool::close);
+        connectionPools.clear();
         shutdownAndAwaitTermination(executorService, 5, TimeUnit.MINUTES);
     }
+
+    /**
+     * Settings that a pooled connection was opened with. The request timeout
+     * is not included, since it is set on the connection for every request.
+     */
+    private static final class ConnectionPoolKey
+    {
+        private final ApacheThriftClientConfig.Transport transport;
+        private final ApacheThriftClientConfig.Protocol protocol;
+        private final Optional<HostAndPort> socksProxy;
+        private final boolean sslEnabled;
+        private final Optional<File> trustCertificate;
+        private final Optional<File> key;
+        private final Optional<String> keyPassword;
+        private final int maxIdleConnectionsPerDestination;
+        private final Duration idleTimeout;
+        private final Duration healthCheckAfterIdle;
+
+        public ConnectionPoolKey(ApacheThriftClientConfig config)
+        {
+            this.transport = config.getTransport();
+            this.protocol = config.getProtocol();
+            this.socksProxy = Optional.ofNullable(config.getSocksProxy());
+            this.sslEnabled = config.isSslEnabled();
+            this.trustCertificate = Optional.ofNullable(config.getTrustCertificate());
+            this.key = Optional.ofNullable(config.getKey());
+            this.keyPassword = Optional.ofNullable(config.getKeyPassword());
+            this.maxIdleConnectionsPerDestination = config.getConnectionPoolMaxIdleConnectionsPerDestination();
+            this.idleTimeout = config.getConnectionPoolIdleTimeout();
+            this.healthCheckAfterIdle = config.getConnectionPoolHealthCheckAfterIdle();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ConnectionPoolKey that = (ConnectionPoolKey) o;
+            return transport == that.transport &&
+                    protocol == that.protocol &&
+                    sslEnabled == that.sslEnabled &&
+                    maxIdleConnectionsPerDestination == that.maxIdleConnectionsPerDestination &&
+                    Objects.equals(socksProxy, that.socksProxy) &&
+                    Objects.equals(trustCertificate, that.trustCertificate) &&
+                    Objects.equals(key, that.key) &&
+                    Objects.equals(keyPassword, that.keyPassword) &&
+                    Objects.equals(idleTimeout, that.idleTimeout) &&
+                    Objects.equals(healthCheckAfterIdle, that.healthCheckAfterIdle);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(transport, protocol, socksProxy, sslEnabled, trustCertificate, key, keyPassword, maxIdleConnectionsPerDestination, idleTimeout, healthCheckAfterIdle);
+        }
+    }
 }
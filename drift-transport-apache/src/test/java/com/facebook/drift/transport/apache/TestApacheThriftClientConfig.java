@@ -35,6 +35,7 @@ import static com.facebook.drift.transport.apache.client.ApacheThriftClientConfi
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class TestApacheThriftClientConfig
 {
@@ -51,7 +52,11 @@ public class TestApacheThriftClientConfig
                 .setSslEnabled(false)
                 .setTrustCertificate(null)
                 .setKey(null)
-                .setKeyPassword(null));
+                .setKeyPassword(null)
+                .setConnectionPoolEnabled(true)
+                .setConnectionPoolMaxIdleConnectionsPerDestination(8)
+                .setConnectionPoolIdleTimeout(new Duration(1, MINUTES))
+                .setConnectionPoolHealthCheckAfterIdle(new Duration(1, SECONDS)));
     }
 
     @Test
@@ -68,6 +73,10 @@ public class TestApacheThriftClientConfig
                 .put("thrift.client.ssl.trust-certificate", "trust")
                 .put("thrift.client.ssl.key", "key")
                 .put("thrift.client.ssl.key-password", "key_password")
+                .put("thrift.client.connection-pool.enabled", "false")
+                .put("thrift.client.connection-pool.max-idle-connections-per-destination", "3")
+                .put("thrift.client.connection-pool.idle-timeout", "7m")
+                .put("thrift.client.connection-pool.health-check-after-idle", "5s")
                 .build();
 
         ApacheThriftClientConfig expected = new ApacheThriftClientConfig()
@@ -80,7 +89,11 @@ public class TestApacheThriftClientConfig
                 .setSslEnabled(true)
                 .setTrustCertificate(new File("trust"))
                 .setKey(new File("key"))
-                .setKeyPassword("key_password");
+                .setKeyPassword("key_password")
+                .setConnectionPoolEnabled(false)
+                .setConnectionPoolMaxIdleConnectionsPerDestination(3)
+                .setConnectionPoolIdleTimeout(new Duration(7, MINUTES))
+                .setConnectionPoolHealthCheckAfterIdle(new Duration(5, SECONDS));
 
         assertFullMapping(properties, expected);
     }
@@ -51,11 +51,13 @@ import org.apache.thrift.transport.TFramedTransport;
 import org.apache.thrift.transport.TNonblockingSocket;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransportException;
 import org.apache.thrift.transport.TTransportFactory;
 import org.testng.annotations.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
@@ -88,6 +90,50 @@ public class TestApacheThriftMethodInvoker
         assertEquals(scribeService.getMessages(), expectedMessages);
     }
 
+    @Test
+    public void testConnectionPooling()
+            throws Exception
+    {
+        assertEquals(countConnections(new ApacheThriftClientConfig()), 1);
+        assertEquals(countConnections(new ApacheThriftClientConfig().setConnectionPoolEnabled(false)), 3);
+    }
+
+    @Test
+    public void testStaleConnection()
+            throws Exception
+    {
+        // the server closes each connection after the first request, while the client keeps it in the pool
+        List<TSocket> accepted = new CopyOnWriteArrayList<>();
+        assertEquals(countConnections(new ApacheThriftClientConfig(), accepted, () -> accepted.forEach(TSocket::close)), 3);
+    }
+
+    private static int countConnections(ApacheThriftClientConfig config)
+            throws Exception
+    {
+        return countConnections(config, new CopyOnWriteArrayList<>(), () -> {});
+    }
+
+    private static int countConnections(ApacheThriftClientConfig config, List<TSocket> accepted, Runnable afterInvocation)
+            throws Exception
+    {
+        TServerSocket serverTransport = new TServerSocket(0)
+        {
+            @Override
+            protected TSocket acceptImpl()
+                    throws TTransportException
+            {
+                TSocket socket = super.acceptImpl();
+                accepted.add(socket);
+                return socket;
+            }
+        };
+
+        ScribeService scribeService = new ScribeService();
+        testProcessor(serverTransport, new scribe.Processor<>(scribeService), ImmutableList.of(address -> logApacheThriftInvocationHandler(address, DRIFT_MESSAGES, config, 3, afterInvocation)));
+        assertEquals(scribeService.getMessages(), newArrayList(Iterables.concat(nCopies(3, MESSAGES))));
+        return accepted.size();
+    }
+
     private static List<LogEntry> testProcessor(TProcessor processor)
             throws Exception
     {
@@ -103,7 +149,13 @@ public class TestApacheThriftMethodInvoker
     private static int testProcessor(TProcessor processor, List<ToIntFunction<HostAndPort>> clients)
             throws Exception
     {
-        try (TServerSocket serverTransport = new TServerSocket(0)) {
+        return testProcessor(new TServerSocket(0), processor, clients);
+    }
+
+    private static int testProcessor(TServerSocket serverSocket, TProcessor processor, List<ToIntFunction<HostAndPort>> clients)
+            throws Exception
+    {
+        try (TServerSocket serverTransport = serverSocket) {
             TProtocolFactory protocolFactory = new Factory();
             TTransportFactory transportFactory = new TFramedTransport.Factory();
             TServer server = new TSimpleServer(new Args(serverTransport)
@@ -194,11 +246,13 @@ public class TestApacheThriftMethodInvoker
 
     private static int logApacheThriftInvocationHandler(HostAndPort address, List<DriftLogEntry> entries)
     {
-        ApacheThriftClientConfig config = new ApacheThriftClientConfig();
+        return logApacheThriftInvocationHandler(address, entries, new ApacheThriftClientConfig(), 1, () -> {});
+    }
+
+    private static int logApacheThriftInvocationHandler(HostAndPort address, List<DriftLogEntry> entries, ApacheThriftClientConfig config, int invocationCount, Runnable afterInvocation)
+    {
         ApacheThriftConnectionFactoryConfig factoryConfig = new ApacheThriftConnectionFactoryConfig();
         try (ApacheThriftMethodInvokerFactory<Void> methodInvokerFactory = new ApacheThriftMethodInvokerFactory<>(factoryConfig, clientIdentity -> config)) {
-            MethodInvoker methodInvoker = methodInvokerFactory.createMethodInvoker(null);
-
             ParameterMetadata parameter = new ParameterMetadata(
                     (short) 1,
                     "messages",
@@ -212,10 +266,15 @@ public class TestApacheThriftMethodInvoker
                     false,
                     true);
 
-            ListenableFuture<Object> future = methodInvoker.invoke(new InvokeRequest(methodMetadata, () -> address, ImmutableMap.of(), ImmutableList.of(entries)));
-            assertEquals(future.get(), DRIFT_OK);
+            for (int i = 0; i < invocationCount; i++) {
+                // a new invoker for each invocation, which must share the connection pool of the factory
+                MethodInvoker methodInvoker = methodInvokerFactory.createMethodInvoker(null);
+                ListenableFuture<Object> future = methodInvoker.invoke(new InvokeRequest(methodMetadata, () -> address, ImmutableMap.of(), ImmutableList.of(entries)));
+                assertEquals(future.get(), DRIFT_OK);
+                afterInvocation.run();
+            }
 
-            return 1;
+            return invocationCount;
         }
         catch (Exception e) {
             throw new RuntimeException(e);
@@ -103,9 +103,13 @@ public class TestingPooledByteBufAllocator
     }
 
     @Override
+    @SuppressWarnings("deprecation")
     @SuppressFBWarnings(value = "DM_GC", justification = "Netty's leak detection only works if buffer is garbage collected")
     public void close()
     {
+        // the thread cache references the arenas, so without this the calling
+        // thread keeps every chunk of every closed allocator alive
+        freeThreadLocalCache();
         try {
             boolean leaked;
             synchronized (this) {
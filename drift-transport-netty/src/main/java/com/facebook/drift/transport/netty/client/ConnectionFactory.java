@@ -27,6 +27,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 
@@ -44,17 +45,20 @@ class ConnectionFactory
         implements ConnectionManager
 {
     private final EventLoopGroup group;
+    private final Timer timer;
     private final SslContextFactory sslContextFactory;
     private final ByteBufAllocator allocator;
     private DriftNettyConnectionFactoryConfig connectionFactoryConfig;
 
     ConnectionFactory(
             EventLoopGroup group,
+            Timer timer,
             SslContextFactory sslContextFactory,
             ByteBufAllocator allocator,
             DriftNettyConnectionFactoryConfig connectionFactoryConfig)
     {
         this.group = requireNonNull(group, "group is null");
+        this.timer = requireNonNull(timer, "timer is null");
         this.sslContextFactory = requireNonNull(sslContextFactory, "sslContextFactory is null");
         this.allocator = requireNonNull(allocator, "allocator is null");
         this.connectionFactoryConfig = requireNonNull(connectionFactoryConfig, "connectionFactoryConfig is null");
@@ -82,8 +86,13 @@ class ConnectionFactory
                             connectionParameters.getProtocol(),
                             connectionParameters.getMaxFrameSize(),
                             connectionParameters.getRequestTimeout(),
+                            timer,
                             connectionParameters.getSocksProxy(),
-                            connectionParameters.getSslContextParameters().map(sslContextFactory::get)));
+                            connectionParameters.getSslContextParameters().map(sslContextFactory::get),
+                            connectionParameters.isZeroCopyEnabled(),
+                            connectionParameters.isFlushConsolidationEnabled(),
+                            connectionParameters.getFlushConsolidationMaxPendingFlushes(),
+                            connectionParameters.getHeaderTransforms()));
 
             Promise<Channel> promise = group.next().newPromise();
             promise.setUncancellable();
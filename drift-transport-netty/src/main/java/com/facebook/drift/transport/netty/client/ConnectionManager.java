@@ -16,8 +16,10 @@
 package com.facebook.drift.transport.netty.client;
 
 import com.facebook.drift.transport.netty.codec.Protocol;
+import com.facebook.drift.transport.netty.codec.ThriftHeaderTransform;
 import com.facebook.drift.transport.netty.codec.Transport;
 import com.facebook.drift.transport.netty.ssl.SslContextFactory.SslContextParameters;
+import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
@@ -25,6 +27,7 @@ import io.netty.channel.Channel;
 import io.netty.util.concurrent.Future;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -54,6 +57,10 @@ interface ConnectionManager
 
         private final boolean tcpNoDelayEnabled;
         private final boolean reuseAddressEnabled;
+        private final boolean zeroCopyEnabled;
+        private final boolean flushConsolidationEnabled;
+        private final int flushConsolidationMaxPendingFlushes;
+        private final List<ThriftHeaderTransform> headerTransforms;
 
         public ConnectionParameters(
                 Transport transport,
@@ -64,7 +71,11 @@ interface ConnectionManager
                 Optional<HostAndPort> socksProxy,
                 Optional<SslContextParameters> sslContextParameters,
                 boolean tcpNoDelayEnabled,
-                boolean reuseAddressEnabled)
+                boolean reuseAddressEnabled,
+                boolean zeroCopyEnabled,
+                boolean flushConsolidationEnabled,
+                int flushConsolidationMaxPendingFlushes,
+                List<ThriftHeaderTransform> headerTransforms)
         {
             this.transport = requireNonNull(transport, "transport is null");
             this.protocol = requireNonNull(protocol, "protocol is null");
@@ -75,6 +86,10 @@ interface ConnectionManager
             this.sslContextParameters = requireNonNull(sslContextParameters, "sslContextParameters is null");
             this.tcpNoDelayEnabled = tcpNoDelayEnabled;
             this.reuseAddressEnabled = reuseAddressEnabled;
+            this.zeroCopyEnabled = zeroCopyEnabled;
+            this.flushConsolidationEnabled = flushConsolidationEnabled;
+            this.flushConsolidationMaxPendingFlushes = flushConsolidationMaxPendingFlushes;
+            this.headerTransforms = ImmutableList.copyOf(requireNonNull(headerTransforms, "headerTransforms is null"));
         }
 
         public Transport getTransport()
@@ -122,6 +137,26 @@ interface ConnectionManager
             return reuseAddressEnabled;
         }
 
+        public boolean isZeroCopyEnabled()
+        {
+            return zeroCopyEnabled;
+        }
+
+        public boolean isFlushConsolidationEnabled()
+        {
+            return flushConsolidationEnabled;
+        }
+
+        public int getFlushConsolidationMaxPendingFlushes()
+        {
+            return flushConsolidationMaxPendingFlushes;
+        }
+
+        public List<ThriftHeaderTransform> getHeaderTransforms()
+        {
+            return headerTransforms;
+        }
+
         @Override
         public boolean equals(Object o)
         {
@@ -140,7 +175,11 @@ interface ConnectionManager
                     Objects.equals(socksProxy, that.socksProxy) &&
                     Objects.equals(sslContextParameters, that.sslContextParameters) &&
                     tcpNoDelayEnabled == that.tcpNoDelayEnabled &&
-                    reuseAddressEnabled == that.reuseAddressEnabled;
+                    reuseAddressEnabled == that.reuseAddressEnabled &&
+                    zeroCopyEnabled == that.zeroCopyEnabled &&
+                    flushConsolidationEnabled == that.flushConsolidationEnabled &&
+                    flushConsolidationMaxPendingFlushes == that.flushConsolidationMaxPendingFlushes &&
+                    Objects.equals(headerTransforms, that.headerTransforms);
         }
 
         @Override
@@ -155,7 +194,11 @@ interface ConnectionManager
                     socksProxy,
                     sslContextParameters,
                     tcpNoDelayEnabled,
-                    reuseAddressEnabled);
+                    reuseAddressEnabled,
+                    zeroCopyEnabled,
+                    flushConsolidationEnabled,
+                    flushConsolidationMaxPendingFlushes,
+                    headerTransforms);
         }
     }
 }
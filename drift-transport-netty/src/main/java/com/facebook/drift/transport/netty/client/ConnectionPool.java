@@ -16,8 +16,7 @@
 package com.facebook.drift.transport.netty.client;
 
 import com.facebook.drift.protocol.TTransportException;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.HostAndPort;
 import io.airlift.units.Duration;
 import io.netty.channel.Channel;
@@ -26,97 +25,110 @@ import io.netty.util.concurrent.Future;
 
 import javax.annotation.concurrent.GuardedBy;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+/**
+ * Pool of multiplexed connections. Each destination starts with a single
+ * connection, and every request is sent on the connection with the fewest
+ * pending requests. When all connections to a destination have at least
+ * {@code newConnectionThreshold} pending requests, another connection is
+ * opened, up to {@code maxConnectionsPerDestination}. Connections without
+ * pending requests that have not been used for {@code idleTimeout} are closed
+ * by the maintenance task, so the pool shrinks back when the load drops.
+ * <p>
+ * Selecting a connection does not take any locks; only opening a connection
+ * and retiring an empty destination synchronize on the destination.
+ */
 class ConnectionPool
         implements ConnectionManager
 {
     private final ConnectionManager connectionFactory;
     private final EventLoopGroup group;
+    private final int maxSize;
     private final int maxConnectionsPerDestination;
+    private final int newConnectionThreshold;
+    private final long idleTimeoutNanos;
+    private final ToIntFunction<Channel> pendingRequestCounter;
 
-    private final Cache<ConnectionKey, Future<Channel>> cachedConnections;
+    private final ConcurrentMap<DestinationKey, Destination> destinations = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final ScheduledFuture<?> maintenanceTask;
 
-    @GuardedBy("this")
-    private boolean closed;
+    private volatile boolean closed;
 
     public ConnectionPool(
             ConnectionManager connectionFactory,
             EventLoopGroup group,
             int maxSize,
             int maxConnectionsPerDestination,
+            int newConnectionThreshold,
             Duration idleTimeout,
             ScheduledExecutorService scheduledExecutorService)
+    {
+        this(connectionFactory, group, maxSize, maxConnectionsPerDestination, newConnectionThreshold, idleTimeout, scheduledExecutorService, ConnectionPool::getPendingRequestCount);
+    }
+
+    @VisibleForTesting
+    ConnectionPool(
+            ConnectionManager connectionFactory,
+            EventLoopGroup group,
+            int maxSize,
+            int maxConnectionsPerDestination,
+            int newConnectionThreshold,
+            Duration idleTimeout,
+            ScheduledExecutorService scheduledExecutorService,
+            ToIntFunction<Channel> pendingRequestCounter)
     {
         this.connectionFactory = requireNonNull(connectionFactory, "connectionFactory is null");
         this.group = requireNonNull(group, "group is null");
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        this.maxSize = maxSize;
+        checkArgument(maxConnectionsPerDestination > 0, "maxConnectionsPerDestination must be positive");
         this.maxConnectionsPerDestination = maxConnectionsPerDestination;
+        checkArgument(newConnectionThreshold > 0, "newConnectionThreshold must be positive");
+        this.newConnectionThreshold = newConnectionThreshold;
+        this.idleTimeoutNanos = requireNonNull(idleTimeout, "idleTimeout is null").roundTo(NANOSECONDS);
+        this.pendingRequestCounter = requireNonNull(pendingRequestCounter, "pendingRequestCounter is null");
 
-        cachedConnections = CacheBuilder.newBuilder()
-                .maximumSize(maxSize)
-                .expireAfterAccess(idleTimeout.toMillis(), MILLISECONDS)
-                .<ConnectionKey, Future<Channel>>removalListener(notification -> closeConnection(notification.getValue()))
-                .build();
-
-        scheduledExecutorService.scheduleWithFixedDelay(cachedConnections::cleanUp, 1, 1, TimeUnit.SECONDS);
+        requireNonNull(scheduledExecutorService, "scheduledExecutorService is null");
+        maintenanceTask = scheduledExecutorService.scheduleWithFixedDelay(this::cleanUp, 1, 1, SECONDS);
     }
 
     @Override
     public Future<Channel> getConnection(ConnectionParameters connectionParameters, HostAndPort address)
     {
-        ConnectionKey key = new ConnectionKey(connectionParameters, address, getRandomConnectionId());
-
+        DestinationKey key = new DestinationKey(connectionParameters, address);
         while (true) {
-            synchronized (this) {
-                if (closed) {
-                    return group.next().newFailedFuture(new TTransportException("Connection pool is closed"));
-                }
-
-                Future<Channel> future;
-                try {
-                    future = cachedConnections.get(key, () -> createConnection(key));
-                }
-                catch (ExecutionException e) {
-                    throw new RuntimeException(e);
-                }
-
-                // connection is still opening
-                if (!future.isDone()) {
-                    return future;
-                }
-
-                // check if connection is failed or closed
-                Channel channel = future.getNow();
-                // channel can be null if the future was canceled
-                if (channel != null && channel.isOpen()) {
-                    return future;
-                }
-
-                // remove dead connection from cache
-                cachedConnections.asMap().remove(key, future);
+            if (closed) {
+                return group.next().newFailedFuture(new TTransportException("Connection pool is closed"));
             }
-        }
-    }
 
-    private Future<Channel> createConnection(ConnectionKey key)
-    {
-        Future<Channel> future = connectionFactory.getConnection(key.getConnectionParameters(), key.getAddress());
-
-        // remove connection from cache when it is closed
-        future.addListener(channelFuture -> {
-            if (future.isSuccess()) {
-                future.getNow().closeFuture().addListener(closeFuture -> cachedConnections.asMap().remove(key, future));
+            Destination destination = destinations.get(key);
+            if (destination == null) {
+                destination = destinations.computeIfAbsent(key, Destination::new);
             }
-        });
 
-        return future;
+            Future<Channel> connection = destination.getConnection();
+            if (connection != null) {
+                return connection;
+            }
+            // destination was retired concurrently, so try again with a fresh one
+        }
     }
 
     @Override
@@ -125,14 +137,60 @@ class ConnectionPool
     }
 
     @Override
-    public synchronized void close()
+    public void close()
     {
         if (closed) {
             return;
         }
         closed = true;
+        maintenanceTask.cancel(false);
+
+        for (Destination destination : destinations.values()) {
+            destination.retire();
+        }
+        destinations.clear();
+    }
+
+    @VisibleForTesting
+    int getConnectionCount()
+    {
+        return connectionCount.get();
+    }
+
+    @VisibleForTesting
+    void cleanUp()
+    {
+        long now = System.nanoTime();
+        for (Destination destination : destinations.values()) {
+            destination.closeIdleConnections(now);
+        }
+
+        if (connectionCount.get() <= maxSize) {
+            return;
+        }
+
+        // over the limit, so close the least recently used connections without pending requests
+        List<PooledConnection> candidates = new ArrayList<>();
+        for (Destination destination : destinations.values()) {
+            for (PooledConnection connection : destination.connections) {
+                if (connection.isIdle()) {
+                    candidates.add(connection);
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(PooledConnection::getLastUsedNanos));
+        for (PooledConnection connection : candidates) {
+            if (connectionCount.get() <= maxSize) {
+                break;
+            }
+            connection.getDestination().removeConnection(connection);
+        }
+    }
 
-        cachedConnections.invalidateAll();
+    private static int getPendingRequestCount(Channel channel)
+    {
+        ThriftClientHandler handler = channel.pipeline().get(ThriftClientHandler.class);
+        return handler == null ? 0 : handler.getPendingRequestCount();
     }
 
     private static void closeConnection(Future<Channel> future)
@@ -145,25 +203,193 @@ class ConnectionPool
         });
     }
 
-    private int getRandomConnectionId()
+    private final class Destination
     {
-        return maxConnectionsPerDestination == 1 ? 0 : ThreadLocalRandom.current().nextInt(maxConnectionsPerDestination);
+        private final DestinationKey key;
+        // copy on write so selecting a connection never blocks
+        private final List<PooledConnection> connections = new CopyOnWriteArrayList<>();
+
+        @GuardedBy("this")
+        private boolean retired;
+
+        public Destination(DestinationKey key)
+        {
+            this.key = requireNonNull(key, "key is null");
+        }
+
+        /**
+         * Returns the least loaded connection, opening a new one if needed,
+         * or null if this destination has been retired.
+         */
+        public Future<Channel> getConnection()
+        {
+            PooledConnection connection = selectConnection();
+            if (connection != null && !shouldOpenConnection(connection)) {
+                return connection.use();
+            }
+
+            synchronized (this) {
+                if (retired) {
+                    return null;
+                }
+                // another thread may have opened a connection while we were waiting
+                connection = selectConnection();
+                if (connection == null || shouldOpenConnection(connection)) {
+                    connection = openConnection();
+                }
+                return connection.use();
+            }
+        }
+
+        private boolean shouldOpenConnection(PooledConnection leastLoaded)
+        {
+            return leastLoaded.getPendingRequestCount() >= newConnectionThreshold &&
+                    connections.size() < maxConnectionsPerDestination;
+        }
+
+        private PooledConnection selectConnection()
+        {
+            PooledConnection leastLoaded = null;
+            int leastPending = Integer.MAX_VALUE;
+            for (PooledConnection connection : connections) {
+                if (connection.isDead()) {
+                    removeConnection(connection);
+                    continue;
+                }
+                // ties go to the oldest connection so extra connections can become idle
+                int pending = connection.getPendingRequestCount();
+                if (pending < leastPending) {
+                    leastLoaded = connection;
+                    leastPending = pending;
+                }
+            }
+            return leastLoaded;
+        }
+
+        @GuardedBy("this")
+        private PooledConnection openConnection()
+        {
+            Future<Channel> future = connectionFactory.getConnection(key.getConnectionParameters(), key.getAddress());
+            PooledConnection connection = new PooledConnection(this, future);
+            connections.add(connection);
+            connectionCount.incrementAndGet();
+
+            // remove connection from pool when it is closed
+            future.addListener(channelFuture -> {
+                if (future.isSuccess()) {
+                    future.getNow().closeFuture().addListener(closeFuture -> removeConnection(connection));
+                }
+            });
+            return connection;
+        }
+
+        public void removeConnection(PooledConnection connection)
+        {
+            if (connections.remove(connection)) {
+                connectionCount.decrementAndGet();
+                closeConnection(connection.getFuture());
+            }
+        }
+
+        public void closeIdleConnections(long now)
+        {
+            for (PooledConnection connection : connections) {
+                if (connection.isDead() || (connection.isIdle() && now - connection.getLastUsedNanos() >= idleTimeoutNanos)) {
+                    removeConnection(connection);
+                }
+            }
+
+            synchronized (this) {
+                if (connections.isEmpty()) {
+                    retired = true;
+                    destinations.remove(key, this);
+                }
+            }
+        }
+
+        public void retire()
+        {
+            synchronized (this) {
+                retired = true;
+            }
+            for (PooledConnection connection : connections) {
+                removeConnection(connection);
+            }
+        }
+    }
+
+    private final class PooledConnection
+    {
+        private final Destination destination;
+        private final Future<Channel> future;
+        // requests handed out before the connection finished opening
+        private final AtomicInteger connectingRequests = new AtomicInteger();
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        public PooledConnection(Destination destination, Future<Channel> future)
+        {
+            this.destination = requireNonNull(destination, "destination is null");
+            this.future = requireNonNull(future, "future is null");
+        }
+
+        public Destination getDestination()
+        {
+            return destination;
+        }
+
+        public Future<Channel> getFuture()
+        {
+            return future;
+        }
+
+        public long getLastUsedNanos()
+        {
+            return lastUsedNanos;
+        }
+
+        public Future<Channel> use()
+        {
+            lastUsedNanos = System.nanoTime();
+            if (!future.isDone()) {
+                connectingRequests.incrementAndGet();
+            }
+            return future;
+        }
+
+        public int getPendingRequestCount()
+        {
+            if (!future.isDone()) {
+                return connectingRequests.get();
+            }
+            Channel channel = future.getNow();
+            return channel == null ? 0 : pendingRequestCounter.applyAsInt(channel);
+        }
+
+        public boolean isDead()
+        {
+            if (!future.isDone()) {
+                return false;
+            }
+            // channel can be null if the future was canceled
+            Channel channel = future.getNow();
+            return channel == null || !channel.isOpen();
+        }
+
+        public boolean isIdle()
+        {
+            return future.isDone() && getPendingRequestCount() == 0;
+        }
     }
 
-    private static class ConnectionKey
+    private static class DestinationKey
     {
         private final ConnectionParameters connectionParameters;
         private final HostAndPort address;
-        private final int connectionId;
 
-        public ConnectionKey(
-                ConnectionParameters connectionParameters,
-                HostAndPort address,
-                int connectionId)
+        public DestinationKey(ConnectionParameters connectionParameters, HostAndPort address)
         {
-            this.connectionParameters = connectionParameters;
-            this.address = address;
-            this.connectionId = connectionId;
+            this.connectionParameters = requireNonNull(connectionParameters, "connectionParameters is null");
+            this.address = requireNonNull(address, "address is null");
         }
 
         public ConnectionParameters getConnectionParameters()
@@ -185,16 +411,15 @@ class ConnectionPool
             if (o == null || getClass() != o.getClass()) {
                 return false;
             }
-            ConnectionKey that = (ConnectionKey) o;
+            DestinationKey that = (DestinationKey) o;
             return Objects.equals(connectionParameters, that.connectionParameters) &&
-                    Objects.equals(address, that.address) &&
-                    connectionId == that.connectionId;
+                    Objects.equals(address, that.address);
         }
 
         @Override
         public int hashCode()
         {
-            return Objects.hash(connectionParameters, address, connectionId);
+            return Objects.hash(connectionParameters, address);
         }
     }
 }
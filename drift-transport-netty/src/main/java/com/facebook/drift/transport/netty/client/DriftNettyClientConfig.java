@@ -16,7 +16,9 @@
 package com.facebook.drift.transport.netty.client;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.drift.transport.netty.codec.Protocol;
+import com.facebook.drift.transport.netty.codec.ThriftHeaderTransform;
 import com.facebook.drift.transport.netty.codec.Transport;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
@@ -34,6 +36,7 @@ import java.util.List;
 
 import static com.facebook.drift.transport.netty.codec.Protocol.BINARY;
 import static com.facebook.drift.transport.netty.codec.Transport.FRAMED;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.DAYS;
@@ -63,10 +66,15 @@ public class DriftNettyClientConfig
     private Boolean connectionPoolEnabled;
     private Integer connectionPoolMaxSize;
     private Integer connectionPoolMaxConnectionsPerDestination;
+    private Integer connectionPoolNewConnectionThreshold;
     private Duration connectionPoolIdleTimeout;
 
     private boolean tcpNoDelayEnabled;
     private boolean reuseAddressEnabled;
+    private boolean zeroCopyEnabled;
+    private boolean flushConsolidationEnabled;
+    private int flushConsolidationMaxPendingFlushes = 256;
+    private List<ThriftHeaderTransform> headerTransforms = ImmutableList.of();
 
     @NotNull
     public Transport getTransport()
@@ -260,6 +268,19 @@ public class DriftNettyClientConfig
         return this;
     }
 
+    @Min(1)
+    public Integer getConnectionPoolNewConnectionThreshold()
+    {
+        return connectionPoolNewConnectionThreshold;
+    }
+
+    @Config("thrift.client.connection-pool.new-connection-threshold")
+    public DriftNettyClientConfig setConnectionPoolNewConnectionThreshold(Integer newConnectionThreshold)
+    {
+        this.connectionPoolNewConnectionThreshold = newConnectionThreshold;
+        return this;
+    }
+
     @Min(1)
     public Integer getConnectionPoolMaxSize()
     {
@@ -309,4 +330,65 @@ public class DriftNettyClientConfig
         this.reuseAddressEnabled = reuseAddressEnabled;
         return this;
     }
+
+    public boolean isZeroCopyEnabled()
+    {
+        return zeroCopyEnabled;
+    }
+
+    @Config("thrift.client.zero-copy.enabled")
+    @ConfigDescription("Write large binary values by reference instead of copying them into the request buffer")
+    public DriftNettyClientConfig setZeroCopyEnabled(boolean zeroCopyEnabled)
+    {
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        return this;
+    }
+
+    public boolean isFlushConsolidationEnabled()
+    {
+        return flushConsolidationEnabled;
+    }
+
+    @Config("thrift.client.flush-consolidation.enabled")
+    @ConfigDescription("Combine flushes of requests written in the same event loop iteration into a single write")
+    public DriftNettyClientConfig setFlushConsolidationEnabled(boolean flushConsolidationEnabled)
+    {
+        this.flushConsolidationEnabled = flushConsolidationEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getFlushConsolidationMaxPendingFlushes()
+    {
+        return flushConsolidationMaxPendingFlushes;
+    }
+
+    @Config("thrift.client.flush-consolidation.max-pending-flushes")
+    @ConfigDescription("Maximum number of flushes combined before the channel is flushed")
+    public DriftNettyClientConfig setFlushConsolidationMaxPendingFlushes(int flushConsolidationMaxPendingFlushes)
+    {
+        this.flushConsolidationMaxPendingFlushes = flushConsolidationMaxPendingFlushes;
+        return this;
+    }
+
+    @NotNull
+    public List<ThriftHeaderTransform> getHeaderTransforms()
+    {
+        return headerTransforms;
+    }
+
+    @Config("thrift.client.header-transforms")
+    @ConfigDescription("Comma separated transforms, such as ZSTD_TRANSFORM, applied to requests sent with the HEADER transport")
+    public DriftNettyClientConfig setHeaderTransforms(String headerTransforms)
+    {
+        this.headerTransforms = Splitter
+                .on(',')
+                .trimResults()
+                .omitEmptyStrings()
+                .splitToList(requireNonNull(headerTransforms, "headerTransforms is null"))
+                .stream()
+                .map(ThriftHeaderTransform::valueOf)
+                .collect(toImmutableList());
+        return this;
+    }
 }
@@ -23,6 +23,7 @@ import io.airlift.units.MinDuration;
 
 import javax.validation.constraints.Min;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 public class DriftNettyConnectionFactoryConfig
@@ -30,10 +31,12 @@ public class DriftNettyConnectionFactoryConfig
     private static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors() * 2;
 
     private int threadCount = DEFAULT_THREAD_COUNT;
+    private Duration timerTickDuration = new Duration(10, MILLISECONDS);
 
     private boolean connectionPoolEnabled = true;
     private int connectionPoolMaxSize = 1000;
     private int connectionPoolMaxConnectionsPerDestination = 1;
+    private int connectionPoolNewConnectionThreshold = 100;
     private Duration connectionPoolIdleTimeout = new Duration(1, MINUTES);
 
     private Duration sslContextRefreshTime = new Duration(1, MINUTES);
@@ -52,6 +55,20 @@ public class DriftNettyConnectionFactoryConfig
         return this;
     }
 
+    @MinDuration("1ms")
+    public Duration getTimerTickDuration()
+    {
+        return timerTickDuration;
+    }
+
+    @Config("thrift.client.timer.tick-duration")
+    @ConfigDescription("Resolution of the timer that expires requests; a request may fail up to one tick after its timeout")
+    public DriftNettyConnectionFactoryConfig setTimerTickDuration(Duration timerTickDuration)
+    {
+        this.timerTickDuration = timerTickDuration;
+        return this;
+    }
+
     public boolean isConnectionPoolEnabled()
     {
         return connectionPoolEnabled;
@@ -77,6 +94,20 @@ public class DriftNettyConnectionFactoryConfig
         return this;
     }
 
+    @Min(1)
+    public int getConnectionPoolNewConnectionThreshold()
+    {
+        return connectionPoolNewConnectionThreshold;
+    }
+
+    @Config("thrift.client.connection-pool.new-connection-threshold")
+    @ConfigDescription("Open another connection to a destination when all of its connections have at least this many pending requests")
+    public DriftNettyConnectionFactoryConfig setConnectionPoolNewConnectionThreshold(int newConnectionThreshold)
+    {
+        this.connectionPoolNewConnectionThreshold = newConnectionThreshold;
+        return this;
+    }
+
     @Min(1)
     public int getConnectionPoolMaxSize()
     {
@@ -28,6 +28,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
 
 import javax.annotation.PreDestroy;
 
@@ -46,6 +47,7 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class DriftNettyMethodInvokerFactory<I>
         implements MethodInvokerFactory<I>, Closeable
@@ -53,6 +55,7 @@ public class DriftNettyMethodInvokerFactory<I>
     private final Function<I, DriftNettyClientConfig> clientConfigurationProvider;
 
     private final EventLoopGroup group;
+    private final HashedWheelTimer timer;
     private final SslContextFactory sslContextFactory;
     private final Optional<HostAndPort> defaultSocksProxy;
     private final ConnectionFactory connectionFactory;
@@ -93,12 +96,13 @@ public class DriftNettyMethodInvokerFactory<I>
         else {
             group = new NioEventLoopGroup(factoryConfig.getThreadCount(), daemonThreadsNamed("drift-client-%s"));
         }
+        timer = new HashedWheelTimer(daemonThreadsNamed("drift-client-timer-%s"), factoryConfig.getTimerTickDuration().toMillis(), MILLISECONDS);
         this.clientConfigurationProvider = requireNonNull(clientConfigurationProvider, "clientConfigurationProvider is null");
         this.sslContextFactory = createSslContextFactory(true, factoryConfig.getSslContextRefreshTime(), group);
         this.defaultSocksProxy = Optional.ofNullable(factoryConfig.getSocksProxy());
 
         connectionPoolMaintenanceExecutor = newSingleThreadScheduledExecutor(daemonThreadsNamed("drift-connection-maintenance"));
-        connectionFactory = new ConnectionFactory(group, sslContextFactory, allocator, factoryConfig);
+        connectionFactory = new ConnectionFactory(group, timer, sslContextFactory, allocator, factoryConfig);
     }
 
     @Override
@@ -124,6 +128,7 @@ public class DriftNettyMethodInvokerFactory<I>
 
         int connectionPoolMaxSize = firstNonNull(driftNettyClientConfig.getConnectionPoolMaxSize(), factoryConfig.getConnectionPoolMaxSize());
         int maxConnectionsPerDestination = firstNonNull(driftNettyClientConfig.getConnectionPoolMaxConnectionsPerDestination(), factoryConfig.getConnectionPoolMaxConnectionsPerDestination());
+        int newConnectionThreshold = firstNonNull(driftNettyClientConfig.getConnectionPoolNewConnectionThreshold(), factoryConfig.getConnectionPoolNewConnectionThreshold());
         Duration connectionPoolIdleTimeout = firstNonNull(driftNettyClientConfig.getConnectionPoolIdleTimeout(), factoryConfig.getConnectionPoolIdleTimeout());
 
         return connectionPools.computeIfAbsent(Optional.ofNullable(clientIdentity), ignored -> new ConnectionPool(
@@ -131,6 +136,7 @@ public class DriftNettyMethodInvokerFactory<I>
                 group,
                 connectionPoolMaxSize,
                 maxConnectionsPerDestination,
+                newConnectionThreshold,
                 connectionPoolIdleTimeout,
                 connectionPoolMaintenanceExecutor));
     }
@@ -145,6 +151,7 @@ public class DriftNettyMethodInvokerFactory<I>
         }
         finally {
             connectionPoolMaintenanceExecutor.shutdownNow();
+            timer.stop();
             try {
                 group.shutdownGracefully().await();
             }
@@ -186,6 +193,10 @@ public class DriftNettyMethodInvokerFactory<I>
                 socksProxy,
                 sslContextConfig,
                 clientConfig.isTcpNoDelayEnabled(),
-                clientConfig.isReuseAddressEnabled());
+                clientConfig.isReuseAddressEnabled(),
+                clientConfig.isZeroCopyEnabled(),
+                clientConfig.isFlushConsolidationEnabled(),
+                clientConfig.getFlushConsolidationMaxPendingFlushes(),
+                clientConfig.getHeaderTransforms());
     }
 }
@@ -33,6 +33,7 @@ import javax.annotation.concurrent.GuardedBy;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.lang.String.format;
@@ -47,10 +48,12 @@ class InvocationResponseFuture
     private final ConnectionParameters connectionParameters;
     private final ConnectionManager connectionManager;
 
-    @GuardedBy("this")
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @GuardedBy("lock")
     private Future<Channel> connectionFuture;
 
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private ThriftRequest thriftRequest;
 
     static InvocationResponseFuture createInvocationResponseFuture(InvokeRequest request, ConnectionParameters connectionParameters, ConnectionManager connectionManager)
@@ -74,7 +77,11 @@ class InvocationResponseFuture
                     connectionParameters.getSocksProxy(),
                     Optional.empty(),
                     connectionParameters.isTcpNoDelayEnabled(),
-                    connectionParameters.isReuseAddressEnabled());
+                    connectionParameters.isReuseAddressEnabled(),
+                    connectionParameters.isZeroCopyEnabled(),
+                    connectionParameters.isFlushConsolidationEnabled(),
+                    connectionParameters.getFlushConsolidationMaxPendingFlushes(),
+                    connectionParameters.getHeaderTransforms());
         }
 
         InvocationResponseFuture future = new InvocationResponseFuture(request, connectionParameters, connectionManager);
@@ -97,8 +104,9 @@ class InvocationResponseFuture
         }, directExecutor());
     }
 
-    private synchronized void tryConnect()
+    private void tryConnect()
     {
+        lock.lock();
         try {
             connectionFuture = connectionManager.getConnection(connectionParameters, request.getAddress().getHostAndPort());
             connectionFuture.addListener(channelFuture -> {
@@ -119,74 +127,89 @@ class InvocationResponseFuture
         catch (Throwable t) {
             fatalError(t);
         }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void tryInvocation(Channel channel)
+    private void tryInvocation(Channel channel)
     {
-        // is request already canceled
-        if (isCancelled()) {
-            connectionManager.returnConnection(channel);
-            return;
-        }
-
+        lock.lock();
         try {
-            thriftRequest = new ThriftRequest(request.getMethod(), request.getParameters(), request.getHeaders());
-            Futures.addCallback(thriftRequest, new FutureCallback<Object>()
-                    {
-                        @Override
-                        public void onSuccess(Object result)
-                        {
-                            try {
-                                connectionManager.returnConnection(channel);
-                                set(result);
-                            }
-                            catch (Throwable t) {
-                                fatalError(t);
-                            }
-                        }
+            // is request already canceled
+            if (isCancelled()) {
+                connectionManager.returnConnection(channel);
+                return;
+            }
 
-                        @Override
-                        public void onFailure(Throwable t)
+            try {
+                thriftRequest = new ThriftRequest(request.getMethod(), request.getParameters(), request.getHeaders());
+                Futures.addCallback(thriftRequest, new FutureCallback<Object>()
                         {
-                            try {
-                                connectionManager.returnConnection(channel);
+                            @Override
+                            public void onSuccess(Object result)
+                            {
+                                try {
+                                    connectionManager.returnConnection(channel);
+                                    set(result);
+                                }
+                                catch (Throwable t) {
+                                    fatalError(t);
+                                }
                             }
-                            finally {
-                                fatalError(t);
+
+                            @Override
+                            public void onFailure(Throwable t)
+                            {
+                                try {
+                                    connectionManager.returnConnection(channel);
+                                }
+                                finally {
+                                    fatalError(t);
+                                }
                             }
+                        },
+                        directExecutor());
+
+                ChannelFuture sendFuture = channel.writeAndFlush(thriftRequest);
+                sendFuture.addListener(channelFuture -> {
+                    try {
+                        if (!channelFuture.isSuccess()) {
+                            fatalError(channelFuture.cause());
                         }
-                    },
-                    directExecutor());
-
-            ChannelFuture sendFuture = channel.writeAndFlush(thriftRequest);
-            sendFuture.addListener(channelFuture -> {
-                try {
-                    if (!channelFuture.isSuccess()) {
-                        fatalError(channelFuture.cause());
                     }
+                    catch (Throwable t) {
+                        fatalError(t);
+                    }
+                });
+            }
+            catch (Throwable t) {
+                try {
+                    connectionManager.returnConnection(channel);
                 }
-                catch (Throwable t) {
+                finally {
                     fatalError(t);
                 }
-            });
-        }
-        catch (Throwable t) {
-            try {
-                connectionManager.returnConnection(channel);
-            }
-            finally {
-                fatalError(t);
             }
         }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void onCancel(boolean wasInterrupted)
+    private void onCancel(boolean wasInterrupted)
     {
-        if (connectionFuture != null) {
-            connectionFuture.cancel(wasInterrupted);
+        lock.lock();
+        try {
+            if (connectionFuture != null) {
+                connectionFuture.cancel(wasInterrupted);
+            }
+            if (thriftRequest != null) {
+                thriftRequest.cancel(wasInterrupted);
+            }
         }
-        if (thriftRequest != null) {
-            thriftRequest.cancel(wasInterrupted);
+        finally {
+            lock.unlock();
         }
     }
 
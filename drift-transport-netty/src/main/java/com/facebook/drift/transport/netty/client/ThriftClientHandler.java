@@ -34,6 +34,7 @@ import com.facebook.drift.transport.netty.codec.FrameInfo;
 import com.facebook.drift.transport.netty.codec.FrameTooLargeException;
 import com.facebook.drift.transport.netty.codec.Protocol;
 import com.facebook.drift.transport.netty.codec.ThriftFrame;
+import com.facebook.drift.transport.netty.codec.ThriftHeaderTransform;
 import com.facebook.drift.transport.netty.codec.Transport;
 import com.facebook.drift.transport.netty.ssl.TChannelBufferInputTransport;
 import com.facebook.drift.transport.netty.ssl.TChannelBufferOutputTransport;
@@ -46,14 +47,16 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.EventExecutor;
-import io.netty.util.concurrent.ScheduledFuture;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -67,6 +70,7 @@ import static com.facebook.drift.protocol.TMessageType.CALL;
 import static com.facebook.drift.protocol.TMessageType.EXCEPTION;
 import static com.facebook.drift.protocol.TMessageType.ONEWAY;
 import static com.facebook.drift.protocol.TMessageType.REPLY;
+import static com.facebook.drift.transport.netty.codec.Transport.HEADER;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -79,18 +83,32 @@ public class ThriftClientHandler
     private static final int ONEWAY_SEQUENCE_ID = 0xFFFF_FFFF;
 
     private final Duration requestTimeout;
+    private final Timer timer;
     private final Transport transport;
     private final Protocol protocol;
+    private final boolean zeroCopyEnabled;
+    private final List<ThriftHeaderTransform> headerTransforms;
 
     private final ConcurrentHashMap<Integer, RequestHandler> pendingRequests = new ConcurrentHashMap<>();
     private final AtomicReference<TException> channelError = new AtomicReference<>();
     private final AtomicInteger sequenceId = new AtomicInteger(42);
 
-    ThriftClientHandler(Duration requestTimeout, Transport transport, Protocol protocol)
+    ThriftClientHandler(Duration requestTimeout, Timer timer, Transport transport, Protocol protocol, boolean zeroCopyEnabled, List<ThriftHeaderTransform> headerTransforms)
     {
         this.requestTimeout = requireNonNull(requestTimeout, "requestTimeout is null");
+        this.timer = requireNonNull(timer, "timer is null");
         this.transport = requireNonNull(transport, "transport is null");
         this.protocol = requireNonNull(protocol, "protocol is null");
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        this.headerTransforms = ImmutableList.copyOf(requireNonNull(headerTransforms, "headerTransforms is null"));
+    }
+
+    /**
+     * Number of requests written on this connection that are still waiting for a response.
+     */
+    int getPendingRequestCount()
+    {
+        return pendingRequests.size();
     }
 
     @Override
@@ -137,14 +155,21 @@ public class ThriftClientHandler
         }
 
         try {
+            // the request timeout starts now, so tell the server how long we will wait for the response
+            OptionalLong clientTimeoutMillis = OptionalLong.empty();
+            if (transport == HEADER && !thriftRequest.isOneway()) {
+                clientTimeoutMillis = OptionalLong.of(requestTimeout.toMillis());
+            }
+
             ThriftFrame thriftFrame = new ThriftFrame(
                     sequenceId,
                     requestBuffer,
                     thriftRequest.getHeaders(),
-                    ImmutableList.of(),
+                    headerTransforms,
                     transport,
                     protocol,
-                    true);
+                    true,
+                    clientTimeoutMillis);
 
             ChannelFuture sendFuture = context.write(thriftFrame, promise);
             sendFuture.addListener(future -> messageSent(context, sendFuture, requestHandler));
@@ -318,7 +343,7 @@ public class ThriftClientHandler
         private final int sequenceId;
 
         private final AtomicBoolean finished = new AtomicBoolean();
-        private final AtomicReference<ScheduledFuture<?>> timeout = new AtomicReference<>();
+        private final AtomicReference<Timeout> timeout = new AtomicReference<>();
 
         public RequestHandler(ThriftRequest thriftRequest, int sequenceId)
         {
@@ -334,8 +359,10 @@ public class ThriftClientHandler
         void registerRequestTimeout(EventExecutor executor)
         {
             try {
-                timeout.set(executor.schedule(
-                        () -> onChannelError(new RequestTimeoutException("Timed out waiting " + requestTimeout + " to receive response")),
+                // the shared timer wheel only tracks the deadline, and the request is failed on the
+                // channel event loop so the timer thread is never blocked by request completion
+                timeout.set(timer.newTimeout(
+                        ignored -> executor.execute(() -> onChannelError(new RequestTimeoutException("Timed out waiting " + requestTimeout + " to receive response"))),
                         requestTimeout.toMillis(),
                         MILLISECONDS));
             }
@@ -348,7 +375,9 @@ public class ThriftClientHandler
         ByteBuf encodeRequest(ByteBufAllocator allocator)
                 throws Exception
         {
-            TChannelBufferOutputTransport transport = new TChannelBufferOutputTransport(allocator);
+            // responses escape to the caller with no point to release the frame, so only
+            // requests use zero copy binary values
+            TChannelBufferOutputTransport transport = new TChannelBufferOutputTransport(allocator, zeroCopyEnabled);
             try {
                 TProtocolWriter protocolWriter = protocol.createProtocol(transport);
 
@@ -502,9 +531,9 @@ public class ThriftClientHandler
 
         private void cancelRequestTimeout()
         {
-            ScheduledFuture<?> timeout = this.timeout.get();
+            Timeout timeout = this.timeout.get();
             if (timeout != null) {
-                timeout.cancel(false);
+                timeout.cancel();
             }
         }
     }
@@ -16,6 +16,7 @@
 package com.facebook.drift.transport.netty.client;
 
 import com.facebook.drift.transport.netty.codec.Protocol;
+import com.facebook.drift.transport.netty.codec.ThriftHeaderTransform;
 import com.facebook.drift.transport.netty.codec.Transport;
 import com.google.common.net.HostAndPort;
 import io.airlift.units.DataSize;
@@ -23,10 +24,13 @@ import io.airlift.units.Duration;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.proxy.Socks4ProxyHandler;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.Timer;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -37,23 +41,38 @@ class ThriftClientInitializer
     private final Protocol protocol;
     private final DataSize maxFrameSize;
     private final Duration requestTimeout;
+    private final Timer timer;
     private final Optional<HostAndPort> socksProxyAddress;
     private final Optional<Supplier<SslContext>> sslContextSupplier;
+    private final boolean zeroCopyEnabled;
+    private final boolean flushConsolidationEnabled;
+    private final int flushConsolidationMaxPendingFlushes;
+    private final List<ThriftHeaderTransform> headerTransforms;
 
     public ThriftClientInitializer(
             Transport transport,
             Protocol protocol,
             DataSize maxFrameSize,
             Duration requestTimeout,
+            Timer timer,
             Optional<HostAndPort> socksProxyAddress,
-            Optional<Supplier<SslContext>> sslContextSupplier)
+            Optional<Supplier<SslContext>> sslContextSupplier,
+            boolean zeroCopyEnabled,
+            boolean flushConsolidationEnabled,
+            int flushConsolidationMaxPendingFlushes,
+            List<ThriftHeaderTransform> headerTransforms)
     {
         this.transport = transport;
         this.protocol = protocol;
         this.maxFrameSize = maxFrameSize;
         this.requestTimeout = requestTimeout;
+        this.timer = timer;
         this.socksProxyAddress = socksProxyAddress;
         this.sslContextSupplier = sslContextSupplier;
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        this.flushConsolidationEnabled = flushConsolidationEnabled;
+        this.flushConsolidationMaxPendingFlushes = flushConsolidationMaxPendingFlushes;
+        this.headerTransforms = headerTransforms;
     }
 
     @Override
@@ -61,12 +80,17 @@ class ThriftClientInitializer
     {
         ChannelPipeline pipeline = channel.pipeline();
 
+        if (flushConsolidationEnabled) {
+            // requests written from other threads are flushed once per event loop iteration
+            pipeline.addLast(new FlushConsolidationHandler(flushConsolidationMaxPendingFlushes, true));
+        }
+
         socksProxyAddress.ifPresent(socks -> pipeline.addLast(new Socks4ProxyHandler(new InetSocketAddress(socks.getHost(), socks.getPort()))));
 
         sslContextSupplier.ifPresent(sslContext -> pipeline.addLast(sslContext.get().newHandler(channel.alloc())));
 
         transport.addFrameHandlers(pipeline, Optional.of(protocol), maxFrameSize, true);
 
-        pipeline.addLast(new ThriftClientHandler(requestTimeout, transport, protocol));
+        pipeline.addLast(new ThriftClientHandler(requestTimeout, timer, transport, protocol, zeroCopyEnabled, headerTransforms));
     }
 }
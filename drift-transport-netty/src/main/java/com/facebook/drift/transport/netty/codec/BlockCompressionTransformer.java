@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import io.airlift.compress.Compressor;
+import io.airlift.compress.Decompressor;
+import io.airlift.compress.MalformedInputException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Transformer for compression formats that operate on a whole message at a time. The output
+ * buffer is sized up front from the message, so neither direction copies or grows the output.
+ */
+abstract class BlockCompressionTransformer
+        implements ThriftMessageTransformer
+{
+    private final FastThreadLocal<Compressor> compressors;
+    private final FastThreadLocal<Decompressor> decompressors;
+
+    protected BlockCompressionTransformer(Supplier<Compressor> compressorFactory, Supplier<Decompressor> decompressorFactory)
+    {
+        requireNonNull(compressorFactory, "compressorFactory is null");
+        requireNonNull(decompressorFactory, "decompressorFactory is null");
+        // the compressors keep hash tables between calls, so each event loop thread has its own
+        this.compressors = new FastThreadLocal<Compressor>()
+        {
+            @Override
+            protected Compressor initialValue()
+            {
+                return compressorFactory.get();
+            }
+        };
+        this.decompressors = new FastThreadLocal<Decompressor>()
+        {
+            @Override
+            protected Decompressor initialValue()
+            {
+                return decompressorFactory.get();
+            }
+        };
+    }
+
+    /**
+     * Writes any framing that precedes the compressed block.
+     *
+     * @return the number of bytes written
+     */
+    protected int writeBlockHeader(int uncompressedLength, byte[] output, int outputOffset)
+    {
+        return 0;
+    }
+
+    /**
+     * Gets the maximum number of bytes written by {@link #writeBlockHeader}.
+     */
+    protected int getMaxBlockHeaderLength()
+    {
+        return 0;
+    }
+
+    /**
+     * Gets the length of the framing that precedes the compressed block.
+     */
+    protected int getBlockHeaderLength(byte[] input, int inputOffset, int inputLength)
+    {
+        return 0;
+    }
+
+    /**
+     * Gets the uncompressed size of the message recorded in the compressed input.
+     *
+     * @throws MalformedInputException if the input does not record the size
+     */
+    protected abstract int getUncompressedLength(byte[] input, int inputOffset, int inputLength);
+
+    @Override
+    public ByteBuf transform(ByteBufAllocator bufAllocator, ByteBuf input)
+    {
+        ByteBuf output = null;
+        try {
+            Compressor compressor = compressors.get();
+            int length = input.readableBytes();
+            byte[] bytes = getBytes(input);
+            int offset = getOffset(input);
+
+            output = bufAllocator.heapBuffer(getMaxBlockHeaderLength() + compressor.maxCompressedLength(length));
+            byte[] outputBytes = output.array();
+            int outputOffset = output.arrayOffset();
+            int headerLength = writeBlockHeader(length, outputBytes, outputOffset);
+            int compressedLength = compressor.compress(
+                    bytes,
+                    offset,
+                    length,
+                    outputBytes,
+                    outputOffset + headerLength,
+                    output.capacity() - headerLength);
+            output.writerIndex(headerLength + compressedLength);
+            return output;
+        }
+        catch (RuntimeException e) {
+            if (output != null) {
+                output.release();
+            }
+            throw e;
+        }
+        finally {
+            input.release();
+        }
+    }
+
+    @Override
+    public ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf input, int maxOutputSize)
+    {
+        ByteBuf output = null;
+        try {
+            int length = input.readableBytes();
+            byte[] bytes = getBytes(input);
+            int offset = getOffset(input);
+
+            int headerLength = getBlockHeaderLength(bytes, offset, length);
+            int uncompressedLength = getUncompressedLength(bytes, offset, length);
+            // the recorded size comes from the peer, so it is checked before the output is allocated
+            if (uncompressedLength > maxOutputSize) {
+                throw new FrameTooLargeException(Optional.empty(), uncompressedLength, maxOutputSize);
+            }
+            output = bufAllocator.heapBuffer(uncompressedLength);
+            int written = decompressors.get().decompress(
+                    bytes,
+                    offset + headerLength,
+                    length - headerLength,
+                    output.array(),
+                    output.arrayOffset(),
+                    uncompressedLength);
+            if (written != uncompressedLength) {
+                throw new MalformedInputException(offset, "Decompressed size does not match the recorded size");
+            }
+            output.writerIndex(written);
+            return output;
+        }
+        catch (MalformedInputException e) {
+            if (output != null) {
+                output.release();
+            }
+            throw new CorruptedFrameException("Invalid compressed message", e);
+        }
+        catch (RuntimeException e) {
+            if (output != null) {
+                output.release();
+            }
+            throw e;
+        }
+        finally {
+            input.release();
+        }
+    }
+
+    @Override
+    public ByteBuf tryUntransform(ByteBufAllocator bufAllocator, ByteBuf input, int minimumSize, int maxOutputSize)
+    {
+        // a block can only be decompressed as a whole, so a partial or too large message produces no output
+        try {
+            return untransform(bufAllocator, input, maxOutputSize);
+        }
+        catch (CorruptedFrameException | FrameTooLargeException e) {
+            return bufAllocator.heapBuffer(0);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuf input)
+    {
+        if (input.hasArray()) {
+            return input.array();
+        }
+        byte[] bytes = new byte[input.readableBytes()];
+        input.getBytes(input.readerIndex(), bytes);
+        return bytes;
+    }
+
+    private static int getOffset(ByteBuf input)
+    {
+        return input.hasArray() ? input.arrayOffset() + input.readerIndex() : 0;
+    }
+}
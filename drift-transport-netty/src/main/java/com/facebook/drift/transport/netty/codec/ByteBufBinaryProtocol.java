@@ -0,0 +1,536 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.protocol.TField;
+import com.facebook.drift.protocol.TFieldHeader;
+import com.facebook.drift.protocol.TList;
+import com.facebook.drift.protocol.TMap;
+import com.facebook.drift.protocol.TMessage;
+import com.facebook.drift.protocol.TMessageHeader;
+import com.facebook.drift.protocol.TMessageNameTable;
+import com.facebook.drift.protocol.TProtocol;
+import com.facebook.drift.protocol.TProtocolException;
+import com.facebook.drift.protocol.TSet;
+import com.facebook.drift.protocol.TStruct;
+import com.facebook.drift.protocol.TTransportException;
+import com.facebook.drift.protocol.TType;
+import com.facebook.drift.transport.netty.ssl.ByteBufTransport;
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+import static com.facebook.drift.transport.netty.codec.ByteBufMessageNames.readMessageName;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Double.doubleToLongBits;
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.floatToIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.lang.String.format;
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binary protocol that reads and writes a {@link ByteBuf} directly. The wire
+ * format is identical to {@link com.facebook.drift.protocol.TBinaryProtocol}.
+ */
+@NotThreadSafe
+public final class ByteBufBinaryProtocol
+        implements TProtocol
+{
+    private static final TStruct ANONYMOUS_STRUCT = new TStruct("");
+
+    private static final int VERSION_MASK = 0xffff0000;
+    private static final int VERSION_1 = 0x80010000;
+
+    private final ByteBufTransport transport;
+    private ByteBuf buffer;
+
+    public ByteBufBinaryProtocol(ByteBufTransport transport)
+    {
+        this.transport = requireNonNull(transport, "transport is null");
+        this.buffer = transport.getByteBuf();
+    }
+
+    @Override
+    public void writeMessageBegin(TMessage message)
+    {
+        buffer.writeInt(VERSION_1 | (message.getType() & 0xFF));
+        writeString(message.getName());
+        buffer.writeInt(message.getSequenceId());
+    }
+
+    @Override
+    public void writeMessageEnd() {}
+
+    @Override
+    public void writeStructBegin(TStruct struct) {}
+
+    @Override
+    public void writeStructEnd() {}
+
+    @Override
+    public void writeFieldBegin(TField field)
+    {
+        buffer.writeByte(field.getType());
+        buffer.writeShort(field.getId());
+    }
+
+    @Override
+    public void writeFieldEnd() {}
+
+    @Override
+    public void writeFieldStop()
+    {
+        buffer.writeByte(TType.STOP);
+    }
+
+    @Override
+    public void writeMapBegin(TMap map)
+    {
+        buffer.writeByte(map.getKeyType());
+        buffer.writeByte(map.getValueType());
+        buffer.writeInt(map.getSize());
+    }
+
+    @Override
+    public void writeMapEnd() {}
+
+    @Override
+    public void writeListBegin(TList list)
+    {
+        buffer.writeByte(list.getType());
+        buffer.writeInt(list.getSize());
+    }
+
+    @Override
+    public void writeListEnd() {}
+
+    @Override
+    public void writeSetBegin(TSet set)
+    {
+        buffer.writeByte(set.getType());
+        buffer.writeInt(set.getSize());
+    }
+
+    @Override
+    public void writeSetEnd() {}
+
+    @Override
+    public void writeBool(boolean value)
+    {
+        buffer.writeByte(value ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(byte value)
+    {
+        buffer.writeByte(value);
+    }
+
+    @Override
+    public void writeI16(short value)
+    {
+        buffer.writeShort(value);
+    }
+
+    @Override
+    public void writeI32(int value)
+    {
+        buffer.writeInt(value);
+    }
+
+    @Override
+    public void writeI64(long value)
+    {
+        buffer.writeLong(value);
+    }
+
+    @Override
+    public void writeFloat(float value)
+    {
+        buffer.writeInt(floatToIntBits(value));
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        buffer.writeLong(doubleToLongBits(value));
+    }
+
+    @Override
+    public void writeI32Array(int[] array, int offset, int length)
+    {
+        int size = length * Integer.BYTES;
+        buffer.ensureWritable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                buffer.writeInt(array[i]);
+            }
+            return;
+        }
+        buffer.nioBuffer(buffer.writerIndex(), size).order(BIG_ENDIAN).asIntBuffer().put(array, offset, length);
+        buffer.writerIndex(buffer.writerIndex() + size);
+    }
+
+    @Override
+    public void writeI64Array(long[] array, int offset, int length)
+    {
+        int size = length * Long.BYTES;
+        buffer.ensureWritable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                buffer.writeLong(array[i]);
+            }
+            return;
+        }
+        buffer.nioBuffer(buffer.writerIndex(), size).order(BIG_ENDIAN).asLongBuffer().put(array, offset, length);
+        buffer.writerIndex(buffer.writerIndex() + size);
+    }
+
+    @Override
+    public void writeDoubleArray(double[] array, int offset, int length)
+    {
+        int size = length * Double.BYTES;
+        buffer.ensureWritable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                buffer.writeLong(doubleToLongBits(array[i]));
+            }
+            return;
+        }
+        // doubleToLongBits keeps NaN canonical, matching writeDouble
+        LongBuffer values = buffer.nioBuffer(buffer.writerIndex(), size).order(BIG_ENDIAN).asLongBuffer();
+        for (int i = offset; i < offset + length; i++) {
+            values.put(doubleToLongBits(array[i]));
+        }
+        buffer.writerIndex(buffer.writerIndex() + size);
+    }
+
+    @Override
+    public void writeString(String value)
+    {
+        // the encoded length is not known up front, so reserve the length
+        // prefix and fill it in after encoding directly into the buffer
+        int lengthIndex = buffer.writerIndex();
+        buffer.writeInt(0);
+        int length = buffer.writeCharSequence(value, UTF_8);
+        buffer.setInt(lengthIndex, length);
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer value)
+    {
+        int length = value.remaining();
+        buffer.writeInt(length);
+        if (transport.isZeroCopy(length)) {
+            transport.writeZeroCopy(value);
+            buffer = transport.getByteBuf();
+        }
+        else if (value.hasArray()) {
+            buffer.writeBytes(value.array(), value.arrayOffset() + value.position(), length);
+        }
+        else {
+            buffer.writeBytes(value.duplicate());
+        }
+    }
+
+    @Override
+    public TMessage readMessageBegin()
+            throws TException
+    {
+        int size = buffer.readInt();
+        if (size < 0) {
+            int version = size & VERSION_MASK;
+            if (version != VERSION_1) {
+                throw new TProtocolException("Bad version in readMessageBegin: " + version);
+            }
+            return new TMessage(readString(), (byte) (size & 0x000000ff), buffer.readInt());
+        }
+
+        return new TMessage(readStringBody(size), buffer.readByte(), buffer.readInt());
+    }
+
+    @Override
+    public void readMessageBegin(TMessageHeader header, TMessageNameTable names)
+            throws TException
+    {
+        int size = buffer.readInt();
+        if (size < 0) {
+            int version = size & VERSION_MASK;
+            if (version != VERSION_1) {
+                throw new TProtocolException("Bad version in readMessageBegin: " + version);
+            }
+            int length = checkSize(buffer.readInt());
+            checkReadable(length);
+            header.set(readMessageName(buffer, length, names), (byte) (size & 0x000000ff), buffer.readInt());
+            return;
+        }
+
+        checkReadable(size);
+        header.set(readMessageName(buffer, size, names), buffer.readByte(), buffer.readInt());
+    }
+
+    @Override
+    public void readMessageEnd() {}
+
+    @Override
+    public TStruct readStructBegin()
+    {
+        return ANONYMOUS_STRUCT;
+    }
+
+    @Override
+    public void readStructEnd() {}
+
+    @Override
+    public TField readFieldBegin()
+    {
+        byte type = buffer.readByte();
+        short id = type == TType.STOP ? 0 : buffer.readShort();
+        return new TField("", type, id);
+    }
+
+    @Override
+    public void readFieldBegin(TFieldHeader header)
+    {
+        byte type = buffer.readByte();
+        header.set(type, type == TType.STOP ? 0 : buffer.readShort());
+    }
+
+    @Override
+    public void readFieldEnd() {}
+
+    @Override
+    public TMap readMapBegin()
+            throws TException
+    {
+        byte keyType = buffer.readByte();
+        byte valueType = buffer.readByte();
+        return new TMap(keyType, valueType, checkSize(buffer.readInt()));
+    }
+
+    @Override
+    public void readMapEnd() {}
+
+    @Override
+    public TList readListBegin()
+            throws TException
+    {
+        byte type = buffer.readByte();
+        return new TList(type, checkSize(buffer.readInt()));
+    }
+
+    @Override
+    public void readListEnd() {}
+
+    @Override
+    public TSet readSetBegin()
+            throws TException
+    {
+        byte type = buffer.readByte();
+        return new TSet(type, checkSize(buffer.readInt()));
+    }
+
+    @Override
+    public void readSetEnd() {}
+
+    @Override
+    public boolean readBool()
+    {
+        return buffer.readByte() == 1;
+    }
+
+    @Override
+    public byte readByte()
+    {
+        return buffer.readByte();
+    }
+
+    @Override
+    public short readI16()
+    {
+        return buffer.readShort();
+    }
+
+    @Override
+    public int readI32()
+    {
+        return buffer.readInt();
+    }
+
+    @Override
+    public long readI64()
+    {
+        return buffer.readLong();
+    }
+
+    @Override
+    public float readFloat()
+    {
+        return intBitsToFloat(buffer.readInt());
+    }
+
+    @Override
+    public int getRemainingBytes()
+    {
+        return transport.getRemainingBytes();
+    }
+
+    @Override
+    public int getMinSerializedSize(byte type)
+    {
+        switch (type) {
+            case TType.I16:
+                return 2;
+            case TType.I32:
+            case TType.FLOAT:
+            case TType.STRING:
+                // strings have a 4 byte length
+                return 4;
+            case TType.I64:
+            case TType.DOUBLE:
+                return 8;
+            case TType.LIST:
+            case TType.SET:
+                // element type and size
+                return 5;
+            case TType.MAP:
+                // key type, value type and size
+                return 6;
+            default:
+                // bool, byte and struct, which has at least the stop field
+                return 1;
+        }
+    }
+
+    @Override
+    public double readDouble()
+    {
+        return longBitsToDouble(buffer.readLong());
+    }
+
+    @Override
+    public void readI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        int size = length * Integer.BYTES;
+        checkReadable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                array[i] = buffer.readInt();
+            }
+            return;
+        }
+        buffer.nioBuffer(buffer.readerIndex(), size).order(BIG_ENDIAN).asIntBuffer().get(array, offset, length);
+        buffer.skipBytes(size);
+    }
+
+    @Override
+    public void readI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        int size = length * Long.BYTES;
+        checkReadable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                array[i] = buffer.readLong();
+            }
+            return;
+        }
+        buffer.nioBuffer(buffer.readerIndex(), size).order(BIG_ENDIAN).asLongBuffer().get(array, offset, length);
+        buffer.skipBytes(size);
+    }
+
+    @Override
+    public void readDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        int size = length * Double.BYTES;
+        checkReadable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                array[i] = longBitsToDouble(buffer.readLong());
+            }
+            return;
+        }
+        buffer.nioBuffer(buffer.readerIndex(), size).order(BIG_ENDIAN).asDoubleBuffer().get(array, offset, length);
+        buffer.skipBytes(size);
+    }
+
+    @Override
+    public String readString()
+            throws TException
+    {
+        return readStringBody(checkSize(buffer.readInt()));
+    }
+
+    private String readStringBody(int size)
+            throws TException
+    {
+        checkReadable(size);
+        String value = buffer.toString(buffer.readerIndex(), size, UTF_8);
+        buffer.skipBytes(size);
+        return value;
+    }
+
+    @Override
+    public ByteBuffer readBinary()
+            throws TException
+    {
+        int size = checkSize(buffer.readInt());
+        checkReadable(size);
+        if (transport.isZeroCopy(size)) {
+            return transport.readZeroCopy(size);
+        }
+        byte[] bytes = new byte[size];
+        buffer.readBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public int readBinary(byte[] buf, int offset)
+            throws TException
+    {
+        int size = checkSize(buffer.readInt());
+        checkArgument((buf.length - offset) >= size, format("Binary is too large to be read into buffer: binary size: %s, buffer size: %s, buffer offset: %s", size, buf.length, offset));
+        checkReadable(size);
+        buffer.readBytes(buf, offset, size);
+        return size;
+    }
+
+    private void checkReadable(int size)
+            throws TTransportException
+    {
+        if (buffer.readableBytes() < size) {
+            throw new TTransportException("Too few bytes in buffer");
+        }
+    }
+
+    private static int checkSize(int length)
+            throws TProtocolException
+    {
+        if (length < 0) {
+            throw new TProtocolException("Negative length: " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,923 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.protocol.TField;
+import com.facebook.drift.protocol.TFieldHeader;
+import com.facebook.drift.protocol.TList;
+import com.facebook.drift.protocol.TMap;
+import com.facebook.drift.protocol.TMessage;
+import com.facebook.drift.protocol.TMessageHeader;
+import com.facebook.drift.protocol.TMessageNameTable;
+import com.facebook.drift.protocol.TProtocol;
+import com.facebook.drift.protocol.TProtocolException;
+import com.facebook.drift.protocol.TSet;
+import com.facebook.drift.protocol.TStruct;
+import com.facebook.drift.protocol.TTransportException;
+import com.facebook.drift.protocol.TType;
+import com.facebook.drift.transport.netty.ssl.ByteBufTransport;
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import static com.facebook.drift.transport.netty.codec.ByteBufMessageNames.readMessageName;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.netty.buffer.ByteBufUtil.utf8Bytes;
+import static java.lang.Double.doubleToLongBits;
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.floatToIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compact protocol that reads and writes a {@link ByteBuf} directly. Depending on
+ * how it is created, the wire format is identical to either
+ * {@link com.facebook.drift.protocol.TCompactProtocol} or
+ * {@link com.facebook.drift.protocol.TFacebookCompactProtocol}, which differ only
+ * in the version number and the byte order of floating point values.
+ */
+@NotThreadSafe
+public final class ByteBufCompactProtocol
+        implements TProtocol
+{
+    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+
+    private static final TStruct ANONYMOUS_STRUCT = new TStruct("");
+    private static final TField TSTOP = new TField("", TType.STOP, (short) 0);
+
+    private static final byte[] TTYPE_TO_COMPACT_TYPE = new byte[20];
+
+    static {
+        TTYPE_TO_COMPACT_TYPE[TType.STOP] = TType.STOP;
+        TTYPE_TO_COMPACT_TYPE[TType.BOOL] = Types.BOOLEAN_TRUE;
+        TTYPE_TO_COMPACT_TYPE[TType.BYTE] = Types.BYTE;
+        TTYPE_TO_COMPACT_TYPE[TType.I16] = Types.I16;
+        TTYPE_TO_COMPACT_TYPE[TType.I32] = Types.I32;
+        TTYPE_TO_COMPACT_TYPE[TType.I64] = Types.I64;
+        TTYPE_TO_COMPACT_TYPE[TType.FLOAT] = Types.FLOAT;
+        TTYPE_TO_COMPACT_TYPE[TType.DOUBLE] = Types.DOUBLE;
+        TTYPE_TO_COMPACT_TYPE[TType.STRING] = Types.BINARY;
+        TTYPE_TO_COMPACT_TYPE[TType.LIST] = Types.LIST;
+        TTYPE_TO_COMPACT_TYPE[TType.SET] = Types.SET;
+        TTYPE_TO_COMPACT_TYPE[TType.MAP] = Types.MAP;
+        TTYPE_TO_COMPACT_TYPE[TType.STRUCT] = Types.STRUCT;
+    }
+
+    private static final byte PROTOCOL_ID = (byte) 0x82;
+    private static final byte APACHE_VERSION = 1;
+    private static final byte FACEBOOK_VERSION = 2;
+    private static final byte VERSION_MASK = 0x1f; // 0001 1111
+    private static final byte TYPE_MASK = (byte) 0xE0; // 1110 0000
+    private static final byte TYPE_BITS = 0x07; // 0000 0111
+    private static final int TYPE_SHIFT_AMOUNT = 5;
+    // number of array elements encoded per capacity check
+    private static final int ARRAY_CHUNK_SIZE = 1024;
+
+    /**
+     * All of the on-wire type codes.
+     */
+    private static final class Types
+    {
+        public static final byte BOOLEAN_TRUE = 0x01;
+        public static final byte BOOLEAN_FALSE = 0x02;
+        public static final byte BYTE = 0x03;
+        public static final byte I16 = 0x04;
+        public static final byte I32 = 0x05;
+        public static final byte I64 = 0x06;
+        public static final byte DOUBLE = 0x07;
+        public static final byte BINARY = 0x08;
+        public static final byte LIST = 0x09;
+        public static final byte SET = 0x0A;
+        public static final byte MAP = 0x0B;
+        public static final byte STRUCT = 0x0C;
+        public static final byte FLOAT = 0x0D;
+    }
+
+    private final ByteBufTransport transport;
+    private final byte version;
+    private final boolean bigEndianFloatingPoint;
+    private ByteBuf buffer;
+
+    /**
+     * Last field id of each enclosing struct, so the field id deltas can be
+     * computed. Kept as a primitive stack to avoid boxing on every struct.
+     */
+    private short[] lastFieldStack = new short[8];
+    private int lastFieldStackSize;
+    private short lastFieldId;
+
+    /**
+     * If we encounter a boolean field begin, save the TField here so it can
+     * have the value incorporated.
+     */
+    private TField booleanField;
+
+    /**
+     * If we read a field header, and it's a boolean field, save the boolean
+     * value here so that readBool can use it.
+     */
+    private Boolean booleanValue;
+
+    // reused by readFieldBegin()
+    private final TFieldHeader fieldHeader = new TFieldHeader();
+
+    public static ByteBufCompactProtocol createCompactProtocol(ByteBufTransport transport)
+    {
+        return new ByteBufCompactProtocol(transport, APACHE_VERSION, false);
+    }
+
+    public static ByteBufCompactProtocol createFacebookCompactProtocol(ByteBufTransport transport)
+    {
+        return new ByteBufCompactProtocol(transport, FACEBOOK_VERSION, true);
+    }
+
+    private ByteBufCompactProtocol(ByteBufTransport transport, byte version, boolean bigEndianFloatingPoint)
+    {
+        this.transport = requireNonNull(transport, "transport is null");
+        this.buffer = transport.getByteBuf();
+        this.version = version;
+        this.bigEndianFloatingPoint = bigEndianFloatingPoint;
+    }
+
+    //
+    // Writing methods
+    //
+
+    @Override
+    public void writeMessageBegin(TMessage message)
+    {
+        buffer.writeByte(PROTOCOL_ID);
+        buffer.writeByte((version & VERSION_MASK) | ((message.getType() << TYPE_SHIFT_AMOUNT) & TYPE_MASK));
+        writeVarint32(message.getSequenceId());
+        writeString(message.getName());
+    }
+
+    @Override
+    public void writeStructBegin(TStruct struct)
+    {
+        pushLastField();
+    }
+
+    @Override
+    public void writeStructEnd()
+    {
+        popLastField();
+    }
+
+    @Override
+    public void writeFieldBegin(TField field)
+    {
+        if (field.getType() == TType.BOOL) {
+            // we want to possibly include the value, so we'll wait.
+            booleanField = field;
+        }
+        else {
+            writeFieldBeginInternal(field, (byte) -1);
+        }
+    }
+
+    private void writeFieldBeginInternal(TField field, byte typeOverride)
+    {
+        // if there's a type override, use that.
+        byte typeToWrite = typeOverride == -1 ? getCompactType(field.getType()) : typeOverride;
+
+        // check if we can use delta encoding for the field id
+        if (field.getId() > lastFieldId && field.getId() - lastFieldId <= 15) {
+            // write them together
+            buffer.writeByte((field.getId() - lastFieldId) << 4 | typeToWrite);
+        }
+        else {
+            // write them separate
+            buffer.writeByte(typeToWrite);
+            writeI16(field.getId());
+        }
+
+        lastFieldId = field.getId();
+    }
+
+    @Override
+    public void writeFieldStop()
+    {
+        buffer.writeByte(TType.STOP);
+    }
+
+    @Override
+    public void writeMapBegin(TMap map)
+    {
+        if (map.getSize() == 0) {
+            buffer.writeByte(0);
+        }
+        else {
+            writeVarint32(map.getSize());
+            buffer.writeByte(getCompactType(map.getKeyType()) << 4 | getCompactType(map.getValueType()));
+        }
+    }
+
+    @Override
+    public void writeListBegin(TList list)
+    {
+        writeCollectionBegin(list.getType(), list.getSize());
+    }
+
+    @Override
+    public void writeSetBegin(TSet set)
+    {
+        writeCollectionBegin(set.getType(), set.getSize());
+    }
+
+    @Override
+    public void writeBool(boolean value)
+    {
+        if (booleanField != null) {
+            // we haven't written the field header yet
+            writeFieldBeginInternal(booleanField, value ? Types.BOOLEAN_TRUE : Types.BOOLEAN_FALSE);
+            booleanField = null;
+        }
+        else {
+            // we're not part of a field, so just write the value.
+            buffer.writeByte(value ? Types.BOOLEAN_TRUE : Types.BOOLEAN_FALSE);
+        }
+    }
+
+    @Override
+    public void writeByte(byte value)
+    {
+        buffer.writeByte(value);
+    }
+
+    @Override
+    public void writeI16(short value)
+    {
+        writeVarint32(intToZigZag(value));
+    }
+
+    @Override
+    public void writeI32(int value)
+    {
+        writeVarint32(intToZigZag(value));
+    }
+
+    @Override
+    public void writeI64(long value)
+    {
+        writeVarint64(longToZigzag(value));
+    }
+
+    @Override
+    public void writeFloat(float value)
+    {
+        int bits = floatToIntBits(value);
+        if (bigEndianFloatingPoint) {
+            buffer.writeInt(bits);
+        }
+        else {
+            buffer.writeIntLE(bits);
+        }
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        long bits = doubleToLongBits(value);
+        if (bigEndianFloatingPoint) {
+            buffer.writeLong(bits);
+        }
+        else {
+            buffer.writeLongLE(bits);
+        }
+    }
+
+    @Override
+    public void writeI32Array(int[] array, int offset, int length)
+    {
+        int end = offset + length;
+        for (int start = offset; start < end; start += ARRAY_CHUNK_SIZE) {
+            int chunkEnd = Math.min(end, start + ARRAY_CHUNK_SIZE);
+            int maxSize = (chunkEnd - start) * 5;
+            buffer.ensureWritable(maxSize);
+            if (buffer.nioBufferCount() != 1) {
+                for (int i = start; i < chunkEnd; i++) {
+                    writeVarint32(intToZigZag(array[i]));
+                }
+                continue;
+            }
+            // a single NIO view covers both heap and direct buffers, without the per byte checks of the ByteBuf
+            ByteBuffer bytes = buffer.nioBuffer(buffer.writerIndex(), maxSize);
+            int position = 0;
+            for (int i = start; i < chunkEnd; i++) {
+                int n = intToZigZag(array[i]);
+                while ((n & ~0x7F) != 0) {
+                    bytes.put(position++, (byte) ((n & 0x7F) | 0x80));
+                    n >>>= 7;
+                }
+                bytes.put(position++, (byte) n);
+            }
+            buffer.writerIndex(buffer.writerIndex() + position);
+        }
+    }
+
+    @Override
+    public void writeI64Array(long[] array, int offset, int length)
+    {
+        int end = offset + length;
+        for (int start = offset; start < end; start += ARRAY_CHUNK_SIZE) {
+            int chunkEnd = Math.min(end, start + ARRAY_CHUNK_SIZE);
+            int maxSize = (chunkEnd - start) * 10;
+            buffer.ensureWritable(maxSize);
+            if (buffer.nioBufferCount() != 1) {
+                for (int i = start; i < chunkEnd; i++) {
+                    writeVarint64(longToZigzag(array[i]));
+                }
+                continue;
+            }
+            ByteBuffer bytes = buffer.nioBuffer(buffer.writerIndex(), maxSize);
+            int position = 0;
+            for (int i = start; i < chunkEnd; i++) {
+                long n = longToZigzag(array[i]);
+                while ((n & ~0x7FL) != 0) {
+                    bytes.put(position++, (byte) ((n & 0x7F) | 0x80));
+                    n >>>= 7;
+                }
+                bytes.put(position++, (byte) n);
+            }
+            buffer.writerIndex(buffer.writerIndex() + position);
+        }
+    }
+
+    @Override
+    public void writeDoubleArray(double[] array, int offset, int length)
+    {
+        int size = length * Double.BYTES;
+        buffer.ensureWritable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                writeDouble(array[i]);
+            }
+            return;
+        }
+        LongBuffer values = buffer.nioBuffer(buffer.writerIndex(), size).order(floatingPointOrder()).asLongBuffer();
+        for (int i = offset; i < offset + length; i++) {
+            values.put(doubleToLongBits(array[i]));
+        }
+        buffer.writerIndex(buffer.writerIndex() + size);
+    }
+
+    @Override
+    public void writeString(String value)
+    {
+        writeVarint32(utf8Bytes(value));
+        buffer.writeCharSequence(value, UTF_8);
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer value)
+    {
+        int length = value.remaining();
+        writeVarint32(length);
+        if (transport.isZeroCopy(length)) {
+            transport.writeZeroCopy(value);
+            buffer = transport.getByteBuf();
+        }
+        else if (value.hasArray()) {
+            buffer.writeBytes(value.array(), value.arrayOffset() + value.position(), length);
+        }
+        else {
+            buffer.writeBytes(value.duplicate());
+        }
+    }
+
+    @Override
+    public void writeMessageEnd() {}
+
+    @Override
+    public void writeMapEnd() {}
+
+    @Override
+    public void writeListEnd() {}
+
+    @Override
+    public void writeSetEnd() {}
+
+    @Override
+    public void writeFieldEnd() {}
+
+    private void writeCollectionBegin(byte elemType, int size)
+    {
+        if (size <= 14) {
+            buffer.writeByte(size << 4 | getCompactType(elemType));
+        }
+        else {
+            buffer.writeByte(0xf0 | getCompactType(elemType));
+            writeVarint32(size);
+        }
+    }
+
+    private void writeVarint32(int n)
+    {
+        while ((n & ~0x7F) != 0) {
+            buffer.writeByte((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buffer.writeByte(n);
+    }
+
+    private void writeVarint64(long n)
+    {
+        while ((n & ~0x7FL) != 0) {
+            buffer.writeByte((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        buffer.writeByte((int) n);
+    }
+
+    private static long longToZigzag(long l)
+    {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private static int intToZigZag(int n)
+    {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    //
+    // Reading methods
+    //
+
+    @Override
+    public TMessage readMessageBegin()
+            throws TException
+    {
+        byte protocolId = buffer.readByte();
+        if (protocolId != PROTOCOL_ID) {
+            throw new TProtocolException("Expected protocol id " + Integer.toHexString(PROTOCOL_ID) + " but got " + Integer.toHexString(protocolId));
+        }
+        byte versionAndType = buffer.readByte();
+        byte version = (byte) (versionAndType & VERSION_MASK);
+        if (version != this.version) {
+            throw new TProtocolException("Expected version " + this.version + " but got " + version);
+        }
+        byte type = (byte) ((versionAndType >> TYPE_SHIFT_AMOUNT) & TYPE_BITS);
+        int sequenceId = readVarint32();
+        String messageName = readString();
+        return new TMessage(messageName, type, sequenceId);
+    }
+
+    @Override
+    public void readMessageBegin(TMessageHeader header, TMessageNameTable names)
+            throws TException
+    {
+        byte protocolId = buffer.readByte();
+        if (protocolId != PROTOCOL_ID) {
+            throw new TProtocolException("Expected protocol id " + Integer.toHexString(PROTOCOL_ID) + " but got " + Integer.toHexString(protocolId));
+        }
+        byte versionAndType = buffer.readByte();
+        byte version = (byte) (versionAndType & VERSION_MASK);
+        if (version != this.version) {
+            throw new TProtocolException("Expected version " + this.version + " but got " + version);
+        }
+        byte type = (byte) ((versionAndType >> TYPE_SHIFT_AMOUNT) & TYPE_BITS);
+        int sequenceId = readVarint32();
+        int length = checkSize(readVarint32());
+        checkReadable(length);
+        header.set(readMessageName(buffer, length, names), type, sequenceId);
+    }
+
+    @Override
+    public TStruct readStructBegin()
+    {
+        pushLastField();
+        return ANONYMOUS_STRUCT;
+    }
+
+    @Override
+    public void readStructEnd()
+    {
+        popLastField();
+    }
+
+    @Override
+    public TField readFieldBegin()
+            throws TException
+    {
+        readFieldBegin(fieldHeader);
+        if (fieldHeader.getType() == TType.STOP) {
+            return TSTOP;
+        }
+        return new TField("", fieldHeader.getType(), fieldHeader.getId());
+    }
+
+    @Override
+    public void readFieldBegin(TFieldHeader header)
+            throws TException
+    {
+        byte type = buffer.readByte();
+
+        // if it's a stop, then we can return immediately, as the struct is over.
+        if (type == TType.STOP) {
+            header.set(TType.STOP, (short) 0);
+            return;
+        }
+
+        short fieldId;
+
+        // mask off the 4 MSB of the type header. it could contain a field id delta.
+        short modifier = (short) ((type & 0xf0) >> 4);
+        if (modifier == 0) {
+            // not a delta. look ahead for the zigzag varint field id.
+            fieldId = readI16();
+        }
+        else {
+            // has a delta. add the delta to the last read field id.
+            fieldId = (short) (lastFieldId + modifier);
+        }
+
+        // if this happens to be a boolean field, the value is encoded in the type
+        if (isBoolType(type)) {
+            // save the boolean value in a special instance variable.
+            booleanValue = (byte) (type & 0x0f) == Types.BOOLEAN_TRUE ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        lastFieldId = fieldId;
+        header.set(getTType((byte) (type & 0x0f)), fieldId);
+    }
+
+    @Override
+    public TMap readMapBegin()
+            throws TException
+    {
+        int size = checkSize(readVarint32());
+        byte keyAndValueType = size == 0 ? 0 : buffer.readByte();
+        return new TMap(getTType((byte) (keyAndValueType >> 4)), getTType((byte) (keyAndValueType & 0xf)), size);
+    }
+
+    @Override
+    public TList readListBegin()
+            throws TException
+    {
+        byte sizeAndType = buffer.readByte();
+        int size = (sizeAndType >> 4) & 0x0f;
+        if (size == 15) {
+            size = readVarint32();
+        }
+        checkSize(size);
+        return new TList(getTType(sizeAndType), size);
+    }
+
+    @Override
+    public TSet readSetBegin()
+            throws TException
+    {
+        return new TSet(readListBegin());
+    }
+
+    @Override
+    public boolean readBool()
+    {
+        if (booleanValue != null) {
+            boolean result = booleanValue;
+            booleanValue = null;
+            return result;
+        }
+        return buffer.readByte() == Types.BOOLEAN_TRUE;
+    }
+
+    @Override
+    public byte readByte()
+    {
+        return buffer.readByte();
+    }
+
+    @Override
+    public short readI16()
+    {
+        return (short) zigzagToInt(readVarint32());
+    }
+
+    @Override
+    public int readI32()
+    {
+        return zigzagToInt(readVarint32());
+    }
+
+    @Override
+    public long readI64()
+    {
+        return zigzagToLong(readVarint64());
+    }
+
+    @Override
+    public float readFloat()
+    {
+        return intBitsToFloat(bigEndianFloatingPoint ? buffer.readInt() : buffer.readIntLE());
+    }
+
+    @Override
+    public int getRemainingBytes()
+    {
+        return transport.getRemainingBytes();
+    }
+
+    @Override
+    public int getMinSerializedSize(byte type)
+    {
+        switch (type) {
+            case TType.FLOAT:
+                return 4;
+            case TType.DOUBLE:
+                return 8;
+            default:
+                // all other values are variable length, with at least one byte
+                return 1;
+        }
+    }
+
+    @Override
+    public double readDouble()
+    {
+        return longBitsToDouble(bigEndianFloatingPoint ? buffer.readLong() : buffer.readLongLE());
+    }
+
+    @Override
+    public void readI32Array(int[] array, int offset, int length)
+            throws TException
+    {
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                array[i] = readI32();
+            }
+            return;
+        }
+        ByteBuffer bytes = buffer.nioBuffer(buffer.readerIndex(), buffer.readableBytes());
+        int position = 0;
+        int limit = bytes.limit();
+        for (int i = offset; i < offset + length; i++) {
+            int result = 0;
+            int shift = 0;
+            while (true) {
+                if (position == limit) {
+                    throw new TTransportException("Too few bytes in buffer");
+                }
+                byte b = bytes.get(position++);
+                result |= (b & 0x7f) << shift;
+                if ((b & 0x80) != 0x80) {
+                    break;
+                }
+                shift += 7;
+            }
+            array[i] = zigzagToInt(result);
+        }
+        buffer.skipBytes(position);
+    }
+
+    @Override
+    public void readI64Array(long[] array, int offset, int length)
+            throws TException
+    {
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                array[i] = readI64();
+            }
+            return;
+        }
+        ByteBuffer bytes = buffer.nioBuffer(buffer.readerIndex(), buffer.readableBytes());
+        int position = 0;
+        int limit = bytes.limit();
+        for (int i = offset; i < offset + length; i++) {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                if (position == limit) {
+                    throw new TTransportException("Too few bytes in buffer");
+                }
+                byte b = bytes.get(position++);
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) != 0x80) {
+                    break;
+                }
+                shift += 7;
+            }
+            array[i] = zigzagToLong(result);
+        }
+        buffer.skipBytes(position);
+    }
+
+    @Override
+    public void readDoubleArray(double[] array, int offset, int length)
+            throws TException
+    {
+        int size = length * Double.BYTES;
+        checkReadable(size);
+        if (buffer.nioBufferCount() != 1) {
+            for (int i = offset; i < offset + length; i++) {
+                array[i] = readDouble();
+            }
+            return;
+        }
+        buffer.nioBuffer(buffer.readerIndex(), size).order(floatingPointOrder()).asDoubleBuffer().get(array, offset, length);
+        buffer.skipBytes(size);
+    }
+
+    @Override
+    public String readString()
+            throws TException
+    {
+        int length = checkSize(readVarint32());
+        if (length == 0) {
+            return "";
+        }
+        checkReadable(length);
+        String value = buffer.toString(buffer.readerIndex(), length, UTF_8);
+        buffer.skipBytes(length);
+        return value;
+    }
+
+    @Override
+    public ByteBuffer readBinary()
+            throws TException
+    {
+        int length = checkSize(readVarint32());
+        if (length == 0) {
+            return ByteBuffer.wrap(EMPTY_BYTE_ARRAY);
+        }
+        checkReadable(length);
+        if (transport.isZeroCopy(length)) {
+            return transport.readZeroCopy(length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.readBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public int readBinary(byte[] buf, int offset)
+            throws TException
+    {
+        int size = checkSize(readVarint32());
+        checkArgument((buf.length - offset) >= size, format("Binary is too large to be read into buffer: binary size: %s, buffer size: %s, buffer offset: %s", size, buf.length, offset));
+        checkReadable(size);
+        buffer.readBytes(buf, offset, size);
+        return size;
+    }
+
+    @Override
+    public void readMessageEnd() {}
+
+    @Override
+    public void readFieldEnd() {}
+
+    @Override
+    public void readMapEnd() {}
+
+    @Override
+    public void readListEnd() {}
+
+    @Override
+    public void readSetEnd() {}
+
+    private int readVarint32()
+    {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.readByte();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) != 0x80) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private long readVarint64()
+    {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.readByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) != 0x80) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private static int zigzagToInt(int n)
+    {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static long zigzagToLong(long n)
+    {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private ByteOrder floatingPointOrder()
+    {
+        return bigEndianFloatingPoint ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    private void checkReadable(int size)
+            throws TTransportException
+    {
+        if (buffer.readableBytes() < size) {
+            throw new TTransportException("Too few bytes in buffer");
+        }
+    }
+
+    private static int checkSize(int length)
+            throws TProtocolException
+    {
+        if (length < 0) {
+            throw new TProtocolException("Negative length: " + length);
+        }
+        return length;
+    }
+
+    private void pushLastField()
+    {
+        if (lastFieldStackSize == lastFieldStack.length) {
+            lastFieldStack = Arrays.copyOf(lastFieldStack, lastFieldStackSize * 2);
+        }
+        lastFieldStack[lastFieldStackSize++] = lastFieldId;
+        lastFieldId = 0;
+    }
+
+    private void popLastField()
+    {
+        lastFieldId = lastFieldStack[--lastFieldStackSize];
+    }
+
+    //
+    // type testing and converting
+    //
+
+    private static boolean isBoolType(byte b)
+    {
+        int lowerNibble = b & 0x0f;
+        return lowerNibble == Types.BOOLEAN_TRUE || lowerNibble == Types.BOOLEAN_FALSE;
+    }
+
+    private static byte getTType(byte type)
+            throws TProtocolException
+    {
+        switch ((byte) (type & 0x0f)) {
+            case TType.STOP:
+                return TType.STOP;
+            case Types.BOOLEAN_FALSE:
+            case Types.BOOLEAN_TRUE:
+                return TType.BOOL;
+            case Types.BYTE:
+                return TType.BYTE;
+            case Types.I16:
+                return TType.I16;
+            case Types.I32:
+                return TType.I32;
+            case Types.I64:
+                return TType.I64;
+            case Types.FLOAT:
+                return TType.FLOAT;
+            case Types.DOUBLE:
+                return TType.DOUBLE;
+            case Types.BINARY:
+                return TType.STRING;
+            case Types.LIST:
+                return TType.LIST;
+            case Types.SET:
+                return TType.SET;
+            case Types.MAP:
+                return TType.MAP;
+            case Types.STRUCT:
+                return TType.STRUCT;
+            default:
+                throw new TProtocolException("don't know what type: " + (byte) (type & 0x0f));
+        }
+    }
+
+    private static byte getCompactType(byte ttype)
+    {
+        return TTYPE_TO_COMPACT_TYPE[ttype];
+    }
+}
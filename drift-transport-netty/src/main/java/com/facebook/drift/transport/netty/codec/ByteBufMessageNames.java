@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import com.facebook.drift.protocol.TMessageNameTable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+final class ByteBufMessageNames
+{
+    private ByteBufMessageNames() {}
+
+    /**
+     * Reads a message name of the specified length from the buffer. Names
+     * in the table are matched against the bytes in place, so no string is
+     * decoded for them.
+     */
+    public static String readMessageName(ByteBuf buffer, int length, TMessageNameTable names)
+    {
+        int index = buffer.readerIndex();
+        String name = null;
+        if (length <= names.getMaxNameLength()) {
+            name = lookup(buffer, index, length, names);
+        }
+        if (name == null) {
+            name = buffer.toString(index, length, UTF_8);
+        }
+        buffer.skipBytes(length);
+        return name;
+    }
+
+    private static String lookup(ByteBuf buffer, int index, int length, TMessageNameTable names)
+    {
+        if (buffer.hasArray()) {
+            return names.lookup(buffer.array(), buffer.arrayOffset() + index, length);
+        }
+        if (buffer.nioBufferCount() == 1) {
+            // internal buffer is shared by the ByteBuf, so this does not allocate
+            ByteBuffer nioBuffer = buffer.internalNioBuffer(index, length);
+            return names.lookup(nioBuffer, nioBuffer.position(), length);
+        }
+        if (buffer instanceof CompositeByteBuf) {
+            // the name is usually contained in a single component
+            CompositeByteBuf composite = (CompositeByteBuf) buffer;
+            int componentIndex = composite.toComponentIndex(index);
+            int componentOffset = composite.toByteIndex(componentIndex);
+            ByteBuf component = composite.internalComponent(componentIndex);
+            if (index + length <= componentOffset + component.capacity()) {
+                return lookup(component, index - componentOffset, length, names);
+            }
+        }
+        return null;
+    }
+}
@@ -20,16 +20,26 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class HeaderCodec
         extends ChannelDuplexHandler
 {
+    private final int maxMessageSize;
+
+    public HeaderCodec(int maxMessageSize)
+    {
+        checkArgument(maxMessageSize >= 0, "maxMessageSize is negative");
+        this.maxMessageSize = maxMessageSize;
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext context, Object message)
     {
         if (message instanceof ByteBuf) {
             ByteBuf request = (ByteBuf) message;
             if (request.isReadable()) {
-                context.fireChannelRead(HeaderTransport.decodeFrame(context.alloc(), request));
+                context.fireChannelRead(HeaderTransport.decodeFrame(context.alloc(), request, maxMessageSize));
                 return;
             }
         }
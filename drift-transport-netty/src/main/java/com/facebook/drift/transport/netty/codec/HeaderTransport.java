@@ -27,7 +27,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.OptionalLong;
 
+import static com.facebook.drift.transport.ClientTimeout.CLIENT_TIMEOUT_HEADER;
+import static com.facebook.drift.transport.ClientTimeout.lowerClientTimeout;
 import static com.facebook.drift.transport.netty.codec.Transport.HEADER;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
@@ -73,7 +76,7 @@ public final class HeaderTransport
                 writeVint(encodingInfo, transform.getId());
             }
             // headers
-            ByteBuf encodedHeaders = encodeHeaders(frame.getHeaders());
+            ByteBuf encodedHeaders = encodeHeaders(frame.getHeaders(), frame.getClientTimeoutMillis());
 
             // Padding - header size must be a multiple of 4
             int headerSize = encodingInfo.readableBytes() + encodedHeaders.readableBytes();
@@ -108,27 +111,47 @@ public final class HeaderTransport
         return padding;
     }
 
-    private static ByteBuf encodeHeaders(Map<String, String> headers)
+    private static ByteBuf encodeHeaders(Map<String, String> headers, OptionalLong clientTimeoutMillis)
     {
-        if (headers.isEmpty()) {
+        // the client timeout is added here rather than copying the headers for every request
+        String clientTimeout = null;
+        int headerCount = headers.size();
+        if (clientTimeoutMillis.isPresent()) {
+            clientTimeout = String.valueOf(lowerClientTimeout(headers, clientTimeoutMillis.getAsLong()));
+            if (!headers.containsKey(CLIENT_TIMEOUT_HEADER)) {
+                headerCount++;
+            }
+        }
+
+        if (headerCount == 0) {
             return Unpooled.EMPTY_BUFFER;
         }
 
         // 1 bytes for header type, 5 for header count vint, and 5 for each header key and value length vint
-        int estimatedSize = 1 + 5 + (headers.size() * 10);
+        int estimatedSize = 1 + 5 + (headerCount * 10);
         for (Entry<String, String> entry : headers.entrySet()) {
             // assume the key and value are ASCII
             estimatedSize += entry.getKey().length() + entry.getValue().length();
         }
+        if (clientTimeout != null) {
+            estimatedSize += CLIENT_TIMEOUT_HEADER.length() + clientTimeout.length();
+        }
 
         ByteBuf headersBuffer = Unpooled.buffer(estimatedSize);
         // non persistent header
         headersBuffer.writeByte(0x01);
-        writeVint(headersBuffer, headers.size());
+        writeVint(headersBuffer, headerCount);
         for (Entry<String, String> entry : headers.entrySet()) {
+            if (clientTimeout != null && entry.getKey().equals(CLIENT_TIMEOUT_HEADER)) {
+                continue;
+            }
             writeString(headersBuffer, entry.getKey());
             writeString(headersBuffer, entry.getValue());
         }
+        if (clientTimeout != null) {
+            writeString(headersBuffer, CLIENT_TIMEOUT_HEADER);
+            writeString(headersBuffer, clientTimeout);
+        }
         return headersBuffer;
     }
 
@@ -157,9 +180,10 @@ public final class HeaderTransport
      *
      * @param bufAllocator allocator to allocated byteBuf to contain decoded result.
      * @param buffer buffer to be decoded; reference count ownership is transferred to this method
+     * @param maxMessageSize maximum size of the message after the read transforms are undone
      * @return the decoded frame; caller is responsible for releasing this object
      */
-    public static ThriftFrame decodeFrame(ByteBufAllocator bufAllocator, ByteBuf buffer)
+    public static ThriftFrame decodeFrame(ByteBufAllocator bufAllocator, ByteBuf buffer, int maxMessageSize)
     {
         ByteBuf messageHeader = null;
         try {
@@ -202,7 +226,7 @@ public final class HeaderTransport
             allHeaders.putAll(decodeHeaders(PERSISTENT_HEADERS, messageHeader));
 
             // message
-            ByteBuf message = untransform(bufAllocator, buffer.retainedDuplicate(), readTransforms);
+            ByteBuf message = untransform(bufAllocator, buffer.retainedDuplicate(), readTransforms, maxMessageSize);
 
             // header frame wraps message byte buffer, so message should not be release yet
             return new ThriftFrame(frameSequenceId, message, allHeaders.build(), readTransforms, HEADER, protocol, outOfOrderResponse);
@@ -226,10 +250,10 @@ public final class HeaderTransport
         return data;
     }
 
-    private static ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf data, List<ThriftHeaderTransform> readTransforms)
+    private static ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf data, List<ThriftHeaderTransform> readTransforms, int maxMessageSize)
     {
         for (ThriftHeaderTransform transform : readTransforms) {
-            data = transform.getMessageTransformer().untransform(bufAllocator, data);
+            data = transform.getMessageTransformer().untransform(bufAllocator, data, maxMessageSize);
         }
         return data;
     }
@@ -278,7 +302,7 @@ public final class HeaderTransport
         return result;
     }
 
-    public static Optional<FrameInfo> tryDecodeFrameInfo(ByteBufAllocator bufAllocator, ByteBuf input)
+    public static Optional<FrameInfo> tryDecodeFrameInfo(ByteBufAllocator bufAllocator, ByteBuf input, int maxMessageSize)
     {
         ByteBuf buffer = input.retainedDuplicate();
         ByteBuf messageHeader = null;
@@ -312,7 +336,7 @@ public final class HeaderTransport
             if (numberOfTransforms > 0) {
                 List<ThriftHeaderTransform> transforms = readTransformBuilder.build();
                 for (ThriftHeaderTransform transform : transforms) {
-                    buffer = transform.getMessageTransformer().tryUntransform(bufAllocator, buffer, MAX_MESSAGE_BEGIN_SECTION_SIZE);
+                    buffer = transform.getMessageTransformer().tryUntransform(bufAllocator, buffer, MAX_MESSAGE_BEGIN_SECTION_SIZE, maxMessageSize);
                 }
             }
             SimpleFrameInfoDecoder simpleFrameInfoDecoder = new SimpleFrameInfoDecoder(HEADER, protocol, outOfOrderResponse);
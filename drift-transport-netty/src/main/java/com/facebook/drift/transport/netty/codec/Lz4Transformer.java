@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+
+/**
+ * Raw LZ4 blocks. The block format does not record the uncompressed length, so the
+ * block is preceded by the length as an unsigned varint.
+ */
+public class Lz4Transformer
+        extends BlockCompressionTransformer
+{
+    public static final Lz4Transformer LZ4_TRANSFORMER = new Lz4Transformer();
+
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    private Lz4Transformer()
+    {
+        super(Lz4Compressor::new, Lz4Decompressor::new);
+    }
+
+    @Override
+    protected int writeBlockHeader(int uncompressedLength, byte[] output, int outputOffset)
+    {
+        int position = outputOffset;
+        int value = uncompressedLength;
+        while ((value & ~0x7F) != 0) {
+            output[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output[position++] = (byte) value;
+        return position - outputOffset;
+    }
+
+    @Override
+    protected int getMaxBlockHeaderLength()
+    {
+        return MAX_VARINT_LENGTH;
+    }
+
+    @Override
+    protected int getBlockHeaderLength(byte[] input, int inputOffset, int inputLength)
+    {
+        int limit = Math.min(inputLength, MAX_VARINT_LENGTH);
+        for (int i = 0; i < limit; i++) {
+            if ((input[inputOffset + i] & 0x80) == 0) {
+                return i + 1;
+            }
+        }
+        throw new MalformedInputException(inputOffset, "Invalid uncompressed length");
+    }
+
+    @Override
+    protected int getUncompressedLength(byte[] input, int inputOffset, int inputLength)
+    {
+        int headerLength = getBlockHeaderLength(input, inputOffset, inputLength);
+        int result = 0;
+        for (int i = 0; i < headerLength; i++) {
+            result |= (input[inputOffset + i] & 0x7F) << (7 * i);
+        }
+        if (result < 0) {
+            throw new MalformedInputException(inputOffset, "Invalid uncompressed length");
+        }
+        return result;
+    }
+}
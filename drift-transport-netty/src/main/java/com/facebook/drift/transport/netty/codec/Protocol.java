@@ -20,6 +20,10 @@ import com.facebook.drift.protocol.TCompactProtocol;
 import com.facebook.drift.protocol.TFacebookCompactProtocol;
 import com.facebook.drift.protocol.TProtocol;
 import com.facebook.drift.protocol.TTransport;
+import com.facebook.drift.transport.netty.ssl.ByteBufTransport;
+
+import static com.facebook.drift.transport.netty.codec.ByteBufCompactProtocol.createCompactProtocol;
+import static com.facebook.drift.transport.netty.codec.ByteBufCompactProtocol.createFacebookCompactProtocol;
 
 public enum Protocol
 {
@@ -27,6 +31,9 @@ public enum Protocol
         @Override
         public TProtocol createProtocol(TTransport transport)
         {
+            if (transport instanceof ByteBufTransport) {
+                return new ByteBufBinaryProtocol((ByteBufTransport) transport);
+            }
             return new TBinaryProtocol(transport);
         }
 
@@ -40,6 +47,9 @@ public enum Protocol
         @Override
         public TProtocol createProtocol(TTransport transport)
         {
+            if (transport instanceof ByteBufTransport) {
+                return createCompactProtocol((ByteBufTransport) transport);
+            }
             return new TCompactProtocol(transport);
         }
 
@@ -53,6 +63,9 @@ public enum Protocol
         @Override
         public TProtocol createProtocol(TTransport transport)
         {
+            if (transport instanceof ByteBufTransport) {
+                return createFacebookCompactProtocol((ByteBufTransport) transport);
+            }
             return new TFacebookCompactProtocol(transport);
         }
 
@@ -63,6 +76,10 @@ public enum Protocol
         }
     };
 
+    /**
+     * Creates a protocol for the transport. Transports backed by a Netty
+     * buffer get a protocol that reads and writes the buffer directly.
+     */
     public abstract TProtocol createProtocol(TTransport transport);
 
     public abstract int getHeaderTransportId();
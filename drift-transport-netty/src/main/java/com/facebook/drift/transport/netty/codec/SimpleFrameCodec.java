@@ -15,9 +15,7 @@
  */
 package com.facebook.drift.transport.netty.codec;
 
-import com.facebook.drift.protocol.TMessage;
 import com.facebook.drift.protocol.TTransportException;
-import com.facebook.drift.transport.netty.ssl.TChannelBufferInputTransport;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.netty.buffer.ByteBuf;
@@ -49,7 +47,7 @@ public class SimpleFrameCodec
             ByteBuf buffer = (ByteBuf) message;
             if (buffer.isReadable()) {
                 context.fireChannelRead(new ThriftFrame(
-                        extractResponseSequenceId(buffer.retain()),
+                        extractResponseSequenceId(buffer),
                         buffer,
                         ImmutableMap.of(),
                         ImmutableList.of(),
@@ -65,17 +63,29 @@ public class SimpleFrameCodec
     private int extractResponseSequenceId(ByteBuf buffer)
             throws TTransportException
     {
-        TChannelBufferInputTransport inputTransport = new TChannelBufferInputTransport(buffer.duplicate());
+        // only the sequence id is needed, so read it in place instead of decoding the message header
         try {
-            TMessage message = protocol.createProtocol(inputTransport).readMessageBegin();
-            return message.getSequenceId();
+            int index = buffer.readerIndex();
+            switch (protocol) {
+                case BINARY:
+                    int size = buffer.getInt(index);
+                    if (size < 0) {
+                        // strict header: version and type, name length, name, sequence id
+                        return buffer.getInt(index + Integer.BYTES + Integer.BYTES + buffer.getInt(index + Integer.BYTES));
+                    }
+                    // old style header: name length, name, type, sequence id
+                    return buffer.getInt(index + Integer.BYTES + size + Byte.BYTES);
+                case COMPACT:
+                case FB_COMPACT:
+                    // protocol id, version and type, sequence id
+                    return UnframedMessageScanner.readVarint(buffer, index + 2);
+                default:
+                    throw new IllegalArgumentException("Unsupported protocol: " + protocol);
+            }
         }
         catch (Throwable e) {
             throw new TTransportException("Could not find sequenceId in Thrift message", e);
         }
-        finally {
-            inputTransport.release();
-        }
     }
 
     @Override
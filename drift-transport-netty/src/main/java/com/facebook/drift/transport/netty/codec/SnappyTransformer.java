@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import io.airlift.compress.snappy.SnappyCompressor;
+import io.airlift.compress.snappy.SnappyDecompressor;
+
+/**
+ * Raw Snappy blocks, which start with the uncompressed length.
+ */
+public class SnappyTransformer
+        extends BlockCompressionTransformer
+{
+    public static final SnappyTransformer SNAPPY_TRANSFORMER = new SnappyTransformer();
+
+    private SnappyTransformer()
+    {
+        super(SnappyCompressor::new, SnappyDecompressor::new);
+    }
+
+    @Override
+    protected int getUncompressedLength(byte[] input, int inputOffset, int inputLength)
+    {
+        return SnappyDecompressor.getUncompressedLength(input, inputOffset);
+    }
+}
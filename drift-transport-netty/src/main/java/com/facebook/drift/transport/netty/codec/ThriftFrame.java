@@ -23,6 +23,7 @@ import javax.annotation.CheckReturnValue;
 
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
 
 import static java.util.Objects.requireNonNull;
 import static javax.annotation.meta.When.UNKNOWN;
@@ -37,6 +38,7 @@ public class ThriftFrame
     private final Transport transport;
     private final Protocol protocol;
     private final boolean supportOutOfOrderResponse;
+    private final OptionalLong clientTimeoutMillis;
 
     public ThriftFrame(
             int sequenceId,
@@ -46,6 +48,19 @@ public class ThriftFrame
             Transport transport,
             Protocol protocol,
             boolean supportOutOfOrderResponse)
+    {
+        this(sequenceId, message, headers, transforms, transport, protocol, supportOutOfOrderResponse, OptionalLong.empty());
+    }
+
+    public ThriftFrame(
+            int sequenceId,
+            ByteBuf message,
+            Map<String, String> headers,
+            List<ThriftHeaderTransform> transforms,
+            Transport transport,
+            Protocol protocol,
+            boolean supportOutOfOrderResponse,
+            OptionalLong clientTimeoutMillis)
     {
         this.sequenceId = sequenceId;
         this.message = requireNonNull(message, "message is null");
@@ -54,6 +69,7 @@ public class ThriftFrame
         this.transport = requireNonNull(transport, "transport is null");
         this.protocol = requireNonNull(protocol, "protocol is null");
         this.supportOutOfOrderResponse = supportOutOfOrderResponse;
+        this.clientTimeoutMillis = requireNonNull(clientTimeoutMillis, "clientTimeoutMillis is null");
     }
 
     public int getSequenceId()
@@ -94,6 +110,14 @@ public class ThriftFrame
         return supportOutOfOrderResponse;
     }
 
+    /**
+     * @return the client timeout written in the headers when the frame is encoded
+     */
+    public OptionalLong getClientTimeoutMillis()
+    {
+        return clientTimeoutMillis;
+    }
+
     @Override
     public int refCnt()
     {
@@ -15,13 +15,20 @@
  */
 package com.facebook.drift.transport.netty.codec;
 
+import static com.facebook.drift.transport.netty.codec.Lz4Transformer.LZ4_TRANSFORMER;
+import static com.facebook.drift.transport.netty.codec.SnappyTransformer.SNAPPY_TRANSFORMER;
 import static com.facebook.drift.transport.netty.codec.ZlibTransformer.ZLIB_TRANSFORMER;
+import static com.facebook.drift.transport.netty.codec.ZstdTransformer.ZSTD_TRANSFORMER;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 public enum ThriftHeaderTransform
 {
-    ZLIB_TRANSFORM(0x01, ZLIB_TRANSFORMER);
+    ZLIB_TRANSFORM(0x01, ZLIB_TRANSFORMER),
+    SNAPPY_TRANSFORM(0x03, SNAPPY_TRANSFORMER),
+    ZSTD_TRANSFORM(0x05, ZSTD_TRANSFORMER),
+    // fbthrift does not define an id for LZ4, so this is only understood by Drift peers
+    LZ4_TRANSFORM(0x06, LZ4_TRANSFORMER);
 
     private final int id;
     private final ThriftMessageTransformer messageTransformer;
@@ -40,9 +40,11 @@ interface ThriftMessageTransformer
      *
      * @param bufAllocator allocator to allocate output byteBuf
      * @param input encoded input
+     * @param maxOutputSize maximum size of the decoded message
      * @return decoded message
+     * @throws FrameTooLargeException if the decoded message is larger than maxOutputSize
      */
-    ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf input);
+    ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf input, int maxOutputSize);
 
     /**
      * Will try to un-transform until get at least minimumSize of byte of output or full output.
@@ -51,7 +53,8 @@ interface ThriftMessageTransformer
      * @param bufAllocator allocator to allocate output byteBuf
      * @param input encoded input
      * @param minimumSize try decode at least minimumSize of byte before stop.
+     * @param maxOutputSize maximum size of the decoded message; larger messages are not decoded
      * @return partially decoded message
      */
-    ByteBuf tryUntransform(ByteBufAllocator bufAllocator, ByteBuf input, int minimumSize);
+    ByteBuf tryUntransform(ByteBufAllocator bufAllocator, ByteBuf input, int minimumSize, int maxOutputSize);
 }
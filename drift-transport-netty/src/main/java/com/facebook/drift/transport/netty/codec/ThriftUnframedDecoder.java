@@ -15,20 +15,20 @@
  */
 package com.facebook.drift.transport.netty.codec;
 
+import com.facebook.drift.TException;
 import com.facebook.drift.protocol.TMessage;
-import com.facebook.drift.protocol.TProtocolReader;
-import com.facebook.drift.protocol.TProtocolUtil;
-import com.facebook.drift.protocol.TType;
 import com.facebook.drift.transport.netty.ssl.TChannelBufferInputTransport;
 import io.airlift.units.DataSize;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
 
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.drift.transport.netty.codec.Transport.UNFRAMED;
+import static com.facebook.drift.transport.netty.codec.UnframedMessageScanner.INCOMPLETE;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
@@ -38,40 +38,55 @@ class ThriftUnframedDecoder
     private final Protocol protocol;
     private final int maxFrameSize;
     private final boolean assumeClientsSupportOutOfOrderResponses;
+    private final UnframedMessageScanner scanner;
 
     public ThriftUnframedDecoder(Protocol protocol, DataSize maxFrameSize, boolean assumeClientsSupportOutOfOrderResponses)
     {
         this.protocol = requireNonNull(protocol, "protocol is null");
         this.maxFrameSize = toIntExact(requireNonNull(maxFrameSize, "maxFrameSize is null").toBytes());
         this.assumeClientsSupportOutOfOrderResponses = assumeClientsSupportOutOfOrderResponses;
+        this.scanner = new UnframedMessageScanner(protocol);
     }
 
     // This method is an exception to the normal reference counted rules and buffer should not be released
     @Override
     protected final void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out)
     {
-        int frameOffset = buffer.readerIndex();
-        TChannelBufferInputTransport transport = new TChannelBufferInputTransport(buffer.retain());
+        // scanner resumes where the previous call stopped, so each byte is only examined once
+        int frameLength;
         try {
-            TProtocolReader protocolReader = protocol.createProtocol(transport);
+            frameLength = scanner.scan(buffer);
+        }
+        catch (CorruptedFrameException e) {
+            // message boundaries are lost, so the rest of the input can not be decoded
+            scanner.reset();
+            buffer.skipBytes(buffer.readableBytes());
+            throw e;
+        }
+        if (frameLength == INCOMPLETE) {
+            return;
+        }
+        scanner.reset();
 
-            TMessage message = protocolReader.readMessageBegin();
-            TProtocolUtil.skip(protocolReader, TType.STRUCT);
-            protocolReader.readMessageEnd();
+        if (frameLength > maxFrameSize) {
+            ctx.fireExceptionCaught(new FrameTooLargeException(
+                    readFrameInfo(buffer.slice(buffer.readerIndex(), frameLength)),
+                    frameLength,
+                    maxFrameSize));
+        }
 
-            int frameLength = buffer.readerIndex() - frameOffset;
-            if (frameLength > maxFrameSize) {
-                FrameInfo frameInfo = new FrameInfo(message.getName(), message.getType(), message.getSequenceId(), UNFRAMED, protocol, assumeClientsSupportOutOfOrderResponses);
-                ctx.fireExceptionCaught(new FrameTooLargeException(
-                        Optional.of(frameInfo),
-                        frameLength,
-                        maxFrameSize));
-            }
+        out.add(buffer.readRetainedSlice(frameLength));
+    }
 
-            out.add(buffer.slice(frameOffset, frameLength).retain());
+    private Optional<FrameInfo> readFrameInfo(ByteBuf frame)
+    {
+        TChannelBufferInputTransport transport = new TChannelBufferInputTransport(frame.retainedDuplicate());
+        try {
+            TMessage message = protocol.createProtocol(transport).readMessageBegin();
+            return Optional.of(new FrameInfo(message.getName(), message.getType(), message.getSequenceId(), UNFRAMED, protocol, assumeClientsSupportOutOfOrderResponses));
         }
-        catch (Throwable th) {
-            buffer.readerIndex(frameOffset);
+        catch (TException | RuntimeException e) {
+            return Optional.empty();
         }
         finally {
             transport.release();
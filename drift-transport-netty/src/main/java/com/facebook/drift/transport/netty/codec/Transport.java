@@ -49,9 +49,12 @@ public enum Transport
         @Override
         public void addFrameHandlers(ChannelPipeline pipeline, Optional<Protocol> protocol, DataSize maxFrameSize, boolean assumeClientsSupportOutOfOrderResponses)
         {
+            int maxFrameSizeInBytes = toIntExact(maxFrameSize.toBytes());
             pipeline.addLast("frameEncoder", new LengthFieldPrepender(Integer.BYTES));
-            pipeline.addLast("thriftFramedDecoder", new ThriftFramedDecoder(HeaderTransport::tryDecodeFrameInfo, toIntExact(maxFrameSize.toBytes())));
-            pipeline.addLast(new HeaderCodec());
+            FrameInfoDecoder frameInfoDecoder = (bufAllocator, buffer) -> HeaderTransport.tryDecodeFrameInfo(bufAllocator, buffer, maxFrameSizeInBytes);
+            pipeline.addLast("thriftFramedDecoder", new ThriftFramedDecoder(frameInfoDecoder, maxFrameSizeInBytes));
+            // compressed messages are limited to the max frame size once they are decompressed as well
+            pipeline.addLast(new HeaderCodec(maxFrameSizeInBytes));
         }
     };
 
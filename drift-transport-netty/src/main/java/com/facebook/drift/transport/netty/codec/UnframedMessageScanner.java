@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import com.facebook.drift.protocol.TType;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.Arrays;
+
+import static com.facebook.drift.transport.netty.codec.Protocol.BINARY;
+import static com.facebook.drift.transport.netty.codec.Protocol.FB_COMPACT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Finds the end of an unframed message by skipping over the encoded values
+ * without decoding them. The position in the message, including the stack
+ * of open containers and their remaining element counts, is kept between
+ * calls, so a message that arrives in many segments is only scanned once.
+ */
+@NotThreadSafe
+class UnframedMessageScanner
+{
+    public static final int INCOMPLETE = -1;
+
+    private static final int BINARY_VERSION_MASK = 0xffff_0000;
+    private static final int BINARY_VERSION_1 = 0x8001_0000;
+
+    private static final byte COMPACT_PROTOCOL_ID = (byte) 0x82;
+    private static final int COMPACT_VERSION_MASK = 0x1f;
+    private static final int COMPACT_VERSION = 1;
+    private static final int FB_COMPACT_VERSION = 2;
+
+    // compact protocol type codes mapped to TType
+    private static final byte[] COMPACT_TYPES = {
+            TType.STOP,
+            TType.BOOL,
+            TType.BOOL,
+            TType.BYTE,
+            TType.I16,
+            TType.I32,
+            TType.I64,
+            TType.DOUBLE,
+            TType.STRING,
+            TType.LIST,
+            TType.SET,
+            TType.MAP,
+            TType.STRUCT,
+            TType.FLOAT};
+
+    private final boolean binary;
+    private final int compactVersion;
+
+    // bytes of the message scanned so far
+    private int position;
+    private boolean headerComplete;
+    // bytes of a string or fixed width value that are still to be skipped
+    private long pendingSkip;
+    // value that follows the field or element header that was just read
+    private boolean valuePending;
+    private byte pendingValueType;
+
+    // stack of open structs and containers
+    private int depth;
+    private byte[] containerTypes = new byte[16];
+    private byte[] keyTypes = new byte[16];
+    private byte[] valueTypes = new byte[16];
+    private long[] remainingElements = new long[16];
+
+    public UnframedMessageScanner(Protocol protocol)
+    {
+        requireNonNull(protocol, "protocol is null");
+        this.binary = protocol == BINARY;
+        this.compactVersion = protocol == FB_COMPACT ? FB_COMPACT_VERSION : COMPACT_VERSION;
+    }
+
+    /**
+     * Continues scanning the message that starts at the reader index of the
+     * buffer. The buffer must contain the bytes passed to the previous calls,
+     * and the reader index is not modified.
+     *
+     * @return the length of the message, or {@link #INCOMPLETE} if more data is needed
+     */
+    public int scan(ByteBuf buffer)
+    {
+        int start = buffer.readerIndex();
+        int end = buffer.writerIndex();
+        while (true) {
+            if (pendingSkip > 0) {
+                int skipped = (int) Math.min(pendingSkip, end - (start + position));
+                position += skipped;
+                pendingSkip -= skipped;
+                if (pendingSkip > 0) {
+                    return INCOMPLETE;
+                }
+            }
+
+            if (!headerComplete) {
+                if (!readMessageHeader(buffer, start + position, end)) {
+                    return INCOMPLETE;
+                }
+                headerComplete = true;
+                pushContainer(TType.STRUCT, TType.STOP, TType.STOP, 0);
+                continue;
+            }
+
+            if (valuePending) {
+                if (!beginValue(pendingValueType, buffer, start + position, end)) {
+                    return INCOMPLETE;
+                }
+                valuePending = false;
+                continue;
+            }
+
+            if (depth == 0) {
+                return position;
+            }
+
+            int top = depth - 1;
+            if (containerTypes[top] == TType.STRUCT) {
+                if (!readFieldHeader(buffer, start + position, end)) {
+                    return INCOMPLETE;
+                }
+            }
+            else if (remainingElements[top] == 0) {
+                depth--;
+            }
+            else {
+                remainingElements[top]--;
+                // map elements alternate between keys and values
+                boolean key = containerTypes[top] == TType.MAP && remainingElements[top] % 2 == 1;
+                setPendingValue(key ? keyTypes[top] : valueTypes[top]);
+            }
+        }
+    }
+
+    /**
+     * Prepares the scanner for the next message.
+     */
+    public void reset()
+    {
+        position = 0;
+        headerComplete = false;
+        pendingSkip = 0;
+        valuePending = false;
+        depth = 0;
+    }
+
+    private boolean readMessageHeader(ByteBuf buffer, int index, int end)
+    {
+        if (binary) {
+            if (end - index < Integer.BYTES) {
+                return false;
+            }
+            int versionOrNameLength = buffer.getInt(index);
+            if (versionOrNameLength < 0) {
+                if ((versionOrNameLength & BINARY_VERSION_MASK) != BINARY_VERSION_1) {
+                    throw new CorruptedFrameException("Bad version in message header: " + Integer.toHexString(versionOrNameLength));
+                }
+                // version, name, sequence id
+                if (end - index < Integer.BYTES * 2) {
+                    return false;
+                }
+                return consumeHeader(Integer.BYTES * 3L + checkLength(buffer.getInt(index + Integer.BYTES)), index, end);
+            }
+            // old style header: name, type, sequence id
+            return consumeHeader(Integer.BYTES * 2L + Byte.BYTES + versionOrNameLength, index, end);
+        }
+
+        if (end - index < 2) {
+            return false;
+        }
+        if (buffer.getByte(index) != COMPACT_PROTOCOL_ID) {
+            throw new CorruptedFrameException("Bad protocol id in message header: " + Integer.toHexString(buffer.getByte(index) & 0xff));
+        }
+        int version = buffer.getByte(index + 1) & COMPACT_VERSION_MASK;
+        if (version != compactVersion) {
+            throw new CorruptedFrameException("Bad version in message header: " + version);
+        }
+        int sequenceIdLength = varintLength(buffer, index + 2, end);
+        if (sequenceIdLength < 0) {
+            return false;
+        }
+        int nameIndex = index + 2 + sequenceIdLength;
+        int nameLengthLength = varintLength(buffer, nameIndex, end);
+        if (nameLengthLength < 0) {
+            return false;
+        }
+        return consumeHeader(2L + sequenceIdLength + nameLengthLength + checkLength(readVarint(buffer, nameIndex)), index, end);
+    }
+
+    private boolean consumeHeader(long length, int index, int end)
+    {
+        if (end - index < length) {
+            return false;
+        }
+        position += (int) length;
+        return true;
+    }
+
+    private boolean readFieldHeader(ByteBuf buffer, int index, int end)
+    {
+        if (index >= end) {
+            return false;
+        }
+        byte header = buffer.getByte(index);
+        if (header == TType.STOP) {
+            position++;
+            depth--;
+            return true;
+        }
+
+        if (binary) {
+            if (end - index < Byte.BYTES + Short.BYTES) {
+                return false;
+            }
+            position += Byte.BYTES + Short.BYTES;
+            setPendingValue(header);
+            return true;
+        }
+
+        int length = Byte.BYTES;
+        // zero field id delta means the field id follows as a varint
+        if ((header & 0xf0) == 0) {
+            int fieldIdLength = varintLength(buffer, index + 1, end);
+            if (fieldIdLength < 0) {
+                return false;
+            }
+            length += fieldIdLength;
+        }
+        position += length;
+        byte type = compactType(header & 0x0f);
+        // boolean field values are encoded in the field header
+        if (type != TType.BOOL) {
+            setPendingValue(type);
+        }
+        return true;
+    }
+
+    private void setPendingValue(byte type)
+    {
+        valuePending = true;
+        pendingValueType = type;
+    }
+
+    private boolean beginValue(byte type, ByteBuf buffer, int index, int end)
+    {
+        switch (type) {
+            case TType.BOOL:
+            case TType.BYTE:
+                pendingSkip = Byte.BYTES;
+                return true;
+            case TType.FLOAT:
+                pendingSkip = Float.BYTES;
+                return true;
+            case TType.DOUBLE:
+                pendingSkip = Double.BYTES;
+                return true;
+            case TType.I16:
+                return binary ? skipFixed(Short.BYTES) : skipVarint(buffer, index, end);
+            case TType.I32:
+                return binary ? skipFixed(Integer.BYTES) : skipVarint(buffer, index, end);
+            case TType.I64:
+                return binary ? skipFixed(Long.BYTES) : skipVarint(buffer, index, end);
+            case TType.STRING:
+                return beginString(buffer, index, end);
+            case TType.STRUCT:
+                pushContainer(TType.STRUCT, TType.STOP, TType.STOP, 0);
+                return true;
+            case TType.MAP:
+                return beginMap(buffer, index, end);
+            case TType.SET:
+            case TType.LIST:
+                return beginList(type, buffer, index, end);
+            default:
+                throw new CorruptedFrameException("Unknown type: " + type);
+        }
+    }
+
+    private boolean skipFixed(int length)
+    {
+        pendingSkip = length;
+        return true;
+    }
+
+    private boolean skipVarint(ByteBuf buffer, int index, int end)
+    {
+        int length = varintLength(buffer, index, end);
+        if (length < 0) {
+            return false;
+        }
+        position += length;
+        return true;
+    }
+
+    private boolean beginString(ByteBuf buffer, int index, int end)
+    {
+        if (binary) {
+            if (end - index < Integer.BYTES) {
+                return false;
+            }
+            position += Integer.BYTES;
+            pendingSkip = checkLength(buffer.getInt(index));
+            return true;
+        }
+
+        int length = varintLength(buffer, index, end);
+        if (length < 0) {
+            return false;
+        }
+        position += length;
+        pendingSkip = checkLength(readVarint(buffer, index));
+        return true;
+    }
+
+    private boolean beginMap(ByteBuf buffer, int index, int end)
+    {
+        if (binary) {
+            if (end - index < Byte.BYTES * 2 + Integer.BYTES) {
+                return false;
+            }
+            byte keyType = buffer.getByte(index);
+            byte valueType = buffer.getByte(index + 1);
+            int size = checkLength(buffer.getInt(index + 2));
+            position += Byte.BYTES * 2 + Integer.BYTES;
+            pushContainer(TType.MAP, keyType, valueType, size * 2L);
+            return true;
+        }
+
+        int length = varintLength(buffer, index, end);
+        if (length < 0) {
+            return false;
+        }
+        int size = checkLength(readVarint(buffer, index));
+        // types are omitted for empty maps
+        if (size == 0) {
+            position += length;
+            pushContainer(TType.MAP, TType.STOP, TType.STOP, 0);
+            return true;
+        }
+        if (end - index < length + Byte.BYTES) {
+            return false;
+        }
+        byte types = buffer.getByte(index + length);
+        position += length + Byte.BYTES;
+        pushContainer(TType.MAP, compactType((types >> 4) & 0x0f), compactType(types & 0x0f), size * 2L);
+        return true;
+    }
+
+    private boolean beginList(byte type, ByteBuf buffer, int index, int end)
+    {
+        if (binary) {
+            if (end - index < Byte.BYTES + Integer.BYTES) {
+                return false;
+            }
+            byte elementType = buffer.getByte(index);
+            int size = checkLength(buffer.getInt(index + 1));
+            position += Byte.BYTES + Integer.BYTES;
+            pushContainer(type, TType.STOP, elementType, size);
+            return true;
+        }
+
+        if (index >= end) {
+            return false;
+        }
+        byte sizeAndType = buffer.getByte(index);
+        int length = Byte.BYTES;
+        int size = (sizeAndType >> 4) & 0x0f;
+        // sizes of 15 and above follow the header as a varint
+        if (size == 15) {
+            int sizeLength = varintLength(buffer, index + 1, end);
+            if (sizeLength < 0) {
+                return false;
+            }
+            size = checkLength(readVarint(buffer, index + 1));
+            length += sizeLength;
+        }
+        position += length;
+        // some writers leave the element type of empty lists unset
+        byte elementType = size == 0 ? TType.STOP : compactType(sizeAndType & 0x0f);
+        pushContainer(type, TType.STOP, elementType, size);
+        return true;
+    }
+
+    private void pushContainer(byte type, byte keyType, byte valueType, long elements)
+    {
+        if (depth == containerTypes.length) {
+            int newLength = depth * 2;
+            containerTypes = Arrays.copyOf(containerTypes, newLength);
+            keyTypes = Arrays.copyOf(keyTypes, newLength);
+            valueTypes = Arrays.copyOf(valueTypes, newLength);
+            remainingElements = Arrays.copyOf(remainingElements, newLength);
+        }
+        containerTypes[depth] = type;
+        keyTypes[depth] = keyType;
+        valueTypes[depth] = valueType;
+        remainingElements[depth] = elements;
+        depth++;
+    }
+
+    /**
+     * Returns the length of the varint at the index, or -1 if the buffer
+     * does not contain the whole varint.
+     */
+    private static int varintLength(ByteBuf buffer, int index, int end)
+    {
+        for (int i = 0; i < 10; i++) {
+            if (index + i >= end) {
+                return -1;
+            }
+            if ((buffer.getByte(index + i) & 0x80) == 0) {
+                return i + 1;
+            }
+        }
+        throw new CorruptedFrameException("Variable length integer is longer than 10 bytes");
+    }
+
+    static int readVarint(ByteBuf buffer, int index)
+    {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            byte value = buffer.getByte(index++);
+            result |= (value & 0x7f) << shift;
+            if ((value & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private static int checkLength(int length)
+    {
+        if (length < 0) {
+            throw new CorruptedFrameException("Negative length: " + length);
+        }
+        return length;
+    }
+
+    private static byte compactType(int type)
+    {
+        if (type == 0 || type >= COMPACT_TYPES.length) {
+            throw new CorruptedFrameException("Unknown compact type: " + type);
+        }
+        return COMPACT_TYPES[type];
+    }
+}
@@ -17,18 +17,57 @@ package com.facebook.drift.transport.netty.codec;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
+import io.netty.util.concurrent.FastThreadLocal;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 public class ZlibTransformer
         implements ThriftMessageTransformer
 {
     public static final ZlibTransformer ZLIB_TRANSFORMER = new ZlibTransformer(512);
+
+    private static final int MAX_INITIAL_INFLATE_SIZE = 4 * 1024 * 1024;
+
+    // zlib contexts hold native memory, so each event loop thread keeps one of each for reuse
+    private static final FastThreadLocal<Deflater> DEFLATERS = new FastThreadLocal<Deflater>()
+    {
+        @Override
+        protected Deflater initialValue()
+        {
+            return new Deflater();
+        }
+
+        @Override
+        protected void onRemoval(Deflater deflater)
+        {
+            deflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<Inflater> INFLATERS = new FastThreadLocal<Inflater>()
+    {
+        @Override
+        protected Inflater initialValue()
+        {
+            return new Inflater();
+        }
+
+        @Override
+        protected void onRemoval(Inflater inflater)
+        {
+            inflater.end();
+        }
+    };
+
     private final int zipBlockSize;
 
     public ZlibTransformer(int zipBlockSize)
@@ -39,57 +78,129 @@ public class ZlibTransformer
     @Override
     public ByteBuf transform(ByteBufAllocator bufAllocator, ByteBuf input)
     {
-        ByteBuf output = bufAllocator.buffer(zipBlockSize);
-        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(new ByteBufOutputStream(output))) {
-            input.readBytes(outputStream, input.readableBytes());
+        Deflater deflater = DEFLATERS.get();
+        ByteBuf output = null;
+        try {
+            int length = input.readableBytes();
+            setInput(input, deflater::setInput);
+            deflater.finish();
+
+            // sized so the whole message deflates without growing the buffer
+            output = bufAllocator.heapBuffer(compressBound(length));
+            while (!deflater.finished()) {
+                output.ensureWritable(zipBlockSize);
+                int written = deflater.deflate(output.array(), output.arrayOffset() + output.writerIndex(), output.writableBytes());
+                output.writerIndex(output.writerIndex() + written);
+            }
+            return output;
         }
-        catch (IOException e) {
-            output.release();
-            throw new UncheckedIOException(e);
+        catch (RuntimeException e) {
+            if (output != null) {
+                output.release();
+            }
+            throw e;
         }
         finally {
+            deflater.reset();
             input.release();
         }
-        return output;
     }
 
     @Override
-    public ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf input)
+    public ByteBuf untransform(ByteBufAllocator bufAllocator, ByteBuf input, int maxOutputSize)
     {
-        ByteBuf output = bufAllocator.buffer(zipBlockSize);
-        try (InflaterInputStream inputStream = new InflaterInputStream(new ByteBufInputStream(input))) {
-            while (inputStream.available() > 0) {
-                output.writeBytes(inputStream, zipBlockSize);
+        Inflater inflater = INFLATERS.get();
+        ByteBuf output = bufAllocator.heapBuffer(initialInflateSize(input.readableBytes(), maxOutputSize));
+        try {
+            setInput(input, inflater::setInput);
+            while (!inflater.finished()) {
+                // inflating one byte past the limit shows the message is too large, without inflating the rest
+                if (inflate(inflater, output, maxOutputSize + 1L) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Unexpected end of ZLIB input stream");
+                }
+                if (output.readableBytes() > maxOutputSize) {
+                    throw new FrameTooLargeException(Optional.empty(), output.readableBytes(), maxOutputSize);
+                }
             }
             return output;
         }
-        catch (IOException e) {
+        catch (IOException | DataFormatException e) {
             output.release();
-            throw new UncheckedIOException(e);
+            throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+        catch (RuntimeException e) {
+            output.release();
+            throw e;
         }
         finally {
+            inflater.reset();
             input.release();
         }
     }
 
     @Override
-    public ByteBuf tryUntransform(ByteBufAllocator bufAllocator, ByteBuf input, int byteLimit)
+    public ByteBuf tryUntransform(ByteBufAllocator bufAllocator, ByteBuf input, int byteLimit, int maxOutputSize)
     {
-        ByteBuf output = bufAllocator.buffer(zipBlockSize);
-        try (InflaterInputStream inputStream = new InflaterInputStream(new ByteBufInputStream(input))) {
-            while (inputStream.available() > 0) {
-                output.writeBytes(inputStream, zipBlockSize);
-                if (byteLimit > 0 && output.readableBytes() >= byteLimit) {
+        Inflater inflater = INFLATERS.get();
+        ByteBuf output = bufAllocator.heapBuffer(initialInflateSize(input.readableBytes(), maxOutputSize));
+        try {
+            setInput(input, inflater::setInput);
+            while (!inflater.finished()) {
+                if (inflate(inflater, output, maxOutputSize) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                if ((byteLimit > 0 && output.readableBytes() >= byteLimit) || output.readableBytes() >= maxOutputSize) {
                     break;
                 }
             }
             return output;
         }
-        catch (IOException e) {
+        catch (DataFormatException e) {
             return output;
         }
         finally {
+            inflater.reset();
             input.release();
         }
     }
+
+    private int inflate(Inflater inflater, ByteBuf output, long maxLength)
+            throws DataFormatException
+    {
+        int length = (int) min(zipBlockSize, maxLength - output.writerIndex());
+        output.ensureWritable(length);
+        length = (int) min(output.writableBytes(), maxLength - output.writerIndex());
+        int written = inflater.inflate(output.array(), output.arrayOffset() + output.writerIndex(), length);
+        output.writerIndex(output.writerIndex() + written);
+        return written;
+    }
+
+    private int initialInflateSize(int compressedLength, int maxOutputSize)
+    {
+        // messages typically compress to between a half and a quarter of their size
+        return (int) min(max(zipBlockSize, min(compressedLength * 4L, MAX_INITIAL_INFLATE_SIZE)), maxOutputSize + 1L);
+    }
+
+    private static void setInput(ByteBuf input, InputConsumer consumer)
+    {
+        if (input.hasArray()) {
+            consumer.setInput(input.array(), input.arrayOffset() + input.readerIndex(), input.readableBytes());
+        }
+        else {
+            byte[] bytes = new byte[input.readableBytes()];
+            input.getBytes(input.readerIndex(), bytes);
+            consumer.setInput(bytes, 0, bytes.length);
+        }
+    }
+
+    private static int compressBound(int length)
+    {
+        // upper bound of the deflate output from zlib's compressBound, including the zlib wrapper
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+    }
+
+    private interface InputConsumer
+    {
+        void setInput(byte[] bytes, int offset, int length);
+    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+/**
+ * Zstandard frames, which record the uncompressed length in the frame header.
+ */
+public class ZstdTransformer
+        extends BlockCompressionTransformer
+{
+    public static final ZstdTransformer ZSTD_TRANSFORMER = new ZstdTransformer();
+
+    private ZstdTransformer()
+    {
+        super(ZstdCompressor::new, ZstdDecompressor::new);
+    }
+
+    @Override
+    protected int getUncompressedLength(byte[] input, int inputOffset, int inputLength)
+    {
+        long size = ZstdDecompressor.getDecompressedSize(input, inputOffset, inputLength);
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new MalformedInputException(inputOffset, "Zstd frame does not record a supported content size");
+        }
+        return (int) size;
+    }
+}
@@ -19,6 +19,7 @@ import com.facebook.airlift.configuration.Config;
 import com.facebook.airlift.configuration.ConfigDescription;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.airlift.units.MaxDataSize;
@@ -30,11 +31,14 @@ import javax.validation.constraints.NotNull;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class DriftNettyServerConfig
 {
@@ -46,6 +50,7 @@ public class DriftNettyServerConfig
     private int workerThreadCount = DEFAULT_WORKER_THREAD_COUNT;
     private DataSize maxFrameSize = new DataSize(16, MEGABYTE);
     private Duration requestTimeout = new Duration(1, MINUTES);
+    private Duration timerTickDuration = new Duration(10, MILLISECONDS);
 
     private Duration sslContextRefreshTime = new Duration(1, MINUTES);
     private boolean allowPlaintext = true;
@@ -59,6 +64,19 @@ public class DriftNettyServerConfig
 
     private boolean assumeClientsSupportOutOfOrderResponses = true;
     private boolean nativeTransportEnabled;
+    private boolean zeroCopyEnabled;
+    private boolean flushConsolidationEnabled;
+    private int flushConsolidationMaxPendingFlushes = 256;
+
+    private ServerDispatchMode dispatchMode = ServerDispatchMode.INLINE;
+    private int dispatchThreadCount = 200;
+    private int dispatchMaxQueuedRequests = 1000;
+    private List<String> dispatchInlineMethods = ImmutableList.of();
+
+    private int admissionMaxConcurrentRequests;
+    private Map<String, Integer> admissionMethodLimits = ImmutableMap.of();
+    private boolean admissionAdaptiveLimitEnabled;
+    private Duration admissionAdaptiveLimitLatencyThreshold = new Duration(1, SECONDS);
 
     @Min(0)
     @Max(65535)
@@ -151,6 +169,21 @@ public class DriftNettyServerConfig
         return this;
     }
 
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getTimerTickDuration()
+    {
+        return timerTickDuration;
+    }
+
+    @Config("thrift.server.timer.tick-duration")
+    @ConfigDescription("Resolution of the timer that expires requests; a request may run up to one tick past its timeout")
+    public DriftNettyServerConfig setTimerTickDuration(Duration timerTickDuration)
+    {
+        this.timerTickDuration = timerTickDuration;
+        return this;
+    }
+
     public boolean isAllowPlaintext()
     {
         return allowPlaintext;
@@ -288,4 +321,166 @@ public class DriftNettyServerConfig
         this.nativeTransportEnabled = nativeTransportEnabled;
         return this;
     }
+
+    public boolean isZeroCopyEnabled()
+    {
+        return zeroCopyEnabled;
+    }
+
+    @Config("thrift.server.zero-copy.enabled")
+    @ConfigDescription("Read and write large binary values by reference to the frame buffer instead of copying them")
+    public DriftNettyServerConfig setZeroCopyEnabled(boolean zeroCopyEnabled)
+    {
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        return this;
+    }
+
+    @NotNull
+    public ServerDispatchMode getDispatchMode()
+    {
+        return dispatchMode;
+    }
+
+    @Config("thrift.server.dispatch.mode")
+    @ConfigDescription("Where service methods are executed: INLINE, THREAD_POOL, PER_METHOD_THREAD_POOL or VIRTUAL_THREAD")
+    public DriftNettyServerConfig setDispatchMode(ServerDispatchMode dispatchMode)
+    {
+        this.dispatchMode = dispatchMode;
+        return this;
+    }
+
+    @Min(1)
+    public int getDispatchThreadCount()
+    {
+        return dispatchThreadCount;
+    }
+
+    @Config("thrift.server.dispatch.thread-count")
+    @ConfigDescription("Maximum number of dispatch threads, which are divided between the pools in PER_METHOD_THREAD_POOL mode")
+    public DriftNettyServerConfig setDispatchThreadCount(int dispatchThreadCount)
+    {
+        this.dispatchThreadCount = dispatchThreadCount;
+        return this;
+    }
+
+    @Min(1)
+    public int getDispatchMaxQueuedRequests()
+    {
+        return dispatchMaxQueuedRequests;
+    }
+
+    @Config("thrift.server.dispatch.max-queued-requests")
+    @ConfigDescription("Maximum number of requests waiting for a dispatch thread before requests are rejected, which is divided between the pools in PER_METHOD_THREAD_POOL mode")
+    public DriftNettyServerConfig setDispatchMaxQueuedRequests(int dispatchMaxQueuedRequests)
+    {
+        this.dispatchMaxQueuedRequests = dispatchMaxQueuedRequests;
+        return this;
+    }
+
+    public List<String> getDispatchInlineMethods()
+    {
+        return dispatchInlineMethods;
+    }
+
+    @Config("thrift.server.dispatch.inline-methods")
+    @ConfigDescription("Methods that are always executed on the I/O thread")
+    public DriftNettyServerConfig setDispatchInlineMethods(String dispatchInlineMethods)
+    {
+        this.dispatchInlineMethods = Splitter
+                .on(',')
+                .trimResults()
+                .omitEmptyStrings()
+                .splitToList(requireNonNull(dispatchInlineMethods, "dispatchInlineMethods is null"));
+        return this;
+    }
+
+    public boolean isFlushConsolidationEnabled()
+    {
+        return flushConsolidationEnabled;
+    }
+
+    @Config("thrift.server.flush-consolidation.enabled")
+    @ConfigDescription("Combine flushes of responses written in the same event loop iteration into a single write")
+    public DriftNettyServerConfig setFlushConsolidationEnabled(boolean flushConsolidationEnabled)
+    {
+        this.flushConsolidationEnabled = flushConsolidationEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getFlushConsolidationMaxPendingFlushes()
+    {
+        return flushConsolidationMaxPendingFlushes;
+    }
+
+    @Config("thrift.server.flush-consolidation.max-pending-flushes")
+    @ConfigDescription("Maximum number of flushes combined before the channel is flushed")
+    public DriftNettyServerConfig setFlushConsolidationMaxPendingFlushes(int flushConsolidationMaxPendingFlushes)
+    {
+        this.flushConsolidationMaxPendingFlushes = flushConsolidationMaxPendingFlushes;
+        return this;
+    }
+
+    @Min(0)
+    public int getAdmissionMaxConcurrentRequests()
+    {
+        return admissionMaxConcurrentRequests;
+    }
+
+    @Config("thrift.server.admission.max-concurrent-requests")
+    @ConfigDescription("Maximum number of requests executing at the same time before new requests are rejected, or 0 for no limit")
+    public DriftNettyServerConfig setAdmissionMaxConcurrentRequests(int admissionMaxConcurrentRequests)
+    {
+        this.admissionMaxConcurrentRequests = admissionMaxConcurrentRequests;
+        return this;
+    }
+
+    @NotNull
+    public Map<String, Integer> getAdmissionMethodLimits()
+    {
+        return admissionMethodLimits;
+    }
+
+    @Config("thrift.server.admission.method-limits")
+    @ConfigDescription("Maximum number of requests executing at the same time for individual methods, as method:limit pairs")
+    public DriftNettyServerConfig setAdmissionMethodLimits(String admissionMethodLimits)
+    {
+        ImmutableMap.Builder<String, Integer> limits = ImmutableMap.builder();
+        Splitter.on(',')
+                .trimResults()
+                .omitEmptyStrings()
+                .withKeyValueSeparator(Splitter.on(':').trimResults())
+                .split(requireNonNull(admissionMethodLimits, "admissionMethodLimits is null"))
+                .forEach((method, limit) -> limits.put(method, Integer.parseInt(limit)));
+        this.admissionMethodLimits = limits.build();
+        return this;
+    }
+
+    public boolean isAdmissionAdaptiveLimitEnabled()
+    {
+        return admissionAdaptiveLimitEnabled;
+    }
+
+    @Config("thrift.server.admission.adaptive-limit.enabled")
+    @ConfigDescription("Lower the concurrent request limit while requests are slow, and raise it back towards the maximum while they are fast")
+    public DriftNettyServerConfig setAdmissionAdaptiveLimitEnabled(boolean admissionAdaptiveLimitEnabled)
+    {
+        this.admissionAdaptiveLimitEnabled = admissionAdaptiveLimitEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getAdmissionAdaptiveLimitLatencyThreshold()
+    {
+        return admissionAdaptiveLimitLatencyThreshold;
+    }
+
+    @Config("thrift.server.admission.adaptive-limit.latency-threshold")
+    @ConfigDescription("Requests slower than this lower the adaptive concurrent request limit")
+    public DriftNettyServerConfig setAdmissionAdaptiveLimitLatencyThreshold(Duration admissionAdaptiveLimitLatencyThreshold)
+    {
+        this.admissionAdaptiveLimitLatencyThreshold = admissionAdaptiveLimitLatencyThreshold;
+        return this;
+    }
 }
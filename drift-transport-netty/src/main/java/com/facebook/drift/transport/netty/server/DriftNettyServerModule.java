@@ -22,8 +22,10 @@ import com.google.inject.Module;
 import com.google.inject.Scopes;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
+import org.weakref.jmx.MBeanExporter;
 
 import static com.facebook.airlift.configuration.ConfigBinder.configBinder;
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
 import static java.util.Objects.requireNonNull;
 
 public class DriftNettyServerModule
@@ -47,6 +49,7 @@ public class DriftNettyServerModule
     {
         configBinder(binder).bindConfig(DriftNettyServerConfig.class);
         binder.bind(ByteBufAllocator.class).toInstance(allocator);
+        newOptionalBinder(binder, MBeanExporter.class);
         binder.bind(ServerTransportFactory.class).to(DriftNettyServerTransportFactory.class).in(Scopes.SINGLETON);
     }
 }
@@ -29,6 +29,7 @@ import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.HashedWheelTimer;
 import io.netty.util.concurrent.Future;
 
 import java.net.InetSocketAddress;
@@ -36,6 +37,7 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.concurrent.Threads.threadsNamed;
 import static com.facebook.drift.transport.netty.ssl.SslContextFactory.createSslContextFactory;
 import static com.google.common.base.Preconditions.checkState;
@@ -43,6 +45,7 @@ import static io.netty.channel.ChannelOption.ALLOCATOR;
 import static io.netty.channel.ChannelOption.SO_BACKLOG;
 import static io.netty.channel.ChannelOption.SO_KEEPALIVE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class DriftNettyServerTransport
@@ -53,6 +56,9 @@ public class DriftNettyServerTransport
 
     private final EventLoopGroup ioGroup;
     private final EventLoopGroup workerGroup;
+    private final ServerDispatcher dispatcher;
+    private final ServerAdmissionController admissionController;
+    private final HashedWheelTimer timer;
 
     private Channel channel;
 
@@ -82,6 +88,10 @@ public class DriftNettyServerTransport
             serverSocketChannelClass = NioServerSocketChannel.class;
         }
 
+        dispatcher = new ServerDispatcher(config, methodInvoker.getMethodNames());
+        admissionController = new ServerAdmissionController(config);
+        timer = new HashedWheelTimer(daemonThreadsNamed("drift-server-timer-%s"), config.getTimerTickDuration().toMillis(), MILLISECONDS);
+
         Optional<Supplier<SslContext>> sslContext = Optional.empty();
         if (config.isSslEnabled()) {
             SslContextFactory sslContextFactory = createSslContextFactory(false, config.getSslContextRefreshTime(), workerGroup);
@@ -105,7 +115,12 @@ public class DriftNettyServerTransport
                 sslContext,
                 config.isAllowPlaintext(),
                 config.isAssumeClientsSupportOutOfOrderResponses(),
-                workerGroup);
+                config.isZeroCopyEnabled(),
+                config.isFlushConsolidationEnabled(),
+                config.getFlushConsolidationMaxPendingFlushes(),
+                dispatcher,
+                admissionController,
+                timer);
 
         bootstrap = new ServerBootstrap()
                 .group(ioGroup, workerGroup)
@@ -138,6 +153,16 @@ public class DriftNettyServerTransport
         return ((InetSocketAddress) channel.localAddress()).getPort();
     }
 
+    public ServerDispatcher getDispatcher()
+    {
+        return dispatcher;
+    }
+
+    public ServerAdmissionController getAdmissionController()
+    {
+        return admissionController;
+    }
+
     @Override
     public void shutdown()
     {
@@ -153,6 +178,8 @@ public class DriftNettyServerTransport
             }
             finally {
                 await(workerGroup.shutdownGracefully(0, 0, SECONDS));
+                dispatcher.close();
+                timer.stop();
             }
             await(ioShutdown);
         }
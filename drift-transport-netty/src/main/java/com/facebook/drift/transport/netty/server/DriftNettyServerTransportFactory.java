@@ -19,9 +19,17 @@ import com.facebook.drift.transport.server.ServerMethodInvoker;
 import com.facebook.drift.transport.server.ServerTransport;
 import com.facebook.drift.transport.server.ServerTransportFactory;
 import io.netty.buffer.ByteBufAllocator;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNameBuilder;
 
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 import static java.util.Objects.requireNonNull;
 
 public class DriftNettyServerTransportFactory
@@ -29,22 +37,64 @@ public class DriftNettyServerTransportFactory
 {
     private final DriftNettyServerConfig config;
     private final ByteBufAllocator allocator;
+    private final Optional<MBeanExporter> mbeanExporter;
+
+    @GuardedBy("this")
+    private final List<String> exportedNames = new ArrayList<>();
+    @GuardedBy("this")
+    private int exportedTransports;
 
     public DriftNettyServerTransportFactory(DriftNettyServerConfig config)
     {
         this(config, ByteBufAllocator.DEFAULT);
     }
 
-    @Inject
     public DriftNettyServerTransportFactory(DriftNettyServerConfig config, ByteBufAllocator allocator)
+    {
+        this(config, allocator, Optional.empty());
+    }
+
+    @Inject
+    public DriftNettyServerTransportFactory(DriftNettyServerConfig config, ByteBufAllocator allocator, Optional<MBeanExporter> mbeanExporter)
     {
         this.config = requireNonNull(config, "config is null");
         this.allocator = requireNonNull(allocator, "allocator is null");
+        this.mbeanExporter = requireNonNull(mbeanExporter, "mbeanExporter is null");
     }
 
     @Override
     public ServerTransport createServerTransport(ServerMethodInvoker methodInvoker)
     {
-        return new DriftNettyServerTransport(methodInvoker, config, allocator);
+        DriftNettyServerTransport transport = new DriftNettyServerTransport(methodInvoker, config, allocator);
+        mbeanExporter.ifPresent(exporter -> export(exporter, transport));
+        return transport;
+    }
+
+    private synchronized void export(MBeanExporter exporter, DriftNettyServerTransport transport)
+    {
+        export(exporter, "ServerDispatcher", transport.getDispatcher());
+        export(exporter, "ServerAdmissionController", transport.getAdmissionController());
+        exportedTransports++;
+    }
+
+    @GuardedBy("this")
+    private void export(MBeanExporter exporter, String name, Object object)
+    {
+        ObjectNameBuilder objectNameBuilder = new ObjectNameBuilder(DriftNettyServerTransport.class.getPackage().getName())
+                .withProperty("name", name);
+        if (exportedTransports > 0) {
+            objectNameBuilder.withProperty("instance", String.valueOf(exportedTransports));
+        }
+        String objectName = objectNameBuilder.build();
+        exporter.export(objectName, object);
+        exportedNames.add(objectName);
+    }
+
+    @PreDestroy
+    public synchronized void close()
+    {
+        mbeanExporter.ifPresent(exporter -> exportedNames.forEach(exporter::unexport));
+        exportedNames.clear();
+        exportedTransports = 0;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.server;
+
+import com.facebook.airlift.stats.CounterStat;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Limits the number of requests executing at the same time, in total and
+ * for individual methods, so excess requests are rejected before they are
+ * executed instead of queueing until they time out.
+ * <p>
+ * When the adaptive limit is enabled, the total limit follows an AIMD
+ * policy: a request slower than the latency threshold lowers the limit by a
+ * constant ratio, at most once per latency threshold period so a burst of
+ * slow requests admitted under the old limit counts as a single overload,
+ * and every fast request raises it by one, up to the configured maximum,
+ * while at least half of the limit is in use.
+ */
+public class ServerAdmissionController
+{
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int maxConcurrentRequests;
+    private final Map<String, Integer> methodLimits;
+    private final boolean adaptiveLimitEnabled;
+    private final long latencyThresholdNanos;
+    private final Ticker ticker;
+
+    private final AtomicInteger limit;
+    private final AtomicLong nextDecreaseNanos;
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final Map<String, AtomicInteger> methodConcurrentRequests;
+    private final CounterStat rejectedRequests = new CounterStat();
+
+    public ServerAdmissionController(DriftNettyServerConfig config)
+    {
+        this(
+                config.getAdmissionMaxConcurrentRequests(),
+                config.getAdmissionMethodLimits(),
+                config.isAdmissionAdaptiveLimitEnabled(),
+                config.getAdmissionAdaptiveLimitLatencyThreshold());
+    }
+
+    public ServerAdmissionController(int maxConcurrentRequests, Map<String, Integer> methodLimits, boolean adaptiveLimitEnabled, Duration latencyThreshold)
+    {
+        this(maxConcurrentRequests, methodLimits, adaptiveLimitEnabled, latencyThreshold, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    ServerAdmissionController(int maxConcurrentRequests, Map<String, Integer> methodLimits, boolean adaptiveLimitEnabled, Duration latencyThreshold, Ticker ticker)
+    {
+        checkArgument(maxConcurrentRequests >= 0, "maxConcurrentRequests is negative");
+        requireNonNull(methodLimits, "methodLimits is null");
+        methodLimits.forEach((method, methodLimit) -> checkArgument(methodLimit > 0, "limit for method %s must be positive", method));
+        checkArgument(!adaptiveLimitEnabled || maxConcurrentRequests > 0, "adaptive limit requires a maximum number of concurrent requests");
+        requireNonNull(latencyThreshold, "latencyThreshold is null");
+        requireNonNull(ticker, "ticker is null");
+
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.methodLimits = ImmutableMap.copyOf(methodLimits);
+        this.adaptiveLimitEnabled = adaptiveLimitEnabled;
+        this.latencyThresholdNanos = latencyThreshold.roundTo(NANOSECONDS);
+        this.ticker = ticker;
+
+        this.limit = new AtomicInteger(maxConcurrentRequests);
+        this.nextDecreaseNanos = new AtomicLong(ticker.read());
+        this.methodConcurrentRequests = this.methodLimits.keySet().stream()
+                .collect(toImmutableMap(method -> method, method -> new AtomicInteger()));
+    }
+
+    /**
+     * @return false if no request is ever rejected, so requests do not need to be tracked
+     */
+    public boolean isEnabled()
+    {
+        return maxConcurrentRequests > 0 || !methodLimits.isEmpty();
+    }
+
+    /**
+     * Admits a request for the method. Every admitted request must be
+     * released when it completes.
+     *
+     * @return false if the request must be rejected
+     */
+    public boolean tryAcquire(String methodName)
+    {
+        if (maxConcurrentRequests > 0 && !tryIncrement(concurrentRequests, limit.get())) {
+            rejectedRequests.update(1);
+            return false;
+        }
+
+        AtomicInteger methodRequests = methodConcurrentRequests.get(methodName);
+        if (methodRequests != null && !tryIncrement(methodRequests, methodLimits.get(methodName))) {
+            if (maxConcurrentRequests > 0) {
+                concurrentRequests.decrementAndGet();
+            }
+            rejectedRequests.update(1);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a request admitted by {@link #tryAcquire(String)}.
+     */
+    public void release(String methodName, long latencyNanos)
+    {
+        AtomicInteger methodRequests = methodConcurrentRequests.get(methodName);
+        if (methodRequests != null) {
+            methodRequests.decrementAndGet();
+        }
+
+        if (maxConcurrentRequests > 0) {
+            int inFlightRequests = concurrentRequests.getAndDecrement();
+            if (adaptiveLimitEnabled) {
+                updateLimit(inFlightRequests, latencyNanos);
+            }
+        }
+    }
+
+    private void updateLimit(int inFlightRequests, long latencyNanos)
+    {
+        if (latencyNanos > latencyThresholdNanos) {
+            long now = ticker.read();
+            long nextDecrease = nextDecreaseNanos.get();
+            if (now - nextDecrease >= 0 && nextDecreaseNanos.compareAndSet(nextDecrease, now + latencyThresholdNanos)) {
+                limit.updateAndGet(current -> max(1, (int) (current * BACKOFF_RATIO)));
+            }
+        }
+        else if (inFlightRequests * 2 >= limit.get()) {
+            // only grow a limit that is actually being used, so an idle server does not forget about a recent overload
+            limit.updateAndGet(current -> min(maxConcurrentRequests, current + 1));
+        }
+    }
+
+    private static boolean tryIncrement(AtomicInteger counter, int limit)
+    {
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Managed
+    public int getLimit()
+    {
+        return maxConcurrentRequests > 0 ? limit.get() : Integer.MAX_VALUE;
+    }
+
+    @Managed
+    public int getConcurrentRequests()
+    {
+        return concurrentRequests.get();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejectedRequests()
+    {
+        return rejectedRequests;
+    }
+}
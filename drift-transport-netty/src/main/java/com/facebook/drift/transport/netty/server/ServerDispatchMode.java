@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.server;
+
+public enum ServerDispatchMode
+{
+    /**
+     * Methods are executed on the I/O thread that received the request.
+     */
+    INLINE,
+    /**
+     * Methods are executed on a bounded thread pool shared by all methods.
+     */
+    THREAD_POOL,
+    /**
+     * Each method is executed on its own bounded thread pool, so a slow
+     * method can not starve the others. The configured threads and queue
+     * are divided between the pools.
+     */
+    PER_METHOD_THREAD_POOL,
+    /**
+     * Each request is executed on a new virtual thread. Requires Java 21 or later.
+     */
+    VIRTUAL_THREAD
+}
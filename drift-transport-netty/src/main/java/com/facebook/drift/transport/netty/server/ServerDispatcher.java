@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.server;
+
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.AsyncCallable;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.facebook.airlift.concurrent.Threads.threadsNamed;
+import static com.facebook.drift.transport.VirtualThreads.newVirtualThreadPerTaskExecutor;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.units.Duration.nanosSince;
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Decides where service methods are executed, and tracks how long requests
+ * wait before they start executing.
+ */
+public class ServerDispatcher
+        implements Closeable
+{
+    private final ServerDispatchMode mode;
+    private final Set<String> inlineMethods;
+
+    private final ExecutorService sharedExecutor;
+    private final Map<String, ExecutorService> methodExecutors;
+
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final TimeStat queueTime = new TimeStat(MILLISECONDS);
+    private final CounterStat rejectedRequests = new CounterStat();
+
+    public ServerDispatcher(DriftNettyServerConfig config, Set<String> methodNames)
+    {
+        this(
+                config.getDispatchMode(),
+                config.getDispatchThreadCount(),
+                config.getDispatchMaxQueuedRequests(),
+                ImmutableSet.copyOf(config.getDispatchInlineMethods()),
+                methodNames);
+    }
+
+    /**
+     * @param methodNames the methods of the service; in per method mode, each
+     * gets its own pool, and any other method is executed on a pool shared by
+     * all of them
+     */
+    public ServerDispatcher(ServerDispatchMode mode, int threadCount, int maxQueuedRequests, Set<String> inlineMethods, Set<String> methodNames)
+    {
+        this.mode = requireNonNull(mode, "mode is null");
+        checkArgument(threadCount > 0, "threadCount must be positive");
+        checkArgument(maxQueuedRequests > 0, "maxQueuedRequests must be positive");
+        this.inlineMethods = ImmutableSet.copyOf(requireNonNull(inlineMethods, "inlineMethods is null"));
+        requireNonNull(methodNames, "methodNames is null");
+
+        ImmutableMap.Builder<String, ExecutorService> methodExecutors = ImmutableMap.builder();
+        switch (mode) {
+            case THREAD_POOL:
+                sharedExecutor = newBoundedExecutor("drift-server-dispatch-%s", threadCount, maxQueuedRequests);
+                break;
+            case PER_METHOD_THREAD_POOL:
+                // the threads and queue are divided between the pools, so the total does
+                // not grow with the number of methods; the pools are created up front,
+                // so none can be created after this dispatcher is closed
+                Set<String> dispatchedMethods = methodNames.stream()
+                        .filter(name -> !this.inlineMethods.contains(name))
+                        .collect(toImmutableSet());
+                int poolCount = dispatchedMethods.size() + 1;
+                int poolThreadCount = max(1, threadCount / poolCount);
+                int poolMaxQueuedRequests = max(1, maxQueuedRequests / poolCount);
+                sharedExecutor = newBoundedExecutor("drift-server-dispatch-%s", poolThreadCount, poolMaxQueuedRequests);
+                for (String methodName : dispatchedMethods) {
+                    // the method name is part of a format string, so it must not contain format specifiers
+                    String nameFormat = "drift-server-dispatch-" + methodName.replace("%", "%%") + "-%s";
+                    methodExecutors.put(methodName, newBoundedExecutor(nameFormat, poolThreadCount, poolMaxQueuedRequests));
+                }
+                break;
+            case VIRTUAL_THREAD:
+                sharedExecutor = newVirtualThreadPerTaskExecutor();
+                break;
+            default:
+                sharedExecutor = null;
+        }
+        this.methodExecutors = methodExecutors.build();
+    }
+
+    /**
+     * @return true if the method is executed on the calling thread
+     */
+    public boolean isInline(String methodName)
+    {
+        return mode == ServerDispatchMode.INLINE || inlineMethods.contains(methodName);
+    }
+
+    /**
+     * Runs the task on the executor for the method. The task must not be
+     * dispatched if the method is inline.
+     *
+     * @throws RejectedExecutionException if the executor queue is full
+     */
+    public <T> ListenableFuture<T> dispatch(String methodName, AsyncCallable<T> task)
+    {
+        return dispatch(methodName, task, () -> {});
+    }
+
+    /**
+     * Runs the task on the executor for the method. The cleanup runs exactly
+     * once: after the task has returned and its future is done, or when the
+     * task never runs because it was cancelled while queued, rejected, or
+     * dropped when this dispatcher is closed. The task must not be
+     * dispatched if the method is inline.
+     *
+     * @throws RejectedExecutionException if the executor queue is full
+     */
+    public <T> ListenableFuture<T> dispatch(String methodName, AsyncCallable<T> task, Runnable cleanup)
+    {
+        checkArgument(!isInline(methodName), "method %s is executed inline", methodName);
+        requireNonNull(task, "task is null");
+        requireNonNull(cleanup, "cleanup is null");
+        ExecutorService executor = methodExecutors.getOrDefault(methodName, sharedExecutor);
+
+        DispatchTask<T> dispatchTask = new DispatchTask<>(task, cleanup);
+        queuedRequests.incrementAndGet();
+        try {
+            executor.execute(dispatchTask);
+        }
+        catch (RejectedExecutionException e) {
+            queuedRequests.decrementAndGet();
+            rejectedRequests.update(1);
+            cleanup.run();
+            throw e;
+        }
+        return dispatchTask.getResult();
+    }
+
+    @Managed
+    public String getMode()
+    {
+        return mode.toString();
+    }
+
+    @Managed
+    public int getQueuedRequests()
+    {
+        return queuedRequests.get();
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getQueueTime()
+    {
+        return queueTime;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejectedRequests()
+    {
+        return rejectedRequests;
+    }
+
+    @Override
+    public void close()
+    {
+        if (sharedExecutor != null) {
+            abandon(sharedExecutor.shutdownNow());
+        }
+        methodExecutors.values().forEach(executor -> abandon(executor.shutdownNow()));
+    }
+
+    private void abandon(List<Runnable> tasks)
+    {
+        for (Runnable task : tasks) {
+            queuedRequests.decrementAndGet();
+            ((DispatchTask<?>) task).abandon();
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(String nameFormat, int threadCount, int maxQueuedRequests)
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                60,
+                SECONDS,
+                new LinkedBlockingQueue<>(maxQueuedRequests),
+                threadsNamed(nameFormat));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final class DispatchTask<T>
+            implements Runnable
+    {
+        private final AsyncCallable<T> task;
+        private final Runnable cleanup;
+        private final SettableFuture<T> result = SettableFuture.create();
+        private final long queuedStart = System.nanoTime();
+
+        public DispatchTask(AsyncCallable<T> task, Runnable cleanup)
+        {
+            this.task = task;
+            this.cleanup = cleanup;
+        }
+
+        public ListenableFuture<T> getResult()
+        {
+            return result;
+        }
+
+        @Override
+        public void run()
+        {
+            queuedRequests.decrementAndGet();
+            queueTime.add(nanosSince(queuedStart));
+            if (result.isCancelled()) {
+                cleanup.run();
+                return;
+            }
+
+            ListenableFuture<T> future;
+            try {
+                future = task.call();
+            }
+            catch (Throwable throwable) {
+                result.setException(throwable);
+                cleanup.run();
+                return;
+            }
+            future.addListener(cleanup, directExecutor());
+            result.setFuture(future);
+        }
+
+        public void abandon()
+        {
+            result.setException(new RejectedExecutionException("Server dispatcher is closed"));
+            cleanup.run();
+        }
+    }
+}
@@ -21,10 +21,11 @@ import com.facebook.drift.codec.ThriftCodec;
 import com.facebook.drift.codec.internal.ProtocolReader;
 import com.facebook.drift.codec.internal.ProtocolWriter;
 import com.facebook.drift.protocol.TMessage;
+import com.facebook.drift.protocol.TMessageHeader;
+import com.facebook.drift.protocol.TMessageNameTable;
 import com.facebook.drift.protocol.TMessageType;
 import com.facebook.drift.protocol.TProtocolReader;
 import com.facebook.drift.protocol.TProtocolWriter;
-import com.facebook.drift.protocol.TTransport;
 import com.facebook.drift.transport.MethodMetadata;
 import com.facebook.drift.transport.ParameterMetadata;
 import com.facebook.drift.transport.netty.codec.FrameInfo;
@@ -44,36 +45,46 @@ import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.units.Duration;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalDouble;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 
 import static com.facebook.drift.TApplicationException.Type.INTERNAL_ERROR;
 import static com.facebook.drift.TApplicationException.Type.INVALID_MESSAGE_TYPE;
+import static com.facebook.drift.TApplicationException.Type.LOADSHEDDING;
 import static com.facebook.drift.TApplicationException.Type.PROTOCOL_ERROR;
+import static com.facebook.drift.TApplicationException.Type.TIMEOUT;
 import static com.facebook.drift.TApplicationException.Type.UNKNOWN_METHOD;
 import static com.facebook.drift.protocol.TMessageType.EXCEPTION;
 import static com.facebook.drift.protocol.TMessageType.REPLY;
+import static com.facebook.drift.transport.ClientTimeout.getClientTimeoutMillis;
+import static com.facebook.drift.transport.ClientTimeout.withClientTimeout;
 import static com.google.common.base.Defaults.defaultValue;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.regex.Pattern.CASE_INSENSITIVE;
 
 public class ThriftServerHandler
@@ -85,14 +96,32 @@ public class ThriftServerHandler
             "^.*(?:connection.*(?:reset|closed|abort|broken)|broken.*pipe).*$", CASE_INSENSITIVE);
 
     private final ServerMethodInvoker methodInvoker;
-    private final ScheduledExecutorService timeoutExecutor;
+    private final Timer timer;
     private final Duration requestTimeout;
-
-    public ThriftServerHandler(ServerMethodInvoker methodInvoker, Duration requestTimeout, ScheduledExecutorService timeoutExecutor)
+    private final boolean zeroCopyEnabled;
+    private final ServerDispatcher dispatcher;
+    private final ServerAdmissionController admissionController;
+    private final TMessageNameTable methodNames;
+
+    // handlers are per channel, so the header is only used from the channel event loop
+    private final TMessageHeader messageHeader = new TMessageHeader();
+
+    public ThriftServerHandler(
+            ServerMethodInvoker methodInvoker,
+            TMessageNameTable methodNames,
+            Duration requestTimeout,
+            boolean zeroCopyEnabled,
+            ServerDispatcher dispatcher,
+            ServerAdmissionController admissionController,
+            Timer timer)
     {
         this.methodInvoker = requireNonNull(methodInvoker, "methodInvoker is null");
+        this.methodNames = requireNonNull(methodNames, "methodNames is null");
         this.requestTimeout = requireNonNull(requestTimeout, "requestTimeout is null");
-        this.timeoutExecutor = requireNonNull(timeoutExecutor, "timeoutExecutor is null");
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        this.dispatcher = requireNonNull(dispatcher, "dispatcher is null");
+        this.admissionController = requireNonNull(admissionController, "admissionController is null");
+        this.timer = requireNonNull(timer, "timer is null");
     }
 
     @Override
@@ -146,7 +175,8 @@ public class ThriftServerHandler
 
     private void messageReceived(ChannelHandlerContext context, ThriftFrame frame)
     {
-        TChannelBufferInputTransport inputTransport = new TChannelBufferInputTransport(frame.getMessage());
+        TChannelBufferInputTransport inputTransport = new TChannelBufferInputTransport(frame.getMessage(), zeroCopyEnabled);
+        boolean responsePending = false;
         try {
             ListenableFuture<ThriftFrame> response = decodeMessage(
                     context,
@@ -162,16 +192,21 @@ public class ThriftServerHandler
                         @Override
                         public void onSuccess(ThriftFrame result)
                         {
-                            context.writeAndFlush(result);
+                            // binary values read by reference may be part of the response, so the
+                            // request frame must stay alive until the response is written
+                            context.writeAndFlush(result)
+                                    .addListener(future -> inputTransport.releaseZeroCopyReferences());
                         }
 
                         @Override
                         public void onFailure(Throwable t)
                         {
+                            inputTransport.releaseZeroCopyReferences();
                             context.disconnect();
                         }
                     },
                     directExecutor());
+            responsePending = true;
         }
         catch (Exception e) {
             log.error(e, "Exception processing request");
@@ -183,6 +218,9 @@ public class ThriftServerHandler
             throw e;
         }
         finally {
+            if (!responsePending) {
+                inputTransport.releaseZeroCopyReferences();
+            }
             inputTransport.release();
             frame.release();
         }
@@ -190,7 +228,7 @@ public class ThriftServerHandler
 
     private ListenableFuture<ThriftFrame> decodeMessage(
             ChannelHandlerContext context,
-            TTransport messageData,
+            TChannelBufferInputTransport messageData,
             Transport transport,
             Protocol protocol,
             int frameSequenceId,
@@ -202,44 +240,97 @@ public class ThriftServerHandler
         long start = System.nanoTime();
         TProtocolReader protocolReader = protocol.createProtocol(messageData);
 
-        TMessage message = protocolReader.readMessageBegin();
-        Optional<MethodMetadata> methodMetadata = methodInvoker.getMethodMetadata(message.getName());
+        protocolReader.readMessageBegin(messageHeader, methodNames);
+        String methodName = messageHeader.getName();
+        byte messageType = messageHeader.getType();
+        int messageSequenceId = messageHeader.getSequenceId();
+
+        Optional<MethodMetadata> methodMetadata = methodInvoker.getMethodMetadata(methodName);
         if (!methodMetadata.isPresent()) {
             return immediateFuture(writeApplicationException(
                     context,
-                    message.getName(),
+                    methodName,
                     transforms,
                     transport,
                     protocol,
                     frameSequenceId,
-                    message.getSequenceId(),
+                    messageSequenceId,
                     supportOutOfOrderResponse,
                     UNKNOWN_METHOD,
-                    "Invalid method name: '" + message.getName() + "'",
+                    "Invalid method name: '" + methodName + "'",
                     null));
         }
         MethodMetadata method = methodMetadata.get();
 
-        if (message.getType() != TMessageType.CALL && message.getType() != TMessageType.ONEWAY) {
+        if (messageType != TMessageType.CALL && messageType != TMessageType.ONEWAY) {
             return immediateFuture(writeApplicationException(
                     context,
-                    message.getName(),
+                    methodName,
                     transforms,
                     transport,
                     protocol,
                     frameSequenceId,
-                    message.getSequenceId(),
+                    messageSequenceId,
                     supportOutOfOrderResponse,
                     INVALID_MESSAGE_TYPE,
-                    "Invalid method message type: '" + message.getType() + "'",
+                    "Invalid method message type: '" + messageType + "'",
                     null));
         }
 
-        Map<Short, Object> parameters = readArguments(method, protocolReader);
+        // the client tells how long it waits for the response, which may be less than the server
+        // request timeout; zero means the client waits forever
+        long timeoutNanos = requestTimeout.roundTo(NANOSECONDS);
+        OptionalLong clientTimeout = getClientTimeoutMillis(headers);
+        if (clientTimeout.isPresent() && clientTimeout.getAsLong() != 0) {
+            if (clientTimeout.getAsLong() < 0) {
+                return immediateFuture(writeApplicationException(
+                        context,
+                        methodName,
+                        transforms,
+                        transport,
+                        protocol,
+                        frameSequenceId,
+                        messageSequenceId,
+                        supportOutOfOrderResponse,
+                        TIMEOUT,
+                        "Client timeout expired before processing method: " + method.getName(),
+                        null));
+            }
+            timeoutNanos = min(timeoutNanos, MILLISECONDS.toNanos(clientTimeout.getAsLong()));
+        }
+        long deadline = start + timeoutNanos;
 
-        ListenableFuture<Object> result = methodInvoker.invoke(new ServerInvokeRequest(method, headers, parameters));
-        methodInvoker.recordResult(message.getName(), start, result);
-        return FluentFuture.from(result)
+        // reject before the arguments are read, so an overloaded server spends as little as possible on excess requests
+        if (!admissionController.tryAcquire(method.getName())) {
+            return immediateFuture(writeApplicationException(
+                    context,
+                    methodName,
+                    transforms,
+                    transport,
+                    protocol,
+                    frameSequenceId,
+                    messageSequenceId,
+                    supportOutOfOrderResponse,
+                    LOADSHEDDING,
+                    "Too many concurrent requests for method: " + method.getName(),
+                    null));
+        }
+
+        ListenableFuture<Object> result;
+        try {
+            result = execute(method, headers, messageData, protocolReader, deadline);
+        }
+        catch (Throwable t) {
+            if (admissionController.isEnabled()) {
+                admissionController.release(method.getName(), System.nanoTime() - start);
+            }
+            throw t;
+        }
+        if (admissionController.isEnabled()) {
+            result.addListener(() -> admissionController.release(method.getName(), System.nanoTime() - start), directExecutor());
+        }
+        methodInvoker.recordResult(methodName, start, result);
+        ListenableFuture<ThriftFrame> response = FluentFuture.from(result)
                 .transformAsync(
                         value -> {
                             try {
@@ -250,7 +341,7 @@ public class ThriftServerHandler
                                         transport,
                                         protocol,
                                         frameSequenceId,
-                                        message.getSequenceId(),
+                                        messageSequenceId,
                                         supportOutOfOrderResponse,
                                         value));
                             }
@@ -258,8 +349,9 @@ public class ThriftServerHandler
                                 return immediateFailedFuture(e);
                             }
                         },
-                        directExecutor())
-                .withTimeout(requestTimeout.toMillis(), MILLISECONDS, timeoutExecutor)
+                        directExecutor());
+        // cancels the method invocation once nobody is waiting for the response
+        return FluentFuture.from(withTimeout(response, deadline - System.nanoTime(), context.executor()))
                 .catchingAsync(
                         Exception.class,
                         exception -> {
@@ -271,7 +363,7 @@ public class ThriftServerHandler
                                         transport,
                                         protocol,
                                         frameSequenceId,
-                                        message.getSequenceId(),
+                                        messageSequenceId,
                                         supportOutOfOrderResponse,
                                         exception));
                             }
@@ -282,60 +374,145 @@ public class ThriftServerHandler
                         directExecutor());
     }
 
-    private static Map<Short, Object> readArguments(MethodMetadata method, TProtocolReader protocol)
+    private <T> ListenableFuture<T> withTimeout(ListenableFuture<T> future, long timeoutNanos, Executor executor)
+    {
+        // the timer wheel only adds the request to a bucket, instead of pushing a task onto a scheduled
+        // executor heap for every request, so the deadline may be observed up to one tick late; the
+        // request is cancelled and the response written on the channel event loop, so the shared
+        // timer thread is never blocked by request completion
+        SettableFuture<T> result = SettableFuture.create();
+        Timeout timeout = timer.newTimeout(
+                ignored -> executor.execute(() -> {
+                    if (result.setException(new TimeoutException("Request did not complete before its deadline"))) {
+                        future.cancel(true);
+                    }
+                }),
+                timeoutNanos,
+                NANOSECONDS);
+        future.addListener(
+                () -> {
+                    timeout.cancel();
+                    result.setFuture(future);
+                },
+                directExecutor());
+        return result;
+    }
+
+    private ListenableFuture<Object> execute(
+            MethodMetadata method,
+            Map<String, String> headers,
+            TChannelBufferInputTransport messageData,
+            TProtocolReader protocolReader,
+            long deadline)
             throws Exception
     {
-        Map<Short, Object> arguments = new HashMap<>(method.getParameters().size());
+        // binary values read by reference are used by the method until it is done, even if the
+        // response was already written because the request timed out
+        messageData.retainZeroCopyReferences();
+
+        if (dispatcher.isInline(method.getName())) {
+            ListenableFuture<Object> result;
+            try {
+                result = invoke(method, headers, protocolReader, deadline);
+            }
+            catch (Throwable t) {
+                messageData.releaseZeroCopyReferences();
+                throw t;
+            }
+            result.addListener(messageData::releaseZeroCopyReferences, directExecutor());
+            return result;
+        }
+
+        // the arguments are read on the dispatch thread, so keep the frame alive until the
+        // method is done, or until the dispatcher drops the request without running it
+        messageData.retain();
+        try {
+            return dispatcher.dispatch(
+                    method.getName(),
+                    () -> invoke(method, headers, protocolReader, deadline),
+                    () -> {
+                        messageData.releaseZeroCopyReferences();
+                        messageData.release();
+                    });
+        }
+        catch (RejectedExecutionException e) {
+            return immediateFailedFuture(new TApplicationException(LOADSHEDDING, "Too many queued requests for method: " + method.getName()));
+        }
+    }
+
+    private ListenableFuture<Object> invoke(MethodMetadata method, Map<String, String> headers, TProtocolReader protocolReader, long deadline)
+            throws Exception
+    {
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            // the request waited until nobody was waiting for the response, so skip reading the arguments
+            return immediateFailedFuture(new TApplicationException(TIMEOUT, "Request expired before invoking method: " + method.getName()));
+        }
+        if (getClientTimeoutMillis(headers).orElse(0) > 0) {
+            // let the method see the time remaining when it starts, rather than when the client sent the request
+            headers = withClientTimeout(headers, NANOSECONDS.toMillis(remainingNanos));
+        }
+
+        Object[] arguments = readArguments(method, protocolReader);
+        return methodInvoker.invoke(new ServerInvokeRequest(method, headers, arguments));
+    }
+
+    private static Object[] readArguments(MethodMetadata method, TProtocolReader protocol)
+            throws Exception
+    {
+        List<ParameterMetadata> parameters = method.getParameters();
+        Object[] arguments = new Object[parameters.size()];
         ProtocolReader reader = new ProtocolReader(protocol);
 
         reader.readStructBegin();
         while (reader.nextField()) {
-            short fieldId = reader.getFieldId();
-
-            ParameterMetadata parameter = method.getParameterByFieldId(fieldId);
-            if (parameter == null) {
+            int index = method.getParameterIndex(reader.getFieldId());
+            if (index < 0) {
                 reader.skipFieldData();
             }
             else {
-                arguments.put(fieldId, reader.readField(parameter.getCodec()));
+                arguments[index] = reader.readField(parameters.get(index).getCodec());
             }
         }
         reader.readStructEnd();
 
         // set defaults for missing arguments
-        for (ParameterMetadata parameter : method.getParameters()) {
-            if (!arguments.containsKey(parameter.getFieldId())) {
-                Type argumentType = parameter.getCodec().getType().getJavaType();
-
-                Object defaultValue = null;
-                if (argumentType instanceof Class) {
-                    Class<?> argumentClass = (Class<?>) argumentType;
-                    if (argumentClass.isPrimitive()) {
-                        defaultValue = defaultValue(Primitives.unwrap(argumentClass));
-                    }
-                    else if (argumentClass == OptionalInt.class) {
-                        defaultValue = OptionalInt.empty();
-                    }
-                    else if (argumentClass == OptionalLong.class) {
-                        defaultValue = OptionalLong.empty();
-                    }
-                    else if (argumentClass == OptionalDouble.class) {
-                        defaultValue = OptionalDouble.empty();
-                    }
-                }
-                else if ((argumentType instanceof ParameterizedType) &&
-                        (((ParameterizedType) argumentType).getRawType().equals(Optional.class))) {
-                    defaultValue = Optional.empty();
-                }
-
-                arguments.put(parameter.getFieldId(), defaultValue);
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] == null) {
+                arguments[i] = defaultArgument(parameters.get(i));
             }
         }
 
         return arguments;
     }
 
-    private static ThriftFrame writeSuccessResponse(
+    private static Object defaultArgument(ParameterMetadata parameter)
+    {
+        Type argumentType = parameter.getCodec().getType().getJavaType();
+
+        if (argumentType instanceof Class) {
+            Class<?> argumentClass = (Class<?>) argumentType;
+            if (argumentClass.isPrimitive()) {
+                return defaultValue(Primitives.unwrap(argumentClass));
+            }
+            if (argumentClass == OptionalInt.class) {
+                return OptionalInt.empty();
+            }
+            if (argumentClass == OptionalLong.class) {
+                return OptionalLong.empty();
+            }
+            if (argumentClass == OptionalDouble.class) {
+                return OptionalDouble.empty();
+            }
+        }
+        else if ((argumentType instanceof ParameterizedType) &&
+                (((ParameterizedType) argumentType).getRawType().equals(Optional.class))) {
+            return Optional.empty();
+        }
+        return null;
+    }
+
+    private ThriftFrame writeSuccessResponse(
             ChannelHandlerContext context,
             MethodMetadata methodMetadata,
             List<ThriftHeaderTransform> transforms,
@@ -347,7 +524,7 @@ public class ThriftServerHandler
             Object result)
             throws Exception
     {
-        TChannelBufferOutputTransport outputTransport = new TChannelBufferOutputTransport(context.alloc());
+        TChannelBufferOutputTransport outputTransport = new TChannelBufferOutputTransport(context.alloc(), zeroCopyEnabled);
         try {
             writeResponse(
                     methodMetadata.getName(),
@@ -15,16 +15,18 @@
  */
 package com.facebook.drift.transport.netty.server;
 
+import com.facebook.drift.protocol.TMessageNameTable;
 import com.facebook.drift.transport.server.ServerMethodInvoker;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.Timer;
 
 import java.util.Optional;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -34,12 +36,18 @@ public class ThriftServerInitializer
         extends ChannelInitializer<SocketChannel>
 {
     private final ServerMethodInvoker methodInvoker;
+    private final TMessageNameTable methodNames;
     private final DataSize maxFrameSize;
     private final Duration requestTimeout;
     private final Optional<Supplier<SslContext>> sslContextSupplier;
     private final boolean allowPlainText;
     private final boolean assumeClientsSupportOutOfOrderResponses;
-    private final ScheduledExecutorService timeoutExecutor;
+    private final boolean zeroCopyEnabled;
+    private final boolean flushConsolidationEnabled;
+    private final int flushConsolidationMaxPendingFlushes;
+    private final ServerDispatcher dispatcher;
+    private final ServerAdmissionController admissionController;
+    private final Timer timer;
 
     public ThriftServerInitializer(
             ServerMethodInvoker methodInvoker,
@@ -48,22 +56,35 @@ public class ThriftServerInitializer
             Optional<Supplier<SslContext>> sslContextSupplier,
             boolean allowPlainText,
             boolean assumeClientsSupportOutOfOrderResponses,
-            ScheduledExecutorService timeoutExecutor)
+            boolean zeroCopyEnabled,
+            boolean flushConsolidationEnabled,
+            int flushConsolidationMaxPendingFlushes,
+            ServerDispatcher dispatcher,
+            ServerAdmissionController admissionController,
+            Timer timer)
     {
         requireNonNull(methodInvoker, "methodInvoker is null");
         requireNonNull(maxFrameSize, "maxFrameSize is null");
         requireNonNull(requestTimeout, "requestTimeout is null");
         requireNonNull(sslContextSupplier, "sslContextSupplier is null");
         checkArgument(allowPlainText || sslContextSupplier.isPresent(), "Plain text is not allowed, but SSL is not configured");
-        requireNonNull(timeoutExecutor, "timeoutExecutor is null");
+        requireNonNull(dispatcher, "dispatcher is null");
+        requireNonNull(admissionController, "admissionController is null");
+        requireNonNull(timer, "timer is null");
 
         this.methodInvoker = methodInvoker;
+        this.methodNames = new TMessageNameTable(methodInvoker.getMethodNames());
         this.maxFrameSize = maxFrameSize;
         this.requestTimeout = requestTimeout;
         this.sslContextSupplier = sslContextSupplier;
         this.allowPlainText = allowPlainText;
         this.assumeClientsSupportOutOfOrderResponses = assumeClientsSupportOutOfOrderResponses;
-        this.timeoutExecutor = timeoutExecutor;
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        this.flushConsolidationEnabled = flushConsolidationEnabled;
+        this.flushConsolidationMaxPendingFlushes = flushConsolidationMaxPendingFlushes;
+        this.dispatcher = dispatcher;
+        this.admissionController = admissionController;
+        this.timer = timer;
     }
 
     @Override
@@ -71,6 +92,12 @@ public class ThriftServerInitializer
     {
         ChannelPipeline pipeline = channel.pipeline();
 
+        if (flushConsolidationEnabled) {
+            // responses written while reading are flushed when the read completes, and
+            // responses written from other threads are flushed once per event loop iteration
+            pipeline.addLast(new FlushConsolidationHandler(flushConsolidationMaxPendingFlushes, true));
+        }
+
         if (sslContextSupplier.isPresent()) {
             if (allowPlainText) {
                 pipeline.addLast(new OptionalSslHandler(sslContextSupplier.get().get()));
@@ -81,7 +108,7 @@ public class ThriftServerInitializer
         }
 
         pipeline.addLast(new ThriftProtocolDetection(
-                new ThriftServerHandler(methodInvoker, requestTimeout, timeoutExecutor),
+                new ThriftServerHandler(methodInvoker, methodNames, requestTimeout, zeroCopyEnabled, dispatcher, admissionController, timer),
                 maxFrameSize,
                 assumeClientsSupportOutOfOrderResponses));
     }
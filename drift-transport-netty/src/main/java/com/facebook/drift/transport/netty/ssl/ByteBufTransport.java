@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.ssl;
+
+import com.facebook.drift.protocol.TTransport;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link TTransport} that reads from or writes to a Netty {@link ByteBuf}.
+ * Protocols can operate on the buffer directly instead of going through the
+ * byte array based transport methods.
+ */
+public interface ByteBufTransport
+        extends TTransport
+{
+    /**
+     * Binary values smaller than this are always copied, since copying them
+     * is cheaper than tracking an extra buffer.
+     */
+    int MIN_ZERO_COPY_LENGTH = 4096;
+
+    /**
+     * Gets the buffer backing this transport. The reference count of the
+     * returned buffer is not changed, so the buffer is only valid while this
+     * transport is retained.
+     */
+    ByteBuf getByteBuf();
+
+    /**
+     * Returns true if a binary value of the specified length should be
+     * read or written by reference instead of being copied.
+     */
+    boolean isZeroCopy(int length);
+
+    /**
+     * Reads the next {@code length} bytes as a read-only view of the backing
+     * buffer. The backing buffer stays valid until the owners of this
+     * transport release the zero copy references.
+     *
+     * @throws UnsupportedOperationException if this is an output transport
+     */
+    ByteBuffer readZeroCopy(int length);
+
+    /**
+     * Appends the remaining bytes of the value by reference. The value must
+     * not be modified until the output has been written. After this call
+     * {@link #getByteBuf()} returns a new buffer for subsequent writes.
+     *
+     * @throws UnsupportedOperationException if this is an input transport
+     */
+    void writeZeroCopy(ByteBuffer value);
+}
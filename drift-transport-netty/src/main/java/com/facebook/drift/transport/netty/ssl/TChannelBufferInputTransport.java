@@ -15,25 +15,123 @@
  */
 package com.facebook.drift.transport.netty.ssl;
 
-import com.facebook.drift.protocol.TTransport;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.util.ReferenceCounted;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.concurrent.NotThreadSafe;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 import static javax.annotation.meta.When.UNKNOWN;
 
 @NotThreadSafe
 public class TChannelBufferInputTransport
-        implements TTransport, ReferenceCounted
+        implements ByteBufTransport, ReferenceCounted
 {
+    private static final int RETAINED = 1;
+    private static final int OWNER = 2;
+
     private final ByteBuf buffer;
+    private final boolean zeroCopyEnabled;
+    // owners of the values read by reference, shifted left by one, and whether the buffer was retained for them
+    private final AtomicInteger zeroCopyState = new AtomicInteger(OWNER);
 
     public TChannelBufferInputTransport(ByteBuf buffer)
+    {
+        this(buffer, false);
+    }
+
+    public TChannelBufferInputTransport(ByteBuf buffer, boolean zeroCopyEnabled)
     {
         this.buffer = requireNonNull(buffer, "buffer is null");
+        this.zeroCopyEnabled = zeroCopyEnabled;
+    }
+
+    @Override
+    public ByteBuf getByteBuf()
+    {
+        return buffer;
+    }
+
+    @Override
+    public boolean isZeroCopy(int length)
+    {
+        return zeroCopyEnabled && length >= MIN_ZERO_COPY_LENGTH;
+    }
+
+    @Override
+    public ByteBuffer readZeroCopy(int length)
+    {
+        // the views share the buffer, so keep it alive until all owners of the views are done
+        while (true) {
+            int state = zeroCopyState.get();
+            if (state >>> 1 == 0) {
+                // all owners are done, so a view could outlive the buffer
+                ByteBuffer value = ByteBuffer.wrap(ByteBufUtil.getBytes(buffer, buffer.readerIndex(), length));
+                buffer.skipBytes(length);
+                return value;
+            }
+            if ((state & RETAINED) != 0) {
+                break;
+            }
+            // retain before publishing, so a concurrent release never drops a reference that is not held yet
+            buffer.retain();
+            if (zeroCopyState.compareAndSet(state, state | RETAINED)) {
+                break;
+            }
+            buffer.release();
+        }
+        ByteBuffer value = buffer.nioBuffer(buffer.readerIndex(), length).asReadOnlyBuffer();
+        buffer.skipBytes(length);
+        return value;
+    }
+
+    @Override
+    public void writeZeroCopy(ByteBuffer value)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Adds an owner of the values read by {@link #readZeroCopy(int)}. The
+     * transport starts with one owner, and the backing buffer is kept alive
+     * until every owner has called {@link #releaseZeroCopyReferences()}.
+     */
+    public void retainZeroCopyReferences()
+    {
+        while (true) {
+            int state = zeroCopyState.get();
+            checkState(state >>> 1 > 0, "zero copy references already released");
+            if (zeroCopyState.compareAndSet(state, state + OWNER)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases an owner of the values read by {@link #readZeroCopy(int)}.
+     * When the last owner is released, the reference taken for the values is
+     * released, and values read afterwards are copied.
+     */
+    public void releaseZeroCopyReferences()
+    {
+        while (true) {
+            int state = zeroCopyState.get();
+            int owners = state >>> 1;
+            checkState(owners > 0, "zero copy references already released");
+            int next = owners == 1 ? 0 : state - OWNER;
+            if (zeroCopyState.compareAndSet(state, next)) {
+                if (owners == 1 && (state & RETAINED) != 0) {
+                    buffer.release();
+                }
+                return;
+            }
+        }
     }
 
     @Override
@@ -42,6 +140,12 @@ public class TChannelBufferInputTransport
         buffer.readBytes(buf, off, len);
     }
 
+    @Override
+    public int getRemainingBytes()
+    {
+        return buffer.readableBytes();
+    }
+
     @Override
     public void write(byte[] buf, int off, int len)
     {
@@ -15,35 +15,83 @@
  */
 package com.facebook.drift.transport.netty.ssl;
 
-import com.facebook.drift.protocol.TTransport;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.util.ReferenceCounted;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.concurrent.NotThreadSafe;
 
+import java.nio.ByteBuffer;
+
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static java.util.Objects.requireNonNull;
 import static javax.annotation.meta.When.UNKNOWN;
 
 @NotThreadSafe
 public class TChannelBufferOutputTransport
-        implements TTransport, ReferenceCounted
+        implements ByteBufTransport, ReferenceCounted
 {
-    private final ByteBuf buffer;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final ByteBufAllocator byteBufAllocator;
+    private final boolean zeroCopyEnabled;
+    private ByteBuf buffer;
+    // buffers completed by zero copy writes; the current buffer is appended when the output is consumed
+    private CompositeByteBuf components;
 
     public TChannelBufferOutputTransport(ByteBufAllocator byteBufAllocator)
     {
-        this(byteBufAllocator.buffer(1024));
+        this(byteBufAllocator, false);
+    }
+
+    public TChannelBufferOutputTransport(ByteBufAllocator byteBufAllocator, boolean zeroCopyEnabled)
+    {
+        this.byteBufAllocator = requireNonNull(byteBufAllocator, "byteBufAllocator is null");
+        this.zeroCopyEnabled = zeroCopyEnabled;
+        this.buffer = byteBufAllocator.buffer(INITIAL_BUFFER_SIZE);
     }
 
     public TChannelBufferOutputTransport(ByteBuf buffer)
     {
+        this.byteBufAllocator = null;
+        this.zeroCopyEnabled = false;
         this.buffer = buffer;
     }
 
     public ByteBuf getBuffer()
     {
-        return buffer.retainedDuplicate();
+        return outputBuffer().retainedDuplicate();
+    }
+
+    @Override
+    public ByteBuf getByteBuf()
+    {
+        return buffer;
+    }
+
+    @Override
+    public boolean isZeroCopy(int length)
+    {
+        return zeroCopyEnabled && length >= MIN_ZERO_COPY_LENGTH;
+    }
+
+    @Override
+    public ByteBuffer readZeroCopy(int length)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeZeroCopy(ByteBuffer value)
+    {
+        if (components == null) {
+            components = byteBufAllocator.compositeBuffer(Integer.MAX_VALUE);
+        }
+        components.addComponent(true, buffer);
+        components.addComponent(true, wrappedBuffer(value.duplicate()));
+        buffer = byteBufAllocator.buffer(INITIAL_BUFFER_SIZE);
     }
 
     @Override
@@ -61,34 +109,34 @@ public class TChannelBufferOutputTransport
     @Override
     public int refCnt()
     {
-        return buffer.refCnt();
+        return outputBuffer().refCnt();
     }
 
     @Override
     public ReferenceCounted retain()
     {
-        buffer.retain();
+        outputBuffer().retain();
         return this;
     }
 
     @Override
     public ReferenceCounted retain(int increment)
     {
-        buffer.retain(increment);
+        outputBuffer().retain(increment);
         return this;
     }
 
     @Override
     public ReferenceCounted touch()
     {
-        buffer.touch();
+        outputBuffer().touch();
         return this;
     }
 
     @Override
     public ReferenceCounted touch(Object hint)
     {
-        buffer.touch(hint);
+        outputBuffer().touch(hint);
         return this;
     }
 
@@ -96,12 +144,22 @@ public class TChannelBufferOutputTransport
     @Override
     public boolean release()
     {
-        return buffer.release();
+        return outputBuffer().release();
     }
 
     @Override
     public boolean release(int decrement)
     {
-        return buffer.release(decrement);
+        return outputBuffer().release(decrement);
+    }
+
+    private ByteBuf outputBuffer()
+    {
+        if (components != null) {
+            components.addComponent(true, buffer);
+            buffer = components;
+            components = null;
+        }
+        return buffer;
     }
 }
@@ -16,6 +16,7 @@
 package com.facebook.drift.transport.netty.client;
 
 import com.facebook.drift.transport.netty.client.ConnectionManager.ConnectionParameters;
+import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
@@ -28,7 +29,9 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
@@ -37,6 +40,7 @@ import static com.facebook.drift.transport.netty.codec.Transport.HEADER;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
@@ -44,7 +48,7 @@ import static org.testng.Assert.assertTrue;
 
 public class TestConnectionPool
 {
-    private static final ConnectionParameters PARAMETERS = new ConnectionParameters(HEADER, FB_COMPACT, new DataSize(1, MEGABYTE), new Duration(1, MINUTES), new Duration(1, MINUTES), Optional.empty(), Optional.empty(), false, false);
+    private static final ConnectionParameters PARAMETERS = new ConnectionParameters(HEADER, FB_COMPACT, new DataSize(1, MEGABYTE), new Duration(1, MINUTES), new Duration(1, MINUTES), Optional.empty(), Optional.empty(), false, false, false, false, 256, ImmutableList.of());
 
     private ScheduledExecutorService scheduledExecutorService;
 
@@ -68,7 +72,7 @@ public class TestConnectionPool
     @Test
     public void testPoolingWithSingleConnection()
     {
-        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 1, new Duration(1, MINUTES), scheduledExecutorService)) {
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 1, 100, new Duration(1, MINUTES), scheduledExecutorService)) {
             HostAndPort address1 = HostAndPort.fromParts("localhost", 1234);
             HostAndPort address2 = HostAndPort.fromParts("localhost", 4567);
 
@@ -87,7 +91,7 @@ public class TestConnectionPool
     @Test
     public void testPoolingWithMultipleConnections()
     {
-        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 2, new Duration(1, MINUTES), scheduledExecutorService)) {
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 2, 100, new Duration(1, MINUTES), scheduledExecutorService)) {
             HostAndPort address = HostAndPort.fromParts("localhost", 1234);
 
             futureGet(pool.getConnection(PARAMETERS, address));
@@ -98,7 +102,7 @@ public class TestConnectionPool
     @Test
     public void testConnectionClosed()
     {
-        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 1, new Duration(1, MINUTES), scheduledExecutorService)) {
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 1, 100, new Duration(1, MINUTES), scheduledExecutorService)) {
             HostAndPort address = HostAndPort.fromParts("localhost", 1234);
 
             Channel channel1 = futureGet(pool.getConnection(PARAMETERS, address));
@@ -112,6 +116,109 @@ public class TestConnectionPool
         }
     }
 
+    @Test
+    public void testLeastLoadedConnection()
+    {
+        Map<Channel, Integer> pendingRequests = new ConcurrentHashMap<>();
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 2, 2, new Duration(1, MINUTES), scheduledExecutorService, channel -> pendingRequests.getOrDefault(channel, 0))) {
+            HostAndPort address = HostAndPort.fromParts("localhost", 1234);
+
+            // below the threshold the first connection is reused
+            Channel channel1 = futureGet(pool.getConnection(PARAMETERS, address));
+            pendingRequests.put(channel1, 1);
+            assertSame(futureGet(pool.getConnection(PARAMETERS, address)), channel1);
+            assertEquals(pool.getConnectionCount(), 1);
+
+            // at the threshold a second connection is opened
+            pendingRequests.put(channel1, 2);
+            Channel channel2 = futureGet(pool.getConnection(PARAMETERS, address));
+            assertNotSame(channel1, channel2);
+            assertEquals(pool.getConnectionCount(), 2);
+
+            // requests go to the least loaded connection
+            pendingRequests.put(channel2, 5);
+            assertSame(futureGet(pool.getConnection(PARAMETERS, address)), channel1);
+            pendingRequests.put(channel1, 7);
+            assertSame(futureGet(pool.getConnection(PARAMETERS, address)), channel2);
+
+            // no more connections are opened once the destination is at the limit
+            assertEquals(pool.getConnectionCount(), 2);
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsClosed()
+    {
+        Map<Channel, Integer> pendingRequests = new ConcurrentHashMap<>();
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 2, 1, new Duration(1, MINUTES), scheduledExecutorService, channel -> pendingRequests.getOrDefault(channel, 0))) {
+            HostAndPort address = HostAndPort.fromParts("localhost", 1234);
+
+            Channel channel1 = futureGet(pool.getConnection(PARAMETERS, address));
+            pendingRequests.put(channel1, 1);
+            Channel channel2 = futureGet(pool.getConnection(PARAMETERS, address));
+            assertNotSame(channel1, channel2);
+            assertEquals(pool.getConnectionCount(), 2);
+
+            // recently used connections are kept
+            pendingRequests.clear();
+            pool.cleanUp();
+            assertEquals(pool.getConnectionCount(), 2);
+        }
+
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 2, 1, new Duration(0, MINUTES), scheduledExecutorService, channel -> pendingRequests.getOrDefault(channel, 0))) {
+            HostAndPort address = HostAndPort.fromParts("localhost", 1234);
+
+            Channel channel1 = futureGet(pool.getConnection(PARAMETERS, address));
+            pendingRequests.put(channel1, 1);
+            Channel channel2 = futureGet(pool.getConnection(PARAMETERS, address));
+
+            // connections with pending requests are never closed
+            pool.cleanUp();
+            assertTrue(channel1.isOpen());
+            assertFalse(channel2.isOpen());
+            assertEquals(pool.getConnectionCount(), 1);
+
+            pendingRequests.clear();
+            pool.cleanUp();
+            assertFalse(channel1.isOpen());
+            assertEquals(pool.getConnectionCount(), 0);
+
+            // a new connection is opened for the next request
+            Channel channel3 = futureGet(pool.getConnection(PARAMETERS, address));
+            assertTrue(channel3.isOpen());
+            assertEquals(pool.getConnectionCount(), 1);
+        }
+    }
+
+    @Test
+    public void testMaxSize()
+    {
+        try (ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 2, 1, 100, new Duration(1, MINUTES), scheduledExecutorService)) {
+            Channel channel1 = futureGet(pool.getConnection(PARAMETERS, HostAndPort.fromParts("localhost", 1)));
+            Channel channel2 = futureGet(pool.getConnection(PARAMETERS, HostAndPort.fromParts("localhost", 2)));
+            Channel channel3 = futureGet(pool.getConnection(PARAMETERS, HostAndPort.fromParts("localhost", 3)));
+            assertEquals(pool.getConnectionCount(), 3);
+
+            // least recently used connection is closed
+            pool.cleanUp();
+            assertEquals(pool.getConnectionCount(), 2);
+            assertFalse(channel1.isOpen());
+            assertTrue(channel2.isOpen());
+            assertTrue(channel3.isOpen());
+        }
+    }
+
+    @Test
+    public void testClosedPool()
+    {
+        ConnectionPool pool = new ConnectionPool(new TestingConnectionManager(), new DefaultEventLoopGroup(), 10, 1, 100, new Duration(1, MINUTES), scheduledExecutorService);
+        Channel channel = futureGet(pool.getConnection(PARAMETERS, HostAndPort.fromParts("localhost", 1234)));
+        pool.close();
+        assertFalse(channel.isOpen());
+        assertEquals(pool.getConnectionCount(), 0);
+        assertFalse(pool.getConnection(PARAMETERS, HostAndPort.fromParts("localhost", 1234)).isSuccess());
+    }
+
     private static <T> T futureGet(Future<T> future)
     {
         assertTrue(future.isSuccess());
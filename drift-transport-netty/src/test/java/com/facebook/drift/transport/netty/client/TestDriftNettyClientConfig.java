@@ -59,10 +59,15 @@ public class TestDriftNettyClientConfig
                 .setCiphers("")
                 .setConnectionPoolEnabled(null)
                 .setConnectionPoolMaxConnectionsPerDestination(null)
+                .setConnectionPoolNewConnectionThreshold(null)
                 .setConnectionPoolMaxSize(null)
                 .setConnectionPoolIdleTimeout(null)
                 .setTcpNoDelayEnabled(false)
-                .setReuseAddressEnabled(false));
+                .setReuseAddressEnabled(false)
+                .setZeroCopyEnabled(false)
+                .setFlushConsolidationEnabled(false)
+                .setFlushConsolidationMaxPendingFlushes(256)
+                .setHeaderTransforms(""));
     }
 
     @Test
@@ -84,10 +89,15 @@ public class TestDriftNettyClientConfig
                 .put("thrift.client.ssl.ciphers", "some_cipher")
                 .put("thrift.client.connection-pool.enabled", "true")
                 .put("thrift.client.connection-pool.max-connections-per-destination", "123")
+                .put("thrift.client.connection-pool.new-connection-threshold", "55")
                 .put("thrift.client.connection-pool.max-size", "321")
                 .put("thrift.client.connection-pool.idle-timeout", "12m")
                 .put("thrift.client.tcp-no-delay.enabled", "true")
                 .put("thrift.client.reuse-address.enabled", "true")
+                .put("thrift.client.zero-copy.enabled", "true")
+                .put("thrift.client.flush-consolidation.enabled", "true")
+                .put("thrift.client.flush-consolidation.max-pending-flushes", "32")
+                .put("thrift.client.header-transforms", "ZSTD_TRANSFORM, ZLIB_TRANSFORM")
                 .build();
 
         DriftNettyClientConfig expected = new DriftNettyClientConfig()
@@ -106,10 +116,15 @@ public class TestDriftNettyClientConfig
                 .setCiphers("some_cipher")
                 .setConnectionPoolEnabled(true)
                 .setConnectionPoolMaxConnectionsPerDestination(123)
+                .setConnectionPoolNewConnectionThreshold(55)
                 .setConnectionPoolMaxSize(321)
                 .setConnectionPoolIdleTimeout(new Duration(12, MINUTES))
                 .setTcpNoDelayEnabled(true)
-                .setReuseAddressEnabled(true);
+                .setReuseAddressEnabled(true)
+                .setZeroCopyEnabled(true)
+                .setFlushConsolidationEnabled(true)
+                .setFlushConsolidationMaxPendingFlushes(32)
+                .setHeaderTransforms("ZSTD_TRANSFORM,ZLIB_TRANSFORM");
 
         assertFullMapping(properties, expected);
     }
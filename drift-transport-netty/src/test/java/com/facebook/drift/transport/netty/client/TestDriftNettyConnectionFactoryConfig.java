@@ -25,6 +25,7 @@ import java.util.Map;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 public class TestDriftNettyConnectionFactoryConfig
@@ -34,9 +35,11 @@ public class TestDriftNettyConnectionFactoryConfig
     {
         assertRecordedDefaults(recordDefaults(DriftNettyConnectionFactoryConfig.class)
                 .setThreadCount(Runtime.getRuntime().availableProcessors() * 2)
+                .setTimerTickDuration(new Duration(10, MILLISECONDS))
                 .setConnectionPoolEnabled(true)
                 .setConnectionPoolMaxSize(1000)
                 .setConnectionPoolMaxConnectionsPerDestination(1)
+                .setConnectionPoolNewConnectionThreshold(100)
                 .setConnectionPoolIdleTimeout(new Duration(1, MINUTES))
                 .setSslContextRefreshTime(new Duration(1, MINUTES))
                 .setSocksProxy(null)
@@ -48,9 +51,11 @@ public class TestDriftNettyConnectionFactoryConfig
     {
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("thrift.client.thread-count", "99")
+                .put("thrift.client.timer.tick-duration", "50ms")
                 .put("thrift.client.connection-pool.enabled", "false")
                 .put("thrift.client.connection-pool.max-size", "555")
                 .put("thrift.client.connection-pool.max-connections-per-destination", "10")
+                .put("thrift.client.connection-pool.new-connection-threshold", "42")
                 .put("thrift.client.connection-pool.idle-timeout", "7m")
                 .put("thrift.client.ssl-context.refresh-time", "33m")
                 .put("thrift.client.socks-proxy", "example.com:9876")
@@ -59,9 +64,11 @@ public class TestDriftNettyConnectionFactoryConfig
 
         DriftNettyConnectionFactoryConfig expected = new DriftNettyConnectionFactoryConfig()
                 .setThreadCount(99)
+                .setTimerTickDuration(new Duration(50, MILLISECONDS))
                 .setConnectionPoolEnabled(false)
                 .setConnectionPoolMaxSize(555)
                 .setConnectionPoolMaxConnectionsPerDestination(10)
+                .setConnectionPoolNewConnectionThreshold(42)
                 .setConnectionPoolIdleTimeout(new Duration(7, MINUTES))
                 .setSslContextRefreshTime(new Duration(33, MINUTES))
                 .setSocksProxy(HostAndPort.fromParts("example.com", 9876))
@@ -196,7 +196,11 @@ public class TestDriftNettyMethodInvoker
                 address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, FRAMED, Protocol.COMPACT),
                 address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, FRAMED, Protocol.FB_COMPACT),
                 address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, BINARY),
-                address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, Protocol.FB_COMPACT)));
+                address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, Protocol.FB_COMPACT),
+                address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, BINARY, "ZLIB_TRANSFORM"),
+                address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, BINARY, "SNAPPY_TRANSFORM"),
+                address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, Protocol.FB_COMPACT, "ZSTD_TRANSFORM"),
+                address -> logNiftyInvocationHandler(address, DRIFT_MESSAGES, Transport.HEADER, Protocol.FB_COMPACT, "LZ4_TRANSFORM")));
 
         return newArrayList(concat(nCopies(invocationCount, DRIFT_MESSAGES)));
     }
@@ -290,10 +294,16 @@ public class TestDriftNettyMethodInvoker
     }
 
     private static int logNiftyInvocationHandler(HostAndPort address, List<DriftLogEntry> entries, Transport transport, Protocol protocol)
+    {
+        return logNiftyInvocationHandler(address, entries, transport, protocol, "");
+    }
+
+    private static int logNiftyInvocationHandler(HostAndPort address, List<DriftLogEntry> entries, Transport transport, Protocol protocol, String headerTransforms)
     {
         DriftNettyClientConfig config = new DriftNettyClientConfig()
                 .setTransport(transport)
-                .setProtocol(protocol);
+                .setProtocol(protocol)
+                .setHeaderTransforms(headerTransforms);
 
         try (TestingPooledByteBufAllocator testingAllocator = new TestingPooledByteBufAllocator();
                 DriftNettyMethodInvokerFactory<Void> methodInvokerFactory = new DriftNettyMethodInvokerFactory<>(
@@ -339,7 +349,11 @@ public class TestDriftNettyMethodInvoker
                         Optional.empty(),
                         Optional.empty(),
                         false,
-                        false),
+                        false,
+                        false,
+                        false,
+                        256,
+                        ImmutableList.of()),
                 new HangingConnectionManager(),
                 executor,
                 new Duration(17, MILLISECONDS));
@@ -0,0 +1,605 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.protocol.TBinaryProtocol;
+import com.facebook.drift.protocol.TCompactProtocol;
+import com.facebook.drift.protocol.TFacebookCompactProtocol;
+import com.facebook.drift.protocol.TField;
+import com.facebook.drift.protocol.TFieldHeader;
+import com.facebook.drift.protocol.TList;
+import com.facebook.drift.protocol.TMap;
+import com.facebook.drift.protocol.TMessage;
+import com.facebook.drift.protocol.TMessageHeader;
+import com.facebook.drift.protocol.TMessageNameTable;
+import com.facebook.drift.protocol.TProtocol;
+import com.facebook.drift.protocol.TProtocolReader;
+import com.facebook.drift.protocol.TProtocolWriter;
+import com.facebook.drift.protocol.TSet;
+import com.facebook.drift.protocol.TStruct;
+import com.facebook.drift.protocol.TTransport;
+import com.facebook.drift.protocol.TType;
+import com.facebook.drift.transport.netty.buffer.TestingPooledByteBufAllocator;
+import com.facebook.drift.transport.netty.ssl.TChannelBufferInputTransport;
+import com.facebook.drift.transport.netty.ssl.TChannelBufferOutputTransport;
+import com.google.common.collect.ImmutableList;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import static com.facebook.drift.protocol.TMessageType.CALL;
+import static com.facebook.drift.transport.netty.codec.Protocol.BINARY;
+import static com.facebook.drift.transport.netty.codec.Protocol.COMPACT;
+import static com.facebook.drift.transport.netty.codec.Protocol.FB_COMPACT;
+import static com.facebook.drift.transport.netty.ssl.ByteBufTransport.MIN_ZERO_COPY_LENGTH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestByteBufProtocols
+{
+    private static final String UNICODE = "hello é世界 😀";
+    // longer than all names in the message name table
+    private static final String LONG_UNKNOWN_NAME = "unknownMethodWithAVeryLongName";
+
+    @Test
+    public void testBinary()
+            throws Exception
+    {
+        assertProtocol(BINARY, TBinaryProtocol::new);
+    }
+
+    @Test
+    public void testCompact()
+            throws Exception
+    {
+        assertProtocol(COMPACT, TCompactProtocol::new);
+    }
+
+    @Test
+    public void testFacebookCompact()
+            throws Exception
+    {
+        assertProtocol(FB_COMPACT, TFacebookCompactProtocol::new);
+    }
+
+    @Test
+    public void testProtocolSelection()
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            TChannelBufferOutputTransport transport = new TChannelBufferOutputTransport(allocator);
+            try {
+                assertThat(BINARY.createProtocol(transport)).isInstanceOf(ByteBufBinaryProtocol.class);
+                assertThat(COMPACT.createProtocol(transport)).isInstanceOf(ByteBufCompactProtocol.class);
+                assertThat(FB_COMPACT.createProtocol(transport)).isInstanceOf(ByteBufCompactProtocol.class);
+            }
+            finally {
+                transport.release();
+            }
+        }
+    }
+
+    @Test
+    public void testMessageHeader()
+            throws Exception
+    {
+        assertMessageHeader(BINARY, TBinaryProtocol::new);
+        assertMessageHeader(COMPACT, TCompactProtocol::new);
+        assertMessageHeader(FB_COMPACT, TFacebookCompactProtocol::new);
+    }
+
+    private static void assertMessageHeader(Protocol protocol, Function<TTransport, TProtocol> streamProtocolFactory)
+            throws Exception
+    {
+        String knownName = new String(UNICODE);
+        TMessageNameTable names = new TMessageNameTable(ImmutableList.of("method", knownName));
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            TChannelBufferOutputTransport output = new TChannelBufferOutputTransport(allocator);
+            try {
+                TProtocolWriter writer = protocol.createProtocol(output);
+                writer.writeMessageBegin(new TMessage(UNICODE, CALL, 42));
+                writer.writeMessageBegin(new TMessage("unknown", CALL, 43));
+                writer.writeMessageBegin(new TMessage(LONG_UNKNOWN_NAME, CALL, 44));
+                writer.writeStructBegin(new TStruct("test"));
+                writer.writeFieldBegin(new TField("i32", TType.I32, (short) 7));
+                writer.writeFieldBegin(new TField("i64", TType.I64, (short) 300));
+                writer.writeFieldStop();
+
+                ByteBuf contiguous = output.getByteBuf();
+                CompositeByteBuf composite = allocator.compositeBuffer();
+                // the known name is contained in the first component
+                int split = contiguous.readableBytes() - 4;
+                composite.addComponent(true, contiguous.retainedSlice(0, split));
+                composite.addComponent(true, contiguous.retainedSlice(split, contiguous.readableBytes() - split));
+                try {
+                    assertReadMessageHeader(protocol.createProtocol(new TChannelBufferInputTransport(contiguous.duplicate())), names, knownName);
+                    assertReadMessageHeader(protocol.createProtocol(new TChannelBufferInputTransport(composite)), names, knownName);
+                    assertReadMessageHeader(streamProtocolFactory.apply(new TChannelBufferInputTransport(contiguous.duplicate())), names, knownName);
+                }
+                finally {
+                    composite.release();
+                }
+            }
+            finally {
+                output.release();
+            }
+        }
+    }
+
+    private static void assertReadMessageHeader(TProtocolReader reader, TMessageNameTable names, String knownName)
+            throws TException
+    {
+        TMessageHeader header = new TMessageHeader();
+        reader.readMessageBegin(header, names);
+        assertSame(header.getName(), knownName);
+        assertEquals(header.getType(), CALL);
+        assertEquals(header.getSequenceId(), 42);
+
+        reader.readMessageBegin(header, names);
+        assertEquals(header.getName(), "unknown");
+        assertEquals(header.getSequenceId(), 43);
+
+        reader.readMessageBegin(header, names);
+        assertEquals(header.getName(), LONG_UNKNOWN_NAME);
+        assertEquals(header.getSequenceId(), 44);
+
+        TFieldHeader field = new TFieldHeader();
+        reader.readStructBegin();
+        reader.readFieldBegin(field);
+        assertEquals(field.getType(), TType.I32);
+        assertEquals(field.getId(), 7);
+        reader.readFieldBegin(field);
+        assertEquals(field.getType(), TType.I64);
+        assertEquals(field.getId(), 300);
+        reader.readFieldBegin(field);
+        assertEquals(field.getType(), TType.STOP);
+    }
+
+    private static void assertProtocol(Protocol protocol, Function<TTransport, TProtocol> streamProtocolFactory)
+            throws Exception
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            // write with the stream protocol through the byte array transport methods
+            TChannelBufferOutputTransport streamOutput = new TChannelBufferOutputTransport(allocator);
+            TChannelBufferOutputTransport directOutput = new TChannelBufferOutputTransport(allocator);
+            try {
+                writeTestMessage(streamProtocolFactory.apply(streamOutput));
+
+                writeTestMessage(protocol.createProtocol(directOutput));
+
+                // both writers must produce identical bytes
+                assertEquals(ByteBufUtil.getBytes(directOutput.getByteBuf()), ByteBufUtil.getBytes(streamOutput.getByteBuf()));
+
+                // each reader must be able to read the output of the other writer
+                assertReadTestMessage(protocol.createProtocol(new TChannelBufferInputTransport(streamOutput.getByteBuf())));
+                assertReadTestMessage(streamProtocolFactory.apply(new TChannelBufferInputTransport(directOutput.getByteBuf())));
+            }
+            finally {
+                streamOutput.release();
+                directOutput.release();
+            }
+        }
+    }
+
+    private static void writeTestMessage(TProtocolWriter writer)
+            throws TException
+    {
+        writer.writeMessageBegin(new TMessage("method", CALL, 0xFFAA));
+        writer.writeStructBegin(new TStruct("test"));
+
+        writer.writeFieldBegin(new TField("bool", TType.BOOL, (short) 1));
+        writer.writeBool(true);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("byte", TType.BYTE, (short) 2));
+        writer.writeByte((byte) -7);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("i16", TType.I16, (short) 3));
+        writer.writeI16(Short.MIN_VALUE);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("i32", TType.I32, (short) 20));
+        writer.writeI32(Integer.MAX_VALUE);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("i64", TType.I64, (short) 21));
+        writer.writeI64(Long.MIN_VALUE);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("float", TType.FLOAT, (short) 22));
+        writer.writeFloat(3.14f);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("double", TType.DOUBLE, (short) 23));
+        writer.writeDouble(-2.718281828);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("string", TType.STRING, (short) 24));
+        writer.writeString(UNICODE);
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("empty", TType.STRING, (short) 25));
+        writer.writeString("");
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("binary", TType.STRING, (short) 26));
+        writer.writeBinary(ByteBuffer.wrap(new byte[] {9, 1, 2, 3, 4, 9}, 1, 4));
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("sliced", TType.STRING, (short) 27));
+        writer.writeBinary(ByteBuffer.wrap(new byte[] {0, 0, 5, 6, 7}).slice());
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("nested", TType.STRUCT, (short) 28));
+        writer.writeStructBegin(new TStruct("nested"));
+        writer.writeFieldBegin(new TField("flag", TType.BOOL, (short) 1));
+        writer.writeBool(false);
+        writer.writeFieldEnd();
+        writer.writeFieldStop();
+        writer.writeStructEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("list", TType.LIST, (short) 29));
+        writer.writeListBegin(new TList(TType.I64, 20));
+        for (int i = 0; i < 20; i++) {
+            writer.writeI64(i * 1_000_000_007L);
+        }
+        writer.writeListEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("set", TType.SET, (short) 30));
+        writer.writeSetBegin(new TSet(TType.BOOL, 2));
+        writer.writeBool(true);
+        writer.writeBool(false);
+        writer.writeSetEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("map", TType.MAP, (short) 31));
+        writer.writeMapBegin(new TMap(TType.STRING, TType.DOUBLE, 2));
+        writer.writeString("a");
+        writer.writeDouble(1.5);
+        writer.writeString(UNICODE);
+        writer.writeDouble(-0.0);
+        writer.writeMapEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("emptyMap", TType.MAP, (short) 32));
+        writer.writeMapBegin(new TMap(TType.I32, TType.I32, 0));
+        writer.writeMapEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldStop();
+        writer.writeStructEnd();
+        writer.writeMessageEnd();
+    }
+
+    private static void assertReadTestMessage(TProtocolReader reader)
+            throws TException
+    {
+        TMessage message = reader.readMessageBegin();
+        assertEquals(message.getName(), "method");
+        assertEquals(message.getType(), CALL);
+        assertEquals(message.getSequenceId(), 0xFFAA);
+        reader.readStructBegin();
+
+        assertField(reader, TType.BOOL, 1);
+        assertTrue(reader.readBool());
+        assertField(reader, TType.BYTE, 2);
+        assertEquals(reader.readByte(), -7);
+        assertField(reader, TType.I16, 3);
+        assertEquals(reader.readI16(), Short.MIN_VALUE);
+        assertField(reader, TType.I32, 20);
+        assertEquals(reader.readI32(), Integer.MAX_VALUE);
+        assertField(reader, TType.I64, 21);
+        assertEquals(reader.readI64(), Long.MIN_VALUE);
+        assertField(reader, TType.FLOAT, 22);
+        assertEquals(reader.readFloat(), 3.14f);
+        assertField(reader, TType.DOUBLE, 23);
+        assertEquals(reader.readDouble(), -2.718281828);
+        assertField(reader, TType.STRING, 24);
+        assertEquals(reader.readString(), UNICODE);
+        assertField(reader, TType.STRING, 25);
+        assertEquals(reader.readString(), "");
+        assertField(reader, TType.STRING, 26);
+        assertEquals(reader.readBinary(), ByteBuffer.wrap(new byte[] {1, 2, 3, 4}));
+        assertField(reader, TType.STRING, 27);
+        byte[] sliced = new byte[7];
+        assertEquals(reader.readBinary(sliced, 2), 5);
+        assertEquals(sliced, new byte[] {0, 0, 0, 0, 5, 6, 7});
+
+        assertField(reader, TType.STRUCT, 28);
+        reader.readStructBegin();
+        assertField(reader, TType.BOOL, 1);
+        assertFalse(reader.readBool());
+        assertEquals(reader.readFieldBegin().getType(), TType.STOP);
+        reader.readStructEnd();
+
+        assertField(reader, TType.LIST, 29);
+        TList list = reader.readListBegin();
+        assertEquals(list.getType(), TType.I64);
+        assertEquals(list.getSize(), 20);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(reader.readI64(), i * 1_000_000_007L);
+        }
+        reader.readListEnd();
+
+        assertField(reader, TType.SET, 30);
+        TSet set = reader.readSetBegin();
+        assertEquals(set.getType(), TType.BOOL);
+        assertEquals(set.getSize(), 2);
+        assertTrue(reader.readBool());
+        assertFalse(reader.readBool());
+        reader.readSetEnd();
+
+        assertField(reader, TType.MAP, 31);
+        TMap map = reader.readMapBegin();
+        assertEquals(map.getKeyType(), TType.STRING);
+        assertEquals(map.getValueType(), TType.DOUBLE);
+        assertEquals(map.getSize(), 2);
+        assertEquals(reader.readString(), "a");
+        assertEquals(reader.readDouble(), 1.5);
+        assertEquals(reader.readString(), UNICODE);
+        assertEquals(Double.doubleToRawLongBits(reader.readDouble()), Double.doubleToRawLongBits(-0.0));
+        reader.readMapEnd();
+
+        assertField(reader, TType.MAP, 32);
+        assertEquals(reader.readMapBegin().getSize(), 0);
+        reader.readMapEnd();
+
+        assertEquals(reader.readFieldBegin().getType(), TType.STOP);
+        reader.readStructEnd();
+        reader.readMessageEnd();
+    }
+
+    private static void assertField(TProtocolReader reader, byte type, int id)
+            throws TException
+    {
+        TField field = reader.readFieldBegin();
+        assertEquals(field.getType(), type);
+        assertEquals(field.getId(), id);
+    }
+
+    @Test
+    public void testPrimitiveArrays()
+            throws Exception
+    {
+        assertPrimitiveArrays(BINARY, TBinaryProtocol::new);
+        assertPrimitiveArrays(COMPACT, TCompactProtocol::new);
+        assertPrimitiveArrays(FB_COMPACT, TFacebookCompactProtocol::new);
+    }
+
+    private static void assertPrimitiveArrays(Protocol protocol, Function<TTransport, TProtocol> streamProtocolFactory)
+            throws Exception
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] ints = random.ints(3000).toArray();
+        long[] longs = random.longs(3000).toArray();
+        double[] doubles = random.doubles(3000).toArray();
+
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            TChannelBufferOutputTransport streamOutput = new TChannelBufferOutputTransport(allocator);
+            TChannelBufferOutputTransport directOutput = new TChannelBufferOutputTransport(allocator);
+            // the bulk paths also run on direct memory, which the pooled allocator uses for channel buffers
+            TChannelBufferOutputTransport directMemoryOutput = new TChannelBufferOutputTransport(allocator.directBuffer(1024));
+            try {
+                writePrimitiveArrays(streamProtocolFactory.apply(streamOutput), ints, longs, doubles);
+                writePrimitiveArrays(protocol.createProtocol(directOutput), ints, longs, doubles);
+                writePrimitiveArrays(protocol.createProtocol(directMemoryOutput), ints, longs, doubles);
+                assertEquals(ByteBufUtil.getBytes(directOutput.getByteBuf()), ByteBufUtil.getBytes(streamOutput.getByteBuf()));
+                assertEquals(ByteBufUtil.getBytes(directMemoryOutput.getByteBuf()), ByteBufUtil.getBytes(streamOutput.getByteBuf()));
+
+                ByteBuf contiguous = directOutput.getByteBuf();
+                CompositeByteBuf composite = allocator.compositeBuffer();
+                // split inside the int array so the bulk reads take the slow path
+                int split = contiguous.readableBytes() / 5;
+                composite.addComponent(true, contiguous.retainedSlice(0, split));
+                composite.addComponent(true, contiguous.retainedSlice(split, contiguous.readableBytes() - split));
+                try {
+                    assertReadPrimitiveArrays(protocol.createProtocol(new TChannelBufferInputTransport(contiguous.duplicate())), ints, longs, doubles);
+                    assertReadPrimitiveArrays(protocol.createProtocol(new TChannelBufferInputTransport(composite)), ints, longs, doubles);
+                    assertReadPrimitiveArrays(protocol.createProtocol(new TChannelBufferInputTransport(directMemoryOutput.getByteBuf().duplicate())), ints, longs, doubles);
+                    assertReadPrimitiveArrays(streamProtocolFactory.apply(new TChannelBufferInputTransport(contiguous.duplicate())), ints, longs, doubles);
+                }
+                finally {
+                    composite.release();
+                }
+            }
+            finally {
+                streamOutput.release();
+                directOutput.release();
+                directMemoryOutput.release();
+            }
+        }
+    }
+
+    private static void writePrimitiveArrays(TProtocolWriter writer, int[] ints, long[] longs, double[] doubles)
+            throws TException
+    {
+        writer.writeI32Array(ints, 0, ints.length);
+        writer.writeI64Array(longs, 0, longs.length);
+        writer.writeDoubleArray(doubles, 0, doubles.length);
+    }
+
+    private static void assertReadPrimitiveArrays(TProtocolReader reader, int[] ints, long[] longs, double[] doubles)
+            throws TException
+    {
+        int[] actualInts = new int[ints.length];
+        long[] actualLongs = new long[longs.length];
+        double[] actualDoubles = new double[doubles.length];
+        reader.readI32Array(actualInts, 0, ints.length);
+        reader.readI64Array(actualLongs, 0, longs.length);
+        reader.readDoubleArray(actualDoubles, 0, doubles.length);
+        assertEquals(actualInts, ints);
+        assertEquals(actualLongs, longs);
+        assertEquals(actualDoubles, doubles);
+    }
+
+    @Test
+    public void testDirectBinary()
+            throws Exception
+    {
+        for (Protocol protocol : Protocol.values()) {
+            try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+                ByteBuf direct = allocator.directBuffer(3).writeBytes(new byte[] {5, 6, 7});
+                TChannelBufferOutputTransport directOutput = new TChannelBufferOutputTransport(allocator);
+                TChannelBufferOutputTransport heapOutput = new TChannelBufferOutputTransport(allocator);
+                try {
+                    protocol.createProtocol(directOutput).writeBinary(direct.nioBuffer());
+                    protocol.createProtocol(heapOutput).writeBinary(ByteBuffer.wrap(new byte[] {5, 6, 7}));
+                    assertEquals(ByteBufUtil.getBytes(directOutput.getByteBuf()), ByteBufUtil.getBytes(heapOutput.getByteBuf()));
+                    assertEquals(direct.readableBytes(), 3);
+                }
+                finally {
+                    direct.release();
+                    directOutput.release();
+                    heapOutput.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testZeroCopy()
+            throws Exception
+    {
+        byte[] value = new byte[MIN_ZERO_COPY_LENGTH * 2];
+        ThreadLocalRandom.current().nextBytes(value);
+
+        for (Protocol protocol : Protocol.values()) {
+            try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+                TChannelBufferOutputTransport copyOutput = new TChannelBufferOutputTransport(allocator);
+                TChannelBufferOutputTransport zeroCopyOutput = new TChannelBufferOutputTransport(allocator, true);
+                try {
+                    writeBinaryStruct(protocol.createProtocol(copyOutput), value);
+                    writeBinaryStruct(protocol.createProtocol(zeroCopyOutput), value);
+
+                    // the value is appended by reference, but the output is identical
+                    ByteBuf zeroCopyBuffer = zeroCopyOutput.getBuffer();
+                    try {
+                        assertThat(zeroCopyOutput.getByteBuf()).isInstanceOf(CompositeByteBuf.class);
+                        assertEquals(ByteBufUtil.getBytes(zeroCopyBuffer), ByteBufUtil.getBytes(copyOutput.getByteBuf()));
+                    }
+                    finally {
+                        zeroCopyBuffer.release();
+                    }
+
+                    TChannelBufferInputTransport input = new TChannelBufferInputTransport(copyOutput.getBuffer(), true);
+                    TProtocolReader reader = protocol.createProtocol(input);
+                    ByteBuffer first = readBinaryStruct(reader);
+                    ByteBuffer second = readBinaryStruct(reader);
+                    assertTrue(first.isReadOnly());
+                    assertEquals(first, ByteBuffer.wrap(value));
+                    assertEquals(second, ByteBuffer.wrap(value));
+
+                    // the views keep the frame alive after the transport is released
+                    int refCnt = input.refCnt();
+                    input.release();
+                    assertEquals(input.refCnt(), refCnt - 1);
+                    assertTrue(input.refCnt() > 0);
+                    input.releaseZeroCopyReferences();
+                    assertEquals(input.refCnt(), refCnt - 2);
+                }
+                finally {
+                    copyOutput.release();
+                    zeroCopyOutput.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testZeroCopyOwners()
+            throws Exception
+    {
+        byte[] value = new byte[MIN_ZERO_COPY_LENGTH * 2];
+        ThreadLocalRandom.current().nextBytes(value);
+
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            TChannelBufferOutputTransport output = new TChannelBufferOutputTransport(allocator);
+            try {
+                writeBinaryStruct(BINARY.createProtocol(output), value);
+
+                TChannelBufferInputTransport input = new TChannelBufferInputTransport(output.getBuffer(), true);
+                int refCnt = input.refCnt();
+
+                // the response and the method both own the values
+                input.retainZeroCopyReferences();
+                TProtocolReader reader = BINARY.createProtocol(input);
+                ByteBuffer first = readBinaryStruct(reader);
+                assertEquals(input.refCnt(), refCnt + 1);
+
+                // the response was written, but the method still uses the value
+                input.releaseZeroCopyReferences();
+                assertEquals(input.refCnt(), refCnt + 1);
+                assertEquals(first, ByteBuffer.wrap(value));
+
+                // the method is done, so the buffer is released and later values are copied
+                input.releaseZeroCopyReferences();
+                assertEquals(input.refCnt(), refCnt);
+                ByteBuffer second = readBinaryStruct(reader);
+                assertFalse(second.isReadOnly());
+                assertEquals(second, ByteBuffer.wrap(value));
+                assertEquals(input.refCnt(), refCnt);
+
+                assertThatThrownBy(input::releaseZeroCopyReferences).isInstanceOf(IllegalStateException.class);
+                assertThatThrownBy(input::retainZeroCopyReferences).isInstanceOf(IllegalStateException.class);
+                input.release();
+            }
+            finally {
+                output.release();
+            }
+        }
+    }
+
+    private static void writeBinaryStruct(TProtocolWriter writer, byte[] value)
+            throws TException
+    {
+        for (int i = 0; i < 2; i++) {
+            writer.writeStructBegin(new TStruct("binary"));
+            writer.writeFieldBegin(new TField("value", TType.STRING, (short) 1));
+            writer.writeBinary(ByteBuffer.wrap(value));
+            writer.writeFieldEnd();
+            writer.writeFieldBegin(new TField("after", TType.I32, (short) 2));
+            writer.writeI32(42);
+            writer.writeFieldEnd();
+            writer.writeFieldStop();
+            writer.writeStructEnd();
+        }
+    }
+
+    private static ByteBuffer readBinaryStruct(TProtocolReader reader)
+            throws TException
+    {
+        reader.readStructBegin();
+        assertField(reader, TType.STRING, 1);
+        ByteBuffer value = reader.readBinary();
+        assertField(reader, TType.I32, 2);
+        assertEquals(reader.readI32(), 42);
+        assertEquals(reader.readFieldBegin().getType(), TType.STOP);
+        reader.readStructEnd();
+        return value;
+    }
+}
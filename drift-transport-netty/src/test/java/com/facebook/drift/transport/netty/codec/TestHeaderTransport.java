@@ -31,16 +31,22 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 import static com.facebook.drift.protocol.TMessageType.CALL;
 import static com.facebook.drift.protocol.TMessageType.ONEWAY;
+import static com.facebook.drift.transport.ClientTimeout.CLIENT_TIMEOUT_HEADER;
 import static com.facebook.drift.transport.netty.codec.HeaderTransport.decodeFrame;
 import static com.facebook.drift.transport.netty.codec.HeaderTransport.encodeFrame;
 import static com.facebook.drift.transport.netty.codec.HeaderTransport.tryDecodeFrameInfo;
 import static com.facebook.drift.transport.netty.codec.Protocol.BINARY;
 import static com.facebook.drift.transport.netty.codec.Protocol.FB_COMPACT;
+import static com.facebook.drift.transport.netty.codec.ThriftHeaderTransform.LZ4_TRANSFORM;
+import static com.facebook.drift.transport.netty.codec.ThriftHeaderTransform.SNAPPY_TRANSFORM;
 import static com.facebook.drift.transport.netty.codec.ThriftHeaderTransform.ZLIB_TRANSFORM;
+import static com.facebook.drift.transport.netty.codec.ThriftHeaderTransform.ZSTD_TRANSFORM;
 import static com.facebook.drift.transport.netty.codec.Transport.HEADER;
 import static com.google.common.io.Resources.getResource;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -94,6 +100,19 @@ public class TestHeaderTransport
         assertRoundTrip(ImmutableList.of(ZLIB_TRANSFORM));
     }
 
+    @Test
+    public void testBlockCompressionTransforms()
+            throws Exception
+    {
+        for (ThriftHeaderTransform transform : ImmutableList.of(SNAPPY_TRANSFORM, ZSTD_TRANSFORM, LZ4_TRANSFORM)) {
+            // a block cannot be decompressed until the whole message is available
+            assertTryDecodeSequenceId(ImmutableList.of(transform), 10, Optional.empty());
+            assertTryDecodeSequenceId(ImmutableList.of(transform), FULL_LENGTH,
+                    Optional.of(new FrameInfo("method", CALL, 0xFFAA, HEADER, BINARY, true)));
+            assertRoundTrip(ImmutableList.of(transform));
+        }
+    }
+
     private void assertTryDecodeSequenceId(List<ThriftHeaderTransform> transforms, int length, Optional<FrameInfo> expected)
             throws Exception
     {
@@ -115,6 +134,34 @@ public class TestHeaderTransport
         }
     }
 
+    @Test
+    public void testClientTimeoutHeader()
+            throws Exception
+    {
+        assertClientTimeoutHeader(ImmutableMap.of("header", "value"), OptionalLong.empty(), ImmutableMap.of("header", "value"));
+        assertClientTimeoutHeader(ImmutableMap.of(), OptionalLong.of(1000), ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "1000"));
+        assertClientTimeoutHeader(ImmutableMap.of("header", "value"), OptionalLong.of(1000), ImmutableMap.of("header", "value", CLIENT_TIMEOUT_HEADER, "1000"));
+
+        // a shorter timeout set by the caller is kept, and a longer one is replaced
+        assertClientTimeoutHeader(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "500", "header", "value"), OptionalLong.of(1000), ImmutableMap.of("header", "value", CLIENT_TIMEOUT_HEADER, "500"));
+        assertClientTimeoutHeader(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "5000", "header", "value"), OptionalLong.of(1000), ImmutableMap.of("header", "value", CLIENT_TIMEOUT_HEADER, "1000"));
+    }
+
+    private static void assertClientTimeoutHeader(Map<String, String> headers, OptionalLong clientTimeoutMillis, Map<String, String> expectedHeaders)
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            ByteBuf message = allocator.buffer(4).writeInt(0xCAFE);
+            ThriftFrame frame = new ThriftFrame(1, message, headers, ImmutableList.of(), HEADER, BINARY, true, clientTimeoutMillis);
+            ThriftFrame result = decodeFrame(allocator, encodeFrame(allocator, frame), Integer.MAX_VALUE);
+            try {
+                assertEquals(result.getHeaders(), expectedHeaders);
+            }
+            finally {
+                result.release();
+            }
+        }
+    }
+
     private void assertRoundTrip(List<ThriftHeaderTransform> transforms)
             throws Exception
     {
@@ -123,7 +170,7 @@ public class TestHeaderTransport
             ByteBuf message = createTestFrame(allocator, "method", CALL, 0xFFAA, BINARY, true, transforms);
             try {
                 assertEquals(message.readerIndex(), 0);
-                ThriftFrame result = decodeFrame(allocator, message.retainedDuplicate());
+                ThriftFrame result = decodeFrame(allocator, message.retainedDuplicate(), Integer.MAX_VALUE);
                 ByteBuf resultBody = result.getMessage();
                 byte[] a = new byte[expected.readableBytes()];
                 byte[] b = new byte[resultBody.readableBytes()];
@@ -145,7 +192,7 @@ public class TestHeaderTransport
     private static void assertDecodeFrameInfo(ByteBufAllocator bufAllocator, ByteBuf message, Optional<FrameInfo> frameInfo)
     {
         try {
-            assertEquals(tryDecodeFrameInfo(bufAllocator, message), frameInfo);
+            assertEquals(tryDecodeFrameInfo(bufAllocator, message, Integer.MAX_VALUE), frameInfo);
         }
         finally {
             message.release();
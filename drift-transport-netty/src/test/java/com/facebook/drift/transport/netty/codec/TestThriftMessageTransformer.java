@@ -17,8 +17,10 @@ package com.facebook.drift.transport.netty.codec;
 
 import com.facebook.drift.transport.netty.buffer.TestingPooledByteBufAllocator;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
@@ -27,6 +29,10 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.Random;
 
+import static com.facebook.drift.transport.netty.codec.Lz4Transformer.LZ4_TRANSFORMER;
+import static com.facebook.drift.transport.netty.codec.SnappyTransformer.SNAPPY_TRANSFORMER;
+import static com.facebook.drift.transport.netty.codec.ZstdTransformer.ZSTD_TRANSFORMER;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
@@ -45,6 +51,104 @@ public class TestThriftMessageTransformer
         assertRoundTrip(new ZlibTransformer(200000), randomString(100000));
     }
 
+    @Test
+    public void testBlockCompressionRoundTrips()
+            throws IOException
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            for (ThriftMessageTransformer transformer : ImmutableList.of(SNAPPY_TRANSFORMER, ZSTD_TRANSFORMER, LZ4_TRANSFORMER)) {
+                assertRoundTrip(allocator, transformer, "");
+                assertRoundTrip(allocator, transformer, "123");
+                assertRoundTrip(allocator, transformer, Strings.repeat("a", 100000));
+                assertRoundTrip(allocator, transformer, randomString(100000));
+            }
+        }
+    }
+
+    @Test
+    public void testBlockCompressionPartialRead()
+            throws IOException
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            for (ThriftMessageTransformer transformer : ImmutableList.of(SNAPPY_TRANSFORMER, ZSTD_TRANSFORMER, LZ4_TRANSFORMER)) {
+                ByteBuf transformed = encode(allocator, transformer, Strings.repeat("0123456789", 100));
+                try {
+                    assertThatThrownBy(() -> decode(allocator, transformer, transformed.retainedSlice(0, 10)))
+                            .isInstanceOf(CorruptedFrameException.class);
+
+                    // a partial block produces no output, and the input is released
+                    ByteBuf untransformed = tryDecode(allocator, transformer, transformed.retainedSlice(0, 10), 5);
+                    assertEquals(untransformed.readableBytes(), 0);
+                    untransformed.release();
+
+                    untransformed = tryDecode(allocator, transformer, transformed.retainedDuplicate(), 5);
+                    assertEquals(untransformed.readableBytes(), 1000);
+                    untransformed.release();
+                }
+                finally {
+                    transformed.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBlockCompressionCorruptInput()
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            for (ThriftMessageTransformer transformer : ImmutableList.of(SNAPPY_TRANSFORMER, ZSTD_TRANSFORMER, LZ4_TRANSFORMER)) {
+                ByteBuf transformed = encode(allocator, transformer, Strings.repeat("0123456789", 100));
+                try {
+                    // the recorded size no longer matches the compressed data
+                    ByteBuf corrupt = allocator.directBuffer();
+                    corrupt.writeBytes(transformed, 0, transformed.readableBytes() - 1);
+                    corrupt.writeByte(0x7F);
+                    corrupt.writeBytes(transformed, transformed.readableBytes() - 1, 1);
+                    assertThatThrownBy(() -> decode(allocator, transformer, corrupt.retainedDuplicate()))
+                            .isInstanceOf(CorruptedFrameException.class);
+
+                    // peeking at a corrupt message produces no output
+                    ByteBuf untransformed = tryDecode(allocator, transformer, corrupt, 5);
+                    assertEquals(untransformed.readableBytes(), 0);
+                    untransformed.release();
+                }
+                finally {
+                    transformed.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMaxOutputSize()
+            throws IOException
+    {
+        try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
+            for (ThriftMessageTransformer transformer : ImmutableList.of(new ZlibTransformer(1), new ZlibTransformer(512), SNAPPY_TRANSFORMER, ZSTD_TRANSFORMER, LZ4_TRANSFORMER)) {
+                ByteBuf transformed = encode(allocator, transformer, Strings.repeat("a", 100000));
+                try {
+                    // a message that decodes to more than the limit is rejected, and nothing is leaked
+                    assertThatThrownBy(() -> decode(allocator, transformer, transformed.retainedDuplicate(), 99999))
+                            .isInstanceOf(FrameTooLargeException.class);
+                    assertThatThrownBy(() -> decode(allocator, transformer, transformed.retainedDuplicate(), 0))
+                            .isInstanceOf(FrameTooLargeException.class);
+
+                    ByteBuf untransformed = decode(allocator, transformer, transformed.retainedDuplicate(), 100000);
+                    assertEquals(untransformed.readableBytes(), 100000);
+                    untransformed.release();
+
+                    // a partial decode stops at the limit
+                    untransformed = tryDecode(allocator, transformer, transformed.retainedDuplicate(), 0, 99999);
+                    assertTrue(untransformed.readableBytes() <= 99999);
+                    untransformed.release();
+                }
+                finally {
+                    transformed.release();
+                }
+            }
+        }
+    }
+
     @Test
     public void testZlibAttemptPartialRead()
             throws IOException
@@ -89,19 +193,25 @@ public class TestThriftMessageTransformer
             throws IOException
     {
         try (TestingPooledByteBufAllocator allocator = new TestingPooledByteBufAllocator()) {
-            ByteBuf inputBuffer = allocator.buffer();
-            inputBuffer.writeBytes(input.getBytes());
-            ByteBuf outputBuffer = null;
-            try {
-                ByteBuf transformed = transformer.transform(allocator, inputBuffer.retain());
-                outputBuffer = transformer.untransform(allocator, transformed);
-                assertEquals(input, toString(outputBuffer));
-            }
-            finally {
-                inputBuffer.release();
-                if (outputBuffer != null) {
-                    outputBuffer.release();
-                }
+            assertRoundTrip(allocator, transformer, input);
+        }
+    }
+
+    private static void assertRoundTrip(ByteBufAllocator allocator, ThriftMessageTransformer transformer, String input)
+            throws IOException
+    {
+        ByteBuf inputBuffer = allocator.buffer();
+        inputBuffer.writeBytes(input.getBytes());
+        ByteBuf outputBuffer = null;
+        try {
+            ByteBuf transformed = transformer.transform(allocator, inputBuffer.retain());
+            outputBuffer = transformer.untransform(allocator, transformed, Integer.MAX_VALUE);
+            assertEquals(input, toString(outputBuffer));
+        }
+        finally {
+            inputBuffer.release();
+            if (outputBuffer != null) {
+                outputBuffer.release();
             }
         }
     }
@@ -136,11 +246,21 @@ public class TestThriftMessageTransformer
 
     private static ByteBuf decode(ByteBufAllocator allocator, ThriftMessageTransformer transformer, ByteBuf input)
     {
-        return transformer.untransform(allocator, input);
+        return decode(allocator, transformer, input, Integer.MAX_VALUE);
+    }
+
+    private static ByteBuf decode(ByteBufAllocator allocator, ThriftMessageTransformer transformer, ByteBuf input, int maxOutputSize)
+    {
+        return transformer.untransform(allocator, input, maxOutputSize);
     }
 
     private static ByteBuf tryDecode(ByteBufAllocator allocator, ThriftMessageTransformer transformer, ByteBuf input, int sizeLimit)
     {
-        return transformer.tryUntransform(allocator, input, sizeLimit);
+        return tryDecode(allocator, transformer, input, sizeLimit, Integer.MAX_VALUE);
+    }
+
+    private static ByteBuf tryDecode(ByteBufAllocator allocator, ThriftMessageTransformer transformer, ByteBuf input, int sizeLimit, int maxOutputSize)
+    {
+        return transformer.tryUntransform(allocator, input, sizeLimit, maxOutputSize);
     }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.codec;
+
+import com.facebook.drift.TException;
+import com.facebook.drift.protocol.TField;
+import com.facebook.drift.protocol.TList;
+import com.facebook.drift.protocol.TMap;
+import com.facebook.drift.protocol.TMessage;
+import com.facebook.drift.protocol.TProtocolWriter;
+import com.facebook.drift.protocol.TSet;
+import com.facebook.drift.protocol.TStruct;
+import com.facebook.drift.protocol.TType;
+import com.facebook.drift.transport.netty.ssl.TChannelBufferOutputTransport;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.facebook.drift.protocol.TMessageType.CALL;
+import static com.facebook.drift.transport.netty.codec.Protocol.BINARY;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestThriftUnframedDecoder
+{
+    @Test
+    public void testDecode()
+            throws Exception
+    {
+        for (Protocol protocol : Protocol.values()) {
+            List<byte[]> messages = createMessages(protocol);
+            // whole input at once, a byte at a time, and random segments
+            assertDecode(protocol, messages, Integer.MAX_VALUE);
+            assertDecode(protocol, messages, 1);
+            assertDecode(protocol, messages, 7);
+            assertDecode(protocol, messages, ThreadLocalRandom.current().nextInt(1, 4096));
+        }
+    }
+
+    @Test
+    public void testOldStyleBinaryHeader()
+    {
+        // name length, name, type, sequence id
+        ByteBuf message = Unpooled.buffer();
+        message.writeInt(4);
+        message.writeBytes(new byte[] {'t', 'e', 's', 't'});
+        message.writeByte(CALL);
+        message.writeInt(42);
+        message.writeByte(TType.I32);
+        message.writeShort(1);
+        message.writeInt(7);
+        message.writeByte(TType.STOP);
+        byte[] bytes = ByteBufUtil.getBytes(message);
+
+        assertDecode(BINARY, ImmutableList.of(bytes), 1);
+    }
+
+    @Test
+    public void testCorruptMessage()
+    {
+        for (Protocol protocol : Protocol.values()) {
+            EmbeddedChannel channel = new EmbeddedChannel(new ThriftUnframedDecoder(protocol, new DataSize(1, MEGABYTE), false));
+            try {
+                channel.writeInbound(Unpooled.wrappedBuffer(new byte[] {(byte) 0x81, 0, 0, 0, 0, 0, 0, 0}));
+                fail("expected DecoderException");
+            }
+            catch (DecoderException expected) {
+            }
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testFrameTooLarge()
+            throws Exception
+    {
+        for (Protocol protocol : Protocol.values()) {
+            byte[] message = createMessage(protocol, "tooLarge", 33, 1000);
+            EmbeddedChannel channel = new EmbeddedChannel(new ThriftUnframedDecoder(protocol, new DataSize(100, BYTE), true));
+            try {
+                channel.writeInbound(Unpooled.wrappedBuffer(message));
+                fail("expected FrameTooLargeException");
+            }
+            catch (FrameTooLargeException e) {
+                assertTrue(e.getFrameInfo().isPresent());
+                assertEquals(e.getFrameInfo().get(), new FrameInfo("tooLarge", CALL, 33, Transport.UNFRAMED, protocol, true));
+            }
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    private static void assertDecode(Protocol protocol, List<byte[]> messages, int segmentSize)
+    {
+        ByteBuf input = Unpooled.buffer();
+        for (byte[] message : messages) {
+            input.writeBytes(message);
+        }
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ThriftUnframedDecoder(protocol, new DataSize(64, MEGABYTE), false));
+        List<byte[]> decoded = new ArrayList<>();
+        while (input.isReadable()) {
+            channel.writeInbound(input.readRetainedSlice(Math.min(segmentSize, input.readableBytes())));
+            for (ByteBuf frame = channel.readInbound(); frame != null; frame = channel.readInbound()) {
+                decoded.add(ByteBufUtil.getBytes(frame));
+                frame.release();
+            }
+        }
+        input.release();
+
+        assertEquals(decoded.size(), messages.size(), "protocol " + protocol + ", segment size " + segmentSize);
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(decoded.get(i), messages.get(i));
+        }
+        assertNull(channel.readInbound());
+        assertFalse(channel.finishAndReleaseAll());
+    }
+
+    private static List<byte[]> createMessages(Protocol protocol)
+            throws TException
+    {
+        return ImmutableList.of(
+                createMessage(protocol, "small", 1, 0),
+                createMessage(protocol, "medium", 2, 100),
+                createMessage(protocol, "large", 3, 10_000),
+                createMessage(protocol, "small", 4, 0));
+    }
+
+    private static byte[] createMessage(Protocol protocol, String name, int sequenceId, int size)
+            throws TException
+    {
+        TChannelBufferOutputTransport transport = new TChannelBufferOutputTransport(Unpooled.buffer());
+        try {
+            TProtocolWriter writer = protocol.createProtocol(transport);
+            writer.writeMessageBegin(new TMessage(name, CALL, sequenceId));
+            writeStruct(writer, size, 2);
+            writer.writeMessageEnd();
+            return ByteBufUtil.getBytes(transport.getBuffer());
+        }
+        finally {
+            transport.release();
+        }
+    }
+
+    private static void writeStruct(TProtocolWriter writer, int size, int nesting)
+            throws TException
+    {
+        writer.writeStructBegin(new TStruct("test"));
+
+        writer.writeFieldBegin(new TField("boolTrue", TType.BOOL, (short) 1));
+        writer.writeBool(true);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("boolFalse", TType.BOOL, (short) 2));
+        writer.writeBool(false);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("byte", TType.BYTE, (short) 3));
+        writer.writeByte((byte) -7);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("i16", TType.I16, (short) 4));
+        writer.writeI16(Short.MIN_VALUE);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("i32", TType.I32, (short) 5));
+        writer.writeI32(-123_456_789);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("i64", TType.I64, (short) 6));
+        writer.writeI64(Long.MIN_VALUE);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("double", TType.DOUBLE, (short) 7));
+        writer.writeDouble(Math.PI);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("float", TType.FLOAT, (short) 8));
+        writer.writeFloat(2.5f);
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("string", TType.STRING, (short) 9));
+        writer.writeString("hello é世界 😀");
+        writer.writeFieldEnd();
+        writer.writeFieldBegin(new TField("binary", TType.STRING, (short) 10));
+        writer.writeBinary(ByteBuffer.wrap(new byte[size * 10]));
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("ints", TType.LIST, (short) 20));
+        writer.writeListBegin(new TList(TType.I32, size));
+        for (int i = 0; i < size; i++) {
+            writer.writeI32(i * 31);
+        }
+        writer.writeListEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("bools", TType.LIST, (short) 21));
+        writer.writeListBegin(new TList(TType.BOOL, 3));
+        writer.writeBool(true);
+        writer.writeBool(false);
+        writer.writeBool(true);
+        writer.writeListEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("strings", TType.SET, (short) 22));
+        writer.writeSetBegin(new TSet(TType.STRING, 20));
+        for (int i = 0; i < 20; i++) {
+            writer.writeString("value" + i);
+        }
+        writer.writeSetEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("emptyMap", TType.MAP, (short) 23));
+        writer.writeMapBegin(new TMap(TType.STRING, TType.I64, 0));
+        writer.writeMapEnd();
+        writer.writeFieldEnd();
+
+        writer.writeFieldBegin(new TField("emptyList", TType.LIST, (short) 24));
+        writer.writeListBegin(new TList(TType.DOUBLE, 0));
+        writer.writeListEnd();
+        writer.writeFieldEnd();
+
+        if (nesting > 0) {
+            // field id delta too large for the compact field header
+            writer.writeFieldBegin(new TField("nested", TType.MAP, (short) 300));
+            writer.writeMapBegin(new TMap(TType.STRING, TType.LIST, 2));
+            for (int i = 0; i < 2; i++) {
+                writer.writeString("key" + i);
+                writer.writeListBegin(new TList(TType.STRUCT, 2));
+                writeStruct(writer, size / 10, nesting - 1);
+                writeStruct(writer, 0, nesting - 1);
+                writer.writeListEnd();
+            }
+            writer.writeMapEnd();
+            writer.writeFieldEnd();
+        }
+
+        writer.writeFieldStop();
+        writer.writeStructEnd();
+    }
+}
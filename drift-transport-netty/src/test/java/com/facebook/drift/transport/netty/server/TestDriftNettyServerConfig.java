@@ -29,7 +29,9 @@ import static com.facebook.airlift.configuration.testing.ConfigAssertions.record
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class TestDriftNettyServerConfig
 {
@@ -42,6 +44,7 @@ public class TestDriftNettyServerConfig
                 .setIoThreadCount(3)
                 .setWorkerThreadCount(Runtime.getRuntime().availableProcessors() * 2)
                 .setRequestTimeout(new Duration(1, MINUTES))
+                .setTimerTickDuration(new Duration(10, MILLISECONDS))
                 .setMaxFrameSize(new DataSize(16, MEGABYTE))
                 .setSslContextRefreshTime(new Duration(1, MINUTES))
                 .setAllowPlaintext(true)
@@ -53,7 +56,18 @@ public class TestDriftNettyServerConfig
                 .setSessionTimeout(new Duration(1, DAYS))
                 .setCiphers("")
                 .setAssumeClientsSupportOutOfOrderResponses(true)
-                .setNativeTransportEnabled(false));
+                .setNativeTransportEnabled(false)
+                .setZeroCopyEnabled(false)
+                .setFlushConsolidationEnabled(false)
+                .setFlushConsolidationMaxPendingFlushes(256)
+                .setDispatchMode(ServerDispatchMode.INLINE)
+                .setDispatchThreadCount(200)
+                .setDispatchMaxQueuedRequests(1000)
+                .setDispatchInlineMethods("")
+                .setAdmissionMaxConcurrentRequests(0)
+                .setAdmissionMethodLimits("")
+                .setAdmissionAdaptiveLimitEnabled(false)
+                .setAdmissionAdaptiveLimitLatencyThreshold(new Duration(1, SECONDS)));
     }
 
     @Test
@@ -65,6 +79,7 @@ public class TestDriftNettyServerConfig
                 .put("thrift.server.io-thread-count", "202")
                 .put("thrift.server.worker-thread-count", "303")
                 .put("thrift.server.request-timeout", "33m")
+                .put("thrift.server.timer.tick-duration", "50ms")
                 .put("thrift.server.max-frame-size", "55MB")
                 .put("thrift.server.ssl-context.refresh-time", "33m")
                 .put("thrift.server.allow-plaintext", "false")
@@ -77,6 +92,17 @@ public class TestDriftNettyServerConfig
                 .put("thrift.server.ssl.ciphers", "some_cipher")
                 .put("thrift.server.assume-clients-support-out-of-order-responses", "false")
                 .put("thrift.server.native-transport.enabled", "true")
+                .put("thrift.server.zero-copy.enabled", "true")
+                .put("thrift.server.flush-consolidation.enabled", "true")
+                .put("thrift.server.flush-consolidation.max-pending-flushes", "32")
+                .put("thrift.server.dispatch.mode", "PER_METHOD_THREAD_POOL")
+                .put("thrift.server.dispatch.thread-count", "17")
+                .put("thrift.server.dispatch.max-queued-requests", "99")
+                .put("thrift.server.dispatch.inline-methods", "ping,status")
+                .put("thrift.server.admission.max-concurrent-requests", "500")
+                .put("thrift.server.admission.method-limits", "slow:10, bulk:20")
+                .put("thrift.server.admission.adaptive-limit.enabled", "true")
+                .put("thrift.server.admission.adaptive-limit.latency-threshold", "250ms")
                 .build();
 
         DriftNettyServerConfig expected = new DriftNettyServerConfig()
@@ -85,6 +111,7 @@ public class TestDriftNettyServerConfig
                 .setIoThreadCount(202)
                 .setWorkerThreadCount(303)
                 .setRequestTimeout(new Duration(33, MINUTES))
+                .setTimerTickDuration(new Duration(50, MILLISECONDS))
                 .setMaxFrameSize(new DataSize(55, MEGABYTE))
                 .setSslContextRefreshTime(new Duration(33, MINUTES))
                 .setAllowPlaintext(false)
@@ -96,7 +123,18 @@ public class TestDriftNettyServerConfig
                 .setSessionTimeout(new Duration(78, HOURS))
                 .setCiphers("some_cipher")
                 .setAssumeClientsSupportOutOfOrderResponses(false)
-                .setNativeTransportEnabled(true);
+                .setNativeTransportEnabled(true)
+                .setZeroCopyEnabled(true)
+                .setFlushConsolidationEnabled(true)
+                .setFlushConsolidationMaxPendingFlushes(32)
+                .setDispatchMode(ServerDispatchMode.PER_METHOD_THREAD_POOL)
+                .setDispatchThreadCount(17)
+                .setDispatchMaxQueuedRequests(99)
+                .setDispatchInlineMethods("ping,status")
+                .setAdmissionMaxConcurrentRequests(500)
+                .setAdmissionMethodLimits("slow:10,bulk:20")
+                .setAdmissionAdaptiveLimitEnabled(true)
+                .setAdmissionAdaptiveLimitLatencyThreshold(new Duration(250, MILLISECONDS));
 
         assertFullMapping(properties, expected);
     }
@@ -57,6 +57,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
+import static com.facebook.drift.TApplicationException.Type.LOADSHEDDING;
 import static com.facebook.drift.codec.metadata.ThriftType.list;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.getOnlyElement;
@@ -67,9 +68,12 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.thrift.TApplicationException.BAD_SEQUENCE_ID;
 import static org.apache.thrift.TApplicationException.MISSING_RESULT;
 import static org.apache.thrift.protocol.TMessageType.CALL;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class TestDriftNettyServerTransport
 {
@@ -109,6 +113,110 @@ public class TestDriftNettyServerTransport
         assertEquals(ImmutableList.copyOf(methodInvoker.getMessages()), expectedMessages);
     }
 
+    @Test
+    public void testDispatchThreadPool()
+    {
+        for (ServerDispatchMode dispatchMode : ImmutableList.of(ServerDispatchMode.THREAD_POOL, ServerDispatchMode.PER_METHOD_THREAD_POOL)) {
+            TestingServerMethodInvoker methodInvoker = new TestingServerMethodInvoker();
+            DriftNettyServerConfig config = new DriftNettyServerConfig()
+                    .setDispatchMode(dispatchMode);
+            int invocationCount = testServerMethodInvoker(methodInvoker, config, ImmutableList.of(
+                    address -> testOutOfOrder(address, MESSAGES, new TFramedTransport.Factory(), new TBinaryProtocol.Factory(), methodInvoker.getFutureResults()),
+                    address -> testOutOfOrder(address, MESSAGES, new TFramedTransport.Factory(), new TCompactProtocol.Factory(), methodInvoker.getFutureResults())));
+
+            List<DriftLogEntry> expectedMessages = newArrayList(concat(nCopies(invocationCount, DRIFT_MESSAGES)));
+            assertEquals(ImmutableList.copyOf(methodInvoker.getMessages()), expectedMessages);
+            assertThat(methodInvoker.getInvocationThreads()).allMatch(name -> name.startsWith("drift-server-dispatch-"));
+        }
+    }
+
+    @Test
+    public void testFlushConsolidation()
+    {
+        TestingServerMethodInvoker methodInvoker = new TestingServerMethodInvoker();
+        DriftNettyServerConfig config = new DriftNettyServerConfig()
+                .setFlushConsolidationEnabled(true)
+                .setFlushConsolidationMaxPendingFlushes(2);
+        int invocationCount = testServerMethodInvoker(methodInvoker, config, ImmutableList.of(
+                address -> testOutOfOrder(address, MESSAGES, new TTransportFactory(), new TBinaryProtocol.Factory(), methodInvoker.getFutureResults()),
+                address -> testOutOfOrder(address, MESSAGES, new TFramedTransport.Factory(), new TCompactProtocol.Factory(), methodInvoker.getFutureResults())));
+
+        List<DriftLogEntry> expectedMessages = newArrayList(concat(nCopies(invocationCount, DRIFT_MESSAGES)));
+        assertEquals(ImmutableList.copyOf(methodInvoker.getMessages()), expectedMessages);
+    }
+
+    @Test
+    public void testDispatchInlineMethod()
+    {
+        TestingServerMethodInvoker methodInvoker = new TestingServerMethodInvoker();
+        DriftNettyServerConfig config = new DriftNettyServerConfig()
+                .setDispatchMode(ServerDispatchMode.THREAD_POOL)
+                .setDispatchInlineMethods(LOG_METHOD_METADATA.getName());
+        testServerMethodInvoker(methodInvoker, config, ImmutableList.of(
+                address -> testOutOfOrder(address, MESSAGES, new TFramedTransport.Factory(), new TBinaryProtocol.Factory(), methodInvoker.getFutureResults())));
+
+        assertThat(methodInvoker.getInvocationThreads()).allMatch(name -> name.startsWith("drift-server-worker-"));
+    }
+
+    @Test
+    public void testAdmissionControl()
+    {
+        TestingServerMethodInvoker methodInvoker = new TestingServerMethodInvoker();
+        DriftNettyServerConfig config = new DriftNettyServerConfig()
+                .setAdmissionMaxConcurrentRequests(1);
+        testServerMethodInvoker(methodInvoker, config, ImmutableList.of(
+                address -> testAdmissionControl(address, new TFramedTransport.Factory(), new TBinaryProtocol.Factory(), methodInvoker.getFutureResults())));
+    }
+
+    private static int testAdmissionControl(
+            HostAndPort address,
+            TTransportFactory framingFactory,
+            TProtocolFactory protocolFactory,
+            BlockingQueue<SettableFuture<Object>> results)
+    {
+        try {
+            TSocket socket = new TSocket(address.getHost(), address.getPort());
+            socket.open();
+            try {
+                TProtocol protocol = protocolFactory.getProtocol(framingFactory.getTransport(socket));
+
+                // the first request holds the only permit
+                sendLogRequest(11, MESSAGES, protocol);
+                SettableFuture<Object> firstResult = results.take();
+
+                // the second request is rejected without being invoked
+                sendLogRequest(22, MESSAGES, protocol);
+                try {
+                    readLogResponse(22, protocol);
+                    fail("expected TApplicationException");
+                }
+                catch (TApplicationException e) {
+                    assertEquals(e.getType(), LOADSHEDDING.getType());
+                }
+                assertTrue(results.isEmpty());
+
+                // completing the first request releases its permit
+                firstResult.set(DriftResultCode.OK);
+                assertEquals(readLogResponse(11, protocol), ResultCode.OK);
+
+                sendLogRequest(33, MESSAGES, protocol);
+                results.take().set(DriftResultCode.OK);
+                assertEquals(readLogResponse(33, protocol), ResultCode.OK);
+            }
+            finally {
+                socket.close();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (TException e) {
+            throw new RuntimeException(e);
+        }
+        return 3;
+    }
+
     private static int testOutOfOrder(
             HostAndPort address,
             List<LogEntry> messages,
@@ -222,6 +330,11 @@ public class TestDriftNettyServerTransport
     {
         DriftNettyServerConfig config = new DriftNettyServerConfig()
                 .setAssumeClientsSupportOutOfOrderResponses(assumeClientsSupportOutOfOrderResponses);
+        return testServerMethodInvoker(methodInvoker, config, clients);
+    }
+
+    private static int testServerMethodInvoker(ServerMethodInvoker methodInvoker, DriftNettyServerConfig config, List<ToIntFunction<HostAndPort>> clients)
+    {
         TestingPooledByteBufAllocator testingAllocator = new TestingPooledByteBufAllocator();
         ServerTransport serverTransport = new DriftNettyServerTransportFactory(config, testingAllocator).createServerTransport(methodInvoker);
         try {
@@ -246,6 +359,7 @@ public class TestDriftNettyServerTransport
     {
         private final BlockingQueue<SettableFuture<Object>> futureResults = new ArrayBlockingQueue<>(100);
         private final List<LogEntry> messages = new CopyOnWriteArrayList<>();
+        private final List<String> invocationThreads = new CopyOnWriteArrayList<>();
 
         public BlockingQueue<SettableFuture<Object>> getFutureResults()
         {
@@ -257,6 +371,11 @@ public class TestDriftNettyServerTransport
             return messages;
         }
 
+        private List<String> getInvocationThreads()
+        {
+            return invocationThreads;
+        }
+
         @Override
         public Optional<MethodMetadata> getMethodMetadata(String name)
         {
@@ -269,6 +388,7 @@ public class TestDriftNettyServerTransport
         @Override
         public ListenableFuture<Object> invoke(ServerInvokeRequest request)
         {
+            invocationThreads.add(Thread.currentThread().getName());
             MethodMetadata method = request.getMethod();
             if (!LOG_METHOD_METADATA.getName().equals(method.getName())) {
                 return Futures.immediateFailedFuture(new IllegalArgumentException("unknown method " + method));
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.server;
+
+import com.facebook.airlift.testing.TestingTicker;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestServerAdmissionController
+{
+    private static final Duration LATENCY_THRESHOLD = new Duration(100, MILLISECONDS);
+    private static final long FAST = MILLISECONDS.toNanos(1);
+    private static final long SLOW = MILLISECONDS.toNanos(500);
+
+    @Test
+    public void testDisabled()
+    {
+        ServerAdmissionController controller = new ServerAdmissionController(new DriftNettyServerConfig());
+        assertFalse(controller.isEnabled());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(controller.tryAcquire("foo"));
+        }
+        assertEquals(controller.getRejectedRequests().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testGlobalLimit()
+    {
+        ServerAdmissionController controller = new ServerAdmissionController(2, ImmutableMap.of(), false, LATENCY_THRESHOLD);
+        assertTrue(controller.isEnabled());
+        assertTrue(controller.tryAcquire("foo"));
+        assertTrue(controller.tryAcquire("bar"));
+        assertFalse(controller.tryAcquire("foo"));
+        assertEquals(controller.getConcurrentRequests(), 2);
+        assertEquals(controller.getRejectedRequests().getTotalCount(), 1);
+
+        controller.release("bar", SLOW);
+        assertTrue(controller.tryAcquire("foo"));
+
+        // the limit is fixed unless adaptive
+        assertEquals(controller.getLimit(), 2);
+    }
+
+    @Test
+    public void testMethodLimit()
+    {
+        ServerAdmissionController controller = new ServerAdmissionController(0, ImmutableMap.of("slow", 1), false, LATENCY_THRESHOLD);
+        assertTrue(controller.isEnabled());
+        assertTrue(controller.tryAcquire("slow"));
+        assertFalse(controller.tryAcquire("slow"));
+
+        // other methods are not limited
+        for (int i = 0; i < 10; i++) {
+            assertTrue(controller.tryAcquire("fast"));
+        }
+
+        controller.release("slow", FAST);
+        assertTrue(controller.tryAcquire("slow"));
+    }
+
+    @Test
+    public void testMethodLimitReleasesGlobalPermit()
+    {
+        ServerAdmissionController controller = new ServerAdmissionController(2, ImmutableMap.of("slow", 1), false, LATENCY_THRESHOLD);
+        assertTrue(controller.tryAcquire("slow"));
+        assertFalse(controller.tryAcquire("slow"));
+        assertEquals(controller.getConcurrentRequests(), 1);
+        assertTrue(controller.tryAcquire("fast"));
+    }
+
+    @Test
+    public void testAdaptiveLimit()
+    {
+        TestingTicker ticker = new TestingTicker();
+        ServerAdmissionController controller = new ServerAdmissionController(10, ImmutableMap.of(), true, LATENCY_THRESHOLD, ticker);
+        assertEquals(controller.getLimit(), 10);
+
+        // slow requests in separate periods lower the limit multiplicatively
+        for (int i = 0; i < 8; i++) {
+            assertTrue(controller.tryAcquire("foo"));
+            controller.release("foo", SLOW);
+            ticker.increment(LATENCY_THRESHOLD.toMillis(), MILLISECONDS);
+        }
+        assertEquals(controller.getLimit(), 2);
+
+        // the limit is enforced
+        assertTrue(controller.tryAcquire("foo"));
+        assertTrue(controller.tryAcquire("foo"));
+        assertFalse(controller.tryAcquire("foo"));
+
+        // fast requests raise the limit by one while it is in use, but never above the maximum
+        for (int i = 0; i < 20; i++) {
+            controller.release("foo", FAST);
+            assertTrue(controller.tryAcquire("foo"));
+            while (controller.tryAcquire("foo")) {
+                // fill the new limit
+            }
+        }
+        assertEquals(controller.getLimit(), 10);
+        assertEquals(controller.getConcurrentRequests(), 10);
+    }
+
+    @Test
+    public void testAdaptiveLimitBurst()
+    {
+        TestingTicker ticker = new TestingTicker();
+        ServerAdmissionController controller = new ServerAdmissionController(10, ImmutableMap.of(), true, LATENCY_THRESHOLD, ticker);
+
+        // a burst of slow requests lowers the limit only once
+        for (int i = 0; i < 10; i++) {
+            assertTrue(controller.tryAcquire("foo"));
+        }
+        for (int i = 0; i < 10; i++) {
+            controller.release("foo", SLOW);
+        }
+        assertEquals(controller.getLimit(), 9);
+
+        // slow requests within the same period are ignored
+        ticker.increment(LATENCY_THRESHOLD.toMillis() - 1, MILLISECONDS);
+        assertTrue(controller.tryAcquire("foo"));
+        controller.release("foo", SLOW);
+        assertEquals(controller.getLimit(), 9);
+
+        // the next period lowers the limit again
+        ticker.increment(1, MILLISECONDS);
+        assertTrue(controller.tryAcquire("foo"));
+        controller.release("foo", SLOW);
+        assertEquals(controller.getLimit(), 8);
+    }
+
+    @Test
+    public void testInvalidConfiguration()
+    {
+        assertThatThrownBy(() -> new ServerAdmissionController(0, ImmutableMap.of(), true, LATENCY_THRESHOLD))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("adaptive limit");
+        assertThatThrownBy(() -> new ServerAdmissionController(0, ImmutableMap.of("foo", 0), false, LATENCY_THRESHOLD))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("foo");
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.netty.server;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.facebook.drift.transport.netty.server.ServerDispatchMode.INLINE;
+import static com.facebook.drift.transport.netty.server.ServerDispatchMode.PER_METHOD_THREAD_POOL;
+import static com.facebook.drift.transport.netty.server.ServerDispatchMode.THREAD_POOL;
+import static com.facebook.drift.transport.netty.server.ServerDispatchMode.VIRTUAL_THREAD;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestServerDispatcher
+{
+    @Test
+    public void testInline()
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(INLINE, 1, 1, ImmutableSet.of(), ImmutableSet.of())) {
+            assertTrue(dispatcher.isInline("foo"));
+            assertThatThrownBy(() -> dispatcher.dispatch("foo", () -> immediateFuture("value")))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void testInlineMethods()
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(THREAD_POOL, 1, 1, ImmutableSet.of("ping"), ImmutableSet.of())) {
+            assertTrue(dispatcher.isInline("ping"));
+            assertFalse(dispatcher.isInline("foo"));
+        }
+    }
+
+    @Test
+    public void testThreadPool()
+            throws Exception
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(THREAD_POOL, 2, 10, ImmutableSet.of(), ImmutableSet.of())) {
+            ListenableFuture<String> result = dispatcher.dispatch("foo", () -> immediateFuture(Thread.currentThread().getName()));
+            assertThat(result.get()).startsWith("drift-server-dispatch-");
+            assertEquals(dispatcher.getQueueTime().getAllTime().getCount(), 1.0);
+            assertEquals(dispatcher.getQueuedRequests(), 0);
+        }
+    }
+
+    @Test
+    public void testPerMethodThreadPool()
+            throws Exception
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(PER_METHOD_THREAD_POOL, 2, 2, ImmutableSet.of(), ImmutableSet.of("foo", "bar"))) {
+            // block the only thread for foo
+            CountDownLatch started = new CountDownLatch(1);
+            SettableFuture<String> blocked = SettableFuture.create();
+            ListenableFuture<String> foo = dispatcher.dispatch("foo", () -> {
+                started.countDown();
+                return immediateFuture(blocked.get());
+            });
+            started.await();
+
+            // bar has its own pool, so it is not blocked by foo
+            assertThat(dispatcher.dispatch("bar", () -> immediateFuture(Thread.currentThread().getName())).get())
+                    .startsWith("drift-server-dispatch-bar-");
+
+            blocked.set("done");
+            assertEquals(foo.get(), "done");
+        }
+    }
+
+    @Test
+    public void testPerMethodThreadPoolSize()
+            throws Exception
+    {
+        // the threads and queue are divided between the dispatched methods and the pool for other methods
+        try (ServerDispatcher dispatcher = new ServerDispatcher(PER_METHOD_THREAD_POOL, 3, 3, ImmutableSet.of("ping"), ImmutableSet.of("foo", "bar", "ping", "100%s"))) {
+            CountDownLatch started = new CountDownLatch(1);
+            SettableFuture<String> blocked = SettableFuture.create();
+            ListenableFuture<String> running = dispatcher.dispatch("foo", () -> {
+                started.countDown();
+                return immediateFuture(blocked.get());
+            });
+            started.await();
+
+            // the single thread and queue slot for foo are in use
+            ListenableFuture<String> queued = dispatcher.dispatch("foo", () -> immediateFuture("queued"));
+            assertThatThrownBy(() -> dispatcher.dispatch("foo", () -> immediateFuture("rejected")))
+                    .isInstanceOf(RejectedExecutionException.class);
+
+            // method names are not interpreted as a format
+            assertThat(dispatcher.dispatch("100%s", () -> immediateFuture(Thread.currentThread().getName())).get())
+                    .startsWith("drift-server-dispatch-100%s-");
+
+            // methods that are not known share a pool
+            assertThat(dispatcher.dispatch("unknown", () -> immediateFuture(Thread.currentThread().getName())).get())
+                    .startsWith("drift-server-dispatch-")
+                    .doesNotContain("unknown");
+
+            blocked.set("done");
+            assertEquals(running.get(), "done");
+            assertEquals(queued.get(), "queued");
+        }
+    }
+
+    @Test
+    public void testRejected()
+            throws Exception
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(THREAD_POOL, 1, 1, ImmutableSet.of(), ImmutableSet.of())) {
+            CountDownLatch started = new CountDownLatch(1);
+            SettableFuture<String> blocked = SettableFuture.create();
+            ListenableFuture<String> running = dispatcher.dispatch("foo", () -> {
+                started.countDown();
+                return immediateFuture(blocked.get());
+            });
+            started.await();
+
+            ListenableFuture<String> queued = dispatcher.dispatch("foo", () -> immediateFuture("queued"));
+            assertEquals(dispatcher.getQueuedRequests(), 1);
+
+            assertThatThrownBy(() -> dispatcher.dispatch("foo", () -> immediateFuture("rejected")))
+                    .isInstanceOf(RejectedExecutionException.class);
+            assertEquals(dispatcher.getRejectedRequests().getTotalCount(), 1);
+
+            blocked.set("done");
+            assertEquals(running.get(), "done");
+            assertEquals(queued.get(), "queued");
+            assertEquals(dispatcher.getQueuedRequests(), 0);
+        }
+    }
+
+    @Test
+    public void testCancelledWhileQueued()
+            throws Exception
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(THREAD_POOL, 1, 10, ImmutableSet.of(), ImmutableSet.of())) {
+            CountDownLatch started = new CountDownLatch(1);
+            SettableFuture<String> blocked = SettableFuture.create();
+            ListenableFuture<String> running = dispatcher.dispatch("foo", () -> {
+                started.countDown();
+                return immediateFuture(blocked.get());
+            });
+            started.await();
+
+            ByteBuf frame = Unpooled.buffer(16);
+            CountDownLatch cleanedUp = new CountDownLatch(1);
+            ListenableFuture<String> queued = dispatcher.dispatch(
+                    "foo",
+                    () -> {
+                        throw new AssertionError("cancelled task was executed");
+                    },
+                    () -> {
+                        frame.release();
+                        cleanedUp.countDown();
+                    });
+            assertTrue(queued.cancel(true));
+
+            blocked.set("done");
+            assertEquals(running.get(), "done");
+            assertTrue(cleanedUp.await(10, SECONDS));
+            assertEquals(frame.refCnt(), 0);
+        }
+    }
+
+    @Test
+    public void testCleanupAfterTaskFuture()
+            throws Exception
+    {
+        try (ServerDispatcher dispatcher = new ServerDispatcher(THREAD_POOL, 1, 10, ImmutableSet.of(), ImmutableSet.of())) {
+            ByteBuf frame = Unpooled.buffer(16);
+            SettableFuture<String> response = SettableFuture.create();
+            CountDownLatch called = new CountDownLatch(1);
+            ListenableFuture<String> result = dispatcher.dispatch(
+                    "foo",
+                    () -> {
+                        called.countDown();
+                        return response;
+                    },
+                    frame::release);
+            called.await();
+
+            // the task has returned, but its future is still running
+            assertEquals(frame.refCnt(), 1);
+
+            response.set("done");
+            assertEquals(result.get(), "done");
+            assertEquals(frame.refCnt(), 0);
+        }
+    }
+
+    @Test
+    public void testCleanupWhenRejectedOrClosed()
+            throws Exception
+    {
+        ServerDispatcher dispatcher = new ServerDispatcher(THREAD_POOL, 1, 1, ImmutableSet.of(), ImmutableSet.of());
+        CountDownLatch started = new CountDownLatch(1);
+        ListenableFuture<String> running = dispatcher.dispatch("foo", () -> {
+            started.countDown();
+            return immediateFuture(SettableFuture.<String>create().get());
+        });
+        started.await();
+
+        ByteBuf queuedFrame = Unpooled.buffer(16);
+        ListenableFuture<String> queued = dispatcher.dispatch("foo", () -> immediateFuture("queued"), queuedFrame::release);
+
+        ByteBuf rejectedFrame = Unpooled.buffer(16);
+        assertThatThrownBy(() -> dispatcher.dispatch("foo", () -> immediateFuture("rejected"), rejectedFrame::release))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertEquals(rejectedFrame.refCnt(), 0);
+
+        dispatcher.close();
+        assertThatThrownBy(queued::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertEquals(queuedFrame.refCnt(), 0);
+        assertEquals(dispatcher.getQueuedRequests(), 0);
+        assertThatThrownBy(running::get).isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    public void testVirtualThread()
+            throws Exception
+    {
+        ServerDispatcher dispatcher;
+        try {
+            dispatcher = new ServerDispatcher(VIRTUAL_THREAD, 1, 1, ImmutableSet.of(), ImmutableSet.of());
+        }
+        catch (UnsupportedOperationException e) {
+            assertThat(e).hasMessageContaining("Java 21");
+            return;
+        }
+        try {
+            assertEquals(dispatcher.dispatch("foo", () -> immediateFuture("value")).get(), "value");
+        }
+        finally {
+            dispatcher.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * The time a client waits for the response to a request, carried in the
+ * {@code client_timeout} header (milliseconds, as in fbthrift) so the server
+ * can stop working on requests nobody is waiting for. Service methods can
+ * read the remaining time with a {@code @ThriftHeader("client_timeout")}
+ * parameter, which the server updates just before invoking the method. A
+ * timeout of zero means the client waits for the response forever, and a
+ * negative timeout has already expired.
+ */
+public final class ClientTimeout
+{
+    public static final String CLIENT_TIMEOUT_HEADER = "client_timeout";
+
+    private ClientTimeout() {}
+
+    /**
+     * @return the timeout in milliseconds, or empty if the header is missing or malformed
+     */
+    public static OptionalLong getClientTimeoutMillis(Map<String, String> headers)
+    {
+        String value = headers.get(CLIENT_TIMEOUT_HEADER);
+        if (value == null) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(value.trim()));
+        }
+        catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Returns the headers with the timeout lowered to the specified value. A
+     * shorter timeout already in the headers is kept.
+     */
+    public static Map<String, String> withClientTimeout(Map<String, String> headers, long timeoutMillis)
+    {
+        String value = String.valueOf(lowerClientTimeout(headers, timeoutMillis));
+        if (value.equals(headers.get(CLIENT_TIMEOUT_HEADER))) {
+            return headers;
+        }
+
+        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+        headers.forEach((name, headerValue) -> {
+            if (!name.equals(CLIENT_TIMEOUT_HEADER)) {
+                builder.put(name, headerValue);
+            }
+        });
+        return builder.put(CLIENT_TIMEOUT_HEADER, value).build();
+    }
+
+    /**
+     * Returns the timeout to send with the headers when the client waits the
+     * specified time. A shorter timeout already in the headers is kept.
+     */
+    public static long lowerClientTimeout(Map<String, String> headers, long timeoutMillis)
+    {
+        // zero means no timeout, so a timeout that rounds down to zero is sent as one millisecond
+        timeoutMillis = max(1, timeoutMillis);
+        OptionalLong existing = getClientTimeoutMillis(headers);
+        if (existing.isPresent() && existing.getAsLong() != 0) {
+            timeoutMillis = min(timeoutMillis, existing.getAsLong());
+        }
+        return timeoutMillis;
+    }
+}
@@ -17,6 +17,7 @@ package com.facebook.drift.transport;
 
 import com.facebook.drift.codec.ThriftCodec;
 import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.codec.internal.FieldSlotTable;
 import com.facebook.drift.codec.metadata.ThriftMethodMetadata;
 import com.facebook.drift.codec.metadata.ThriftType;
 import com.google.common.collect.ImmutableList;
@@ -30,16 +31,15 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Maps.transformEntries;
 import static java.util.Objects.requireNonNull;
-import static java.util.function.Function.identity;
 
 public final class MethodMetadata
 {
     private final String name;
     private final List<ParameterMetadata> parameters;
-    private final Map<Short, ParameterMetadata> parametersById;
+    private final FieldSlotTable parameterSlots;
     private final ThriftCodec<Object> resultCodec;
     private final Map<Short, ThriftCodec<Object>> exceptionCodecs;
     private final Map<Class<?>, Short> exceptionIdsByType;
@@ -85,7 +85,9 @@ public final class MethodMetadata
     {
         this.name = requireNonNull(name, "name is null");
         this.parameters = ImmutableList.copyOf(requireNonNull(parameters, "parameters is null"));
-        this.parametersById = parameters.stream().collect(toImmutableMap(ParameterMetadata::getFieldId, identity()));
+        this.parameterSlots = new FieldSlotTable(this.parameters.stream()
+                .map(ParameterMetadata::getFieldId)
+                .collect(toImmutableList()));
         this.resultCodec = requireNonNull(resultCodec, "resultCodec is null");
         this.exceptionCodecs = ImmutableMap.copyOf(requireNonNull(exceptionCodecs, "exceptionCodecs is null"));
 
@@ -111,7 +113,19 @@ public final class MethodMetadata
 
     public ParameterMetadata getParameterByFieldId(short fieldId)
     {
-        return parametersById.get(fieldId);
+        int index = getParameterIndex(fieldId);
+        if (index < 0) {
+            return null;
+        }
+        return parameters.get(index);
+    }
+
+    /**
+     * @return the index of the parameter in {@link #getParameters()}, or -1 if there is no parameter with the field id
+     */
+    public int getParameterIndex(short fieldId)
+    {
+        return parameterSlots.getSlot(fieldId);
     }
 
     public ThriftCodec<Object> getResultCodec()
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads are only available on Java 21 and later, while this
+ * project targets Java 8, so the executor factory is found reflectively.
+ */
+public final class VirtualThreads
+{
+    private static final Optional<Method> EXECUTOR_FACTORY = findExecutorFactory();
+
+    private VirtualThreads() {}
+
+    public static boolean isSupported()
+    {
+        return EXECUTOR_FACTORY.isPresent();
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        Method factory = EXECUTOR_FACTORY.orElseThrow(() -> new UnsupportedOperationException("Virtual threads require Java 21 or later"));
+        try {
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Failed to create virtual thread executor", e);
+        }
+    }
+
+    private static Optional<Method> findExecutorFactory()
+    {
+        try {
+            return Optional.of(Executors.class.getMethod("newVirtualThreadPerTaskExecutor"));
+        }
+        catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+}
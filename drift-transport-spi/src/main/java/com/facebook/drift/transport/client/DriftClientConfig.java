@@ -20,6 +20,8 @@ import com.facebook.airlift.configuration.ConfigDescription;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
@@ -37,6 +39,11 @@ public class DriftClientConfig
 
     private boolean statsEnabled = true;
 
+    private boolean hedgingEnabled;
+    private Duration hedgingDelay = new Duration(100, MILLISECONDS);
+    private Double hedgingLatencyPercentile;
+    private double hedgingBudgetPercent = 10.0;
+
     @Min(0L)
     public int getMaxRetries()
     {
@@ -121,4 +128,62 @@ public class DriftClientConfig
         this.statsEnabled = statsEnabled;
         return this;
     }
+
+    public boolean isHedgingEnabled()
+    {
+        return hedgingEnabled;
+    }
+
+    @Config("thrift.client.hedging.enabled")
+    @ConfigDescription("Send a second attempt of idempotent methods to another address when the first is slow")
+    public DriftClientConfig setHedgingEnabled(boolean hedgingEnabled)
+    {
+        this.hedgingEnabled = hedgingEnabled;
+        return this;
+    }
+
+    @MinDuration("1ms")
+    @NotNull
+    public Duration getHedgingDelay()
+    {
+        return hedgingDelay;
+    }
+
+    @Config("thrift.client.hedging.delay")
+    @ConfigDescription("Time to wait for a response before sending a hedged request")
+    public DriftClientConfig setHedgingDelay(Duration hedgingDelay)
+    {
+        this.hedgingDelay = hedgingDelay;
+        return this;
+    }
+
+    @DecimalMin("0")
+    @DecimalMax("100")
+    public Double getHedgingLatencyPercentile()
+    {
+        return hedgingLatencyPercentile;
+    }
+
+    @Config("thrift.client.hedging.latency-percentile")
+    @ConfigDescription("Wait for this percentile of recent method latency before hedging, instead of the fixed delay")
+    public DriftClientConfig setHedgingLatencyPercentile(Double hedgingLatencyPercentile)
+    {
+        this.hedgingLatencyPercentile = hedgingLatencyPercentile;
+        return this;
+    }
+
+    @DecimalMin("0")
+    @DecimalMax("100")
+    public double getHedgingBudgetPercent()
+    {
+        return hedgingBudgetPercent;
+    }
+
+    @Config("thrift.client.hedging.budget-percent")
+    @ConfigDescription("Maximum hedged requests as a percentage of requests")
+    public DriftClientConfig setHedgingBudgetPercent(double hedgingBudgetPercent)
+    {
+        this.hedgingBudgetPercent = hedgingBudgetPercent;
+        return this;
+    }
 }
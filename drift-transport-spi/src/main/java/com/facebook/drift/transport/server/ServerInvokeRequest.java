@@ -16,12 +16,15 @@
 package com.facebook.drift.transport.server;
 
 import com.facebook.drift.transport.MethodMetadata;
+import com.facebook.drift.transport.ParameterMetadata;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.unmodifiableMap;
 import static java.util.Objects.requireNonNull;
 
@@ -29,13 +32,33 @@ public final class ServerInvokeRequest
 {
     private final MethodMetadata method;
     private final Map<String, String> headers;
-    private final Map<Short, Object> parameters;
+    // indexed by the position of the parameter in the method metadata
+    private final Object[] arguments;
+    private volatile Map<Short, Object> parameters;
 
     public ServerInvokeRequest(MethodMetadata method, Map<String, String> headers, Map<Short, Object> parameters)
     {
         this.method = requireNonNull(method, "method is null");
         this.headers = ImmutableMap.copyOf(requireNonNull(headers, "headers is null"));
         this.parameters = unmodifiableMap(new HashMap<>(requireNonNull(parameters, "parameters is null")));
+
+        List<ParameterMetadata> methodParameters = method.getParameters();
+        this.arguments = new Object[methodParameters.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = parameters.get(methodParameters.get(i).getFieldId());
+        }
+    }
+
+    /**
+     * Creates a request from arguments ordered like the parameters of the method.
+     * The array is not copied, and must not be modified after the call.
+     */
+    public ServerInvokeRequest(MethodMetadata method, Map<String, String> headers, Object[] arguments)
+    {
+        this.method = requireNonNull(method, "method is null");
+        this.headers = ImmutableMap.copyOf(requireNonNull(headers, "headers is null"));
+        this.arguments = requireNonNull(arguments, "arguments is null");
+        checkArgument(arguments.length == method.getParameters().size(), "Expected %s arguments, but got %s", method.getParameters().size(), arguments.length);
     }
 
     public MethodMetadata getMethod()
@@ -48,8 +71,35 @@ public final class ServerInvokeRequest
         return headers;
     }
 
+    /**
+     * @return the value of the parameter with the field id, or null if the method has no such parameter
+     */
+    public Object getParameter(short fieldId)
+    {
+        int index = method.getParameterIndex(fieldId);
+        if (index < 0) {
+            return null;
+        }
+        return arguments[index];
+    }
+
+    /**
+     * @return the parameters by field id, built on first use; parameters absent from the request are not included
+     */
     public Map<Short, Object> getParameters()
     {
+        Map<Short, Object> parameters = this.parameters;
+        if (parameters == null) {
+            List<ParameterMetadata> methodParameters = method.getParameters();
+            Map<Short, Object> map = new HashMap<>(methodParameters.size());
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] != null) {
+                    map.put(methodParameters.get(i).getFieldId(), arguments[i]);
+                }
+            }
+            parameters = unmodifiableMap(map);
+            this.parameters = parameters;
+        }
         return parameters;
     }
 
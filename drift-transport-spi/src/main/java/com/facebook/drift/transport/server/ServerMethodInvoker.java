@@ -17,9 +17,11 @@ package com.facebook.drift.transport.server;
 
 import com.facebook.drift.TApplicationException;
 import com.facebook.drift.transport.MethodMetadata;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Optional;
+import java.util.Set;
 
 public interface ServerMethodInvoker
 {
@@ -28,6 +30,15 @@ public interface ServerMethodInvoker
      */
     Optional<MethodMetadata> getMethodMetadata(String name);
 
+    /**
+     * @return names of the supported methods, which transports can use to recognize
+     * method names in requests without decoding them
+     */
+    default Set<String> getMethodNames()
+    {
+        return ImmutableSet.of();
+    }
+
     /**
      * Invoke the specified method asynchronously.
      * <p>
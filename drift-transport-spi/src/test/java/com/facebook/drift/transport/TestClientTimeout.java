@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport;
+
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static com.facebook.drift.transport.ClientTimeout.CLIENT_TIMEOUT_HEADER;
+import static com.facebook.drift.transport.ClientTimeout.getClientTimeoutMillis;
+import static com.facebook.drift.transport.ClientTimeout.lowerClientTimeout;
+import static com.facebook.drift.transport.ClientTimeout.withClientTimeout;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class TestClientTimeout
+{
+    @Test
+    public void testGetClientTimeout()
+    {
+        assertEquals(getClientTimeoutMillis(ImmutableMap.of()), OptionalLong.empty());
+        assertEquals(getClientTimeoutMillis(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "1500")), OptionalLong.of(1500));
+        assertEquals(getClientTimeoutMillis(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "soon")), OptionalLong.empty());
+    }
+
+    @Test
+    public void testWithClientTimeout()
+    {
+        Map<String, String> headers = withClientTimeout(ImmutableMap.of("other", "value"), 1000);
+        assertEquals(headers, ImmutableMap.of("other", "value", CLIENT_TIMEOUT_HEADER, "1000"));
+
+        // a shorter timeout set by the caller is kept
+        assertSame(withClientTimeout(headers, 2000), headers);
+        assertEquals(withClientTimeout(headers, 500), ImmutableMap.of("other", "value", CLIENT_TIMEOUT_HEADER, "500"));
+
+        // a malformed timeout is replaced
+        assertEquals(withClientTimeout(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "soon"), 100), ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "100"));
+
+        // no timeout is replaced, and an expired timeout is kept
+        assertEquals(withClientTimeout(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "0"), 100), ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "100"));
+        assertEquals(withClientTimeout(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "-5"), 100), ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "-5"));
+
+        // zero means no timeout, so a timeout is at least one millisecond
+        assertEquals(withClientTimeout(ImmutableMap.of(), 0), ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "1"));
+    }
+
+    @Test
+    public void testLowerClientTimeout()
+    {
+        assertEquals(lowerClientTimeout(ImmutableMap.of(), 1000), 1000);
+        assertEquals(lowerClientTimeout(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "500"), 1000), 500);
+        assertEquals(lowerClientTimeout(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "5000"), 1000), 1000);
+        assertEquals(lowerClientTimeout(ImmutableMap.of(CLIENT_TIMEOUT_HEADER, "0"), 1000), 1000);
+        assertEquals(lowerClientTimeout(ImmutableMap.of(), 0), 1);
+    }
+}
@@ -40,7 +40,11 @@ public class TestDriftClientConfig
                 .setMaxBackoffDelay(new Duration(30, SECONDS))
                 .setBackoffScaleFactor(2.0)
                 .setMaxRetryTime(new Duration(1, MINUTES))
-                .setStatsEnabled(true));
+                .setStatsEnabled(true)
+                .setHedgingEnabled(false)
+                .setHedgingDelay(new Duration(100, MILLISECONDS))
+                .setHedgingLatencyPercentile(null)
+                .setHedgingBudgetPercent(10.0));
     }
 
     @Test
@@ -53,6 +57,10 @@ public class TestDriftClientConfig
                 .put("thrift.client.backoff-scale-factor", "2.2")
                 .put("thrift.client.max-retry-time", "33m")
                 .put("thrift.client.stats.enabled", "false")
+                .put("thrift.client.hedging.enabled", "true")
+                .put("thrift.client.hedging.delay", "44ms")
+                .put("thrift.client.hedging.latency-percentile", "95")
+                .put("thrift.client.hedging.budget-percent", "2.5")
                 .build();
 
         DriftClientConfig expected = new DriftClientConfig()
@@ -61,7 +69,11 @@ public class TestDriftClientConfig
                 .setMaxBackoffDelay(new Duration(22, MINUTES))
                 .setBackoffScaleFactor(2.2)
                 .setMaxRetryTime(new Duration(33, MINUTES))
-                .setStatsEnabled(false);
+                .setStatsEnabled(false)
+                .setHedgingEnabled(true)
+                .setHedgingDelay(new Duration(44, MILLISECONDS))
+                .setHedgingLatencyPercentile(95.0)
+                .setHedgingBudgetPercent(2.5);
 
         assertFullMapping(properties, expected);
     }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2018 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.drift.transport.VirtualThreads.isSupported;
+import static com.facebook.drift.transport.VirtualThreads.newVirtualThreadPerTaskExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestVirtualThreads
+{
+    @Test
+    public void testNewVirtualThreadPerTaskExecutor()
+            throws Exception
+    {
+        if (!isSupported()) {
+            try {
+                newVirtualThreadPerTaskExecutor();
+                fail("expected UnsupportedOperationException");
+            }
+            catch (UnsupportedOperationException e) {
+                assertTrue(e.getMessage().contains("Java 21"));
+            }
+            return;
+        }
+
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        try {
+            assertEquals(executor.submit(() -> "value").get(), "value");
+        }
+        finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, MINUTES));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012 Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.drift.transport.server;
+
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.transport.MethodMetadata;
+import com.facebook.drift.transport.ParameterMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class TestServerInvokeRequest
+{
+    private static final ThriftCodecManager CODEC_MANAGER = new ThriftCodecManager();
+
+    @SuppressWarnings("unchecked")
+    private static final MethodMetadata METHOD = new MethodMetadata(
+            "test",
+            ImmutableList.of(
+                    new ParameterMetadata((short) 3, "name", (ThriftCodec<Object>) (Object) CODEC_MANAGER.getCodec(String.class)),
+                    new ParameterMetadata((short) 1, "id", (ThriftCodec<Object>) (Object) CODEC_MANAGER.getCodec(int.class))),
+            (ThriftCodec<Object>) (Object) CODEC_MANAGER.getCodec(String.class),
+            ImmutableMap.of(),
+            false,
+            true);
+
+    @Test
+    public void testArguments()
+    {
+        ServerInvokeRequest request = new ServerInvokeRequest(METHOD, ImmutableMap.of(), new Object[] {"hello", 42});
+        assertEquals(request.getParameter((short) 3), "hello");
+        assertEquals(request.getParameter((short) 1), 42);
+        assertNull(request.getParameter((short) 2));
+
+        Map<Short, Object> expected = new HashMap<>();
+        expected.put((short) 3, "hello");
+        expected.put((short) 1, 42);
+        assertEquals(request.getParameters(), expected);
+        assertSame(request.getParameters(), request.getParameters());
+    }
+
+    @Test
+    public void testMissingArguments()
+    {
+        ServerInvokeRequest request = new ServerInvokeRequest(METHOD, ImmutableMap.of(), new Object[] {null, 42});
+        assertNull(request.getParameter((short) 3));
+        assertEquals(request.getParameter((short) 1), 42);
+
+        // arguments absent from the request are left out of the map
+        assertEquals(request.getParameters(), ImmutableMap.of((short) 1, 42));
+        assertFalse(request.getParameters().containsKey((short) 3));
+    }
+
+    @Test
+    public void testParameterMap()
+    {
+        Map<Short, Object> parameters = new HashMap<>();
+        parameters.put((short) 3, null);
+        parameters.put((short) 1, 42);
+        ServerInvokeRequest request = new ServerInvokeRequest(METHOD, ImmutableMap.of(), parameters);
+        assertNull(request.getParameter((short) 3));
+        assertEquals(request.getParameter((short) 1), 42);
+        assertEquals(request.getParameters(), parameters);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Expected 2 arguments, but got 1")
+    public void testWrongArgumentCount()
+    {
+        new ServerInvokeRequest(METHOD, ImmutableMap.of(), new Object[] {"hello"});
+    }
+}